@@ -0,0 +1,121 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Training run for the class data sharing archive. (profile appcds) The
+ * launcher dumping the archive ingests a small directory into a stub of KIT
+ * Data Manager. Hence the archive holds the classes of the command line, the
+ * REST clients (Jersey, JAXB), the WebDAV transfers and the settings instead of
+ * the classes printing the usage only. The stub runs inside this process, the
+ * launcher in its own process with the classpath of the distribution.
+ * <br/> Usage:
+ * <pre>
+ * {@code
+ *  java -cp ... AppCdsTraining target/bin/appcdsTraining target/appcds-home
+ * }
+ * </pre>
+ *
+ * @author hartmann-v
+ */
+public final class AppCdsTraining {
+
+  /**
+   * Number of files ingested by the training run.
+   */
+  private static final int NO_OF_FILES = 20;
+  /**
+   * Size of each file in bytes.
+   */
+  private static final int FILE_SIZE = 16 * 1024;
+  /**
+   * Maximum duration of the training run in minutes.
+   */
+  private static final long TIMEOUT_IN_MINUTES = 10;
+
+  /**
+   * This is a utility class and hence does not require any public constructor.
+   */
+  private AppCdsTraining() {
+  }
+
+  /**
+   * Run training.
+   *
+   * @param args launcher dumping the archive and directory used as home of
+   * the launcher.
+   * @throws IOException if training couldn't be prepared or failed.
+   * @throws InterruptedException if training was interrupted.
+   */
+  public static void main(String[] args) throws IOException, InterruptedException {
+    if (args.length != 2) {
+      throw new IllegalArgumentException("Usage: AppCdsTraining <launcher> <home directory>");
+    }
+    File launcher = new File(args[0]);
+    File homeDirectory = new File(args[1]).getAbsoluteFile();
+    FileUtils.deleteDirectory(homeDirectory);
+    File inputDirectory = new File(homeDirectory, "input");
+    createFiles(inputDirectory);
+    try (KitDmStubServer server = KitDmStubServer.start()) {
+      // Settings of the user are read from '<user.home>/.repoClient'.
+      server.writeSettings(new File(homeDirectory, ".repoClient/RepoSettings.properties"));
+      ProcessBuilder builder = new ProcessBuilder("sh", launcher.getAbsolutePath(),
+              "ingest", "-i", inputDirectory.getAbsolutePath(), "-n", "AppCDS training");
+      builder.environment().put("JAVA_OPTS", "-Duser.home=" + homeDirectory.getAbsolutePath());
+      builder.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+      builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+      Process training = builder.start();
+      // Never wait for input.
+      training.getOutputStream().close();
+      if (!training.waitFor(TIMEOUT_IN_MINUTES, TimeUnit.MINUTES)) {
+        training.destroyForcibly();
+        throw new IOException("Training run didn't finish within " + TIMEOUT_IN_MINUTES + " minutes!");
+      }
+      if (training.exitValue() != 0) {
+        throw new IOException("Training run failed! (exit code: " + training.exitValue() + ")");
+      }
+      System.out.println("Training run ingested " + server.getUploadedBytes() + " bytes.");
+    }
+  }
+
+  /**
+   * Create files to ingest.
+   *
+   * @param pDirectory directory holding the files.
+   * @throws IOException if files couldn't be created.
+   */
+  private static void createFiles(File pDirectory) throws IOException {
+    byte[] content = new byte[FILE_SIZE];
+    new Random(NO_OF_FILES).nextBytes(content);
+    for (int index = 0; index < NO_OF_FILES; index++) {
+      File directory = new File(pDirectory, "dir_" + (index % 4));
+      if (!directory.isDirectory() && !directory.mkdirs()) {
+        throw new IOException("Unable to create directory '" + directory + "'!");
+      }
+      try (OutputStream out = new FileOutputStream(new File(directory, "file_" + index + ".bin"))) {
+        out.write(content);
+      }
+    }
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.benchmark;
+
+import edu.kit.dama.rest.SimpleRESTContext;
+import edu.kit.dama.rest.client.generic.helper.RESTClientHelper;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for the latency of waiting for a download. Each invocation waits
+ * for a new download which is ready after the given number of polls.
+ *
+ * @author hartmann-v
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Duser.home=target/benchmark-home"})
+public class DownloadStatusBenchmark {
+
+  /**
+   * Number of polls until the download is ready.
+   */
+  @Param({"0", "2"})
+  public int pollsUntilReady;
+  /**
+   * Stub server.
+   */
+  private KitDmStubServer server;
+  /**
+   * Helper under test.
+   */
+  private RESTClientHelper clientHelper;
+  /**
+   * Id of the download of the next invocation.
+   */
+  private long downloadId;
+
+  /**
+   * Start stub server.
+   *
+   * @throws IOException if stub couldn't be started.
+   */
+  @Setup
+  public void setUp() throws IOException {
+    server = KitDmStubServer.start();
+    clientHelper = new RESTClientHelper(new SimpleRESTContext("benchmarkKey", "benchmarkSecret"), server.getBaseUrl() + "/");
+  }
+
+  /**
+   * Create download for the next invocation.
+   */
+  @Setup(Level.Invocation)
+  public void createDownload() {
+    downloadId = server.addDownload(pollsUntilReady);
+  }
+
+  /**
+   * Stop stub server.
+   */
+  @TearDown
+  public void tearDown() {
+    server.close();
+  }
+
+  /**
+   * Wait until download is ready.
+   *
+   * @return status of the download.
+   */
+  @Benchmark
+  public int checkDownloadStatus() {
+    return clientHelper.checkDownloadStatus(downloadId);
+  }
+}
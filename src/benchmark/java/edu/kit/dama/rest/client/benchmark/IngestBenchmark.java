@@ -0,0 +1,155 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.benchmark;
+
+import edu.kit.dama.rest.client.DataManagerPropertiesImpl;
+import edu.kit.dama.rest.client.ingest.GenericIngestClient;
+import edu.kit.jcommander.generic.status.CommandStatus;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for ingesting a directory via WebDAV. The directory contains either
+ * many small files or a few large files.
+ *
+ * @author hartmann-v
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Duser.home=target/benchmark-home"})
+public class IngestBenchmark {
+
+  /**
+   * Content of the ingested directory.
+   */
+  public enum Content {
+    /**
+     * 2000 files with 4 KiB each.
+     */
+    SMALL_FILES(2000, 4 * 1024),
+    /**
+     * 4 files with 64 MiB each.
+     */
+    LARGE_FILES(4, 64 * 1024 * 1024);
+    /**
+     * Number of files.
+     */
+    private final int noOfFiles;
+    /**
+     * Size of each file.
+     */
+    private final int fileSize;
+
+    /**
+     * Constructor.
+     *
+     * @param pNoOfFiles number of files.
+     * @param pFileSize size of each file.
+     */
+    Content(int pNoOfFiles, int pFileSize) {
+      noOfFiles = pNoOfFiles;
+      fileSize = pFileSize;
+    }
+  }
+  /**
+   * Content of the ingested directory.
+   */
+  @Param({"SMALL_FILES", "LARGE_FILES"})
+  public Content content;
+  /**
+   * Stub server.
+   */
+  private KitDmStubServer server;
+  /**
+   * Settings pointing to the stub server.
+   */
+  private DataManagerPropertiesImpl properties;
+  /**
+   * Directory to ingest.
+   */
+  private File inputDirectory;
+
+  /**
+   * Start stub server and create directory to ingest.
+   *
+   * @throws IOException if stub couldn't be started or files couldn't be
+   * created.
+   */
+  @Setup
+  public void setUp() throws IOException {
+    server = KitDmStubServer.start();
+    File settingsFile = new File("target/benchmark-home/ingest/RepoSettings.properties");
+    server.writeSettings(settingsFile);
+    properties = DataManagerPropertiesImpl.getInstance(settingsFile.getPath());
+    inputDirectory = Files.createTempDirectory("ingestBenchmark").toFile();
+    byte[] buffer = new byte[Math.min(content.fileSize, 1024 * 1024)];
+    new Random(content.noOfFiles).nextBytes(buffer);
+    for (int index = 0; index < content.noOfFiles; index++) {
+      // Spread files over sub directories.
+      File directory = new File(inputDirectory, "dir_" + (index % 10));
+      if (!directory.isDirectory() && !directory.mkdirs()) {
+        throw new IOException("Unable to create directory '" + directory + "'!");
+      }
+      try (OutputStream out = new FileOutputStream(new File(directory, "file_" + index + ".bin"))) {
+        for (int written = 0; written < content.fileSize; written += buffer.length) {
+          out.write(buffer, 0, Math.min(buffer.length, content.fileSize - written));
+        }
+      }
+    }
+  }
+
+  /**
+   * Stop stub server and remove created files.
+   *
+   * @throws IOException if files couldn't be removed.
+   */
+  @TearDown
+  public void tearDown() throws IOException {
+    server.close();
+    FileUtils.deleteDirectory(inputDirectory);
+  }
+
+  /**
+   * Ingest directory.
+   *
+   * @return status of the ingest.
+   */
+  @Benchmark
+  public CommandStatus ingest() {
+    return GenericIngestClient.ingestData(properties, inputDirectory, "Benchmark");
+  }
+}
@@ -0,0 +1,779 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import edu.kit.dama.mdm.admin.UserGroup;
+import edu.kit.dama.mdm.base.DigitalObject;
+import edu.kit.dama.mdm.base.Investigation;
+import edu.kit.dama.mdm.base.Study;
+import edu.kit.dama.mdm.base.UserData;
+import edu.kit.dama.rest.admin.types.UserDataWrapper;
+import edu.kit.dama.rest.admin.types.UserGroupWrapper;
+import edu.kit.dama.rest.basemetadata.types.DigitalObjectWrapper;
+import edu.kit.dama.rest.basemetadata.types.InvestigationWrapper;
+import edu.kit.dama.rest.basemetadata.types.StudyWrapper;
+import edu.kit.dama.rest.client.DataManagerProperties;
+import edu.kit.dama.rest.staging.types.DownloadInformationWrapper;
+import edu.kit.dama.rest.staging.types.IngestInformationWrapper;
+import edu.kit.dama.rest.staging.types.StagingAccessPointConfigurationWrapper;
+import edu.kit.dama.staging.entities.StagingAccessPointConfiguration;
+import edu.kit.dama.staging.entities.download.DOWNLOAD_STATUS;
+import edu.kit.dama.staging.entities.download.DownloadInformation;
+import edu.kit.dama.staging.entities.ingest.INGEST_STATUS;
+import edu.kit.dama.staging.entities.ingest.IngestInformation;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+
+/**
+ * In-process stub of the REST and WebDAV services of KIT Data Manager. The
+ * stub listens on the loopback interface only and holds all entities in
+ * memory. It supports the subset of the REST API used by this client:
+ * <ul>
+ * <li>GET {collection}, {collection}/count and {collection}/{id}</li>
+ * <li>POST {collection} (creates a new entity)</li>
+ * <li>PUT {collection}/{id} (updates the status of ingests and
+ * downloads)</li>
+ * <li>WebDAV: MKCOL, PUT, PROPFIND, HEAD and DELETE (content is discarded)</li>
+ * </ul>
+ * Entities are serialized with JAXB using the wrapper classes of KIT Data
+ * Manager, so the client parses exactly the same XML as in production.
+ * <br/> Example:
+ * <pre>
+ * {@code
+ *  try (KitDmStubServer server = KitDmStubServer.start()) {
+ *    server.addDigitalObjects(1000);
+ *    server.writeSettings(new File("RepoSettings.properties"));
+ *    // run client against server.getBaseUrl()
+ *  }
+ * }
+ * </pre>
+ *
+ * @author hartmann-v
+ */
+public final class KitDmStubServer implements AutoCloseable {
+
+  /**
+   * Context path of the stub.
+   */
+  private static final String CONTEXT_PATH = "/KITDM";
+  /**
+   * Path of the REST services.
+   */
+  private static final String REST_PATH = CONTEXT_PATH + "/rest/";
+  /**
+   * Path of the WebDAV service.
+   */
+  private static final String WEBDAV_PATH = CONTEXT_PATH + "/webdav/";
+  /**
+   * Group of all entities.
+   */
+  public static final String GROUP_ID = "USERS";
+  /**
+   * Unique identifier of the only access point.
+   */
+  public static final String ACCESS_POINT = "webdav-benchmark";
+  /**
+   * Id of the only investigation.
+   */
+  public static final long INVESTIGATION_ID = 1L;
+  /**
+   * Number of worker threads serving requests.
+   */
+  private static final int WORKER_THREADS = 16;
+  /**
+   * Query parameter holding index of the first entity.
+   */
+  private static final String QUERY_FIRST = "first";
+  /**
+   * Query parameter holding maximum number of entities.
+   */
+  private static final String QUERY_RESULTS = "results";
+  /**
+   * Cached JAXB contexts per wrapper class.
+   */
+  private static final Map<Class<?>, JAXBContext> JAXB_CONTEXTS = new ConcurrentHashMap<>();
+  /**
+   * The HTTP server.
+   */
+  private final HttpServer server;
+  /**
+   * Workers serving requests.
+   */
+  private final ExecutorService workers;
+  /**
+   * All collections by name.
+   */
+  private final Map<String, EntityCollection> collections = new HashMap<>();
+  /**
+   * Next id for new entities.
+   */
+  private final AtomicLong nextId = new AtomicLong(1000);
+  /**
+   * Remaining polls per download until it is ready.
+   */
+  private final Map<Long, AtomicInteger> pendingDownloads = new ConcurrentHashMap<>();
+  /**
+   * All WebDAV collections.
+   */
+  private final Set<String> webDavCollections = ConcurrentHashMap.newKeySet();
+  /**
+   * Number of bytes uploaded via WebDAV.
+   */
+  private final AtomicLong uploadedBytes = new AtomicLong();
+
+  /**
+   * Collection of entities of one type.
+   */
+  private static final class EntityCollection {
+
+    /**
+     * All entities.
+     */
+    private final List<Object> entities = new CopyOnWriteArrayList<>();
+    /**
+     * Get id of an entity.
+     */
+    private final Function<Object, Long> idOf;
+    /**
+     * Wrap entities and count.
+     */
+    private final BiFunction<List<Object>, Integer, Object> wrapper;
+    /**
+     * Create new entity from form parameters (may be null).
+     */
+    private final Function<Map<String, String>, Object> factory;
+
+    /**
+     * Constructor.
+     *
+     * @param pIdOf get id of an entity.
+     * @param pWrapper wrap entities and count.
+     * @param pFactory create new entity from form parameters.
+     */
+    EntityCollection(Function<Object, Long> pIdOf, BiFunction<List<Object>, Integer, Object> pWrapper,
+            Function<Map<String, String>, Object> pFactory) {
+      idOf = pIdOf;
+      wrapper = pWrapper;
+      factory = pFactory;
+    }
+
+    /**
+     * Find entity by id.
+     *
+     * @param pId id of the entity.
+     * @return entity or null.
+     */
+    Object findById(long pId) {
+      for (Object entity : entities) {
+        if (idOf.apply(entity) == pId) {
+          return entity;
+        }
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Constructor.
+   *
+   * @throws IOException if server couldn't be started.
+   */
+  private KitDmStubServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    AtomicInteger threadNumber = new AtomicInteger();
+    workers = Executors.newFixedThreadPool(WORKER_THREADS, (runnable) -> {
+      Thread thread = new Thread(runnable, "stub-server-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    server.setExecutor(workers);
+    server.createContext(REST_PATH, this::handleRest);
+    server.createContext(WEBDAV_PATH, this::handleWebDav);
+    registerCollections();
+  }
+
+  /**
+   * Start a new stub server on a free port of the loopback interface.
+   *
+   * @return running server.
+   * @throws IOException if server couldn't be started.
+   */
+  public static KitDmStubServer start() throws IOException {
+    KitDmStubServer stub = new KitDmStubServer();
+    stub.server.start();
+    return stub;
+  }
+
+  /**
+   * Get base URL of KIT Data Manager. (without trailing slash)
+   *
+   * @return base URL.
+   */
+  public String getBaseUrl() {
+    InetSocketAddress address = server.getAddress();
+    return "http://" + address.getHostString() + ":" + address.getPort() + CONTEXT_PATH;
+  }
+
+  /**
+   * Get number of bytes uploaded via WebDAV so far.
+   *
+   * @return number of bytes.
+   */
+  public long getUploadedBytes() {
+    return uploadedBytes.get();
+  }
+
+  /**
+   * Write settings of the client pointing to this server.
+   *
+   * @param pSettingsFile properties file.
+   * @throws IOException if file couldn't be written.
+   */
+  public void writeSettings(File pSettingsFile) throws IOException {
+    Properties properties = new Properties();
+    properties.setProperty(DataManagerProperties.REST_SERVER_LABEL.getKey(), getBaseUrl());
+    properties.setProperty(DataManagerProperties.ACCESS_POINT_LABEL.getKey(), ACCESS_POINT);
+    properties.setProperty(DataManagerProperties.USER_ID.getKey(), "user-1");
+    properties.setProperty(DataManagerProperties.ACCESS_KEY.getKey(), "benchmarkKey");
+    properties.setProperty(DataManagerProperties.ACCESS_SECRET.getKey(), "benchmarkSecret");
+    properties.setProperty(DataManagerProperties.INVESTIGATION.getKey(), Long.toString(INVESTIGATION_ID));
+    properties.setProperty(DataManagerProperties.USER_GROUP.getKey(), GROUP_ID);
+    properties.setProperty(DataManagerProperties.USERNAME.getKey(), "benchmark");
+    properties.setProperty(DataManagerProperties.PASSWORD.getKey(), "benchmark");
+    File parent = pSettingsFile.getAbsoluteFile().getParentFile();
+    if (!parent.isDirectory() && !parent.mkdirs()) {
+      throw new IOException("Unable to create directory '" + parent + "'!");
+    }
+    try (OutputStream out = new FileOutputStream(pSettingsFile)) {
+      properties.store(out, "Settings for benchmarks against " + getBaseUrl());
+    }
+  }
+
+  /**
+   * Add users with distinguished names 'user-2' ... 'user-(n+1)'.
+   *
+   * @param pNoOfUsers number of users.
+   */
+  public void addUsers(int pNoOfUsers) {
+    for (int index = 0; index < pNoOfUsers; index++) {
+      collections.get("users").entities.add(createUser(nextId.incrementAndGet()));
+    }
+  }
+
+  /**
+   * Add digital objects including a finished ingest for each of them.
+   *
+   * @param pNoOfDigitalObjects number of digital objects.
+   */
+  public void addDigitalObjects(int pNoOfDigitalObjects) {
+    for (int index = 0; index < pNoOfDigitalObjects; index++) {
+      DigitalObject digitalObject = createDigitalObject();
+      collections.get("digitalObjects").entities.add(digitalObject);
+      IngestInformation ingest = createIngest(digitalObject.getDigitalObjectIdentifier());
+      ingest.setStatusEnum(INGEST_STATUS.INGEST_FINISHED);
+      collections.get("ingests").entities.add(ingest);
+    }
+  }
+
+  /**
+   * Add a download which gets ready after the given number of polls.
+   *
+   * @param pPollsUntilReady number of polls reporting status 'PREPARING'.
+   * @return id of the download.
+   */
+  public long addDownload(int pPollsUntilReady) {
+    DownloadInformation download = createDownload(UUID.randomUUID().toString());
+    pendingDownloads.put(download.getId(), new AtomicInteger(pPollsUntilReady));
+    collections.get("downloads").entities.add(download);
+    return download.getId();
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    workers.shutdownNow();
+  }
+
+  // <editor-fold defaultstate="collapsed" desc="Entities">
+  /**
+   * Register all collections supported by the stub.
+   */
+  @SuppressWarnings("unchecked")
+  private void registerCollections() {
+    collections.put("users", new EntityCollection((entity) -> ((UserData) entity).getUserId(), (entities, count) -> {
+      UserDataWrapper wrapper = new UserDataWrapper();
+      wrapper.setEntities((List) entities);
+      wrapper.setCount(count);
+      return wrapper;
+    }, null));
+    collections.put("groups", new EntityCollection((entity) -> ((UserGroup) entity).getId(), (entities, count) -> {
+      UserGroupWrapper wrapper = new UserGroupWrapper();
+      wrapper.setEntities((List) entities);
+      wrapper.setCount(count);
+      return wrapper;
+    }, null));
+    collections.put("studies", new EntityCollection((entity) -> ((Study) entity).getStudyId(), (entities, count) -> {
+      StudyWrapper wrapper = new StudyWrapper();
+      wrapper.setEntities((List) entities);
+      wrapper.setCount(count);
+      return wrapper;
+    }, null));
+    collections.put("investigations", new EntityCollection((entity) -> ((Investigation) entity).getInvestigationId(), (entities, count) -> {
+      InvestigationWrapper wrapper = new InvestigationWrapper();
+      wrapper.setEntities((List) entities);
+      wrapper.setCount(count);
+      return wrapper;
+    }, null));
+    collections.put("digitalObjects", new EntityCollection((entity) -> ((DigitalObject) entity).getBaseId(), (entities, count) -> {
+      DigitalObjectWrapper wrapper = new DigitalObjectWrapper();
+      wrapper.setEntities((List) entities);
+      wrapper.setCount(count);
+      return wrapper;
+    }, (form) -> createDigitalObject()));
+    collections.put("ingests", new EntityCollection((entity) -> ((IngestInformation) entity).getId(), (entities, count) -> {
+      IngestInformationWrapper wrapper = new IngestInformationWrapper();
+      wrapper.setEntities((List) entities);
+      wrapper.setCount(count);
+      return wrapper;
+    }, (form) -> createIngest(findParameter(form, "objectid"))));
+    collections.put("downloads", new EntityCollection((entity) -> ((DownloadInformation) entity).getId(), (entities, count) -> {
+      DownloadInformationWrapper wrapper = new DownloadInformationWrapper();
+      wrapper.setEntities((List) entities);
+      wrapper.setCount(count);
+      return wrapper;
+    }, (form) -> createDownload(findParameter(form, "objectid"))));
+    collections.put("accesspoints", new EntityCollection((entity) -> ((StagingAccessPointConfiguration) entity).getId(), (entities, count) -> {
+      StagingAccessPointConfigurationWrapper wrapper = new StagingAccessPointConfigurationWrapper();
+      wrapper.setEntities((List) entities);
+      wrapper.setCount(count);
+      return wrapper;
+    }, null));
+    // <editor-fold defaultstate="collapsed" desc="Fixed entities">
+    collections.get("users").entities.add(createUser(1L));
+    UserGroup group = new UserGroup();
+    group.setId(1L);
+    group.setGroupId(GROUP_ID);
+    group.setGroupName(GROUP_ID);
+    collections.get("groups").entities.add(group);
+    Study study = new Study();
+    study.setStudyId(1L);
+    study.setTopic("Benchmark");
+    collections.get("studies").entities.add(study);
+    Investigation investigation = new Investigation();
+    investigation.setInvestigationId(INVESTIGATION_ID);
+    investigation.setTopic("Benchmark");
+    investigation.setStudy(study);
+    collections.get("investigations").entities.add(investigation);
+    StagingAccessPointConfiguration accessPoint = new StagingAccessPointConfiguration();
+    accessPoint.setId(1L);
+    accessPoint.setUniqueIdentifier(ACCESS_POINT);
+    accessPoint.setName(ACCESS_POINT);
+    accessPoint.setDescription("WebDAV access point of the stub server.");
+    accessPoint.setGroupId(GROUP_ID);
+    accessPoint.setRemoteBaseUrl(getWebDavUrl(""));
+    collections.get("accesspoints").entities.add(accessPoint);
+    // </editor-fold>
+  }
+
+  /**
+   * Create user.
+   *
+   * @param pId id of the user.
+   * @return user.
+   */
+  private static UserData createUser(long pId) {
+    UserData user = new UserData();
+    user.setUserId(pId);
+    user.setDistinguishedName("user-" + pId);
+    user.setFirstName("Bench");
+    user.setLastName("Mark " + pId);
+    return user;
+  }
+
+  /**
+   * Create digital object.
+   *
+   * @return digital object.
+   */
+  private DigitalObject createDigitalObject() {
+    DigitalObject digitalObject = new DigitalObject();
+    long id = nextId.incrementAndGet();
+    digitalObject.setBaseId(id);
+    digitalObject.setDigitalObjectIdentifier(UUID.randomUUID().toString());
+    digitalObject.setLabel("Benchmark " + id);
+    digitalObject.setNote("Created by stub server");
+    return digitalObject;
+  }
+
+  /**
+   * Create ingest waiting for data.
+   *
+   * @param pDigitalObjectId identifier of the digital object.
+   * @return ingest.
+   */
+  private IngestInformation createIngest(String pDigitalObjectId) {
+    IngestInformation ingest = new IngestInformation();
+    long id = nextId.incrementAndGet();
+    ingest.setId(id);
+    ingest.setDigitalObjectId(pDigitalObjectId);
+    ingest.setStatusEnum(INGEST_STATUS.PRE_INGEST_SCHEDULED);
+    String ingestPath = "ingest_" + id + "/";
+    webDavCollections.add(ingestPath);
+    webDavCollections.add(ingestPath + "data/");
+    ingest.setStagingUrl(getWebDavUrl(ingestPath));
+    ingest.setDataFolderUrl(getWebDavUrl(ingestPath + "data/"));
+    return ingest;
+  }
+
+  /**
+   * Create download in status 'SCHEDULED'.
+   *
+   * @param pDigitalObjectId identifier of the digital object.
+   * @return download.
+   */
+  private DownloadInformation createDownload(String pDigitalObjectId) {
+    DownloadInformation download = new DownloadInformation();
+    long id = nextId.incrementAndGet();
+    download.setId(id);
+    download.setDigitalObjectId(pDigitalObjectId);
+    download.setStatus(DOWNLOAD_STATUS.SCHEDULED.getId());
+    String downloadPath = "download_" + id + "/";
+    webDavCollections.add(downloadPath);
+    webDavCollections.add(downloadPath + "data/");
+    download.setStagingUrl(getWebDavUrl(downloadPath));
+    download.setDataFolderUrl(getWebDavUrl(downloadPath + "data/"));
+    return download;
+  }
+
+  /**
+   * Update status of an ingest or a download.
+   *
+   * @param pEntity ingest or download.
+   * @param pForm form parameters.
+   */
+  private static void updateStatus(Object pEntity, Map<String, String> pForm) {
+    String status = findParameter(pForm, "status");
+    if (status == null) {
+      return;
+    }
+    if (pEntity instanceof IngestInformation) {
+      ((IngestInformation) pEntity).setStatus(Integer.parseInt(status));
+    } else if (pEntity instanceof DownloadInformation) {
+      ((DownloadInformation) pEntity).setStatus(Integer.parseInt(status));
+    }
+  }
+
+  /**
+   * Let pending downloads proceed by one poll.
+   *
+   * @param pEntity requested entity.
+   */
+  private void pollDownload(Object pEntity) {
+    if (pEntity instanceof DownloadInformation) {
+      DownloadInformation download = (DownloadInformation) pEntity;
+      AtomicInteger remainingPolls = pendingDownloads.get(download.getId());
+      if ((remainingPolls == null) || (remainingPolls.getAndDecrement() <= 0)) {
+        pendingDownloads.remove(download.getId());
+        download.setStatus(DOWNLOAD_STATUS.DOWNLOAD_READY.getId());
+      } else {
+        download.setStatus(DOWNLOAD_STATUS.PREPARING.getId());
+      }
+    }
+  }
+  // </editor-fold>
+
+  // <editor-fold defaultstate="collapsed" desc="REST">
+  /**
+   * Handle REST request. The last known collection in the path determines the
+   * type of the response. (e.g. 'investigations/1/digitalObjects' addresses
+   * digital objects)
+   *
+   * @param pExchange request and response.
+   * @throws IOException if response couldn't be written.
+   */
+  private void handleRest(HttpExchange pExchange) throws IOException {
+    try {
+      String[] segments = pExchange.getRequestURI().getPath().substring(REST_PATH.length()).split("/");
+      int collectionIndex = -1;
+      for (int index = 0; index < segments.length; index++) {
+        if (collections.containsKey(segments[index])) {
+          collectionIndex = index;
+        }
+      }
+      if (collectionIndex < 0) {
+        send(pExchange, 404, null);
+        return;
+      }
+      EntityCollection collection = collections.get(segments[collectionIndex]);
+      String selector = (collectionIndex + 1 < segments.length) ? segments[collectionIndex + 1] : null;
+      Map<String, String> query = parseParameters(pExchange.getRequestURI().getRawQuery());
+      Map<String, String> form = parseParameters(new String(readBody(pExchange.getRequestBody()), StandardCharsets.UTF_8));
+      Object response;
+      switch (pExchange.getRequestMethod()) {
+        case "GET":
+          response = get(collection, selector, query);
+          break;
+        case "POST":
+          if (collection.factory == null) {
+            send(pExchange, 405, null);
+            return;
+          }
+          Object entity = collection.factory.apply(form);
+          collection.entities.add(entity);
+          response = collection.wrapper.apply(Collections.singletonList(entity), 1);
+          break;
+        case "PUT":
+          Object updated = (selector != null) ? collection.findById(Long.parseLong(selector)) : null;
+          if (updated == null) {
+            send(pExchange, 404, null);
+            return;
+          }
+          updateStatus(updated, form);
+          response = collection.wrapper.apply(Collections.singletonList(updated), 1);
+          break;
+        default:
+          send(pExchange, 405, null);
+          return;
+      }
+      if (response == null) {
+        send(pExchange, 404, null);
+      } else {
+        send(pExchange, 200, marshal(response));
+      }
+    } catch (RuntimeException | JAXBException ex) {
+      send(pExchange, 500, String.valueOf(ex).getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  /**
+   * Get entities of a collection.
+   *
+   * @param pCollection collection.
+   * @param pSelector id, 'count' or null.
+   * @param pQuery query parameters.
+   * @return wrapper or null if entity doesn't exist.
+   */
+  private Object get(EntityCollection pCollection, String pSelector, Map<String, String> pQuery) {
+    List<Object> entities = pCollection.entities;
+    if ("count".equals(pSelector)) {
+      return pCollection.wrapper.apply(Collections.emptyList(), entities.size());
+    }
+    if ((pSelector != null) && !pSelector.isEmpty()) {
+      long id = Long.parseLong(pSelector);
+      // id -1 addresses the current user
+      Object entity = (id < 0) ? entities.get(0) : pCollection.findById(id);
+      pollDownload(entity);
+      return (entity == null) ? null : pCollection.wrapper.apply(Collections.singletonList(entity), 1);
+    }
+    int first = Integer.parseInt(pQuery.getOrDefault(QUERY_FIRST, "0"));
+    int results = Integer.parseInt(pQuery.getOrDefault(QUERY_RESULTS, Integer.toString(entities.size())));
+    int from = Math.min(Math.max(first, 0), entities.size());
+    int to = Math.min(from + Math.max(results, 0), entities.size());
+    List<Object> page = new ArrayList<>(entities.subList(from, to));
+    return pCollection.wrapper.apply(page, page.size());
+  }
+  // </editor-fold>
+
+  // <editor-fold defaultstate="collapsed" desc="WebDAV">
+  /**
+   * Get URL of a WebDAV resource.
+   *
+   * @param pRelativePath path relative to the root of the WebDAV service.
+   * @return URL of the resource.
+   */
+  private String getWebDavUrl(String pRelativePath) {
+    return getBaseUrl() + "/webdav/" + pRelativePath;
+  }
+
+  /**
+   * Handle WebDAV request. Uploaded content is counted and discarded.
+   *
+   * @param pExchange request and response.
+   * @throws IOException if response couldn't be written.
+   */
+  private void handleWebDav(HttpExchange pExchange) throws IOException {
+    String path = pExchange.getRequestURI().getPath().substring(WEBDAV_PATH.length());
+    String collectionPath = path.endsWith("/") ? path : path + "/";
+    switch (pExchange.getRequestMethod()) {
+      case "MKCOL":
+        readBody(pExchange.getRequestBody());
+        webDavCollections.add(collectionPath);
+        send(pExchange, 201, null);
+        break;
+      case "PUT":
+        byte[] buffer = new byte[64 * 1024];
+        long length = 0;
+        int read;
+        try (InputStream in = pExchange.getRequestBody()) {
+          while ((read = in.read(buffer)) > 0) {
+            length += read;
+          }
+        }
+        uploadedBytes.addAndGet(length);
+        send(pExchange, 201, null);
+        break;
+      case "PROPFIND":
+        readBody(pExchange.getRequestBody());
+        boolean isCollection = path.isEmpty() || webDavCollections.contains(collectionPath);
+        String multiStatus = "<?xml version=\"1.0\" encoding=\"utf-8\"?>"
+                + "<D:multistatus xmlns:D=\"DAV:\"><D:response><D:href>" + WEBDAV_PATH + path + "</D:href>"
+                + "<D:propstat><D:prop><D:resourcetype>" + (isCollection ? "<D:collection/>" : "") + "</D:resourcetype>"
+                + "</D:prop><D:status>HTTP/1.1 200 OK</D:status></D:propstat></D:response></D:multistatus>";
+        pExchange.getResponseHeaders().set("Content-Type", "application/xml; charset=utf-8");
+        send(pExchange, 207, multiStatus.getBytes(StandardCharsets.UTF_8));
+        break;
+      case "HEAD":
+      case "DELETE":
+        send(pExchange, 204, null);
+        break;
+      default:
+        send(pExchange, 405, null);
+    }
+  }
+  // </editor-fold>
+
+  // <editor-fold defaultstate="collapsed" desc="Helper">
+  /**
+   * Serialize wrapper to XML.
+   *
+   * @param pWrapper wrapper holding entities.
+   * @return XML representation.
+   * @throws JAXBException if wrapper couldn't be serialized.
+   */
+  private static byte[] marshal(Object pWrapper) throws JAXBException {
+    JAXBContext context = JAXB_CONTEXTS.get(pWrapper.getClass());
+    if (context == null) {
+      context = JAXBContext.newInstance(pWrapper.getClass());
+      JAXB_CONTEXTS.put(pWrapper.getClass(), context);
+    }
+    Marshaller marshaller = context.createMarshaller();
+    marshaller.setProperty(Marshaller.JAXB_ENCODING, StandardCharsets.UTF_8.name());
+    ByteArrayOutputStream xml = new ByteArrayOutputStream();
+    marshaller.marshal(pWrapper, xml);
+    return xml.toByteArray();
+  }
+
+  /**
+   * Send response.
+   *
+   * @param pExchange request and response.
+   * @param pStatus HTTP status code.
+   * @param pBody body of the response (may be null).
+   * @throws IOException if response couldn't be written.
+   */
+  private static void send(HttpExchange pExchange, int pStatus, byte[] pBody) throws IOException {
+    if ((pBody != null) && !pExchange.getResponseHeaders().containsKey("Content-Type")) {
+      pExchange.getResponseHeaders().set("Content-Type", "application/xml; charset=utf-8");
+    }
+    if ((pBody == null) || "HEAD".equals(pExchange.getRequestMethod())) {
+      pExchange.sendResponseHeaders(pStatus, -1);
+    } else {
+      pExchange.sendResponseHeaders(pStatus, pBody.length);
+      try (OutputStream out = pExchange.getResponseBody()) {
+        out.write(pBody);
+      }
+    }
+    pExchange.close();
+  }
+
+  /**
+   * Read body of a request completely.
+   *
+   * @param pBody body of the request.
+   * @return content of the body.
+   * @throws IOException if body couldn't be read.
+   */
+  private static byte[] readBody(InputStream pBody) throws IOException {
+    ByteArrayOutputStream content = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int read;
+    while ((read = pBody.read(buffer)) > 0) {
+      content.write(buffer, 0, read);
+    }
+    return content.toByteArray();
+  }
+
+  /**
+   * Parse URL encoded parameters.
+   *
+   * @param pParameters encoded parameters (may be null).
+   * @return parameters by name.
+   */
+  private static Map<String, String> parseParameters(String pParameters) {
+    Map<String, String> parameters = new HashMap<>();
+    if ((pParameters != null) && !pParameters.isEmpty()) {
+      for (String parameter : pParameters.split("&")) {
+        int separator = parameter.indexOf('=');
+        try {
+          if (separator > 0) {
+            parameters.put(URLDecoder.decode(parameter.substring(0, separator), "UTF-8"),
+                    URLDecoder.decode(parameter.substring(separator + 1), "UTF-8"));
+          }
+        } catch (UnsupportedEncodingException | IllegalArgumentException ex) {
+          // ignore malformed parameters (e.g. XML bodies)
+        }
+      }
+    }
+    return parameters;
+  }
+
+  /**
+   * Find parameter whose name ends with the given suffix (case insensitive).
+   *
+   * @param pParameters all parameters.
+   * @param pSuffix suffix of the name.
+   * @return value or null.
+   */
+  private static String findParameter(Map<String, String> pParameters, String pSuffix) {
+    for (Map.Entry<String, String> parameter : pParameters.entrySet()) {
+      if (parameter.getKey().toLowerCase().endsWith(pSuffix)) {
+        return parameter.getValue();
+      }
+    }
+    return null;
+  }
+  // </editor-fold>
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.benchmark;
+
+import edu.kit.dama.cmdline.generic.parameter.ListParameters;
+import edu.kit.dama.rest.client.access.GenericAccessClient;
+import edu.kit.jcommander.generic.status.CommandStatus;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for listing all digital objects of a group. The output is
+ * discarded.
+ *
+ * @author hartmann-v
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Duser.home=target/benchmark-home"})
+public class ListBenchmark {
+
+  /**
+   * Number of digital objects.
+   */
+  @Param({"100", "2000"})
+  public int noOfDigitalObjects;
+  /**
+   * Output format of the list.
+   */
+  @Param({"text", "ndjson"})
+  public String format;
+  /**
+   * Stub server.
+   */
+  private KitDmStubServer server;
+  /**
+   * Original standard output.
+   */
+  private PrintStream stdout;
+
+  /**
+   * Start stub server with digital objects and write default settings.
+   *
+   * @throws IOException if stub couldn't be started.
+   */
+  @Setup
+  public void setUp() throws IOException {
+    server = KitDmStubServer.start();
+    server.addDigitalObjects(noOfDigitalObjects);
+    // Settings have to be written before default settings are loaded.
+    server.writeSettings(new File(System.getProperty("user.home"), ".repoClient/RepoSettings.properties"));
+    stdout = System.out;
+    System.setOut(new PrintStream(new OutputStream() {
+      @Override
+      public void write(int pByte) {
+        // discard output
+      }
+
+      @Override
+      public void write(byte[] pBytes, int pOffset, int pLength) {
+        // discard output
+      }
+    }));
+  }
+
+  /**
+   * Stop stub server and restore standard output.
+   */
+  @TearDown
+  public void tearDown() {
+    System.setOut(stdout);
+    server.close();
+  }
+
+  /**
+   * List all digital objects in human readable format.
+   *
+   * @return status of the command.
+   */
+  @Benchmark
+  public CommandStatus listDigitalObjects() {
+    ListParameters listParameters = new ListParameters();
+    listParameters.humanReadable = true;
+    listParameters.format = format;
+    return GenericAccessClient.executeCommand(listParameters);
+  }
+}
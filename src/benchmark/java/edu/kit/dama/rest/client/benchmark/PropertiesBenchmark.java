@@ -0,0 +1,85 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.benchmark;
+
+import edu.kit.dama.rest.client.DataManagerPropertiesImpl;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for loading the settings of the client.
+ *
+ * @author hartmann-v
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Duser.home=target/benchmark-home"})
+public class PropertiesBenchmark {
+
+  /**
+   * Stub server referenced by the settings.
+   */
+  private KitDmStubServer server;
+  /**
+   * File holding the settings.
+   */
+  private File settingsFile;
+
+  /**
+   * Start stub server and write settings.
+   *
+   * @throws IOException if stub couldn't be started.
+   */
+  @Setup
+  public void setUp() throws IOException {
+    server = KitDmStubServer.start();
+    settingsFile = new File("target/benchmark-home/properties/RepoSettings.properties");
+    server.writeSettings(settingsFile);
+  }
+
+  /**
+   * Stop stub server.
+   */
+  @TearDown
+  public void tearDown() {
+    server.close();
+  }
+
+  /**
+   * Load settings from file.
+   *
+   * @return URL of the REST server.
+   */
+  @Benchmark
+  public String loadProperties() {
+    return DataManagerPropertiesImpl.getInstance(settingsFile.getPath()).getRestUrl();
+  }
+}
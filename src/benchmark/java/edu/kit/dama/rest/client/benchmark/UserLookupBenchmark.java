@@ -0,0 +1,115 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.benchmark;
+
+import edu.kit.dama.mdm.base.UserData;
+import edu.kit.dama.rest.SimpleRESTContext;
+import edu.kit.dama.rest.client.generic.helper.RESTClientHelper;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for looking up users by their distinguished name. The warm lookup
+ * is served by the cache, the cold lookup invalidates the cache before each
+ * call and therefore reads all users from the server.
+ *
+ * @author hartmann-v
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Duser.home=target/benchmark-home"})
+public class UserLookupBenchmark {
+
+  /**
+   * Number of users known by the server.
+   */
+  @Param({"100", "1000"})
+  public int noOfUsers;
+  /**
+   * Stub server.
+   */
+  private KitDmStubServer server;
+  /**
+   * Helper under test.
+   */
+  private RESTClientHelper clientHelper;
+
+  /**
+   * Start stub server with users.
+   *
+   * @throws IOException if stub couldn't be started.
+   */
+  @Setup
+  public void setUp() throws IOException {
+    server = KitDmStubServer.start();
+    server.addUsers(noOfUsers);
+    clientHelper = new RESTClientHelper(new SimpleRESTContext("benchmarkKey", "benchmarkSecret"), server.getBaseUrl() + "/");
+  }
+
+  /**
+   * Stop stub server.
+   */
+  @TearDown
+  public void tearDown() {
+    server.close();
+  }
+
+  /**
+   * Look up a random user served by the cache.
+   *
+   * @return user.
+   */
+  @Benchmark
+  public UserData warmLookup() {
+    return clientHelper.getSpecificUser(randomUser());
+  }
+
+  /**
+   * Look up a random user with an empty cache.
+   *
+   * @return user.
+   */
+  @Benchmark
+  public UserData coldLookup() {
+    clientHelper.getUserGroupDirectory().invalidate();
+    return clientHelper.getSpecificUser(randomUser());
+  }
+
+  /**
+   * Get distinguished name of a random user.
+   *
+   * @return distinguished name.
+   */
+  private String randomUser() {
+    return "user-" + (1001 + ThreadLocalRandom.current().nextInt(noOfUsers));
+  }
+}
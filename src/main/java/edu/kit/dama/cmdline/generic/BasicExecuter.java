@@ -16,11 +16,27 @@
 package edu.kit.dama.cmdline.generic;
 
 import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParameterException;
+import edu.kit.dama.cmdline.generic.parameter.IMachineReadableOutput;
+import edu.kit.dama.cmdline.generic.parameter.StatisticsParameters;
+import edu.kit.dama.rest.client.metrics.Metrics;
+import edu.kit.dama.rest.client.metrics.SimpleMetricsRegistry;
 import edu.kit.jcommander.generic.status.CommandStatus;
+import edu.kit.jcommander.generic.status.Status;
 import edu.kit.jcommander.generic.parameter.CommandLineParameters;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,6 +51,12 @@ public class BasicExecuter {
    * List holding all commands available by jCommander.
    */
   protected static final List<CommandLineParameters> commands = new ArrayList<>();
+  /**
+   * Class names of commands by command name. These commands are loaded not
+   * until they are parsed. All commands are only loaded for printing the
+   * usage.
+   */
+  protected static final Map<String, String> commandClasses = new LinkedHashMap<>();
 
   /**
    * The logger
@@ -44,27 +66,66 @@ public class BasicExecuter {
   protected static String programName;
 
   /**
-   * Program parser and scheduler.
+   * Program parser and scheduler. Exits the JVM with the status code of the
+   * command.
    *
    * @param args command line arguments.
    */
   public static void executeCommand(String[] args) {
+    System.exit(execute(args));
+  }
+
+  /**
+   * Parse and execute a command.
+   *
+   * @param args command line arguments.
+   * @return status code of the command.
+   */
+  protected static int execute(String[] args) {
+    return execute(args, null);
+  }
+
+  /**
+   * Parse and execute a command. Relative paths given to parameters of type
+   * File (or a collection of files) are resolved against the given base
+   * directory instead of the working directory of the JVM.
+   *
+   * @param args command line arguments.
+   * @param pBaseDir base directory of relative paths. (null: working
+   * directory)
+   * @return status code of the command.
+   */
+  protected static int execute(String[] args, File pBaseDir) {
     int returnValue = 0;
-    JCommander jCommander = registerCommands();
+    JCommander jCommander = registerCommands(args);
+    StatisticsParameters statistics = new StatisticsParameters();
+    jCommander.addObject(statistics);
     jCommander.setProgramName(programName);
 
     if (args.length == 0) {
       jCommander.usage();
     } else {
       try {
-        jCommander.parse(args);
+        jCommander.parse(resolveFiles(jCommander, statistics, args, pBaseDir));
 
         String command = jCommander.getParsedCommand();
+        if (command == null) {
+          // only global options given. (e.g. --stats)
+          System.err.println("Error parsing parameters!\nERROR -> No command given!");
+          printUsage(jCommander);
+          return new CommandStatus(Status.FAILED).getStatusCode();
+        }
         CommandLineParameters clp = (CommandLineParameters) jCommander.getCommands().get(command).getObjects().get(0);
 
         if (clp.isHelp()) {
           printUsage(jCommander);
         } else {
+          SimpleMetricsRegistry metrics = null;
+          if (statistics.isEnabled()) {
+            metrics = new SimpleMetricsRegistry();
+            metrics.registerMBean();
+            Metrics.setRegistry(metrics);
+          }
           CommandStatus status;
           try {
             status = clp.executeCommand();
@@ -73,14 +134,20 @@ public class BasicExecuter {
             LOGGER.error("Error executing command '" + command + "'!", e);
             status = new CommandStatus(e);
           }
+          if (metrics != null) {
+            printStatistics(metrics, statistics);
+            Metrics.setRegistry(null);
+          }
           returnValue = status.getStatusCode();
-          System.out.println(status.getStatusMessage());
+          // Keep machine readable output free of status messages.
+          PrintStream statusOutput = isMachineReadable(clp) ? System.err : System.out;
+          statusOutput.println(status.getStatusMessage());
           if (!status.getStatus().isSuccess()) {
             Exception exception = status.getException();
             if (exception != null) {
               String message = exception.getMessage();
               if (message != null) {
-                System.out.println(message);
+                statusOutput.println(message);
               }
             }
           }
@@ -91,23 +158,168 @@ public class BasicExecuter {
         printUsage(jCommander);
       }
     }
-    System.exit(returnValue);
+    return returnValue;
   }
 
   /**
-   * Register all commands.
+   * Resolve relative paths of all parameters of type File (or a collection of
+   * files) against the base directory. Paths have to be resolved before
+   * parsing as they are validated while parsing.
    *
+   * @param pJCommander instance holding all commands.
+   * @param pGlobalParameters parameters valid for all commands.
+   * @param pArgs command line arguments.
+   * @param pBaseDir base directory of relative paths. (null: working
+   * directory)
+   * @return arguments with resolved paths.
+   */
+  private static String[] resolveFiles(JCommander pJCommander, Object pGlobalParameters, String[] pArgs, File pBaseDir) {
+    if (pBaseDir == null) {
+      return pArgs;
+    }
+    // Names of all file parameters mapped to their variable arity.
+    Map<String, Boolean> fileParameters = new HashMap<>();
+    addFileParameters(pGlobalParameters, fileParameters);
+    String givenCommand = null;
+    for (String argument : pArgs) {
+      if (pJCommander.getCommands().containsKey(argument)) {
+        givenCommand = argument;
+        break;
+      }
+    }
+    if (givenCommand != null) {
+      for (Object parameters : pJCommander.getCommands().get(givenCommand).getObjects()) {
+        addFileParameters(parameters, fileParameters);
+      }
+    }
+    String[] arguments = pArgs.clone();
+    for (int index = 0; index < arguments.length; index++) {
+      Boolean variableArity = fileParameters.get(arguments[index]);
+      if (variableArity != null) {
+        int value = index + 1;
+        while ((value < arguments.length) && !arguments[value].startsWith("-")) {
+          if (!new File(arguments[value]).isAbsolute()) {
+            arguments[value] = new File(pBaseDir, arguments[value]).getPath();
+          }
+          value++;
+          if (!variableArity) {
+            break;
+          }
+        }
+        index = value - 1;
+      }
+    }
+    return arguments;
+  }
+
+  /**
+   * Collect the names of all parameters of type File (or a collection of
+   * files).
+   *
+   * @param pParameters object holding parameters.
+   * @param pFileParameters names of all file parameters mapped to their
+   * variable arity.
+   */
+  private static void addFileParameters(Object pParameters, Map<String, Boolean> pFileParameters) {
+    for (Class<?> type = pParameters.getClass(); type != null; type = type.getSuperclass()) {
+      for (Field field : type.getDeclaredFields()) {
+        Parameter parameter = field.getAnnotation(Parameter.class);
+        if ((parameter != null) && isFileType(field)) {
+          for (String name : parameter.names()) {
+            pFileParameters.put(name, parameter.variableArity());
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Test if field holds a file or a collection of files.
+   *
+   * @param pField field.
+   * @return true if field holds files.
+   */
+  private static boolean isFileType(Field pField) {
+    if (File.class.equals(pField.getType())) {
+      return true;
+    }
+    Type type = pField.getGenericType();
+    return Collection.class.isAssignableFrom(pField.getType()) && (type instanceof ParameterizedType)
+            && File.class.equals(((ParameterizedType) type).getActualTypeArguments()[0]);
+  }
+
+  /**
+   * Test if the output of the command is read by other programs.
+   *
+   * @param pCommand parsed command.
+   * @return true if STDOUT holds only the output of the command.
+   */
+  private static boolean isMachineReadable(CommandLineParameters pCommand) {
+    return (pCommand instanceof IMachineReadableOutput) && ((IMachineReadableOutput) pCommand).isMachineReadable();
+  }
+
+  /**
+   * Print collected metrics on STDERR and export them if requested. STDOUT is
+   * left to the output of the command.
+   *
+   * @param pMetrics collected metrics.
+   * @param pStatistics parameters for statistics.
+   */
+  protected static void printStatistics(SimpleMetricsRegistry pMetrics, StatisticsParameters pStatistics) {
+    pMetrics.printSummary(System.err);
+    if (pStatistics.statsFile != null) {
+      try {
+        pMetrics.export(pStatistics.statsFile);
+        System.err.println("Statistics exported to '" + pStatistics.statsFile.getAbsolutePath() + "'.");
+      } catch (IOException ex) {
+        LOGGER.error("Unable to export statistics to '" + pStatistics.statsFile.getAbsolutePath() + "'!", ex);
+      }
+    }
+  }
+
+  /**
+   * Register all commands. Commands registered by class name are only loaded
+   * if they are given in the arguments. If none of them is given all of them
+   * are loaded.
+   *
+   * @param pArgs command line arguments.
    * @return Instance holding all commands.
    */
-  protected static JCommander registerCommands() {
+  protected static JCommander registerCommands(String[] pArgs) {
     JCommander jCommander = new JCommander();
     for (CommandLineParameters clp : commands) {
       jCommander.addCommand(clp.getCommandName(), clp);
     }
+    String givenCommand = null;
+    for (String argument : pArgs) {
+      if (commandClasses.containsKey(argument)) {
+        givenCommand = argument;
+        break;
+      }
+    }
+    for (Map.Entry<String, String> command : commandClasses.entrySet()) {
+      if ((givenCommand == null) || givenCommand.equals(command.getKey())) {
+        jCommander.addCommand(command.getKey(), loadCommand(command.getValue()));
+      }
+    }
 
     return jCommander;
   }
 
+  /**
+   * Load and instantiate a command.
+   *
+   * @param pClassName class name of the command.
+   * @return instance of the command.
+   */
+  private static CommandLineParameters loadCommand(String pClassName) {
+    try {
+      return (CommandLineParameters) Class.forName(pClassName).getConstructor().newInstance();
+    } catch (ReflectiveOperationException | ClassCastException ex) {
+      throw new IllegalStateException("Unable to load command '" + pClassName + "'!", ex);
+    }
+  }
+
   /**
    * Print usage on STDOUT.
    *
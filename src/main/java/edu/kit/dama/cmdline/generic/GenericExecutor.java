@@ -30,11 +30,13 @@ import java.io.File;
  * <li>ingest</li>
  * <li>list</li>
  * <li>access</li>
+ * <li>search</li>
  * </ul>
  *
  * @see IngestParameters
  * @see ListParameters
  * @see AccessParameters
+ * @see SearchParameters
  * @author hartmann-v
  */
 public class GenericExecutor extends BasicExecuter {
@@ -45,17 +47,25 @@ public class GenericExecutor extends BasicExecuter {
    * @param args command line arguments.
    */
   public static void main(String[] args) {
+    initCommands();
+    executeCommand(args);
+  }
+
+  /**
+   * Register all commands of the repo client.
+   */
+  static void initCommands() {
     programName = "bin" + File.separator + "repoClient";
 
     // <editor-fold defaultstate="collapsed" desc="Initialize commands">
+    // Commands are registered by name to load only the command given.
     commands.clear();
-    commands.add(new IngestParameters());
-    commands.add(new ListParameters());
-    commands.add(new AccessParameters());
-    commands.add(new SearchParameters());
+    commandClasses.clear();
+    commandClasses.put("ingest", "edu.kit.dama.cmdline.generic.parameter.IngestParameters");
+    commandClasses.put("list", "edu.kit.dama.cmdline.generic.parameter.ListParameters");
+    commandClasses.put("access", "edu.kit.dama.cmdline.generic.parameter.AccessParameters");
+    commandClasses.put("search", "edu.kit.dama.cmdline.generic.parameter.SearchParameters");
     // </editor-fold>
-
-    executeCommand(args);
   }
 
 }
@@ -0,0 +1,577 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.cmdline.generic;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParameterException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import edu.kit.jcommander.generic.status.CommandStatus;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Daemon executing the commands of the repo client (ingest, list, access and
+ * search) in a long-running JVM. Settings, REST clients with their persistent
+ * connections, the WebDAV configuration and all caches stay warm between the
+ * commands. The daemon listens on the loopback interface only. Port and a
+ * random token are written to the state file in the home directory of the
+ * client which is readable by the owner only. Commands are forwarded by
+ * {@link RepoClientForwarder}.
+ * <h2>Protocol:</h2>
+ * <ul>
+ * <li>POST /command: Arguments of the command separated by '\0' (UTF-8). The
+ * header 'X-Working-Directory' holds the working directory of the client.
+ * Relative paths given to file parameters are resolved against it. The output
+ * of the command is streamed (chunked) while the command is running. Each
+ * frame of the response starts with its type (one byte) followed by an integer
+ * (4 bytes, big-endian). Frames of type 'O' (STDOUT) and 'E' (STDERR) hold the
+ * length of the output which follows. The last frame of type 'X' holds the
+ * status code of the command.</li>
+ * <li>POST /shutdown: Stop the daemon.</li>
+ * </ul>
+ * All requests have to authenticate via header 'Authorization: Bearer
+ * &lt;token&gt;'. STDOUT and STDERR of the thread executing a command are routed
+ * to the client. Output of all other threads (e.g. pooled threads shared by
+ * several commands) goes to the streams of the daemon. Read-only commands
+ * (list, search) run concurrently, all other commands run exclusively as they
+ * may change the default settings of the clients. Interactive input is not
+ * supported.
+ *
+ * @author hartmann-v
+ */
+public class RepoClientDaemon extends BasicExecuter {
+
+  /**
+   * The logger
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(RepoClientDaemon.class);
+  /**
+   * Number of threads serving requests.
+   */
+  private static final int WORKER_THREADS = 8;
+  /**
+   * Commands which only read from the repository. These commands may run
+   * concurrently.
+   */
+  private static final Set<String> READ_ONLY_COMMANDS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("list", "search")));
+  /**
+   * Output of the command executed by the current thread. The output is not
+   * inherited by threads started by the command as pooled threads may outlive
+   * the command and serve other commands later on.
+   */
+  private static final ThreadLocal<CommandOutput> COMMAND_OUTPUT = new ThreadLocal<>();
+  /**
+   * Standard streams are routed to the commands.
+   */
+  private static final AtomicBoolean STREAMS_ROUTED = new AtomicBoolean(false);
+  /**
+   * Property of the HTTP server disabling Nagle's algorithm. Otherwise each
+   * response is delayed by the delayed acknowledgement of the client.
+   */
+  private static final String NO_DELAY_PROPERTY = "sun.net.httpserver.nodelay";
+  /**
+   * The HTTP server.
+   */
+  private final HttpServer server;
+  /**
+   * Workers serving requests.
+   */
+  private final ExecutorService workers;
+  /**
+   * Token authenticating the clients.
+   */
+  private final String token;
+  /**
+   * File holding port and token.
+   */
+  private final File stateFile;
+  /**
+   * Lock shared by read-only commands and held exclusively by all other
+   * commands.
+   */
+  private final ReentrantReadWriteLock commandLock = new ReentrantReadWriteLock(true);
+  /**
+   * Daemon is stopped.
+   */
+  private final AtomicBoolean stopped = new AtomicBoolean(false);
+
+  /**
+   * Parameters of the daemon.
+   */
+  static final class DaemonParameters {
+
+    /**
+     * Parameter holding the port.
+     */
+    @Parameter(names = {"-p", "--port"}, description = "Port on the loopback interface. (Default: 0 - any free port) Example --port 8765")
+    int port = 0;
+    /**
+     * Parameter for stopping the daemon.
+     */
+    @Parameter(names = {"-s", "--stop"}, description = "Stop the running daemon.")
+    boolean stop = false;
+    /**
+     * Parameter for usage.
+     */
+    @Parameter(names = {"-h", "--help"}, description = "Print usage.", help = true)
+    boolean help = false;
+  }
+
+  /**
+   * Output of one command. STDOUT and STDERR are written as separate frames to
+   * the same response.
+   */
+  private static final class CommandOutput {
+
+    /**
+     * STDOUT of the command.
+     */
+    private final OutputStream output;
+    /**
+     * STDERR of the command.
+     */
+    private final OutputStream error;
+
+    /**
+     * Constructor.
+     *
+     * @param pResponse stream to the client.
+     */
+    CommandOutput(DataOutputStream pResponse) {
+      output = new FrameOutputStream(pResponse, RepoClientForwarder.STDOUT_FRAME);
+      error = new FrameOutputStream(pResponse, RepoClientForwarder.STDERR_FRAME);
+    }
+  }
+
+  /**
+   * Stream writing each write as a frame of the given type to the response.
+   */
+  private static final class FrameOutputStream extends OutputStream {
+
+    /**
+     * Stream to the client. (shared by STDOUT and STDERR)
+     */
+    private final DataOutputStream response;
+    /**
+     * Type of the frames.
+     */
+    private final byte type;
+
+    /**
+     * Constructor.
+     *
+     * @param pResponse stream to the client.
+     * @param pType type of the frames.
+     */
+    FrameOutputStream(DataOutputStream pResponse, byte pType) {
+      response = pResponse;
+      type = pType;
+    }
+
+    @Override
+    public void write(int pByte) throws IOException {
+      write(new byte[]{(byte) pByte}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] pBuffer, int pOffset, int pLength) throws IOException {
+      if (pLength <= 0) {
+        return;
+      }
+      synchronized (response) {
+        response.writeByte(type);
+        response.writeInt(pLength);
+        response.write(pBuffer, pOffset, pLength);
+        // Stream the output while the command is running.
+        response.flush();
+      }
+    }
+  }
+
+  /**
+   * Stream writing to the output of the current command or to the original
+   * stream if no command is executed by the current thread.
+   */
+  private static final class RoutingOutputStream extends OutputStream {
+
+    /**
+     * Original stream.
+     */
+    private final OutputStream original;
+    /**
+     * Stream routes STDERR (true) or STDOUT (false).
+     */
+    private final boolean error;
+
+    /**
+     * Constructor.
+     *
+     * @param pOriginal original stream.
+     * @param pError stream routes STDERR (true) or STDOUT (false).
+     */
+    RoutingOutputStream(OutputStream pOriginal, boolean pError) {
+      original = pOriginal;
+      error = pError;
+    }
+
+    /**
+     * Get the stream of the current thread.
+     *
+     * @return output of the current command or the original stream.
+     */
+    private OutputStream getTarget() {
+      CommandOutput command = COMMAND_OUTPUT.get();
+      if (command == null) {
+        return original;
+      }
+      return error ? command.error : command.output;
+    }
+
+    @Override
+    public void write(int pByte) throws IOException {
+      getTarget().write(pByte);
+    }
+
+    @Override
+    public void write(byte[] pBuffer, int pOffset, int pLength) throws IOException {
+      getTarget().write(pBuffer, pOffset, pLength);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      getTarget().flush();
+    }
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param pPort port on the loopback interface. (0 - any free port)
+   * @throws IOException if server couldn't be created.
+   */
+  public RepoClientDaemon(int pPort) throws IOException {
+    if (System.getProperty(NO_DELAY_PROPERTY) == null) {
+      System.setProperty(NO_DELAY_PROPERTY, Boolean.TRUE.toString());
+    }
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getByName(RepoClientForwarder.HOST), pPort), 0);
+    AtomicInteger threadNumber = new AtomicInteger();
+    workers = Executors.newFixedThreadPool(WORKER_THREADS, (runnable) -> {
+      Thread thread = new Thread(runnable, "repo-daemon-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    server.setExecutor(workers);
+    server.createContext(RepoClientForwarder.COMMAND_PATH, this::handleCommand);
+    server.createContext(RepoClientForwarder.SHUTDOWN_PATH, this::handleShutdown);
+    token = new BigInteger(130, new SecureRandom()).toString(32);
+    stateFile = RepoClientForwarder.getStateFile();
+  }
+
+  /**
+   * Start the daemon or stop the running daemon.
+   *
+   * @param args command line arguments.
+   */
+  public static void main(String[] args) {
+    DaemonParameters parameters = new DaemonParameters();
+    JCommander jCommander = new JCommander(parameters);
+    jCommander.setProgramName("bin" + File.separator + "repoDaemon");
+    try {
+      jCommander.parse(args);
+    } catch (ParameterException pe) {
+      System.err.println("Error parsing parameters!\nERROR -> " + pe.getMessage());
+      jCommander.usage();
+      System.exit(1);
+    }
+    if (parameters.help) {
+      jCommander.usage();
+      System.exit(0);
+    }
+    if (parameters.stop) {
+      boolean success = RepoClientForwarder.shutdown();
+      System.out.println(success ? "Daemon stopped." : "No daemon running!");
+      System.exit(success ? 0 : 1);
+    }
+    GenericExecutor.initCommands();
+    try {
+      RepoClientDaemon daemon = new RepoClientDaemon(parameters.port);
+      Runtime.getRuntime().addShutdownHook(new Thread(daemon::stop, "repo-daemon-shutdown"));
+      daemon.start();
+      System.out.println("Daemon listening on port " + daemon.getPort() + ".");
+    } catch (IOException ex) {
+      LOGGER.error("Unable to start daemon!", ex);
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Start the server and publish port and token.
+   *
+   * @throws IOException if state file couldn't be written.
+   */
+  public void start() throws IOException {
+    routeStandardStreams();
+    server.start();
+    Properties state = new Properties();
+    state.setProperty(RepoClientForwarder.PORT_KEY, Integer.toString(getPort()));
+    state.setProperty(RepoClientForwarder.TOKEN_KEY, token);
+    // Restrict access to the owner before writing the token.
+    if (!stateFile.exists() && !stateFile.createNewFile()) {
+      throw new IOException("Unable to create state file '" + stateFile.getAbsolutePath() + "'!");
+    }
+    boolean ownerOnly = stateFile.setReadable(false, false) && stateFile.setReadable(true, true)
+            && stateFile.setWritable(false, false) && stateFile.setWritable(true, true);
+    if (!ownerOnly) {
+      LOGGER.warn("Unable to restrict access to state file '{}'!", stateFile.getAbsolutePath());
+    }
+    try (OutputStream output = new FileOutputStream(stateFile)) {
+      state.store(output, "Repo client daemon");
+    }
+    LOGGER.info("Daemon listening on {}:{}.", RepoClientForwarder.HOST, getPort());
+  }
+
+  /**
+   * Stop the server and remove the state file.
+   */
+  public void stop() {
+    if (stopped.getAndSet(true)) {
+      return;
+    }
+    if (!stateFile.delete()) {
+      LOGGER.warn("Unable to delete state file '{}'!", stateFile.getAbsolutePath());
+    }
+    server.stop(0);
+    workers.shutdownNow();
+    LOGGER.info("Daemon stopped.");
+  }
+
+  /**
+   * Get the port the daemon is listening on.
+   *
+   * @return port.
+   */
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  /**
+   * Execute a command.
+   *
+   * @param pExchange request and response.
+   * @throws IOException if response couldn't be written.
+   */
+  private void handleCommand(HttpExchange pExchange) throws IOException {
+    if (!isAuthorized(pExchange)) {
+      return;
+    }
+    List<String> arguments = readArguments(pExchange.getRequestBody());
+    String workingDirectory = pExchange.getRequestHeaders().getFirst(RepoClientForwarder.WORKING_DIRECTORY_HEADER);
+    pExchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+    // Length 0: chunked response streaming the output while the command is running.
+    pExchange.sendResponseHeaders(200, 0);
+    try (DataOutputStream response = new DataOutputStream(pExchange.getResponseBody())) {
+      int exitCode = executeIsolated(arguments.toArray(new String[arguments.size()]),
+              (workingDirectory != null) ? new File(workingDirectory) : null, response);
+      response.writeByte(RepoClientForwarder.EXIT_FRAME);
+      response.writeInt(exitCode);
+    }
+    pExchange.close();
+  }
+
+  /**
+   * Stop the daemon.
+   *
+   * @param pExchange request and response.
+   * @throws IOException if response couldn't be written.
+   */
+  private void handleShutdown(HttpExchange pExchange) throws IOException {
+    if (!isAuthorized(pExchange)) {
+      return;
+    }
+    send(pExchange, 200, "Daemon stopped.".getBytes(StandardCharsets.UTF_8));
+    // Exit outside of the server's threads. The shutdown hook stops the server.
+    new Thread(() -> System.exit(0), "repo-daemon-exit").start();
+  }
+
+  /**
+   * Execute a command with STDOUT and STDERR of the current thread routed to
+   * the given stream. The routing is installed for the duration of the command
+   * only. Read-only commands run concurrently, all other commands run
+   * exclusively.
+   *
+   * @param pArguments command line arguments.
+   * @param pWorkingDirectory working directory of the client. (may be null)
+   * @param pResponse stream to the client.
+   * @return status code of the command.
+   */
+  private int executeIsolated(String[] pArguments, File pWorkingDirectory, DataOutputStream pResponse) {
+    int exitCode;
+    Lock lock = isReadOnly(pArguments) ? commandLock.readLock() : commandLock.writeLock();
+    lock.lock();
+    COMMAND_OUTPUT.set(new CommandOutput(pResponse));
+    try {
+      LOGGER.debug("Execute command '{}'.", String.join(" ", pArguments));
+      exitCode = execute(pArguments, pWorkingDirectory);
+    } catch (RuntimeException rex) {
+      LOGGER.error("Error executing command!", rex);
+      System.err.println(rex.getMessage());
+      exitCode = new CommandStatus(rex).getStatusCode();
+    } finally {
+      System.out.flush();
+      System.err.flush();
+      COMMAND_OUTPUT.remove();
+      lock.unlock();
+    }
+    return exitCode;
+  }
+
+  /**
+   * Test if a command only reads from the repository. Commands collecting
+   * statistics are not read-only as the metrics registry is global. As for
+   * registering the commands the first argument naming a command determines
+   * the command. All following arguments are parameters of the command.
+   *
+   * @param pArguments command line arguments.
+   * @return true if command may run concurrently to other read-only commands.
+   */
+  private static boolean isReadOnly(String[] pArguments) {
+    for (String argument : pArguments) {
+      if (argument.startsWith("--stats")) {
+        return false;
+      }
+      if (commandClasses.containsKey(argument)) {
+        return READ_ONLY_COMMANDS.contains(argument);
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Route STDOUT and STDERR of all threads to the output of the command they
+   * are executing. The standard streams are replaced only once as replacing
+   * them for each command would affect all other commands running
+   * concurrently. Interactive input is disabled.
+   */
+  private static void routeStandardStreams() {
+    if (STREAMS_ROUTED.getAndSet(true)) {
+      return;
+    }
+    System.setOut(new PrintStream(new RoutingOutputStream(System.out, false), true));
+    System.setErr(new PrintStream(new RoutingOutputStream(System.err, true), true));
+    System.setIn(new ByteArrayInputStream(new byte[0]));
+  }
+
+  /**
+   * Read the arguments of a command.
+   *
+   * @param pRequest body of the request.
+   * @return arguments.
+   * @throws IOException if request couldn't be read.
+   */
+  private static List<String> readArguments(InputStream pRequest) throws IOException {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int bytesRead;
+    while ((bytesRead = pRequest.read(buffer)) != -1) {
+      body.write(buffer, 0, bytesRead);
+    }
+    List<String> arguments = new ArrayList<>();
+    String content = new String(body.toByteArray(), StandardCharsets.UTF_8);
+    if (!content.isEmpty()) {
+      int start = 0;
+      int end;
+      while ((end = content.indexOf(RepoClientForwarder.ARGUMENT_SEPARATOR, start)) >= 0) {
+        arguments.add(content.substring(start, end));
+        start = end + 1;
+      }
+      arguments.add(content.substring(start));
+    }
+    return arguments;
+  }
+
+  /**
+   * Check method and token of the request. Sends an error otherwise.
+   *
+   * @param pExchange request and response.
+   * @return true if request is authorized.
+   * @throws IOException if response couldn't be written.
+   */
+  private boolean isAuthorized(HttpExchange pExchange) throws IOException {
+    if (!"POST".equals(pExchange.getRequestMethod())) {
+      send(pExchange, 405, null);
+      return false;
+    }
+    String authorization = pExchange.getRequestHeaders().getFirst("Authorization");
+    byte[] expected = (RepoClientForwarder.BEARER + token).getBytes(StandardCharsets.UTF_8);
+    if ((authorization == null) || !MessageDigest.isEqual(expected, authorization.getBytes(StandardCharsets.UTF_8))) {
+      LOGGER.warn("Unauthorized request from {}!", pExchange.getRemoteAddress());
+      send(pExchange, 401, null);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Send response.
+   *
+   * @param pExchange request and response.
+   * @param pStatus HTTP status code.
+   * @param pBody body of the response (may be null).
+   * @throws IOException if response couldn't be written.
+   */
+  private static void send(HttpExchange pExchange, int pStatus, byte[] pBody) throws IOException {
+    if (pBody == null) {
+      pExchange.sendResponseHeaders(pStatus, -1);
+    } else {
+      pExchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+      pExchange.sendResponseHeaders(pStatus, pBody.length);
+      try (OutputStream out = pExchange.getResponseBody()) {
+        out.write(pBody);
+      }
+    }
+    pExchange.close();
+  }
+}
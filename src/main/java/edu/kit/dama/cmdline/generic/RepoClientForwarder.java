@@ -0,0 +1,270 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.cmdline.generic;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+/**
+ * Thin command line client forwarding commands to a running daemon. (see
+ * {@link RepoClientDaemon}) The output of the command is printed and the JVM
+ * exits with the status code of the command. If no daemon is running the
+ * command is executed locally. (see {@link GenericExecutor})
+ * <br/> This class should load as few classes as possible. Due to this no
+ * logging framework is used.
+ * <br/> Example:
+ * <pre>
+ * {@code
+ *  bin/repoDaemon &
+ *  bin/repoForward list -v
+ * }
+ * </pre>
+ *
+ * @author hartmann-v
+ */
+public final class RepoClientForwarder {
+
+  /**
+   * Name of the file holding port and token of the running daemon. The file is
+   * located in the home directory of the client.
+   */
+  static final String STATE_FILE = "daemon.properties";
+  /**
+   * Loopback address the daemon is listening on.
+   */
+  static final String HOST = "127.0.0.1";
+  /**
+   * Key of the port in the state file.
+   */
+  static final String PORT_KEY = "port";
+  /**
+   * Key of the token in the state file.
+   */
+  static final String TOKEN_KEY = "token";
+  /**
+   * Path for executing commands.
+   */
+  static final String COMMAND_PATH = "/command";
+  /**
+   * Path for stopping the daemon.
+   */
+  static final String SHUTDOWN_PATH = "/shutdown";
+  /**
+   * Type of frames holding output of the command written to STDOUT.
+   */
+  static final byte STDOUT_FRAME = 'O';
+  /**
+   * Type of frames holding output of the command written to STDERR.
+   */
+  static final byte STDERR_FRAME = 'E';
+  /**
+   * Type of the last frame holding the status code of the command.
+   */
+  static final byte EXIT_FRAME = 'X';
+  /**
+   * Header holding the working directory of the client.
+   */
+  static final String WORKING_DIRECTORY_HEADER = "X-Working-Directory";
+  /**
+   * Prefix of the token in the authorization header.
+   */
+  static final String BEARER = "Bearer ";
+  /**
+   * Separator of the arguments in the request.
+   */
+  static final char ARGUMENT_SEPARATOR = '\0';
+  /**
+   * Timeout in milliseconds for connecting to the daemon.
+   */
+  private static final int CONNECT_TIMEOUT = 1000;
+  /**
+   * Status code if command couldn't be forwarded.
+   */
+  private static final int FORWARD_FAILED = 1;
+
+  /**
+   * Utility class.
+   */
+  private RepoClientForwarder() {
+  }
+
+  /**
+   * Forward command to the daemon or execute it locally if no daemon is
+   * running.
+   *
+   * @param args command line arguments.
+   */
+  public static void main(String[] args) {
+    Integer exitCode = forward(args);
+    if (exitCode == null) {
+      GenericExecutor.main(args);
+    } else {
+      System.exit(exitCode);
+    }
+  }
+
+  /**
+   * Get the file holding port and token of the running daemon.
+   *
+   * @return state file.
+   */
+  static File getStateFile() {
+    return new File(System.getProperty("user.home") + File.separator + ".repoClient", STATE_FILE);
+  }
+
+  /**
+   * Forward command to the daemon and print its output.
+   *
+   * @param pArguments command line arguments.
+   * @return status code of the command or null if no daemon is running.
+   */
+  static Integer forward(String[] pArguments) {
+    StringBuilder body = new StringBuilder();
+    for (String argument : pArguments) {
+      if (body.length() > 0) {
+        body.append(ARGUMENT_SEPARATOR);
+      }
+      body.append(argument);
+    }
+    byte[] request = body.toString().getBytes(StandardCharsets.UTF_8);
+    HttpURLConnection connection = connect(COMMAND_PATH, request.length);
+    if (connection == null) {
+      return null;
+    }
+    // Daemon is running -> never execute the command twice.
+    try {
+      try (OutputStream requestBody = connection.getOutputStream()) {
+        requestBody.write(request);
+      }
+      if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+        System.err.println("Daemon rejected command! (" + connection.getResponseCode() + " " + connection.getResponseMessage() + ")");
+        return FORWARD_FAILED;
+      }
+      try (InputStream response = connection.getInputStream()) {
+        return printOutput(response);
+      }
+    } catch (IOException ex) {
+      System.err.println("Error forwarding command to daemon! (" + ex.getMessage() + ")");
+      return FORWARD_FAILED;
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  /**
+   * Print the output of the command while it is streamed. Output written to
+   * STDOUT by the command is printed to STDOUT, output written to STDERR is
+   * printed to STDERR.
+   *
+   * @param pResponse body of the response.
+   * @return status code of the command.
+   * @throws IOException if response couldn't be read or has no status code.
+   */
+  private static int printOutput(InputStream pResponse) throws IOException {
+    DataInputStream frames = new DataInputStream(pResponse);
+    byte[] buffer = new byte[8192];
+    int type;
+    while ((type = frames.read()) != -1) {
+      int value = frames.readInt();
+      if (type == EXIT_FRAME) {
+        return value;
+      }
+      PrintStream target;
+      if (type == STDOUT_FRAME) {
+        target = System.out;
+      } else if (type == STDERR_FRAME) {
+        target = System.err;
+      } else {
+        throw new IOException("Response of daemon holds unknown frame type '" + type + "'!");
+      }
+      int remaining = value;
+      while (remaining > 0) {
+        int length = Math.min(remaining, buffer.length);
+        frames.readFully(buffer, 0, length);
+        target.write(buffer, 0, length);
+        remaining -= length;
+      }
+      target.flush();
+    }
+    throw new IOException("Response of daemon is incomplete!");
+  }
+
+  /**
+   * Stop the running daemon.
+   *
+   * @return true if daemon was stopped.
+   */
+  static boolean shutdown() {
+    HttpURLConnection connection = connect(SHUTDOWN_PATH, 0);
+    if (connection == null) {
+      return false;
+    }
+    try {
+      connection.getOutputStream().close();
+      return connection.getResponseCode() == HttpURLConnection.HTTP_OK;
+    } catch (IOException ex) {
+      System.err.println("Error stopping daemon! (" + ex.getMessage() + ")");
+      return false;
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  /**
+   * Connect to the running daemon.
+   *
+   * @param pPath path of the request.
+   * @param pContentLength length of the request body.
+   * @return connection or null if no daemon is running.
+   */
+  private static HttpURLConnection connect(String pPath, int pContentLength) {
+    File stateFile = getStateFile();
+    if (!stateFile.isFile()) {
+      return null;
+    }
+    HttpURLConnection connection = null;
+    try (InputStream input = new FileInputStream(stateFile)) {
+      Properties state = new Properties();
+      state.load(input);
+      URL url = new URL("http", HOST, Integer.parseInt(state.getProperty(PORT_KEY)), pPath);
+      connection = (HttpURLConnection) url.openConnection();
+      connection.setConnectTimeout(CONNECT_TIMEOUT);
+      connection.setRequestMethod("POST");
+      connection.setDoOutput(true);
+      connection.setFixedLengthStreamingMode(pContentLength);
+      connection.setRequestProperty("Authorization", BEARER + state.getProperty(TOKEN_KEY));
+      connection.setRequestProperty("Content-Type", "text/plain; charset=utf-8");
+      connection.setRequestProperty(WORKING_DIRECTORY_HEADER, new File("").getAbsolutePath());
+      connection.connect();
+    } catch (IOException | RuntimeException ex) {
+      // No daemon running. (e.g. stale state file)
+      if (connection != null) {
+        connection.disconnect();
+      }
+      connection = null;
+    }
+    return connection;
+  }
+}
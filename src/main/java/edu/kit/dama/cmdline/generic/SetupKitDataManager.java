@@ -65,16 +65,18 @@ public class SetupKitDataManager extends BasicExecuter {
     programName = "bin" + File.separator + "setupRepo";
 
     // <editor-fold defaultstate="collapsed" desc="Initialize commands">
+    // Commands are registered by name to load only the command given.
     commands.clear();
-    commands.add(new InitParameters());
-    commands.add(new StudyBuilder());
-    commands.add(new InvestigationBuilder());
-    commands.add(new MetadataSchemaBuilder());
-    commands.add(new OrganizationUnitBuilder());
-    commands.add(new TaskBuilder());
-    commands.add(new UpdateStudy());
-    commands.add(new UpdateInvestigation());
-    commands.add(new UpdateOrganizationUnit());
+    commandClasses.clear();
+    commandClasses.put("init", "edu.kit.dama.cmdline.generic.parameter.InitParameters");
+    commandClasses.put("createstudy", "edu.kit.dama.rest.mdm.base.client.StudyBuilder");
+    commandClasses.put("createinvestigation", "edu.kit.dama.rest.mdm.base.client.InvestigationBuilder");
+    commandClasses.put("createschema", "edu.kit.dama.rest.mdm.base.client.MetadataSchemaBuilder");
+    commandClasses.put("createorganizationunit", "edu.kit.dama.rest.mdm.base.client.OrganizationUnitBuilder");
+    commandClasses.put("createtask", "edu.kit.dama.rest.mdm.base.client.TaskBuilder");
+    commandClasses.put("updatestudy", "edu.kit.dama.rest.mdm.base.client.UpdateStudy");
+    commandClasses.put("updateinvestigation", "edu.kit.dama.rest.mdm.base.client.UpdateInvestigation");
+    commandClasses.put("updateorganization", "edu.kit.dama.rest.mdm.base.client.UpdateOrganizationUnit");
     // </editor-fold>
 
     executeCommand(args);
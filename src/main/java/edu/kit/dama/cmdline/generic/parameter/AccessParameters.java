@@ -20,6 +20,7 @@ import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
 import edu.kit.jcommander.generic.status.CommandStatus;
 import edu.kit.dama.rest.client.access.GenericAccessClient;
+import edu.kit.dama.rest.client.generic.helper.ParallelWebDavDownloader;
 import edu.kit.jcommander.converter.FileConverter;
 import edu.kit.jcommander.validator.DirectoryValidator;
 import java.io.File;
@@ -52,6 +53,12 @@ public class AccessParameters extends CommandLineParameters {
   @Parameter(names = {"-o", "--outputdir"}, description = "The output directory. All files from digital object will be downloaded to this directory. Example -o C:\\data\\folder", required = true, converter = FileConverter.class, validateWith = DirectoryValidator.class)
   public File outputDir;
 
+  /**
+   * Parameter holding the number of parallel downloads.
+   */
+  @Parameter(names = {"--downloadStreams"}, description = "Number of parallel file downloads. Large files are downloaded in ranges. (Default: number of processors) Example --downloadStreams 16")
+  public int downloadStreams = ParallelWebDavDownloader.DEFAULT_PARALLEL_DOWNLOADS;
+
  /**
    * Default constructor.
    */
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.cmdline.generic.parameter;
+
+/**
+ * Commands whose output may be read by other programs. All status messages of
+ * such commands are printed to STDERR to keep STDOUT parseable.
+ *
+ * @author hartmann-v
+ */
+public interface IMachineReadableOutput {
+
+  /**
+   * Is the output of the command read by other programs?
+   *
+   * @return true if STDOUT holds only the output of the command.
+   */
+  boolean isMachineReadable();
+}
@@ -24,7 +24,11 @@ import org.slf4j.LoggerFactory;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
 import edu.kit.jcommander.generic.status.CommandStatus;
+import edu.kit.dama.rest.client.generic.helper.BundleCompression;
+import edu.kit.dama.rest.client.generic.helper.DeduplicationPolicy;
+import edu.kit.dama.rest.client.generic.helper.ParallelWebDavUploader;
 import edu.kit.dama.rest.client.ingest.GenericIngestClient;
+import edu.kit.dama.rest.client.ingest.IngestPipeline;
 import edu.kit.jcommander.converter.FileConverter;
 import edu.kit.jcommander.validator.DirectoryValidator;
 import java.util.List;
@@ -47,15 +51,67 @@ public class IngestParameters extends CommandLineParameters {
   /**
    * Parameter holding output directory for the output files.
    */
-  @Parameter(names = {"-i", "--inputdir"}, description = "One or more input directories. All files from each directory will be ingested to repository. Example -i C:\\data\\folder1 C:\\data\\folder2", required = true, variableArity = true, converter = FileConverter.class, validateWith = DirectoryValidator.class)
+  @Parameter(names = {"-i", "--inputdir"}, description = "One or more input directories. All files from each directory will be ingested to repository. Example -i C:\\data\\folder1 C:\\data\\folder2", variableArity = true, converter = FileConverter.class, validateWith = DirectoryValidator.class)
   public List<File> inputDir;
 
   /**
    * Parameter holding output directory for the output files.
    */
-  @Parameter(names = {"-n", "--note"}, description = "Note for the administrative metadata. Example -n \"Any important data.\"", required = true)
+  @Parameter(names = {"-n", "--note"}, description = "Note for the administrative metadata. (Required for new ingests) Example -n \"Any important data.\"")
   public String note;
 
+  /**
+   * Parameter holding the number of threads registering digital objects.
+   */
+  @Parameter(names = {"--metadataThreads"}, description = "Number of parallel registrations of digital objects. Example --metadataThreads 2")
+  public int metadataThreads = IngestPipeline.DEFAULT_METADATA_THREADS;
+
+  /**
+   * Parameter holding the number of threads creating ingest entities.
+   */
+  @Parameter(names = {"--ingestThreads"}, description = "Number of parallel preparations of ingests. Example --ingestThreads 2")
+  public int ingestThreads = IngestPipeline.DEFAULT_INGEST_THREADS;
+
+  /**
+   * Parameter holding the number of threads transferring data.
+   */
+  @Parameter(names = {"--transferThreads"}, description = "Number of parallel data transfers. Example --transferThreads 4")
+  public int transferThreads = IngestPipeline.DEFAULT_TRANSFER_THREADS;
+
+  /**
+   * Parameter holding the number of parallel uploads for each transfer.
+   */
+  @Parameter(names = {"--uploadStreams"}, description = "Number of parallel file uploads for each data transfer. (Default: number of processors) Example --uploadStreams 8")
+  public int uploadStreams = ParallelWebDavUploader.DEFAULT_PARALLEL_UPLOADS;
+
+  /**
+   * Parameter holding the id of an ingest to resume.
+   */
+  @Parameter(names = {"--resume"}, description = "Resume an interrupted or failed ingest. Files already uploaded are skipped. Example --resume 4711")
+  public Long resume;
+
+  /**
+   * Parameter holding the policy for files already ingested.
+   */
+  @Parameter(names = {"--dedup"}, description = "Policy for files whose content was already ingested for the same group (off, report or skip). Files are hashed before upload. Example --dedup skip")
+  public String dedup = DeduplicationPolicy.OFF.name().toLowerCase();
+
+  /**
+   * Parameter holding the minimum size of files uploaded in parts.
+   */
+  @Parameter(names = {"--chunkThreshold"}, description = "Minimum size in MiB of files uploaded in parallel parts. Requires partial PUT on the WebDAV server. (Default: 0 - disabled) Example --chunkThreshold 1024")
+  public long chunkThreshold = 0;
+  /**
+   * Parameter holding the target size of bundles of small files.
+   */
+  @Parameter(names = {"--bundleSize"}, description = "Target size in MiB of bundles packing all files smaller than 1 MiB. Bundles are uploaded instead of the small files. (Default: 0 - disabled) Example --bundleSize 256")
+  public long bundleSize = 0;
+  /**
+   * Parameter holding the compression of the bundles.
+   */
+  @Parameter(names = {"--bundleCompression"}, description = "Compression of the bundles: none|deflate Example --bundleCompression deflate")
+  public String bundleCompression = BundleCompression.NONE.name().toLowerCase();
+
   // ToDo: Add parameter for parent digital object and maybe also provenance metadata as XML
   // idea: Allow also multiple parameters.
   // @Parameter(names = {"-p", "--parent"}, description = "Digital object ID for the Note for the administrative metadata. Example -p bda80b0a-0c4d-463b-845c-66793875be9c")
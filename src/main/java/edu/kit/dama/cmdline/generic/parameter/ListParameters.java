@@ -20,6 +20,7 @@ import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
 import edu.kit.jcommander.generic.status.CommandStatus;
 import edu.kit.dama.rest.client.access.GenericAccessClient;
+import edu.kit.dama.rest.client.access.output.ListFormat;
 
 /**
  * Class holding the commandline parameters. This class contains the parameters
@@ -28,7 +29,7 @@ import edu.kit.dama.rest.client.access.GenericAccessClient;
  * @author hartmann-v
  */
 @Parameters(commandNames = "list", commandDescription = "List all digital objects linked to predefined user/group/investigation.")
-public class ListParameters extends CommandLineParameters {
+public class ListParameters extends CommandLineParameters implements IMachineReadableOutput {
 
   /**
    * Print the output in a human readable format enriched with additional
@@ -49,6 +50,18 @@ public class ListParameters extends CommandLineParameters {
   @Parameter(names = {"-v", "--verbose"}, description = "Show also predefined settings.", required = false)
   public boolean verbose = false;
 
+  /**
+   * Print each page of digital objects as soon as it is available.
+   */
+  @Parameter(names = {"-s", "--stream"}, description = "Print digital objects as soon as they are available.")
+  public boolean stream = false;
+
+  /**
+   * Format of the output. A format implies streaming.
+   */
+  @Parameter(names = {"--format"}, description = "Format of the output (text, ndjson or csv). Implies streaming. Example --format ndjson")
+  public String format;
+
   /**
    * Default constructor.
    */
@@ -61,4 +74,16 @@ public class ListParameters extends CommandLineParameters {
   public CommandStatus executeCommand() {
     return GenericAccessClient.executeCommand(this);
   }
+
+  @Override
+  public boolean isMachineReadable() {
+    if (format == null) {
+      return false;
+    }
+    try {
+      return ListFormat.fromString(format) != ListFormat.TEXT;
+    } catch (IllegalArgumentException iae) {
+      return false;
+    }
+  }
 }
@@ -62,6 +62,30 @@ public class SearchParameters extends CommandLineParameters {
   @Parameter(names = {"-s", "--short"}, description = "Show only Digital Object IDs.", required = false)
   public boolean shortList = false;
 
+  /**
+   * Print hits as compact JSON.
+   */
+  @Parameter(names = {"-c", "--compact"}, description = "Print hits as compact JSON without any whitespace.", required = false)
+  public boolean compact = false;
+
+  /**
+   * Maximum number of hits.
+   */
+  @Parameter(names = {"--limit"}, description = "Maximum number of hits.", required = false)
+  public int limit = 20;
+
+  /**
+   * Index of the first hit.
+   */
+  @Parameter(names = {"--offset"}, description = "Number of hits to skip.", required = false)
+  public int offset = 0;
+
+  /**
+   * Fetch all hits.
+   */
+  @Parameter(names = {"-a", "--all"}, description = "Fetch all hits page by page. (--limit will be ignored)", required = false)
+  public boolean all = false;
+
   /**
    * Default constructor.
    */
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.cmdline.generic.parameter;
+
+import com.beust.jcommander.Parameter;
+import java.io.File;
+
+/**
+ * Class holding the global commandline parameters for statistics. These
+ * parameters have to be placed before the command.
+ *
+ * @author hartmann-v
+ */
+public class StatisticsParameters {
+
+  /**
+   * Collect metrics and print a summary after the command.
+   */
+  @Parameter(names = {"--stats"}, description = "Print statistics (REST latencies, transfer rates, retries) to STDERR after the command. "
+          + "While the command is running statistics are also available via JMX.")
+  public boolean stats = false;
+
+  /**
+   * Export collected metrics to a file.
+   */
+  @Parameter(names = {"--statsFile"}, description = "Export statistics as JSON to the given file. (implies --stats)")
+  public File statsFile;
+
+  /**
+   * Collect metrics or not.
+   *
+   * @return true if metrics should be collected.
+   */
+  public boolean isEnabled() {
+    return stats || (statsFile != null);
+  }
+}
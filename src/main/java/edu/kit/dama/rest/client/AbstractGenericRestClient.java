@@ -15,7 +15,10 @@
  */
 package edu.kit.dama.rest.client;
 
+import edu.kit.dama.rest.AbstractRestClient;
+import edu.kit.dama.rest.SimpleRESTContext;
 import edu.kit.jcommander.generic.status.CommandStatus;
+import java.util.function.BiFunction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,6 +33,11 @@ public abstract class AbstractGenericRestClient implements IDataManagerRestUrl {
    * The logger
    */
   private static final Logger LOGGER = LoggerFactory.getLogger(AbstractGenericRestClient.class);
+  /**
+   * Version of the settings already tested successfully. (-1 if not tested
+   * yet)
+   */
+  private static volatile long testedVersion = -1;
 
   /**
    * Status of the command on exit.
@@ -46,11 +54,17 @@ public abstract class AbstractGenericRestClient implements IDataManagerRestUrl {
    * Test settings of the DataManager.
    * Only tests will be executed. Only REST URL
    * and the rest authentication (accessKey, accessSecret) will be tested.
+   * Settings are only tested again if they have changed since the last
+   * successful test.
 
    * @return Deliver the settings.
    */
   protected final DataManagerPropertiesImpl testDataManagerSettings() {
     DataManagerPropertiesImpl properties = DataManagerPropertiesImpl.getDefaultInstance();
+    long version = properties.getVersion();
+    if (version == testedVersion) {
+      return properties;
+    }
     if (!DataManagerPropertiesHelper.testRestSettings(properties)) {
       String message = "Invalid settings found! Please initialize the application (bin/setupRepo init -b -r).";
       LOGGER.error(message);
@@ -58,9 +72,36 @@ public abstract class AbstractGenericRestClient implements IDataManagerRestUrl {
       returnStatus = new CommandStatus(iae);
       throw iae;
     }
+    testedVersion = version;
     return properties;
   }
 
+  /**
+   * Get the shared context for the credentials of the given settings.
+   *
+   * @param pProperties settings holding accessKey and accessSecret.
+   * @return shared context.
+   */
+  protected final SimpleRESTContext getRestContext(DataManagerPropertiesImpl pProperties) {
+    return RestClientRegistry.getDefaultInstance().getContext(pProperties.getAccessKey(), pProperties.getAccessSecret());
+  }
+
+  /**
+   * Get the shared REST client for the given URL and context.
+   *
+   * @param <T> type of the REST client.
+   * @param pClientClass class of the REST client.
+   * @param pUrl URL of the REST service.
+   * @param pContext context for authentication.
+   * @param pFactory factory creating a new client if there is none yet.
+   * @return shared client.
+   * @see RestClientRegistry
+   */
+  protected final <T extends AbstractRestClient> T getRestClient(Class<T> pClientClass, String pUrl,
+          SimpleRESTContext pContext, BiFunction<String, SimpleRESTContext, T> pFactory) {
+    return RestClientRegistry.getDefaultInstance().getClient(pClientClass, pUrl, pContext, pFactory);
+  }
+
   /**
    * Get return status of the command.
    *
@@ -99,6 +99,10 @@ public class DataManagerPropertiesHelper implements IDataManagerRestUrl {
    * Base URL of the REST server.
    */
   private static String restServerUrl = "https://dama.lsdf.kit.edu/KITDM";
+  /**
+   * Class used for authentication of WebDAV. (null if not configured yet)
+   */
+  private static String webDavAuthenticationClass = null;
   /**
    * Holding all properties needed for ingest and download of digital data
    * objects.
@@ -180,15 +184,9 @@ public class DataManagerPropertiesHelper implements IDataManagerRestUrl {
    */
   public final Long getUserIdByDistinguishedName(String pDistinguishedName) {
     Long returnValue = NO_ID;
-    UserDataWrapper groupCount = userGroupClient.getUserCount(context);
-    //@TODO Change this...its a mess from the performance point of view
-    UserDataWrapper groups = userGroupClient.getAllUsers(0, groupCount.getCount(), context);
-    for (UserData item : groups.getEntities()) {
-      UserData detailedUser = userGroupClient.getUserById(item.getUserId(), context).getEntities().get(0);
-      if (detailedUser.getDistinguishedName().contains(pDistinguishedName)) {
-        returnValue = detailedUser.getUserId();
-        break;
-      }
+    UserData user = UserGroupDirectory.getInstance(userGroupClient, context).findUserByDistinguishedName(pDistinguishedName);
+    if (user != null) {
+      returnValue = user.getUserId();
     }
     return returnValue;
   }
@@ -743,15 +741,6 @@ public class DataManagerPropertiesHelper implements IDataManagerRestUrl {
     return propertiesChanged;
   }
 
-  /**
-   * Test access to webDAV server.
-   *
-   * @return success
-   */
-  private boolean initWebDavAccess() {
-    return genericWebDavAccess("edu.kit.lsdf.adalapi.authentication.UserPasswordAuthenticationFromFile");
-  }
-
   /**
    * Test access to webDAV server.
    * <b>Attention:<b><br/>
@@ -779,20 +768,7 @@ public class DataManagerPropertiesHelper implements IDataManagerRestUrl {
     try {
       StagingAccessPointConfigurationWrapper allAccessPoints = ssrc.getAllAccessPoints(properties.getAccessPoint(), properties.getUserGroup(), context);
       String webDavUrl = ssrc.getAccessPointById(allAccessPoints.getEntities().get(0).getId(), context).getEntities().get(0).getRemoteBaseUrl();
-      // Method to overwrite the Webdav configuration class with a custom configuration class
-      for (String protocol : new String[]{"http", "https"}) {
-        Configuration configuration = ProtocolSettings.getSingleton().getConfiguration(protocol);
-        configuration.setProperty("authClass", pAuthenticationClass);
-        Iterator iter = configuration.getKeys();
-        while (iter.hasNext()) {
-          String key = (String) iter.next();
-          String value = configuration.getString(key);
-          configuration.clearProperty(key);
-          configuration.addProperty(protocol + "." + key, value);
-        }
-        ProtocolSettings.getSingleton().overwriteConfiguration(configuration);
-      }
-      LOGGER.debug("Overwriting the default configuration with the specific configuration of generic ingest client.");
+      configureWebDav(pAuthenticationClass);
       AbstractFile af = new AbstractFile(new URL(webDavUrl + "/USERS"));
       af.list();
       AbstractFile createDirectory = af.createDirectory(UUID.randomUUID().toString());
@@ -808,15 +784,43 @@ public class DataManagerPropertiesHelper implements IDataManagerRestUrl {
   }
 
   /**
-   * Set configuration class for authentication of WebDAV using ADALAPI.
+   * Overwrite the WebDAV configuration of ADALAPI with the given
+   * authentication class. The configuration is only changed once per class.
+   *
+   * @param pAuthenticationClass Class used for authentication.
+   */
+  private static synchronized void configureWebDav(String pAuthenticationClass) {
+    if (pAuthenticationClass.equals(webDavAuthenticationClass)) {
+      return;
+    }
+    // Method to overwrite the Webdav configuration class with a custom configuration class
+    for (String protocol : new String[]{"http", "https"}) {
+      Configuration configuration = ProtocolSettings.getSingleton().getConfiguration(protocol);
+      configuration.setProperty("authClass", pAuthenticationClass);
+      Iterator iter = configuration.getKeys();
+      while (iter.hasNext()) {
+        String key = (String) iter.next();
+        String value = configuration.getString(key);
+        configuration.clearProperty(key);
+        configuration.addProperty(protocol + "." + key, value);
+      }
+      ProtocolSettings.getSingleton().overwriteConfiguration(configuration);
+    }
+    webDavAuthenticationClass = pAuthenticationClass;
+    LOGGER.debug("Overwriting the default configuration with the specific configuration of generic ingest client.");
+  }
+
+  /**
+   * Set configuration class for authentication of WebDAV using ADALAPI. No
+   * request is sent to the servers. The connection is established by the first
+   * transfer. Use 'bin/setupRepo init -t -d' to test the access to WebDAV.
    *
-   * @param pProperties instance holding accessKey and accessSecret.
+   * @param pProperties instance holding username and password.
    * @return success or not
    */
   public static boolean initializeWebDav(DataManagerPropertiesImpl pProperties) {
-    DataManagerPropertiesHelper dmph = new DataManagerPropertiesHelper(pProperties);
-
-    return dmph.initWebDavAccess();
+    configureWebDav("edu.kit.lsdf.adalapi.authentication.UserPasswordAuthenticationFromFile");
+    return true;
   }
 
   /**
@@ -24,8 +24,13 @@ import java.io.InputStream;
 import java.io.PrintStream;
 import java.io.StringWriter;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,6 +52,10 @@ import org.slf4j.LoggerFactory;
  * <li>password = password for webDAV</li>
  * <li>accessPoint = unique id of the access point</li>
  * </ul>
+ * All properties are held in an immutable snapshot. The settings files are
+ * checked for changes (modification time and size) at most once per second and
+ * the snapshot is rebuilt only if one of them has changed. Each new snapshot
+ * gets a new version. (see {@link #getVersion()})
  *
  * @author hartmann-v
  */
@@ -91,6 +100,12 @@ public class DataManagerPropertiesImpl {
           + sectionSeparator
           + "# - Username = login name of the user (e.g.: webdav)\n"
           + "# - Password = password of the 'user' for webDAV (e.g.: test123)\n"
+          + sectionSeparator
+          + "# Limits for REST requests (optional)\n"
+          + "# <family> = basemetadata, staging, usergroup or search\n"
+          + sectionSeparator
+          + "# - limit.<family>.maxConcurrentRequests = maximum number of parallel requests (default: 20)\n"
+          + "# - limit.<family>.requestsPerSecond = maximum rate of requests (default: 0 - unlimited)\n"
           + sectionSeparator;
 
   /**
@@ -111,6 +126,11 @@ public class DataManagerPropertiesImpl {
    * System environment variable pointing to the credential property file.
    */
   private static final String REPO_SETTINGS = "REPO_SETTINGS";
+  /**
+   * Minimum time in nanoseconds between two checks of the settings files for
+   * changes.
+   */
+  private static final long CHECK_INTERVAL = TimeUnit.SECONDS.toNanos(1);
   /**
    * Stream to write to.
    */
@@ -120,9 +140,13 @@ public class DataManagerPropertiesImpl {
    */
   private String propertiesFile;
   /**
-   * Instance holding all properties.
+   * Snapshot holding all properties.
    */
-  private Properties properties;
+  private volatile Snapshot snapshot;
+  /**
+   * Time (see System.nanoTime()) of the next check for changed files.
+   */
+  private volatile long nextCheck;
   /**
    * Singleton reading properties from
    */
@@ -157,7 +181,53 @@ public class DataManagerPropertiesImpl {
    */
   private DataManagerPropertiesImpl(String pPropertiesFile) {
     propertiesFile = pPropertiesFile;
-    properties = loadProperties();
+    snapshot = loadProperties(pPropertiesFile, 0);
+    nextCheck = System.nanoTime() + CHECK_INTERVAL;
+  }
+
+  /**
+   * Immutable snapshot of all properties. The properties are never changed
+   * after creation.
+   */
+  private static final class Snapshot {
+
+    /**
+     * All properties.
+     */
+    private final Properties properties;
+    /**
+     * Version of the properties.
+     */
+    private final long version;
+    /**
+     * Files the properties were read from.
+     */
+    private final List<File> sources;
+    /**
+     * Modification time and size of all files at the time of reading.
+     */
+    private final String stamp;
+    /**
+     * Properties contain changes not saved yet.
+     */
+    private final boolean modified;
+
+    /**
+     * Constructor.
+     *
+     * @param pProperties all properties.
+     * @param pVersion version of the properties.
+     * @param pSources files the properties were read from.
+     * @param pStamp modification time and size of all files.
+     * @param pModified properties contain changes not saved yet.
+     */
+    Snapshot(Properties pProperties, long pVersion, List<File> pSources, String pStamp, boolean pModified) {
+      properties = pProperties;
+      version = pVersion;
+      sources = pSources;
+      stamp = pStamp;
+      modified = pModified;
+    }
   }
 
   /**
@@ -169,6 +239,16 @@ public class DataManagerPropertiesImpl {
     return singletonImpl;
   }
 
+  /**
+   * Get the home directory of the client holding settings and other local
+   * data.
+   *
+   * @return home directory of the client.
+   */
+  public static File getHomeDir() {
+    return new File(HOME_DIR);
+  }
+
   /**
    * Get an instance of this class. Properties were loaded form given file (if
    * file exists).
@@ -188,11 +268,11 @@ public class DataManagerPropertiesImpl {
    * @return new value of the given property.
    */
   private String readPropertyFromStdInput(final String pProperty, final String pDescription) {
-    String newValue = properties.getProperty(pProperty);
+    String newValue = getSetting(pProperty);
     output.format("Please input new value for '%s' (%s)!\n", pProperty, pDescription);
-    output.format("Return will sustain old value '%s':\n", properties.getProperty(pProperty));
+    output.format("Return will sustain old value '%s':\n", newValue);
     newValue = StdIoUtils.readStdInput(newValue);
-    properties.put(pProperty, newValue);
+    setProperty(pProperty, newValue);
     return newValue;
   }
 
@@ -207,7 +287,7 @@ public class DataManagerPropertiesImpl {
    * @return index of the new value of the given property.
    */
   private int readPropertyFromStdInput(final String pProperty, final String[] pPossibleValues, final String[] pDescriptions) {
-    String actualValue = properties.getProperty(pProperty);
+    String actualValue = getSetting(pProperty);
     String formatString = "%3d: %-12s ";
     int oldIndex = Arrays.asList(pPossibleValues).indexOf(actualValue) + 1;
     output.format("Please input new value for '%s'!\n", pProperty);
@@ -240,7 +320,7 @@ public class DataManagerPropertiesImpl {
     } else {
       actualValue = StdIoUtils.readStdInput(actualValue);
     }
-    properties.put(pProperty, actualValue);
+    setProperty(pProperty, actualValue);
     return index;
   }
 
@@ -325,8 +405,14 @@ public class DataManagerPropertiesImpl {
     FileWriter fw = null;
     if (propertiesFile != null) {
       try {
-        fw = new FileWriter(propertiesFile);
-        properties.store(fw, HEADER);
+        synchronized (this) {
+          Snapshot current = snapshot;
+          fw = new FileWriter(propertiesFile);
+          current.properties.store(fw, HEADER);
+          fw.close();
+          // Saved properties are up to date with the files.
+          snapshot = new Snapshot(current.properties, current.version, current.sources, getStamp(current.sources), false);
+        }
       } catch (IOException ex) {
         LOGGER.error("Error writing properties to " + propertiesFile, ex);
       } finally {
@@ -376,12 +462,7 @@ public class DataManagerPropertiesImpl {
    * @return the URL of the REST server.
    */
   public final String getRestUrl() {
-    String restUrl = getPropertyValue(DataManagerProperties.REST_SERVER_LABEL);
-    while (restUrl.endsWith("/")) {
-      restUrl = restUrl.substring(0, restUrl.length() - 1);
-      properties.setProperty(DataManagerProperties.REST_SERVER_LABEL.getKey(), restUrl);
-    }
-    return getPropertyValue(DataManagerProperties.REST_SERVER_LABEL);
+    return removeTrailingSlashes(getPropertyValue(DataManagerProperties.REST_SERVER_LABEL));
   }
 
   /**
@@ -437,7 +518,29 @@ public class DataManagerPropertiesImpl {
    * @return the value of the given property
    */
   public final String getPropertyValue(DataManagerProperties pProperty) {
-    return properties.getProperty(pProperty.getKey());
+    return getSetting(pProperty.getKey());
+  }
+
+  /**
+   * Get the value of an optional setting not asked for interactively. (e.g.
+   * limits for REST requests)
+   *
+   * @param pKey key of the setting.
+   *
+   * @return the value or null if not set.
+   */
+  public final String getSetting(String pKey) {
+    return getSnapshot().properties.getProperty(pKey);
+  }
+
+  /**
+   * Get the version of the properties. The version changes whenever the
+   * properties change. (e.g. settings file was modified)
+   *
+   * @return version of the properties.
+   */
+  public final long getVersion() {
+    return getSnapshot().version;
   }
 // </editor-fold>
 
@@ -447,7 +550,7 @@ public class DataManagerPropertiesImpl {
     String returnValue = "";
     try {
       sw = new StringWriter();
-      properties.store(sw, HEADER);
+      getSnapshot().properties.store(sw, HEADER);
       returnValue = sw.toString();
     } catch (IOException ex) {
       LOGGER.error(null, ex);
@@ -465,11 +568,28 @@ public class DataManagerPropertiesImpl {
    * All found settings will be loaded in reverse order. Last input will
    * overwrite the previous ones.
    *
-   * @return properties instance holding all properties.\
+   * @param pSettingsFile file holding the settings of the user.
+   * @param pVersion version of the new snapshot.
+   * @return snapshot holding all properties.
    * @see #REPO_SETTINGS
    */
-  private Properties loadProperties() {
+  private Snapshot loadProperties(String pSettingsFile, long pVersion) {
     Properties newProperties = new Properties();
+    List<File> sources = new ArrayList<>();
+    sources.add(new File(pSettingsFile));
+    String settingsFileByEnvVar = System.getenv(REPO_SETTINGS);
+    if (settingsFileByEnvVar == null) {
+      //try -D argument
+      settingsFileByEnvVar = System.getProperty(REPO_SETTINGS);
+      LOGGER.debug("Found environment variable '{}': '{}'", REPO_SETTINGS, settingsFileByEnvVar);
+    } else {
+      LOGGER.debug("Found system variable '{}': '{}'", REPO_SETTINGS, settingsFileByEnvVar);
+    }
+    if ((settingsFileByEnvVar != null) && !settingsFileByEnvVar.isEmpty()) {
+      sources.add(new File(settingsFileByEnvVar));
+    }
+    // Stamp files before reading them. Later changes will trigger a new reload.
+    String stamp = getStamp(sources);
     // look in classpath
     URL resourceURL = DataManagerPropertiesImpl.class.getResource(CREDENTIAL_RESOURCE);
     if (resourceURL != null) {
@@ -482,9 +602,9 @@ public class DataManagerPropertiesImpl {
     }
     // look in file system 
     // if there is a file properties from resource will be overwritten.
-    try (FileReader fileReader = new FileReader(propertiesFile)) {
+    try (FileReader fileReader = new FileReader(pSettingsFile)) {
       newProperties.load(fileReader);
-      LOGGER.debug("Load ingest properties from file '{}'!", propertiesFile);
+      LOGGER.debug("Load ingest properties from file '{}'!", pSettingsFile);
     } catch (IOException ex) {
       LOGGER.warn(null, ex);
       printActualSettings(newProperties);
@@ -494,14 +614,6 @@ public class DataManagerPropertiesImpl {
     }
     // check for content of environment variable
     // if available content of file system will be overwritten.
-    String settingsFileByEnvVar = System.getenv(REPO_SETTINGS);
-    if (settingsFileByEnvVar == null) {
-      //try -D argument
-      settingsFileByEnvVar = System.getProperty(REPO_SETTINGS);
-      LOGGER.debug("Found environment variable '{}': '{}'", REPO_SETTINGS, settingsFileByEnvVar);
-    } else {
-      LOGGER.debug("Found system variable '{}': '{}'", REPO_SETTINGS, settingsFileByEnvVar);
-    }
     if (settingsFileByEnvVar != null) {
       if (!settingsFileByEnvVar.isEmpty()) {
         File iniFile = new File(settingsFileByEnvVar);
@@ -519,11 +631,101 @@ public class DataManagerPropertiesImpl {
         }
       }
     }
+    String restUrl = newProperties.getProperty(DataManagerProperties.REST_SERVER_LABEL.getKey());
+    if (restUrl != null) {
+      newProperties.setProperty(DataManagerProperties.REST_SERVER_LABEL.getKey(), removeTrailingSlashes(restUrl));
+    }
     LOGGER.debug("The following properties are available:");
     for (String item: newProperties.stringPropertyNames()) {
       LOGGER.debug("{}={}",item, newProperties.getProperty(item));
     }
-    return newProperties;
+    return new Snapshot(newProperties, pVersion, Collections.unmodifiableList(sources), stamp, false);
+  }
+
+  /**
+   * Get the current snapshot of the properties. If the check interval has
+   * elapsed the settings files are checked for changes. Otherwise this is only
+   * a volatile read.
+   *
+   * @return current snapshot.
+   */
+  private Snapshot getSnapshot() {
+    if (System.nanoTime() - nextCheck >= 0) {
+      return refresh();
+    }
+    return snapshot;
+  }
+
+  /**
+   * Reload properties if any of the settings files has changed since the last
+   * check. Properties with unsaved changes are kept.
+   *
+   * @return current snapshot.
+   */
+  private synchronized Snapshot refresh() {
+    Snapshot current = snapshot;
+    if (System.nanoTime() - nextCheck >= 0) {
+      if (!current.modified && !current.stamp.equals(getStamp(current.sources))) {
+        LOGGER.debug("Settings files changed. Reload properties!");
+        // First source is always the settings file of the user.
+        current = loadProperties(current.sources.get(0).getPath(), current.version + 1);
+        snapshot = current;
+      }
+      nextCheck = System.nanoTime() + CHECK_INTERVAL;
+    }
+    return current;
+  }
+
+  /**
+   * Set the value of a property. The current snapshot is replaced by a
+   * modified copy with a new version.
+   *
+   * @param pKey key of the property.
+   * @param pValue new value of the property.
+   */
+  private void setProperty(String pKey, String pValue) {
+    modifyProperties((newProperties) -> newProperties.put(pKey, pValue));
+  }
+
+  /**
+   * Replace the current snapshot by a modified copy with a new version.
+   *
+   * @param pModification modification of the copied properties.
+   */
+  private synchronized void modifyProperties(Consumer<Properties> pModification) {
+    Snapshot current = snapshot;
+    Properties newProperties = new Properties();
+    newProperties.putAll(current.properties);
+    pModification.accept(newProperties);
+    snapshot = new Snapshot(newProperties, current.version + 1, current.sources, current.stamp, true);
+  }
+
+  /**
+   * Remove trailing forward slashes from an URL.
+   *
+   * @param pUrl URL (may be null).
+   * @return URL without trailing forward slashes.
+   */
+  private static String removeTrailingSlashes(String pUrl) {
+    String url = pUrl;
+    while ((url != null) && url.endsWith("/")) {
+      url = url.substring(0, url.length() - 1);
+    }
+    return url;
+  }
+
+  /**
+   * Get modification time and size of the given files.
+   *
+   * @param pFiles files.
+   * @return stamp of the files.
+   */
+  private static String getStamp(List<File> pFiles) {
+    StringBuilder stamp = new StringBuilder();
+    for (File file : pFiles) {
+      stamp.append(file.lastModified()).append(':').append(file.length()).append(';');
+    }
+    return stamp.toString();
   }
   
   /**
@@ -553,8 +755,8 @@ public class DataManagerPropertiesImpl {
 
     public PropertiesBuilder() {
       dmpi = new DataManagerPropertiesImpl();
-      properties = dmpi.properties;
-
+      properties = new Properties();
+      properties.putAll(dmpi.getSnapshot().properties);
     }
 
     public PropertiesBuilder accessKey(String pAccessKey) {
@@ -605,6 +807,7 @@ public class DataManagerPropertiesImpl {
     public DataManagerPropertiesImpl build() {
       // Disable storing properties to file.
       dmpi.propertiesFile = null;
+      dmpi.modifyProperties((newProperties) -> newProperties.putAll(properties));
       return singletonImpl;
     }
   }
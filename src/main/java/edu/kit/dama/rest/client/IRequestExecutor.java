@@ -0,0 +1,38 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client;
+
+import java.util.function.Supplier;
+
+/**
+ * Executor of single REST requests. Implementations may wait for limits of the
+ * endpoint, retry failed requests or record metrics.
+ *
+ * @see RequestLimiter
+ * @author hartmann-v
+ */
+public interface IRequestExecutor {
+
+  /**
+   * Execute a REST request.
+   *
+   * @param <T> type of the response.
+   * @param pEndpoint name of the endpoint (e.g. 'usergroup.users.get').
+   * @param pRequest request.
+   * @return response of the request.
+   */
+  <T> T execute(String pEndpoint, Supplier<T> pRequest);
+}
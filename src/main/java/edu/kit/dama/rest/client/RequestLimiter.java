@@ -0,0 +1,267 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Limit the REST requests sent to the KIT Data Manager. Each family of
+ * endpoints (basemetadata, staging, usergroup, search) has its own limits:
+ * <ul>
+ * <li>a maximum number of concurrent requests (semaphore)</li>
+ * <li>a maximum rate of requests (token bucket allowing bursts of one second)</li>
+ * </ul>
+ * Callers exceeding a limit wait until the request is permitted. The family
+ * is the first part of the name of the endpoint. (e.g. 'staging' for
+ * 'staging.ingests.get')
+ * <br/>
+ * The limits are read from the settings of the client. (see
+ * {@link DataManagerPropertiesImpl#getSetting(String)})
+ * <pre>
+ * limit.&lt;family&gt;.maxConcurrentRequests = maximum number of parallel requests
+ * limit.&lt;family&gt;.requestsPerSecond = maximum rate of requests (0: unlimited)
+ * </pre>
+ * <br/> Example:
+ * <pre>
+ * {@code
+ *  IngestInformationWrapper ingest = RequestLimiter.getDefaultInstance()
+ *          .execute("staging.ingests.get", () -> stagingClient.getIngestById(id, context));
+ * }
+ * </pre>
+ *
+ * @author hartmann-v
+ */
+public final class RequestLimiter implements IRequestExecutor {
+
+  /**
+   * The logger
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(RequestLimiter.class);
+  /**
+   * Family of the base metadata endpoints.
+   */
+  public static final String BASEMETADATA = "basemetadata";
+  /**
+   * Family of the staging endpoints.
+   */
+  public static final String STAGING = "staging";
+  /**
+   * Family of the user and group endpoints.
+   */
+  public static final String USERGROUP = "usergroup";
+  /**
+   * Family of the search endpoints.
+   */
+  public static final String SEARCH = "search";
+  /**
+   * Default maximum number of concurrent requests per family. (Same as the
+   * connections kept alive per route.)
+   */
+  public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = RestClientRegistry.DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+  /**
+   * Rate of requests without limit.
+   */
+  public static final double UNLIMITED_RATE = 0;
+  /**
+   * Prefix of all settings.
+   */
+  private static final String SETTING_PREFIX = "limit.";
+  /**
+   * Suffix of the setting for the maximum number of concurrent requests.
+   */
+  private static final String MAX_CONCURRENT_REQUESTS = ".maxConcurrentRequests";
+  /**
+   * Suffix of the setting for the maximum rate of requests.
+   */
+  private static final String REQUESTS_PER_SECOND = ".requestsPerSecond";
+  /**
+   * Singleton shared by all clients.
+   */
+  private static volatile RequestLimiter singletonImpl;
+  /**
+   * Limits for each family.
+   */
+  private final Map<String, Limit> limits = new ConcurrentHashMap<>();
+
+  /**
+   * Limits of one family of endpoints.
+   */
+  private static final class Limit {
+
+    /**
+     * Permits for concurrent requests.
+     */
+    private final Semaphore permits;
+    /**
+     * Maximum rate of requests per second. (0: unlimited)
+     */
+    private final double rate;
+    /**
+     * Maximum number of tokens. (burst of one second)
+     */
+    private final double capacity;
+    /**
+     * Available tokens. Negative if requests are waiting for tokens.
+     */
+    private double tokens;
+    /**
+     * Time in nanoseconds of the last refill.
+     */
+    private long lastRefill = System.nanoTime();
+
+    /**
+     * Constructor.
+     *
+     * @param pMaxConcurrentRequests maximum number of concurrent requests.
+     * @param pRate maximum rate of requests per second. (0: unlimited)
+     */
+    Limit(int pMaxConcurrentRequests, double pRate) {
+      permits = new Semaphore(pMaxConcurrentRequests, true);
+      rate = pRate;
+      capacity = Math.max(1, pRate);
+      tokens = capacity;
+    }
+
+    /**
+     * Take a token from the bucket.
+     *
+     * @return time in nanoseconds to wait until the token is available.
+     */
+    synchronized long reserveToken() {
+      if (rate == UNLIMITED_RATE) {
+        return 0;
+      }
+      long now = System.nanoTime();
+      tokens = Math.min(capacity, tokens + (now - lastRefill) * rate / TimeUnit.SECONDS.toNanos(1));
+      lastRefill = now;
+      tokens--;
+      return (tokens >= 0) ? 0 : (long) Math.ceil(-tokens * TimeUnit.SECONDS.toNanos(1) / rate);
+    }
+  }
+
+  /**
+   * Constructor without any limits.
+   */
+  public RequestLimiter() {
+  }
+
+  /**
+   * Constructor reading the limits of all families from the given settings.
+   * Families without settings get {@link #DEFAULT_MAX_CONCURRENT_REQUESTS} and
+   * no rate limit.
+   *
+   * @param pProperties settings of the client.
+   */
+  public RequestLimiter(DataManagerPropertiesImpl pProperties) {
+    for (String family : new String[]{BASEMETADATA, STAGING, USERGROUP, SEARCH}) {
+      int maxConcurrentRequests = DEFAULT_MAX_CONCURRENT_REQUESTS;
+      double rate = UNLIMITED_RATE;
+      try {
+        String value = pProperties.getSetting(SETTING_PREFIX + family + MAX_CONCURRENT_REQUESTS);
+        if (value != null) {
+          maxConcurrentRequests = Integer.parseInt(value.trim());
+        }
+        value = pProperties.getSetting(SETTING_PREFIX + family + REQUESTS_PER_SECOND);
+        if (value != null) {
+          rate = Double.parseDouble(value.trim());
+        }
+        setLimit(family, maxConcurrentRequests, rate);
+      } catch (IllegalArgumentException iae) {
+        LOGGER.error("Invalid limits for '{}'! Using defaults. ({})", family, iae.getMessage());
+        setLimit(family, DEFAULT_MAX_CONCURRENT_REQUESTS, UNLIMITED_RATE);
+      }
+    }
+  }
+
+  /**
+   * Get the default instance of this class. The limits are read from the
+   * default settings on first access.
+   *
+   * @return instance of this class.
+   * @see DataManagerPropertiesImpl#getDefaultInstance()
+   */
+  public static RequestLimiter getDefaultInstance() {
+    RequestLimiter limiter = singletonImpl;
+    if (limiter == null) {
+      synchronized (RequestLimiter.class) {
+        limiter = singletonImpl;
+        if (limiter == null) {
+          limiter = new RequestLimiter(DataManagerPropertiesImpl.getDefaultInstance());
+          singletonImpl = limiter;
+        }
+      }
+    }
+    return limiter;
+  }
+
+  /**
+   * Set the limits of a family. Requests already waiting keep the old limits.
+   *
+   * @param pFamily family of endpoints (e.g. {@link #STAGING}).
+   * @param pMaxConcurrentRequests maximum number of concurrent requests.
+   * @param pRequestsPerSecond maximum rate of requests (see
+   * {@link #UNLIMITED_RATE}).
+   */
+  public void setLimit(String pFamily, int pMaxConcurrentRequests, double pRequestsPerSecond) {
+    if (pMaxConcurrentRequests < 1) {
+      throw new IllegalArgumentException("Maximum number of concurrent requests has to be positive!");
+    }
+    if (pRequestsPerSecond < 0) {
+      throw new IllegalArgumentException("Rate of requests must not be negative!");
+    }
+    limits.put(pFamily, new Limit(pMaxConcurrentRequests, pRequestsPerSecond));
+    LOGGER.debug("Limits for '{}': {} concurrent request(s), {} request(s) per second", pFamily, pMaxConcurrentRequests, pRequestsPerSecond);
+  }
+
+  /**
+   * Execute a request as soon as the limits of its family permit it.
+   *
+   * @param <T> type of the response.
+   * @param pEndpoint name of the endpoint (e.g. 'staging.ingests.get').
+   * @param pRequest request.
+   * @return response of the request.
+   * @throws IllegalStateException if thread was interrupted while waiting.
+   */
+  @Override
+  public <T> T execute(String pEndpoint, Supplier<T> pRequest) {
+    int separator = pEndpoint.indexOf('.');
+    Limit limit = limits.get((separator < 0) ? pEndpoint : pEndpoint.substring(0, separator));
+    if (limit == null) {
+      return pRequest.get();
+    }
+    try {
+      long wait = limit.reserveToken();
+      if (wait > 0) {
+        TimeUnit.NANOSECONDS.sleep(wait);
+      }
+      limit.permits.acquire();
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Waiting for request to '" + pEndpoint + "' was interrupted!", ie);
+    }
+    try {
+      return pRequest.get();
+    } finally {
+      limit.permits.release();
+    }
+  }
+}
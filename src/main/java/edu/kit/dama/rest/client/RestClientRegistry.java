@@ -0,0 +1,372 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client;
+
+import edu.kit.dama.rest.AbstractRestClient;
+import edu.kit.dama.rest.SimpleRESTContext;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registry sharing REST clients between all parts of the client. For each
+ * combination of client class, URL and context only one REST client (and with
+ * it only one Jersey client) is created and reused by all callers. The
+ * underlying HTTP connections are kept alive and pooled by the JDK per route
+ * (host and port).
+ * <br/>
+ * Contexts are shared per credentials. Neither contexts nor clients hold the
+ * credentials as keys of the registry, only a SHA-256 hash of them. The hash
+ * is computed once per context instance. Clients and contexts not used within
+ * the maximum idle time are removed from the registry. Removed clients are not
+ * destroyed as callers may still hold them. They are released by the garbage
+ * collector as soon as nobody holds them any longer.
+ * <br/>
+ * The JDK connection pool is configured via the system properties
+ * 'http.keepAlive' and 'http.maxConnections'. The registry only sets them if
+ * they are not already set (e.g. on the command line) or if
+ * {@link #setMaxConnectionsPerRoute(int)} is called explicitly.
+ * <br/> Example:
+ * <pre>
+ * {@code
+ *  RestClientRegistry registry = RestClientRegistry.getDefaultInstance();
+ *  SimpleRESTContext context = registry.getContext(accessKey, accessSecret);
+ *  StagingRestClient stagingClient = registry.getClient(StagingRestClient.class,
+ *          restUrl + REST_STAGING_PATH, context, StagingRestClient::new);
+ * }
+ * </pre>
+ * <b>Attention:</b> The maximum number of connections per route has to be
+ * configured before the first HTTP connection is opened.
+ *
+ * @author hartmann-v
+ */
+public final class RestClientRegistry {
+
+  /**
+   * The logger
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(RestClientRegistry.class);
+  /**
+   * System property enabling persistent HTTP connections.
+   */
+  private static final String HTTP_KEEP_ALIVE = "http.keepAlive";
+  /**
+   * System property holding the maximum number of idle connections kept alive
+   * per route.
+   */
+  private static final String HTTP_MAX_CONNECTIONS = "http.maxConnections";
+  /**
+   * Default for the maximum number of connections per route.
+   */
+  public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 20;
+  /**
+   * Default time in milliseconds an unused client is kept in the registry.
+   */
+  public static final long DEFAULT_MAX_IDLE_TIME = TimeUnit.MINUTES.toMillis(10);
+  /**
+   * Singleton shared by all clients.
+   */
+  private static final RestClientRegistry singletonImpl = new RestClientRegistry();
+  /**
+   * All registered clients.
+   */
+  private final Map<ClientKey, ClientEntry> clients = new ConcurrentHashMap<>();
+  /**
+   * All shared contexts. (key: hash of accessKey/accessSecret)
+   */
+  private final Map<String, ContextEntry> contexts = new ConcurrentHashMap<>();
+  /**
+   * Hash of the credentials of all contexts in use. (Entries are removed with
+   * their context by the garbage collector.)
+   */
+  private final Map<SimpleRESTContext, String> credentialHashes = Collections.synchronizedMap(new WeakHashMap<>());
+  /**
+   * Time in milliseconds an unused client is kept in the registry.
+   */
+  private volatile long maxIdleTime = DEFAULT_MAX_IDLE_TIME;
+  /**
+   * Time of the last eviction run.
+   */
+  private volatile long lastEviction = System.currentTimeMillis();
+
+  /**
+   * Constructor. Only for internal usage.
+   */
+  private RestClientRegistry() {
+    if (System.getProperty(HTTP_KEEP_ALIVE) == null) {
+      System.setProperty(HTTP_KEEP_ALIVE, Boolean.TRUE.toString());
+    }
+    if (System.getProperty(HTTP_MAX_CONNECTIONS) == null) {
+      System.setProperty(HTTP_MAX_CONNECTIONS, Integer.toString(DEFAULT_MAX_CONNECTIONS_PER_ROUTE));
+    }
+    LOGGER.debug("Maximum number of connections per route: {}", System.getProperty(HTTP_MAX_CONNECTIONS));
+  }
+
+  /**
+   * Get the default instance of this class.
+   *
+   * @return instance of this class.
+   */
+  public static RestClientRegistry getDefaultInstance() {
+    return singletonImpl;
+  }
+
+  /**
+   * Set the maximum number of connections per route kept alive. Has to be set
+   * before the first connection is opened. Overwrites the system properties
+   * 'http.keepAlive' and 'http.maxConnections'.
+   *
+   * @param pMaxConnections maximum number of connections per route.
+   */
+  public void setMaxConnectionsPerRoute(int pMaxConnections) {
+    if (pMaxConnections < 1) {
+      throw new IllegalArgumentException("Maximum number of connections per route has to be positive!");
+    }
+    System.setProperty(HTTP_KEEP_ALIVE, Boolean.TRUE.toString());
+    System.setProperty(HTTP_MAX_CONNECTIONS, Integer.toString(pMaxConnections));
+    LOGGER.debug("Maximum number of connections per route: {}", pMaxConnections);
+  }
+
+  /**
+   * Set the time an unused client or context is kept in the registry.
+   *
+   * @param pMaxIdleTime idle time in milliseconds.
+   */
+  public void setMaxIdleTime(long pMaxIdleTime) {
+    maxIdleTime = pMaxIdleTime;
+  }
+
+  /**
+   * Get a shared context for the given credentials. Clients are registered per
+   * context. Therefore all callers using the same credentials should use the
+   * same context.
+   *
+   * @param pAccessKey accessKey of the user.
+   * @param pAccessSecret accessSecret of the user.
+   * @return shared context.
+   */
+  public SimpleRESTContext getContext(String pAccessKey, String pAccessSecret) {
+    evictIdleClients(false);
+    String credentials = hashCredentials(pAccessKey, pAccessSecret);
+    ContextEntry entry = contexts.computeIfAbsent(credentials, (hash) -> {
+      SimpleRESTContext context = new SimpleRESTContext(pAccessKey, pAccessSecret);
+      credentialHashes.put(context, hash);
+      return new ContextEntry(context);
+    });
+    entry.lastAccess = System.currentTimeMillis();
+    return entry.context;
+  }
+
+  /**
+   * Get the registered client for the given URL and context. If there is no
+   * client yet a new one will be created by the given factory.
+   *
+   * @param <T> type of the REST client.
+   * @param pClientClass class of the REST client.
+   * @param pUrl URL of the REST service.
+   * @param pContext context for authentication.
+   * @param pFactory factory creating a new client.
+   * @return shared client.
+   */
+  public <T extends AbstractRestClient> T getClient(Class<T> pClientClass, String pUrl, SimpleRESTContext pContext,
+          BiFunction<String, SimpleRESTContext, T> pFactory) {
+    evictIdleClients(false);
+    ClientKey key = new ClientKey(pClientClass, pUrl, getCredentials(pContext));
+    ClientEntry entry = clients.computeIfAbsent(key, (newKey) -> {
+      LOGGER.debug("Create new {} for URL '{}'", pClientClass.getSimpleName(), pUrl);
+      return new ClientEntry(pFactory.apply(pUrl, pContext));
+    });
+    entry.lastAccess = System.currentTimeMillis();
+    return pClientClass.cast(entry.client);
+  }
+
+  /**
+   * Remove all clients and contexts which were not used within the maximum
+   * idle time.
+   */
+  public void evictIdleClients() {
+    evictIdleClients(true);
+  }
+
+  /**
+   * Remove all clients and contexts which were not used within the maximum
+   * idle time. If not forced clients are only checked once per idle time.
+   *
+   * @param pForce check clients regardless of the last run.
+   */
+  private void evictIdleClients(boolean pForce) {
+    long now = System.currentTimeMillis();
+    if (pForce || (now - lastEviction > maxIdleTime)) {
+      lastEviction = now;
+      clients.values().removeIf((entry) -> now - entry.lastAccess > maxIdleTime);
+      contexts.values().removeIf((entry) -> now - entry.lastAccess > maxIdleTime);
+    }
+  }
+
+  /**
+   * Remove all clients and contexts from the registry.
+   */
+  public void clear() {
+    clients.clear();
+    contexts.clear();
+  }
+
+  /**
+   * Get the hash of the credentials of a context. The hash is only computed on
+   * first use of the context.
+   *
+   * @param pContext context for authentication. (may be null)
+   * @return hash of the credentials.
+   */
+  private String getCredentials(SimpleRESTContext pContext) {
+    if (pContext == null) {
+      return "";
+    }
+    String credentials = credentialHashes.get(pContext);
+    if (credentials == null) {
+      credentials = hashCredentials(pContext.getAccessKey(), pContext.getAccessSecret());
+      credentialHashes.put(pContext, credentials);
+    }
+    return credentials;
+  }
+
+  /**
+   * Hash the given credentials. The credentials themselves are never stored as
+   * keys.
+   *
+   * @param pAccessKey accessKey of the user.
+   * @param pAccessSecret accessSecret of the user.
+   * @return SHA-256 hash of the credentials.
+   */
+  static String hashCredentials(String pAccessKey, String pAccessSecret) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(String.valueOf(pAccessKey).getBytes(StandardCharsets.UTF_8));
+      // Separator avoids collisions like ('ab', 'c') and ('a', 'bc').
+      digest.update((byte) 0);
+      digest.update(String.valueOf(pAccessSecret).getBytes(StandardCharsets.UTF_8));
+      StringBuilder hash = new StringBuilder();
+      for (byte value : digest.digest()) {
+        hash.append(Character.forDigit((value >> 4) & 0xf, 16)).append(Character.forDigit(value & 0xf, 16));
+      }
+      return hash.toString();
+    } catch (NoSuchAlgorithmException nsae) {
+      throw new IllegalStateException("SHA-256 is not supported!", nsae);
+    }
+  }
+
+  /**
+   * Key of a registered client. Contexts are compared by their credentials.
+   */
+  private static final class ClientKey {
+
+    /**
+     * Class of the client.
+     */
+    private final Class<?> clientClass;
+    /**
+     * URL of the service.
+     */
+    private final String url;
+    /**
+     * Hash of the credentials of the context.
+     */
+    private final String credentials;
+
+    /**
+     * Constructor.
+     *
+     * @param pClientClass class of the client.
+     * @param pUrl URL of the service.
+     * @param pCredentials hash of the credentials of the context.
+     */
+    ClientKey(Class<?> pClientClass, String pUrl, String pCredentials) {
+      clientClass = pClientClass;
+      url = pUrl;
+      credentials = pCredentials;
+    }
+
+    @Override
+    public boolean equals(Object pObject) {
+      if (!(pObject instanceof ClientKey)) {
+        return false;
+      }
+      ClientKey other = (ClientKey) pObject;
+      return clientClass.equals(other.clientClass) && url.equals(other.url) && credentials.equals(other.credentials);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (31 * clientClass.hashCode() + url.hashCode()) + credentials.hashCode();
+    }
+  }
+
+  /**
+   * Registered client with time of last access.
+   */
+  private static final class ClientEntry {
+
+    /**
+     * Shared client.
+     */
+    private final AbstractRestClient client;
+    /**
+     * Time of the last access.
+     */
+    private volatile long lastAccess = System.currentTimeMillis();
+
+    /**
+     * Constructor.
+     *
+     * @param pClient shared client.
+     */
+    ClientEntry(AbstractRestClient pClient) {
+      client = pClient;
+    }
+  }
+
+  /**
+   * Shared context with time of last access.
+   */
+  private static final class ContextEntry {
+
+    /**
+     * Shared context.
+     */
+    private final SimpleRESTContext context;
+    /**
+     * Time of the last access.
+     */
+    private volatile long lastAccess = System.currentTimeMillis();
+
+    /**
+     * Constructor.
+     *
+     * @param pContext shared context.
+     */
+    ContextEntry(SimpleRESTContext pContext) {
+      context = pContext;
+    }
+  }
+}
@@ -0,0 +1,607 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client;
+
+import edu.kit.dama.mdm.admin.UserGroup;
+import edu.kit.dama.mdm.base.UserData;
+import edu.kit.dama.rest.SimpleRESTContext;
+import edu.kit.dama.rest.admin.client.impl.UserGroupRestClient;
+import edu.kit.dama.rest.admin.types.UserDataWrapper;
+import edu.kit.dama.rest.admin.types.UserGroupWrapper;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache holding all users and groups visible for a REST client. The users are
+ * indexed by their distinguished name and their user id, the groups by their
+ * group id and their id. The indices are populated once by paged requests
+ * with bounded parallelism and rebuilt after their time to live expired or
+ * after an explicit invalidation.
+ * <br/>
+ * The indices are built from the fields of the paged responses only. Details
+ * of entities missing their distinguished name/group id are only requested if
+ * a lookup by name can't be answered otherwise.
+ * <br/>
+ * Each REST request is passed to the request executor of the directory. (see
+ * {@link #getInstance(UserGroupRestClient, SimpleRESTContext, IRequestExecutor)})
+ * The indices are shared by all directories of a REST client while each
+ * directory keeps the executor it was requested with.
+ * <br/> Example:
+ * <pre>
+ * {@code
+ *  UserGroupDirectory directory = UserGroupDirectory.getInstance(userGroupClient, context);
+ *  UserData user = directory.getUserByDistinguishedName("dama");
+ *  UserGroup group = directory.getGroupByGroupId("USERS");
+ * }
+ * </pre>
+ *
+ * @author hartmann-v
+ */
+public final class UserGroupDirectory {
+
+  /**
+   * The logger
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(UserGroupDirectory.class);
+  /**
+   * Default time in milliseconds the indices are valid.
+   */
+  public static final long DEFAULT_TIME_TO_LIVE = TimeUnit.MINUTES.toMillis(5);
+  /**
+   * Default number of parallel requests while populating the indices.
+   */
+  public static final int DEFAULT_PARALLELISM = 8;
+  /**
+   * Number of entities fetched per request.
+   */
+  static final int PAGE_SIZE = 100;
+  /**
+   * All directories. (one per REST client, guarded by itself) The directories
+   * only hold weak references to their REST clients. Otherwise the entries
+   * would never be released.
+   */
+  private static final Map<UserGroupRestClient, UserGroupDirectory> directories = new WeakHashMap<>();
+  /**
+   * Indices shared by all directories of the REST client.
+   */
+  private final SharedIndices shared;
+  /**
+   * REST client for user management.
+   */
+  private final WeakReference<UserGroupRestClient> userGroupClient;
+  /**
+   * Context for authentication.
+   */
+  private final SimpleRESTContext context;
+  /**
+   * Executor of the REST requests.
+   */
+  private final IRequestExecutor requestExecutor;
+
+  /**
+   * Indices and settings shared by all directories of a REST client.
+   */
+  private static final class SharedIndices {
+
+    /**
+     * Time in milliseconds the indices are valid.
+     */
+    private volatile long timeToLive = DEFAULT_TIME_TO_LIVE;
+    /**
+     * Number of parallel requests while populating the indices.
+     */
+    private volatile int parallelism = DEFAULT_PARALLELISM;
+    /**
+     * Index holding all users.
+     */
+    private volatile Index<UserData> users;
+    /**
+     * Index holding all groups.
+     */
+    private volatile Index<UserGroup> groups;
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param pUserGroupClient REST client for user management.
+   * @param pContext context for authentication.
+   * @param pShared indices shared by all directories of the REST client.
+   * @param pRequestExecutor executor of the REST requests.
+   */
+  private UserGroupDirectory(WeakReference<UserGroupRestClient> pUserGroupClient, SimpleRESTContext pContext, SharedIndices pShared, IRequestExecutor pRequestExecutor) {
+    userGroupClient = pUserGroupClient;
+    context = pContext;
+    shared = pShared;
+    requestExecutor = pRequestExecutor;
+  }
+
+  /**
+   * Get the directory for the given REST client. The REST requests wait for
+   * the limits of their endpoints. (see {@link RequestLimiter})
+   *
+   * @param pUserGroupClient REST client for user management.
+   * @param pContext context for authentication.
+   * @return directory shared by all users of the REST client.
+   */
+  public static UserGroupDirectory getInstance(UserGroupRestClient pUserGroupClient, SimpleRESTContext pContext) {
+    return getInstance(pUserGroupClient, pContext, RequestLimiter.getDefaultInstance());
+  }
+
+  /**
+   * Get the directory for the given REST client. All REST requests of the
+   * returned directory are passed to the given executor. Directories requested
+   * with other executors share the same indices but keep their own executor.
+   *
+   * @param pUserGroupClient REST client for user management.
+   * @param pContext context for authentication.
+   * @param pRequestExecutor executor of the REST requests.
+   * @return directory sharing its indices with all users of the REST client.
+   */
+  public static UserGroupDirectory getInstance(UserGroupRestClient pUserGroupClient, SimpleRESTContext pContext, IRequestExecutor pRequestExecutor) {
+    if (pRequestExecutor == null) {
+      throw new IllegalArgumentException("Request executor must not be null!");
+    }
+    UserGroupDirectory directory;
+    synchronized (directories) {
+      directory = directories.get(pUserGroupClient);
+      if (directory == null) {
+        directory = new UserGroupDirectory(new WeakReference<>(pUserGroupClient), pContext, new SharedIndices(), pRequestExecutor);
+        directories.put(pUserGroupClient, directory);
+      }
+    }
+    if (directory.requestExecutor != pRequestExecutor) {
+      directory = new UserGroupDirectory(directory.userGroupClient, pContext, directory.shared, pRequestExecutor);
+    }
+    return directory;
+  }
+
+  /**
+   * Set the time the indices are valid.
+   *
+   * @param pTimeToLive time to live in milliseconds.
+   */
+  public void setTimeToLive(long pTimeToLive) {
+    shared.timeToLive = pTimeToLive;
+  }
+
+  /**
+   * Set the number of parallel requests while populating the indices.
+   *
+   * @param pParallelism number of parallel requests.
+   */
+  public void setParallelism(int pParallelism) {
+    if (pParallelism < 1) {
+      throw new IllegalArgumentException("Parallelism has to be positive!");
+    }
+    shared.parallelism = pParallelism;
+  }
+
+  /**
+   * Invalidate all indices. They will be rebuilt on next access.
+   */
+  public void invalidate() {
+    shared.users = null;
+    shared.groups = null;
+  }
+
+  /**
+   * Get the user with the given distinguished name.
+   *
+   * @param pDistinguishedName distinguished name of the user.
+   * @return user or null if no user matches.
+   */
+  public UserData getUserByDistinguishedName(String pDistinguishedName) {
+    Index<UserData> index = getUsers();
+    UserData user = index.byKey.get(pDistinguishedName);
+    if ((user == null) && !index.unresolved.isEmpty()) {
+      user = resolveUsers(index).byKey.get(pDistinguishedName);
+    }
+    return user;
+  }
+
+  /**
+   * Find the first user whose distinguished name contains the given label.
+   * Exact matches are preferred.
+   *
+   * @param pLabel distinguished name or at least part of it.
+   * @return user or null if no user matches.
+   */
+  public UserData findUserByDistinguishedName(String pLabel) {
+    Index<UserData> index = getUsers();
+    if (!index.byKey.containsKey(pLabel) && !index.unresolved.isEmpty()) {
+      index = resolveUsers(index);
+    }
+    return find(index, pLabel);
+  }
+
+  /**
+   * Get the user with the given user id. If the user is not indexed yet (or
+   * its distinguished name is unknown) only this user will be requested.
+   *
+   * @param pUserId id of the user.
+   * @return user or null if no user matches.
+   */
+  public UserData getUserById(Long pUserId) {
+    Index<UserData> index = shared.users;
+    UserData user = null;
+    if (isValid(index)) {
+      user = index.byId.get(pUserId);
+    }
+    if ((user == null) || (user.getDistinguishedName() == null)) {
+      UserGroupRestClient client = getClient();
+      UserDataWrapper userById = requestExecutor.execute("usergroup.users.get", () -> client.getUserById(pUserId, context));
+      if ((userById != null) && !userById.getEntities().isEmpty()) {
+        user = userById.getEntities().get(0);
+      }
+    }
+    return user;
+  }
+
+  /**
+   * Get the group with the given group id.
+   *
+   * @param pGroupId group id. (e.g.: USERS)
+   * @return group or null if no group matches.
+   */
+  public UserGroup getGroupByGroupId(String pGroupId) {
+    Index<UserGroup> index = getGroups();
+    UserGroup group = index.byKey.get(pGroupId);
+    if ((group == null) && !index.unresolved.isEmpty()) {
+      group = resolveGroups(index).byKey.get(pGroupId);
+    }
+    return group;
+  }
+
+  /**
+   * Find the first group whose group id contains the given label. Exact
+   * matches are preferred.
+   *
+   * @param pLabel group id or at least part of it.
+   * @return group or null if no group matches.
+   */
+  public UserGroup findGroupByGroupId(String pLabel) {
+    Index<UserGroup> index = getGroups();
+    if (!index.byKey.containsKey(pLabel) && !index.unresolved.isEmpty()) {
+      index = resolveGroups(index);
+    }
+    return find(index, pLabel);
+  }
+
+  /**
+   * Get all groups.
+   *
+   * @return all groups visible for the context.
+   */
+  public List<UserGroup> getAllGroups() {
+    Index<UserGroup> index = getGroups();
+    if (!index.unresolved.isEmpty()) {
+      index = resolveGroups(index);
+    }
+    return new ArrayList<>(index.byId.values());
+  }
+
+  /**
+   * Get the REST client of the directory.
+   *
+   * @return REST client for user management.
+   */
+  private UserGroupRestClient getClient() {
+    UserGroupRestClient client = userGroupClient.get();
+    if (client == null) {
+      throw new IllegalStateException("REST client for user management was already released!");
+    }
+    return client;
+  }
+
+  /**
+   * Get valid index of all users. Index will be rebuilt if necessary.
+   *
+   * @return index of all users.
+   */
+  private Index<UserData> getUsers() {
+    Index<UserData> index = shared.users;
+    if (!isValid(index)) {
+      synchronized (shared) {
+        index = shared.users;
+        if (!isValid(index)) {
+          index = loadUsers();
+          shared.users = index;
+        }
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Get valid index of all groups. Index will be rebuilt if necessary.
+   *
+   * @return index of all groups.
+   */
+  private Index<UserGroup> getGroups() {
+    Index<UserGroup> index = shared.groups;
+    if (!isValid(index)) {
+      synchronized (shared) {
+        index = shared.groups;
+        if (!isValid(index)) {
+          index = loadGroups();
+          shared.groups = index;
+        }
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Test if index is still valid.
+   *
+   * @param pIndex index.
+   * @return true if index exists and is not expired.
+   */
+  private boolean isValid(Index<?> pIndex) {
+    return (pIndex != null) && (System.currentTimeMillis() - pIndex.created < shared.timeToLive);
+  }
+
+  /**
+   * Find the entity whose key contains the given label. Exact matches are
+   * preferred.
+   *
+   * @param <V> type of the entities.
+   * @param pIndex index of the entities.
+   * @param pLabel key or at least part of it.
+   * @return entity or null if no entity matches.
+   */
+  private static <V> V find(Index<V> pIndex, String pLabel) {
+    V entity = pIndex.byKey.get(pLabel);
+    if (entity == null) {
+      for (Map.Entry<String, V> item : pIndex.byKey.entrySet()) {
+        if (item.getKey().contains(pLabel)) {
+          entity = item.getValue();
+          break;
+        }
+      }
+    }
+    return entity;
+  }
+
+  /**
+   * Load all users from the REST service.
+   *
+   * @return index holding all users.
+   */
+  private Index<UserData> loadUsers() {
+    long start = System.currentTimeMillis();
+    UserGroupRestClient client = getClient();
+    int count = requestExecutor.execute("usergroup.users.count", () -> client.getUserCount(context)).getCount();
+    List<Callable<List<UserData>>> pages = new ArrayList<>();
+    for (int first = 0; first < count; first += PAGE_SIZE) {
+      final int firstIndex = first;
+      final int results = Math.min(PAGE_SIZE, count - first);
+      pages.add(() -> requestExecutor.execute("usergroup.users.list", () -> client.getAllUsers(firstIndex, results, context)).getEntities());
+    }
+    Index<UserData> index = new Index<>(System.currentTimeMillis());
+    for (List<UserData> page : invokeAll(pages)) {
+      for (UserData user : page) {
+        index.add(user.getDistinguishedName(), user.getUserId(), user);
+      }
+    }
+    LOGGER.debug("Indexed {} user(s) in {} ms.", index.byId.size(), System.currentTimeMillis() - start);
+    return index;
+  }
+
+  /**
+   * Load all groups from the REST service.
+   *
+   * @return index holding all groups.
+   */
+  private Index<UserGroup> loadGroups() {
+    long start = System.currentTimeMillis();
+    UserGroupRestClient client = getClient();
+    int count = requestExecutor.execute("usergroup.groups.count", () -> client.getGroupCount(context)).getCount();
+    List<Callable<List<UserGroup>>> pages = new ArrayList<>();
+    for (int first = 0; first < count; first += PAGE_SIZE) {
+      final int firstIndex = first;
+      final int results = Math.min(PAGE_SIZE, count - first);
+      pages.add(() -> requestExecutor.execute("usergroup.groups.list", () -> client.getAllGroups(firstIndex, results, context)).getEntities());
+    }
+    Index<UserGroup> index = new Index<>(System.currentTimeMillis());
+    for (List<UserGroup> page : invokeAll(pages)) {
+      for (UserGroup group : page) {
+        index.add(group.getGroupId(), group.getId(), group);
+      }
+    }
+    LOGGER.debug("Indexed {} group(s) in {} ms.", index.byId.size(), System.currentTimeMillis() - start);
+    return index;
+  }
+
+  /**
+   * Request the details of all users missing their distinguished name.
+   *
+   * @param pIndex index with unresolved users.
+   * @return index with all users resolved.
+   */
+  private Index<UserData> resolveUsers(Index<UserData> pIndex) {
+    synchronized (shared) {
+      Index<UserData> index = shared.users;
+      if ((index != null) && (index != pIndex) && (index.created == pIndex.created)) {
+        // Already resolved by another thread.
+        return index;
+      }
+      UserGroupRestClient client = getClient();
+      index = resolve(pIndex, (id) -> {
+        UserDataWrapper user = requestExecutor.execute("usergroup.users.get", () -> client.getUserById(id, context));
+        return (user != null) ? user.getEntities() : Collections.<UserData>emptyList();
+      }, UserData::getDistinguishedName, UserData::getUserId);
+      if (shared.users == pIndex) {
+        shared.users = index;
+      }
+      return index;
+    }
+  }
+
+  /**
+   * Request the details of all groups missing their group id.
+   *
+   * @param pIndex index with unresolved groups.
+   * @return index with all groups resolved.
+   */
+  private Index<UserGroup> resolveGroups(Index<UserGroup> pIndex) {
+    synchronized (shared) {
+      Index<UserGroup> index = shared.groups;
+      if ((index != null) && (index != pIndex) && (index.created == pIndex.created)) {
+        // Already resolved by another thread.
+        return index;
+      }
+      UserGroupRestClient client = getClient();
+      index = resolve(pIndex, (id) -> {
+        UserGroupWrapper group = requestExecutor.execute("usergroup.groups.get", () -> client.getGroupById(id, context));
+        return (group != null) ? group.getEntities() : Collections.<UserGroup>emptyList();
+      }, UserGroup::getGroupId, UserGroup::getId);
+      if (shared.groups == pIndex) {
+        shared.groups = index;
+      }
+      return index;
+    }
+  }
+
+  /**
+   * Request the details of all unresolved entities with bounded parallelism.
+   *
+   * @param <V> type of the entities.
+   * @param pIndex index with unresolved entities.
+   * @param pDetails request for the details of an entity by its id.
+   * @param pKey key of an entity.
+   * @param pId id of an entity.
+   * @return new index with all entities resolved.
+   */
+  private <V> Index<V> resolve(Index<V> pIndex, Function<Long, List<V>> pDetails, Function<V, String> pKey, Function<V, Long> pId) {
+    long start = System.currentTimeMillis();
+    List<Callable<List<V>>> details = new ArrayList<>();
+    for (Long id : pIndex.unresolved) {
+      details.add(() -> pDetails.apply(id));
+    }
+    Index<V> index = new Index<>(pIndex.created);
+    index.byKey.putAll(pIndex.byKey);
+    index.byId.putAll(pIndex.byId);
+    for (List<V> detailed : invokeAll(details)) {
+      for (V entity : detailed) {
+        String key = pKey.apply(entity);
+        if (key != null) {
+          index.byKey.put(key, entity);
+        }
+        index.byId.put(pId.apply(entity), entity);
+      }
+    }
+    LOGGER.debug("Resolved {} entities without name in {} ms.", details.size(), System.currentTimeMillis() - start);
+    return index;
+  }
+
+  /**
+   * Execute all tasks with bounded parallelism.
+   *
+   * @param <T> type of the results.
+   * @param pTasks all tasks.
+   * @return results in the order of the tasks.
+   */
+  private <T> List<T> invokeAll(List<Callable<T>> pTasks) {
+    List<T> results = new ArrayList<>();
+    if (pTasks.isEmpty()) {
+      return results;
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(shared.parallelism, pTasks.size()));
+    try {
+      for (Future<T> future : executor.invokeAll(pTasks)) {
+        results.add(future.get());
+      }
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while reading users/groups!", ie);
+    } catch (ExecutionException ee) {
+      if (ee.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) ee.getCause();
+      }
+      throw new IllegalStateException("Error reading users/groups!", ee.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+    return results;
+  }
+
+  /**
+   * Snapshot of all entities indexed by key and id. An index is not modified
+   * after it was published.
+   *
+   * @param <V> type of the entities.
+   */
+  private static final class Index<V> {
+
+    /**
+     * Entities by key. (distinguished name/group id)
+     */
+    private final Map<String, V> byKey = new LinkedHashMap<>();
+    /**
+     * Entities by id.
+     */
+    private final Map<Long, V> byId = new LinkedHashMap<>();
+    /**
+     * Ids of all entities without key.
+     */
+    private final List<Long> unresolved = new ArrayList<>();
+    /**
+     * Creation time of the index.
+     */
+    private final long created;
+
+    /**
+     * Constructor.
+     *
+     * @param pCreated creation time of the index.
+     */
+    Index(long pCreated) {
+      created = pCreated;
+    }
+
+    /**
+     * Add an entity.
+     *
+     * @param pKey key of the entity. (may be null)
+     * @param pId id of the entity.
+     * @param pEntity entity.
+     */
+    void add(String pKey, Long pId, V pEntity) {
+      if (pKey != null) {
+        byKey.put(pKey, pEntity);
+      } else {
+        unresolved.add(pId);
+      }
+      byId.put(pId, pEntity);
+    }
+  }
+}
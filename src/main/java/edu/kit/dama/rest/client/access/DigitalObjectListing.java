@@ -0,0 +1,278 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.access;
+
+import edu.kit.dama.mdm.base.DigitalObject;
+import edu.kit.dama.rest.basemetadata.client.impl.BaseMetaDataRestClient;
+import edu.kit.dama.rest.basemetadata.types.DigitalObjectWrapper;
+import edu.kit.dama.rest.client.generic.helper.RestRequestExecutor;
+import edu.kit.dama.rest.client.generic.helper.RetryPolicy;
+import edu.kit.dama.rest.staging.client.impl.StagingRestClient;
+import edu.kit.dama.rest.staging.types.IngestInformationWrapper;
+import edu.kit.dama.staging.entities.ingest.INGEST_STATUS;
+import edu.kit.dama.staging.entities.ingest.IngestInformation;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lists all digital objects of a group page by page. Each digital object is
+ * enriched with the status of its ingest:
+ * <ul>
+ * <li>The ingest information of a page is read with a single request for the
+ * ingests of the group at the position of the page and joined by the digital
+ * object identifier in memory. Only digital objects missing in this batch
+ * (e.g. due to a different order of the ingests) are looked up one by
+ * one.</li>
+ * <li>The details of the digital objects of a page are fetched concurrently
+ * with a bounded number of parallel requests.</li>
+ * </ul>
+ * Nothing is held in memory beyond the page. All requests are retried, wait
+ * for the limits of their endpoint and are timed. (see
+ * {@link RestRequestExecutor})
+ *
+ * @author hartmann-v
+ */
+class DigitalObjectListing implements AutoCloseable {
+
+  /**
+   * The logger
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(DigitalObjectListing.class);
+  /**
+   * Number of digital objects per page.
+   */
+  static final int PAGE_SIZE = 100;
+  /**
+   * Default number of parallel requests for details of digital objects.
+   */
+  static final int DEFAULT_PARALLEL_REQUESTS = 8;
+  /**
+   * All investigations.
+   */
+  private static final int ALL_INVESTIGATIONS = 0;
+  /**
+   * Ingests of any state.
+   */
+  private static final int ANY_STATUS = -1;
+  /**
+   * REST client for base metadata.
+   */
+  private final BaseMetaDataRestClient bmdrc;
+  /**
+   * REST client for staging information.
+   */
+  private final StagingRestClient stagingClient;
+  /**
+   * Group of the digital objects.
+   */
+  private final String groupId;
+  /**
+   * Executor fetching details of digital objects.
+   */
+  private final ExecutorService executor;
+  /**
+   * Executor of REST requests. (retries, limits and metrics)
+   */
+  private final RestRequestExecutor requests = new RestRequestExecutor(new RetryPolicy());
+  /**
+   * Index of the next page.
+   */
+  private int startIndex = 0;
+  /**
+   * No more pages available.
+   */
+  private boolean lastPage = false;
+
+  /**
+   * Entry of the listing.
+   */
+  static final class Entry {
+
+    /**
+     * Digital object with all details.
+     */
+    private final DigitalObject digitalObject;
+    /**
+     * Status of the ingest.
+     */
+    private final INGEST_STATUS status;
+
+    /**
+     * Constructor.
+     *
+     * @param pDigitalObject digital object.
+     * @param pStatus status of the ingest.
+     */
+    Entry(DigitalObject pDigitalObject, INGEST_STATUS pStatus) {
+      digitalObject = pDigitalObject;
+      status = pStatus;
+    }
+
+    /**
+     * Get digital object.
+     *
+     * @return the digital object.
+     */
+    DigitalObject getDigitalObject() {
+      return digitalObject;
+    }
+
+    /**
+     * Get status of the ingest.
+     *
+     * @return the status.
+     */
+    INGEST_STATUS getStatus() {
+      return status;
+    }
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param pBmdrc REST client for base metadata.
+   * @param pStagingClient REST client for staging information.
+   * @param pGroupId group of the digital objects.
+   * @param pParallelRequests number of parallel requests for details.
+   */
+  DigitalObjectListing(BaseMetaDataRestClient pBmdrc, StagingRestClient pStagingClient, String pGroupId, int pParallelRequests) {
+    bmdrc = pBmdrc;
+    stagingClient = pStagingClient;
+    groupId = pGroupId;
+    AtomicInteger threadNumber = new AtomicInteger();
+    executor = Executors.newFixedThreadPool(pParallelRequests, (runnable) -> {
+      Thread thread = new Thread(runnable, "list-details-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Get the next page of digital objects.
+   *
+   * @return next page or an empty list if there are no more digital objects.
+   */
+  List<Entry> nextPage() {
+    if (lastPage) {
+      return Collections.emptyList();
+    }
+    int pageStart = startIndex;
+    DigitalObjectWrapper page = requests.execute("basemetadata.digitalObjects.list", () -> bmdrc.getAllDigitalObjects(ALL_INVESTIGATIONS, pageStart, PAGE_SIZE, groupId));
+    List<DigitalObject> items = page.getEntities();
+    startIndex += PAGE_SIZE;
+    lastPage = items.size() < PAGE_SIZE;
+    if (items.isEmpty()) {
+      return Collections.emptyList();
+    }
+    // <editor-fold defaultstate="collapsed" desc="Fetch details concurrently">
+    List<Future<DigitalObject>> details = new ArrayList<>();
+    for (DigitalObject item : items) {
+      Callable<DigitalObject> detail = () -> requests.execute("basemetadata.digitalObjects.get", () -> bmdrc.getDigitalObjectById(item.getBaseId(), groupId)).getEntities().get(0);
+      details.add(executor.submit(detail));
+    }
+    // </editor-fold>
+    Map<String, INGEST_STATUS> status = getIngestStatus(pageStart, items.size());
+    List<Entry> entries = new ArrayList<>();
+    int noOfMissingIngests = 0;
+    for (Future<DigitalObject> detail : details) {
+      DigitalObject digitalObject = getResult(detail);
+      INGEST_STATUS statusEnum = status.get(digitalObject.getDigitalObjectIdentifier());
+      if (statusEnum == null) {
+        statusEnum = getIngestStatus(digitalObject.getDigitalObjectIdentifier());
+        noOfMissingIngests++;
+      }
+      entries.add(new Entry(digitalObject, statusEnum));
+    }
+    LOGGER.trace("Page at {}: {} digital object(s), {} ingest(s) looked up one by one.", pageStart, entries.size(), noOfMissingIngests);
+    return entries;
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Get the status of the ingests of the group at the position of a page with
+   * a single request. Digital objects and their ingests are usually listed in
+   * the same order.
+   *
+   * @param pFirst index of the first ingest.
+   * @param pResults number of ingests.
+   * @return status of the first ingest per digital object identifier.
+   */
+  private Map<String, INGEST_STATUS> getIngestStatus(int pFirst, int pResults) {
+    IngestInformationWrapper ingests = requests.execute("staging.ingests.list",
+            () -> stagingClient.getAllIngestInformation(null, groupId, null, ANY_STATUS, pFirst, pResults, null));
+    Map<String, INGEST_STATUS> status = new HashMap<>();
+    List<IngestInformation> entities = ingests.getEntities();
+    if (entities != null) {
+      for (IngestInformation ingest : entities) {
+        status.putIfAbsent(ingest.getDigitalObjectId(), ingest.getStatusEnum());
+      }
+    }
+    return status;
+  }
+
+  /**
+   * Get the status of the ingest of a digital object. Only the first ingest
+   * of the digital object is requested.
+   *
+   * @param pDigitalObjectId identifier of the digital object.
+   * @return status of the ingest or UNKNOWN if there is no ingest.
+   */
+  private INGEST_STATUS getIngestStatus(String pDigitalObjectId) {
+    IngestInformationWrapper ingests = requests.execute("staging.ingests.list",
+            () -> stagingClient.getAllIngestInformation(null, groupId, pDigitalObjectId, ANY_STATUS, 0, 1, null));
+    List<IngestInformation> entities = ingests.getEntities();
+    if ((entities == null) || entities.isEmpty()) {
+      return INGEST_STATUS.UNKNOWN;
+    }
+    return entities.get(0).getStatusEnum();
+  }
+
+  /**
+   * Get result of a request.
+   *
+   * @param pDetail pending request.
+   * @return digital object.
+   */
+  private static DigitalObject getResult(Future<DigitalObject> pDetail) {
+    try {
+      return pDetail.get();
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Listing of digital objects interrupted!", ie);
+    } catch (ExecutionException ee) {
+      Throwable cause = ee.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+}
@@ -17,12 +17,12 @@ package edu.kit.dama.rest.client.access;
 
 import edu.kit.dama.rest.client.DataManagerPropertiesImpl;
 import edu.kit.dama.rest.client.DataManagerPropertiesHelper;
+import edu.kit.dama.rest.client.RequestLimiter;
 import edu.kit.jcommander.generic.status.CommandStatus;
 import edu.kit.jcommander.generic.status.Status;
 import edu.kit.dama.cmdline.generic.parameter.AccessParameters;
 import edu.kit.dama.cmdline.generic.parameter.ListParameters;
 import edu.kit.dama.cmdline.generic.parameter.SearchParameters;
-import edu.kit.dama.mdm.base.DigitalObject;
 import edu.kit.dama.mdm.dataorganization.service.exception.DataOrganizationException;
 import edu.kit.dama.rest.SimpleRESTContext;
 import edu.kit.dama.rest.basemetadata.client.impl.BaseMetaDataRestClient;
@@ -31,23 +31,28 @@ import edu.kit.dama.rest.client.AbstractGenericRestClient;
 import static edu.kit.dama.rest.client.IDataManagerRestUrl.REST_BASE_META_DATA_PATH;
 import static edu.kit.dama.rest.client.IDataManagerRestUrl.REST_DATA_ORGANIZATION_PATH;
 import static edu.kit.dama.rest.client.IDataManagerRestUrl.REST_STAGING_PATH;
+import edu.kit.dama.rest.client.access.impl.PagedSearchHits;
 import edu.kit.dama.rest.client.access.impl.SearchRestClient;
+import edu.kit.dama.rest.client.access.output.IListWriter;
+import edu.kit.dama.rest.client.access.output.ListFormat;
+import edu.kit.dama.rest.client.access.output.SearchHitWriter;
+import edu.kit.dama.rest.client.access.output.TextListWriter;
 import edu.kit.dama.rest.client.generic.KIT_DM_REST_CLIENT;
 import edu.kit.dama.rest.dataorganization.client.impl.DataOrganizationRestClient;
 import edu.kit.dama.rest.staging.client.impl.StagingRestClient;
-import edu.kit.dama.rest.staging.types.IngestInformationWrapper;
 import edu.kit.dama.staging.entities.ingest.INGEST_STATUS;
 import edu.kit.dama.util.StdIoUtils;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.PrintStream;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.xml.ws.WebServiceException;
-import org.json.JSONArray;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -98,6 +103,9 @@ public class GenericAccessClient extends AbstractGenericRestClient {
     boolean humanReadable = lp.humanReadable;
     boolean verbose = lp.verbose;
     boolean listFailedIngestsOnly = lp.failedIngests;
+    if (lp.stream || (lp.format != null)) {
+      return gac.streamDigitalObjects(listFailedIngestsOnly, humanReadable, verbose, lp.format);
+    }
     return gac.listDigitalObjects(listFailedIngestsOnly, humanReadable, verbose);
   }
 
@@ -108,6 +116,7 @@ public class GenericAccessClient extends AbstractGenericRestClient {
    * @return Status of the command.
    */
   public static CommandStatus executeCommand(AccessParameters ap) {
+    KIT_DM_REST_CLIENT.setParallelDownloads(ap.downloadStreams);
     return new GenericAccessClient().accessData(ap.outputDir, ap.digitalObjectId, ap.interactive);
   }
 
@@ -118,7 +127,8 @@ public class GenericAccessClient extends AbstractGenericRestClient {
    * @return Status of the command.
    */
   public static CommandStatus executeCommand(SearchParameters sp) {
-    return new GenericAccessClient().searchData(sp.index, sp.type, sp.term, sp.shortList);
+    return new GenericAccessClient().searchData(sp.index, sp.type, sp.term, sp.shortList, sp.compact,
+            sp.offset, sp.all ? PagedSearchHits.NO_LIMIT : sp.limit);
   }
 
   /**
@@ -167,7 +177,7 @@ public class GenericAccessClient extends AbstractGenericRestClient {
 
       if (properties != null) {
         // <editor-fold defaultstate="collapsed" desc="Initialize REST">
-        SimpleRESTContext context = new SimpleRESTContext(properties.getAccessKey(), properties.getAccessSecret());
+        SimpleRESTContext context = getRestContext(properties);
         digitalObjectId = selectDigitalObject(properties, context);
         LOGGER.info("digitalObjId = " + digitalObjectId);
         KIT_DM_REST_CLIENT.initialize(context, properties.getRestUrl());
@@ -201,9 +211,9 @@ public class GenericAccessClient extends AbstractGenericRestClient {
           output.println(properties.toString());
         }
         // <editor-fold defaultstate="collapsed" desc="Initialize REST">
-        SimpleRESTContext context = new SimpleRESTContext(properties.getAccessKey(), properties.getAccessSecret());
-        BaseMetaDataRestClient bmdrc = new BaseMetaDataRestClient(properties.getRestUrl() + REST_BASE_META_DATA_PATH, context);
-        StagingRestClient stagingClient = new StagingRestClient(properties.getRestUrl() + REST_STAGING_PATH, context);
+        SimpleRESTContext context = getRestContext(properties);
+        BaseMetaDataRestClient bmdrc = getRestClient(BaseMetaDataRestClient.class, properties.getRestUrl() + REST_BASE_META_DATA_PATH, context, BaseMetaDataRestClient::new);
+        StagingRestClient stagingClient = getRestClient(StagingRestClient.class, properties.getRestUrl() + REST_STAGING_PATH, context, StagingRestClient::new);
 
         String header = String.format("List of digital objects (group: '%s'):", properties.getUserGroup());
         printDigitalObjects(bmdrc, stagingClient, header, pListFailedIngests, pHumanReadable, properties.getUserGroup());
@@ -217,6 +227,43 @@ public class GenericAccessClient extends AbstractGenericRestClient {
     return getReturnStatus();
   }
 
+  /**
+   * Stream digital objects accessible by defined user/group/investigation.
+   * Digital objects are written as soon as they are available.
+   *
+   * @param pListFailedIngests Show only failed ingests.
+   * @param pHumanReadable Human readable or only listing.
+   * @param pVerbose Show also actual settings.
+   * @param pFormat Format of the output (null -> text).
+   * @return Status of the command.
+   */
+  private CommandStatus streamDigitalObjects(boolean pListFailedIngests, boolean pHumanReadable, boolean pVerbose, String pFormat) {
+    try {
+      ListFormat format = (pFormat != null) ? ListFormat.fromString(pFormat) : ListFormat.TEXT;
+      DataManagerPropertiesImpl properties = testDataManagerSettings();
+
+      if (properties != null) {
+        PrintStream output = System.out;
+        if (pVerbose && (format == ListFormat.TEXT)) {
+          output.println(properties.toString());
+        }
+        // <editor-fold defaultstate="collapsed" desc="Initialize REST">
+        SimpleRESTContext context = getRestContext(properties);
+        BaseMetaDataRestClient bmdrc = getRestClient(BaseMetaDataRestClient.class, properties.getRestUrl() + REST_BASE_META_DATA_PATH, context, BaseMetaDataRestClient::new);
+        StagingRestClient stagingClient = getRestClient(StagingRestClient.class, properties.getRestUrl() + REST_STAGING_PATH, context, StagingRestClient::new);
+
+        String header = String.format("List of digital objects (group: '%s'):", properties.getUserGroup());
+        int noOfDigitalObjects = streamDigitalObjects(bmdrc, stagingClient, header, pListFailedIngests, format.createWriter(output, pHumanReadable), properties.getUserGroup());
+        LOGGER.debug("{} digital object(s) listed.", noOfDigitalObjects);
+        returnStatus = new CommandStatus(Status.SUCCESSFUL);
+      }
+    } catch (IllegalArgumentException iae) {
+      LOGGER.error(null, iae);
+      returnStatus = new CommandStatus(iae);
+    }
+    return getReturnStatus();
+  }
+
   /**
    * Full text search on repository. Supported features depends on installed
    * plugin and its implementation.
@@ -225,9 +272,12 @@ public class GenericAccessClient extends AbstractGenericRestClient {
    * @param index 'Which indices should be used for search.
    * @param term Terms to search for in given types and indices.
    * @param pShort List only Digital Object IDs.
+   * @param pCompact Print hits without any whitespace.
+   * @param pOffset Number of hits to skip.
+   * @param pLimit Maximum number of hits or PagedSearchHits.NO_LIMIT.
    * @return status of the command.
    */
-  private CommandStatus searchData(List<String> type, List<String> index, List<String> term, boolean pShort) {
+  private CommandStatus searchData(List<String> type, List<String> index, List<String> term, boolean pShort, boolean pCompact, int pOffset, int pLimit) {
     PrintStream output = System.out;
     returnStatus = new CommandStatus(Status.FAILED);
     try {
@@ -254,18 +304,20 @@ public class GenericAccessClient extends AbstractGenericRestClient {
         output.println(header.toString());
         if (properties != null) {
           // <editor-fold defaultstate="collapsed" desc="Initialize REST">
-          SimpleRESTContext context = new SimpleRESTContext(properties.getAccessKey(), properties.getAccessSecret());
-          SearchRestClient src = new SearchRestClient(properties.getRestUrl(), context);
-          String searchResultList;
-          searchResultList = src.getSearchResultList(properties.getUserGroup(), null, null, validTerms.toArray(new String[1]), 20, context, pShort);
-          // Try to format result as JSON.
-          try {
-            JSONArray jsonArray = new JSONArray(searchResultList);
-            searchResultList = jsonArray.toString(2);
-          } catch (Exception ex) {
-            // print JSON unformatted!
+          SimpleRESTContext context = getRestContext(properties);
+          SearchRestClient src = getRestClient(SearchRestClient.class, properties.getRestUrl(), context, SearchRestClient::new);
+          try (PagedSearchHits hits = src.getPagedSearchHits(properties.getUserGroup(), null, null, validTerms.toArray(new String[1]), pOffset, pLimit, context, pShort)) {
+            if (hits.hasNext() && hits.isRaw()) {
+              // print response unformatted!
+              output.println(hits.next());
+            } else {
+              try (SearchHitWriter writer = new SearchHitWriter(output, !pCompact)) {
+                while (hits.hasNext()) {
+                  writer.write(hits.next());
+                }
+              }
+            }
           }
-          output.println(searchResultList);
           returnStatus = new CommandStatus(Status.SUCCESSFUL);
 
         }
@@ -273,6 +325,10 @@ public class GenericAccessClient extends AbstractGenericRestClient {
     } catch (IllegalArgumentException iae) {
       LOGGER.error(null, iae);
       returnStatus = new CommandStatus(iae);
+    } catch (IllegalStateException ise) {
+      // e.g. paging failed
+      LOGGER.error(null, ise);
+      returnStatus = new CommandStatus(ise);
     }
 
     return getReturnStatus();
@@ -299,8 +355,8 @@ public class GenericAccessClient extends AbstractGenericRestClient {
    */
   private String selectDigitalObject(DataManagerPropertiesImpl pProperties, SimpleRESTContext pContext) throws DataOrganizationException {
     String digitalObjectIdentifier = null;
-    BaseMetaDataRestClient bmdrc = new BaseMetaDataRestClient(pProperties.getRestUrl() + REST_BASE_META_DATA_PATH, pContext);
-    StagingRestClient stagingClient = new StagingRestClient(pProperties.getRestUrl() + REST_STAGING_PATH, pContext);
+    BaseMetaDataRestClient bmdrc = getRestClient(BaseMetaDataRestClient.class, pProperties.getRestUrl() + REST_BASE_META_DATA_PATH, pContext, BaseMetaDataRestClient::new);
+    StagingRestClient stagingClient = getRestClient(StagingRestClient.class, pProperties.getRestUrl() + REST_STAGING_PATH, pContext, StagingRestClient::new);
     if (interactive || digitalObjectId == null) {
       String[] allDigitalObjIds = printDigitalObjects(bmdrc, stagingClient, "Please choose a digital object via given index:", false, true, pProperties.getUserGroup());
       int index;
@@ -312,12 +368,14 @@ public class GenericAccessClient extends AbstractGenericRestClient {
       }
     }
     // check for validity
-    DigitalObjectWrapper digitalObjectWrapper = bmdrc.getDigitalObjectByDOI(digitalObjectIdentifier, pProperties.getUserGroup());
+    String selectedIdentifier = digitalObjectIdentifier;
+    DigitalObjectWrapper digitalObjectWrapper = RequestLimiter.getDefaultInstance().execute("basemetadata.digitalObjects.get",
+            () -> bmdrc.getDigitalObjectByDOI(selectedIdentifier, pProperties.getUserGroup()));
     if (digitalObjectWrapper.getCount() < 1) {
       throw new IllegalArgumentException("No valid digital object identifier chosen!");
     }
     Long baseId = digitalObjectWrapper.getEntities().get(0).getBaseId();
-    DataOrganizationRestClient dorc = new DataOrganizationRestClient(pProperties.getRestUrl() + REST_DATA_ORGANIZATION_PATH, pContext);
+    DataOrganizationRestClient dorc = getRestClient(DataOrganizationRestClient.class, pProperties.getRestUrl() + REST_DATA_ORGANIZATION_PATH, pContext, DataOrganizationRestClient::new);
     try {
       dorc.getRootNode(pProperties.getUserGroup(), baseId, null, null, null);
     } catch (WebServiceException wse) {
@@ -342,54 +400,79 @@ public class GenericAccessClient extends AbstractGenericRestClient {
   private String[] printDigitalObjects(BaseMetaDataRestClient pBmdrc,
           StagingRestClient pSClient, String pHeader,
           boolean pListFailedIngestsOnly, boolean pHumanReadable, String pGroupId) {
-    final int ALL_INVESTIGATIONS = 0;
-    final int ANY_STATUS = -1;
-    // Get all digital Objects.
-    DigitalObject digitalObject;
-    // Determine start and end date according to the last modified dates.
-    SimpleDateFormat sdf = new SimpleDateFormat("YYYY_MM_dd'T'HH_mm");
-    PrintStream output = System.out;
-    final int MAX_SIZE = 100;
-    int startIndex = 0;
-    List<String> allDigitalObjIds = new ArrayList();
-    List<String> allDigitalObjIdDescriptions = new ArrayList();
-    do {
-      DigitalObjectWrapper allDigitalObjects = pBmdrc.getAllDigitalObjects(ALL_INVESTIGATIONS, startIndex, MAX_SIZE, pGroupId);
-
-      for (DigitalObject item : allDigitalObjects.getEntities()) {
-        digitalObject = pBmdrc.getDigitalObjectById(item.getBaseId(), pGroupId).getEntities().get(0);
-        IngestInformationWrapper ingestInfo = pSClient.getAllIngestInformation(null, pGroupId, digitalObject.getDigitalObjectIdentifier(), ANY_STATUS, 0, Integer.MAX_VALUE, null);
-        INGEST_STATUS statusEnum = INGEST_STATUS.UNKNOWN;
-        if (ingestInfo.getCount() > 0) {
-          statusEnum = ingestInfo.getEntities().get(0).getStatusEnum();
-        }
-        if ((!pListFailedIngestsOnly) || (statusEnum.isErrorState())) {
-          allDigitalObjIds.add(digitalObject.getDigitalObjectIdentifier());
-          Date startDate = digitalObject.getStartDate();
-          if (startDate == null) {
-            startDate = new Date(0);
+    List<DigitalObjectListing.Entry> allEntries = new ArrayList<>();
+    try (DigitalObjectListing listing = new DigitalObjectListing(pBmdrc, pSClient, pGroupId, DigitalObjectListing.DEFAULT_PARALLEL_REQUESTS)) {
+      List<DigitalObjectListing.Entry> page;
+      while (!(page = listing.nextPage()).isEmpty()) {
+        for (DigitalObjectListing.Entry entry : page) {
+          if ((!pListFailedIngestsOnly) || (entry.getStatus().isErrorState())) {
+            allEntries.add(entry);
           }
-          StringBuilder sb = new StringBuilder();
-          if (pHumanReadable) {
-            sb.append(String.format("date: %s, note: %s",
-                    sdf.format(startDate),
-                    digitalObject.getNote()));
+        }
+      }
+    }
+    IListWriter writer = new TextListWriter(System.out, pHumanReadable);
+    String[] allDigitalObjIds = new String[allEntries.size()];
+    writer.writeHeader(pHeader);
+    for (int index = 0; index < allEntries.size(); index++) {
+      DigitalObjectListing.Entry entry = allEntries.get(index);
+      allDigitalObjIds[index] = entry.getDigitalObject().getDigitalObjectIdentifier();
+      writer.write(index + 1, entry.getDigitalObject(), entry.getStatus());
+    }
+    writer.flush();
+    return allDigitalObjIds;
+  }
+
+  /**
+   * Write all digital objects of given group page by page. Each page is
+   * written as soon as it is available. The next page is fetched while the
+   * actual page is written.
+   *
+   * @param pBmdrc REST client for base metadata.
+   * @param pSClient REST client for staging information.
+   * @param pHeader Head line of the output.
+   * @param pListFailedIngestsOnly List only failed ingests.
+   * @param pWriter writer for the digital objects.
+   * @param pGroupId show only digital objects of the given group (null ->
+   * USERS)
+   * @return number of written digital objects.
+   */
+  private int streamDigitalObjects(BaseMetaDataRestClient pBmdrc,
+          StagingRestClient pSClient, String pHeader,
+          boolean pListFailedIngestsOnly, IListWriter pWriter, String pGroupId) {
+    int index = 0;
+    pWriter.writeHeader(pHeader);
+    pWriter.flush();
+    ExecutorService prefetcher = Executors.newSingleThreadExecutor((runnable) -> {
+      Thread thread = new Thread(runnable, "list-prefetch");
+      thread.setDaemon(true);
+      return thread;
+    });
+    try (DigitalObjectListing listing = new DigitalObjectListing(pBmdrc, pSClient, pGroupId, DigitalObjectListing.DEFAULT_PARALLEL_REQUESTS)) {
+      Future<List<DigitalObjectListing.Entry>> nextPage = prefetcher.submit(listing::nextPage);
+      List<DigitalObjectListing.Entry> page;
+      while (!(page = nextPage.get()).isEmpty()) {
+        nextPage = prefetcher.submit(listing::nextPage);
+        for (DigitalObjectListing.Entry entry : page) {
+          if ((!pListFailedIngestsOnly) || (entry.getStatus().isErrorState())) {
+            pWriter.write(++index, entry.getDigitalObject(), entry.getStatus());
           }
-          sb.append(String.format(", state: %s", statusEnum));
-          allDigitalObjIdDescriptions.add(sb.toString());
         }
+        pWriter.flush();
+      }
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Listing of digital objects interrupted!", ie);
+    } catch (ExecutionException ee) {
+      Throwable cause = ee.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
       }
-      startIndex += MAX_SIZE;
-    } while (allDigitalObjIds.size() == startIndex);
-    int index = 1;
-    output.println(pHeader);
-    for (int pVIndex = 0; pVIndex < allDigitalObjIds.size(); pVIndex++) {
-      StringBuilder adaptedFormatString = new StringBuilder("%3d: %s %s");
-      output.println(String.format(adaptedFormatString.toString(), index++,
-              allDigitalObjIds.get(pVIndex),
-              allDigitalObjIdDescriptions.get(pVIndex)));
+      throw new IllegalStateException(cause);
+    } finally {
+      prefetcher.shutdownNow();
     }
-    return allDigitalObjIds.toArray(new String[allDigitalObjIds.size()]);
+    return index;
   }
 
 }
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.access.impl;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hits of a search fetched page by page. While the hits of the current page are
+ * consumed the next page is already requested in the background. Only the
+ * current hit is held in memory, so even huge result sets may be scanned.
+ * Paging stops as soon as a page contains less hits than requested or the
+ * limit is reached. If a page starts with the same hit as the page before
+ * the server obviously ignores the offset and paging fails instead of looping
+ * forever.
+ * <br/> Example:
+ * <pre>
+ * {@code
+ *  try (PagedSearchHits hits = searchClient.getPagedSearchHits(groupId, null, null, terms, 0, PagedSearchHits.NO_LIMIT, context, false)) {
+ *    while (hits.hasNext()) {
+ *      Object hit = hits.next();
+ *    }
+ *  }
+ * }
+ * </pre>
+ *
+ * @author hartmann-v
+ */
+public class PagedSearchHits implements Iterator<Object>, Closeable {
+
+  /**
+   * The logger
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(PagedSearchHits.class);
+  /**
+   * Fetch all hits.
+   */
+  public static final int NO_LIMIT = -1;
+  /**
+   * Default number of hits per page.
+   */
+  public static final int DEFAULT_PAGE_SIZE = 500;
+
+  /**
+   * Request for one page of hits.
+   */
+  @FunctionalInterface
+  public interface IPageRequest {
+
+    /**
+     * Request a page of hits.
+     *
+     * @param pOffset index of the first hit.
+     * @param pSize maximum number of hits.
+     * @return hits of the page.
+     */
+    SearchHits getPage(int pOffset, int pSize);
+  }
+  /**
+   * Request for one page.
+   */
+  private final IPageRequest pageRequest;
+  /**
+   * Number of hits per page.
+   */
+  private final int pageSize;
+  /**
+   * Maximum number of hits or NO_LIMIT.
+   */
+  private final int limit;
+  /**
+   * Executor prefetching the next page.
+   */
+  private final ExecutorService prefetcher;
+  /**
+   * Hits of the current page.
+   */
+  private SearchHits currentPage;
+  /**
+   * Number of hits requested for the current page.
+   */
+  private int currentPageSize;
+  /**
+   * Number of hits read from the current page.
+   */
+  private int hitsOfCurrentPage = 0;
+  /**
+   * Next page (null if there is no next page).
+   */
+  private CompletableFuture<SearchHits> nextPage;
+  /**
+   * Offset of the next page to request.
+   */
+  private int nextOffset;
+  /**
+   * Number of hits returned so far.
+   */
+  private int noOfHits = 0;
+  /**
+   * First hit of the current page. (as String, null before the first hit)
+   */
+  private String firstHitOfPage;
+  /**
+   * Response is not a JSON array.
+   */
+  private boolean raw = false;
+  /**
+   * All hits read.
+   */
+  private boolean finished = false;
+
+  /**
+   * Constructor.
+   *
+   * @param pPageRequest request for one page.
+   * @param pOffset index of the first hit.
+   * @param pLimit maximum number of hits or NO_LIMIT.
+   * @param pPageSize number of hits per page.
+   */
+  public PagedSearchHits(IPageRequest pPageRequest, int pOffset, int pLimit, int pPageSize) {
+    if ((pOffset < 0) || (pLimit < NO_LIMIT) || (pPageSize < 1)) {
+      throw new IllegalArgumentException("Invalid offset, limit or page size for search!");
+    }
+    pageRequest = pPageRequest;
+    nextOffset = pOffset;
+    limit = pLimit;
+    pageSize = pPageSize;
+    prefetcher = Executors.newSingleThreadExecutor((runnable) -> {
+      Thread thread = new Thread(runnable, "search-prefetch");
+      thread.setDaemon(true);
+      return thread;
+    });
+    finished = (limit == 0);
+    if (!finished) {
+      currentPageSize = getNextPageSize();
+      currentPage = pageRequest.getPage(nextOffset, currentPageSize);
+      nextOffset += currentPageSize;
+      prefetchNextPage(currentPageSize);
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (!finished) {
+      if (currentPage.hasNext()) {
+        if (currentPage.isRaw()) {
+          // No paging possible.
+          raw = true;
+          cancelNextPage();
+        }
+        return true;
+      }
+      currentPage.close();
+      if ((hitsOfCurrentPage < currentPageSize) || (nextPage == null)) {
+        finished = true;
+        cancelNextPage();
+      } else {
+        currentPageSize = getNextPageSize();
+        currentPage = getNextPage();
+        nextOffset += currentPageSize;
+        hitsOfCurrentPage = 0;
+        prefetchNextPage(currentPageSize);
+      }
+    }
+    return false;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws IllegalStateException if a page starts with the same hit as the
+   * page before. (offset ignored by the server)
+   */
+  @Override
+  public Object next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    Object hit = currentPage.next();
+    if (hitsOfCurrentPage == 0) {
+      String firstHit = String.valueOf(hit);
+      if (firstHit.equals(firstHitOfPage)) {
+        close();
+        throw new IllegalStateException("Paging of search failed! Page at offset " + (nextOffset - currentPageSize) + " starts with the same hit as the page before.");
+      }
+      firstHitOfPage = firstHit;
+    }
+    hitsOfCurrentPage++;
+    noOfHits++;
+    if (raw) {
+      finished = true;
+    }
+    return hit;
+  }
+
+  /**
+   * Response is not a JSON array. The only hit contains the whole response.
+   * Only valid after first call of {@link #hasNext()}.
+   *
+   * @return true if response is not a JSON array.
+   */
+  public boolean isRaw() {
+    return raw;
+  }
+
+  /**
+   * Get all remaining hits as a sequential stream. The stream has to be
+   * consumed before this instance is closed.
+   *
+   * @return stream of hits.
+   */
+  public Stream<Object> stream() {
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false);
+  }
+
+  @Override
+  public void close() {
+    finished = true;
+    if (currentPage != null) {
+      currentPage.close();
+    }
+    cancelNextPage();
+    prefetcher.shutdown();
+  }
+
+  /**
+   * Request next page in background if the limit allows a further page.
+   *
+   * @param pRequestedHits number of hits requested for the current page.
+   */
+  private void prefetchNextPage(int pRequestedHits) {
+    if ((limit == NO_LIMIT) || (noOfHits + pRequestedHits < limit)) {
+      int offset = nextOffset;
+      int size = Math.min(pageSize, (limit == NO_LIMIT) ? pageSize : limit - noOfHits - pRequestedHits);
+      LOGGER.trace("Prefetch hits {} - {}", offset, offset + size - 1);
+      nextPage = CompletableFuture.supplyAsync(() -> pageRequest.getPage(offset, size), prefetcher);
+    } else {
+      nextPage = null;
+    }
+  }
+
+  /**
+   * Get size of the next page.
+   *
+   * @return number of hits to request.
+   */
+  private int getNextPageSize() {
+    return (limit == NO_LIMIT) ? pageSize : Math.min(pageSize, limit - noOfHits);
+  }
+
+  /**
+   * Wait for the prefetched page.
+   *
+   * @return hits of the next page.
+   */
+  private SearchHits getNextPage() {
+    try {
+      return nextPage.join();
+    } catch (CompletionException ce) {
+      Throwable cause = ce.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw ce;
+    }
+  }
+
+  /**
+   * Cancel prefetched page and release its response.
+   */
+  private void cancelNextPage() {
+    if (nextPage != null) {
+      nextPage.thenAccept(SearchHits::close);
+      nextPage = null;
+    }
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.access.impl;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.json.JSONException;
+import org.json.JSONTokener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hits of a search parsed incrementally from the response. The response is
+ * expected to be a JSON array. Each element of the array is parsed not until
+ * it is requested. Hits are JSONObjects, JSONArrays or plain values (e.g.
+ * Strings). If the response is not a JSON array the whole response is returned
+ * as one String and {@link #isRaw()} returns true.
+ * <br/> Example:
+ * <pre>
+ * {@code
+ *  try (SearchHits hits = searchClient.getSearchHits(groupId, null, null, terms, 20, context, false)) {
+ *    while (hits.hasNext()) {
+ *      Object hit = hits.next();
+ *    }
+ *  }
+ * }
+ * </pre>
+ *
+ * @author hartmann-v
+ */
+public class SearchHits implements Iterator<Object>, Closeable {
+
+  /**
+   * The logger
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(SearchHits.class);
+  /**
+   * Reader of the response.
+   */
+  private final Reader reader;
+  /**
+   * Tokenizer parsing the response.
+   */
+  private final JSONTokener tokener;
+  /**
+   * Next hit (null if not parsed yet).
+   */
+  private Object nextHit;
+  /**
+   * All hits parsed.
+   */
+  private boolean finished = false;
+  /**
+   * Start of the array already read.
+   */
+  private boolean started = false;
+  /**
+   * Response is not a JSON array.
+   */
+  private boolean raw = false;
+
+  /**
+   * Constructor.
+   *
+   * @param pResponse response of the search. (UTF-8 encoded)
+   */
+  public SearchHits(InputStream pResponse) {
+    reader = new BufferedReader(new InputStreamReader(pResponse, StandardCharsets.UTF_8));
+    tokener = new JSONTokener(reader);
+  }
+
+  @Override
+  public boolean hasNext() {
+    if ((nextHit == null) && !finished) {
+      nextHit = readNextHit();
+    }
+    return nextHit != null;
+  }
+
+  @Override
+  public Object next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    Object hit = nextHit;
+    nextHit = null;
+    return hit;
+  }
+
+  /**
+   * Response is not a JSON array. The only hit contains the whole response.
+   * Only valid after first call of {@link #hasNext()}.
+   *
+   * @return true if response is not a JSON array.
+   */
+  public boolean isRaw() {
+    return raw;
+  }
+
+  /**
+   * Get all remaining hits as a sequential stream. The stream has to be
+   * consumed before this instance is closed.
+   *
+   * @return stream of hits.
+   */
+  public Stream<Object> stream() {
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false);
+  }
+
+  @Override
+  public void close() {
+    finished = true;
+    try {
+      reader.close();
+    } catch (IOException ex) {
+      LOGGER.warn("Error closing response of search!", ex);
+    }
+  }
+
+  /**
+   * Read next hit from response.
+   *
+   * @return next hit or null if there are no more hits.
+   */
+  private Object readNextHit() {
+    Object hit = null;
+    try {
+      char next = tokener.nextClean();
+      if (!started) {
+        started = true;
+        if (next != '[') {
+          // no JSON array -> return whole response.
+          finished = true;
+          raw = next != 0;
+          return (next == 0) ? null : readRemaining(next);
+        }
+        next = tokener.nextClean();
+      } else if (next == ',') {
+        next = tokener.nextClean();
+      }
+      if ((next == ']') || (next == 0)) {
+        finished = true;
+      } else {
+        tokener.back();
+        hit = tokener.nextValue();
+      }
+    } catch (JSONException ex) {
+      LOGGER.error("Error parsing response of search!", ex);
+      finished = true;
+    }
+    return hit;
+  }
+
+  /**
+   * Read remaining response as String.
+   *
+   * @param pFirst first character already read.
+   * @return remaining response.
+   */
+  private String readRemaining(char pFirst) {
+    StringBuilder remaining = new StringBuilder().append(pFirst);
+    char next;
+    while ((next = tokener.next()) != 0) {
+      remaining.append(next);
+    }
+    return remaining.toString();
+  }
+}
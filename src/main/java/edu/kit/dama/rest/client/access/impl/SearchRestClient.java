@@ -20,8 +20,11 @@ import com.sun.jersey.api.client.WebResource;
 import com.sun.jersey.core.util.MultivaluedMapImpl;
 import edu.kit.dama.rest.AbstractRestClient;
 import edu.kit.dama.rest.SimpleRESTContext;
+import edu.kit.dama.rest.client.RequestLimiter;
 import static edu.kit.dama.rest.util.RestClientUtils.prepareWebResource;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import org.apache.commons.io.IOUtils;
@@ -63,6 +66,10 @@ public class SearchRestClient extends AbstractRestClient {
    * The maximum number of hits.
    */
   protected static final String QUERY_PARAMETER_MAX_NO_OF_HITS = "size";
+  /**
+   * The index of the first hit.
+   */
+  protected static final String QUERY_PARAMETER_FIRST_HIT = "from";
   /**
    * The maximum number of hits.
    */
@@ -105,6 +112,87 @@ public class SearchRestClient extends AbstractRestClient {
    */
   public String getSearchResultList(String pGroupId, String[] pIndices, String[] pTypes, String[] pTerms, int pMaxNoOfHits, SimpleRESTContext pSecurityContext, boolean pShort) {
     String returnValue = null;
+    ClientResponse response = performSearch(pGroupId, pIndices, pTypes, pTerms, 0, pMaxNoOfHits, pSecurityContext, pShort);
+    try (InputStream entity = response.getEntityInputStream()) {
+      returnValue = IOUtils.toString(entity, StandardCharsets.UTF_8);
+    } catch (IOException ex) {
+      LOGGER.error("Error reading response!", ex);
+    }
+    return returnValue;
+  }
+
+  /**
+   * Get hits of a search. The hits are parsed one by one while iterating over
+   * the response. Therefore the response is never held in memory as a whole.
+   * The returned instance has to be closed after use.
+   *
+   * @param pGroupId groupId the authenticator belongs to.
+   * @param pIndices indices which should be looked at.
+   * @param pTypes types which should be looked at.
+   * @param pTerms terms which should be looked for.
+   * @param pMaxNoOfHits maximum number of hits.
+   * @param pSecurityContext initial context
+   * @param pShort list only Digital Object IDs.
+   * @return iterator over all hits.
+   */
+  public SearchHits getSearchHits(String pGroupId, String[] pIndices, String[] pTypes, String[] pTerms, int pMaxNoOfHits, SimpleRESTContext pSecurityContext, boolean pShort) {
+    return getSearchHits(pGroupId, pIndices, pTypes, pTerms, 0, pMaxNoOfHits, pSecurityContext, pShort);
+  }
+
+  /**
+   * Get hits of a search starting at the given offset. The hits are parsed one
+   * by one while iterating over the response. The returned instance has to be
+   * closed after use.
+   *
+   * @param pGroupId groupId the authenticator belongs to.
+   * @param pIndices indices which should be looked at.
+   * @param pTypes types which should be looked at.
+   * @param pTerms terms which should be looked for.
+   * @param pOffset index of the first hit.
+   * @param pMaxNoOfHits maximum number of hits.
+   * @param pSecurityContext initial context
+   * @param pShort list only Digital Object IDs.
+   * @return iterator over all hits.
+   */
+  public SearchHits getSearchHits(String pGroupId, String[] pIndices, String[] pTypes, String[] pTerms, int pOffset, int pMaxNoOfHits, SimpleRESTContext pSecurityContext, boolean pShort) {
+    ClientResponse response = performSearch(pGroupId, pIndices, pTypes, pTerms, pOffset, pMaxNoOfHits, pSecurityContext, pShort);
+    return new SearchHits(response.getEntityInputStream());
+  }
+
+  /**
+   * Get hits of a search page by page. The next page is requested while the
+   * current page is consumed. The returned instance has to be closed after
+   * use.
+   *
+   * @param pGroupId groupId the authenticator belongs to.
+   * @param pIndices indices which should be looked at.
+   * @param pTypes types which should be looked at.
+   * @param pTerms terms which should be looked for.
+   * @param pOffset index of the first hit.
+   * @param pLimit maximum number of hits or {@link PagedSearchHits#NO_LIMIT}.
+   * @param pSecurityContext initial context
+   * @param pShort list only Digital Object IDs.
+   * @return iterator over all hits.
+   */
+  public PagedSearchHits getPagedSearchHits(String pGroupId, String[] pIndices, String[] pTypes, String[] pTerms, int pOffset, int pLimit, SimpleRESTContext pSecurityContext, boolean pShort) {
+    return new PagedSearchHits((offset, size) -> getSearchHits(pGroupId, pIndices, pTypes, pTerms, offset, size, pSecurityContext, pShort),
+            pOffset, pLimit, PagedSearchHits.DEFAULT_PAGE_SIZE);
+  }
+
+  /**
+   * Perform search.
+   *
+   * @param pGroupId groupId the authenticator belongs to.
+   * @param pIndices indices which should be looked at.
+   * @param pTypes types which should be looked at.
+   * @param pTerms terms which should be looked for.
+   * @param pOffset index of the first hit.
+   * @param pMaxNoOfHits maximum number of hits.
+   * @param pSecurityContext initial context
+   * @param pShort list only Digital Object IDs.
+   * @return response of the search.
+   */
+  private ClientResponse performSearch(String pGroupId, String[] pIndices, String[] pTypes, String[] pTerms, int pOffset, int pMaxNoOfHits, SimpleRESTContext pSecurityContext, boolean pShort) {
     MultivaluedMap queryParams = new MultivaluedMapImpl();
     setFilterFromContext(pSecurityContext);
     if (pGroupId != null) {
@@ -129,17 +217,14 @@ public class SearchRestClient extends AbstractRestClient {
         queryParams.add(QUERY_PARAMETER_TERM, index);
       }
     }
+    if (pOffset > 0) {
+      queryParams.add(QUERY_PARAMETER_FIRST_HIT, Integer.toString(pOffset));
+    }
     queryParams.add(QUERY_PARAMETER_MAX_NO_OF_HITS, Integer.toString(pMaxNoOfHits));
     queryParams.add(QUERY_PARAMETER_SHORT, Boolean.valueOf(pShort).toString());
-    
+
     WebResource webResource = prepareWebResource(getWebResource(MASI_SEARCH_URL), queryParams);
-    ClientResponse response = webResource.type(MediaType.APPLICATION_XML).get(ClientResponse.class);
-    try {
-      returnValue = new String(IOUtils.toByteArray(response.getEntityInputStream()));
-    } catch (IOException ex) {
-      LOGGER.error("Error reading response!", ex);
-    }
-    return returnValue;
+    return RequestLimiter.getDefaultInstance().execute("search.query", () -> webResource.type(MediaType.APPLICATION_XML).get(ClientResponse.class));
   }
 
 }
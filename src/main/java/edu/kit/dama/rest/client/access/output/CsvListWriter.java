@@ -0,0 +1,88 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.access.output;
+
+import edu.kit.dama.mdm.base.DigitalObject;
+import edu.kit.dama.staging.entities.ingest.INGEST_STATUS;
+import java.io.PrintStream;
+import java.text.SimpleDateFormat;
+
+/**
+ * Writes digital objects as comma separated values. (RFC 4180)
+ *
+ * @author hartmann-v
+ */
+public class CsvListWriter implements IListWriter {
+
+  /**
+   * Names of the columns.
+   */
+  private static final String COLUMNS = "index,digitalObjectId,startDate,note,state";
+  /**
+   * Stream to write to.
+   */
+  private final PrintStream output;
+  /**
+   * Format of all dates. (ISO 8601)
+   */
+  private final SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssXXX");
+
+  /**
+   * Constructor.
+   *
+   * @param pOutput stream to write to.
+   */
+  public CsvListWriter(PrintStream pOutput) {
+    output = pOutput;
+  }
+
+  @Override
+  public void writeHeader(String pHeader) {
+    output.println(COLUMNS);
+  }
+
+  @Override
+  public void write(int pIndex, DigitalObject pDigitalObject, INGEST_STATUS pStatus) {
+    StringBuilder line = new StringBuilder();
+    line.append(pIndex).append(',');
+    line.append(escape(pDigitalObject.getDigitalObjectIdentifier())).append(',');
+    line.append((pDigitalObject.getStartDate() != null) ? sdf.format(pDigitalObject.getStartDate()) : "").append(',');
+    line.append(escape(pDigitalObject.getNote())).append(',');
+    line.append(pStatus);
+    output.println(line.toString());
+  }
+
+  @Override
+  public void flush() {
+    output.flush();
+  }
+
+  /**
+   * Quote value if necessary.
+   *
+   * @param pValue value of a field.
+   * @return value usable as CSV field.
+   */
+  private static String escape(String pValue) {
+    if (pValue == null) {
+      return "";
+    }
+    if (pValue.contains(",") || pValue.contains("\"") || pValue.contains("\n") || pValue.contains("\r")) {
+      return "\"" + pValue.replace("\"", "\"\"") + "\"";
+    }
+    return pValue;
+  }
+}
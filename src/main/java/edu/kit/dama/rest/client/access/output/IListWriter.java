@@ -0,0 +1,49 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.access.output;
+
+import edu.kit.dama.mdm.base.DigitalObject;
+import edu.kit.dama.staging.entities.ingest.INGEST_STATUS;
+
+/**
+ * Writer for the list of digital objects. Each digital object is written as
+ * soon as it is available.
+ *
+ * @author hartmann-v
+ */
+public interface IListWriter {
+
+  /**
+   * Write the header of the list.
+   *
+   * @param pHeader header line (only used for human readable output).
+   */
+  void writeHeader(String pHeader);
+
+  /**
+   * Write one digital object.
+   *
+   * @param pIndex index of the digital object (starting with 1).
+   * @param pDigitalObject digital object.
+   * @param pStatus status of the ingest.
+   */
+  void write(int pIndex, DigitalObject pDigitalObject, INGEST_STATUS pStatus);
+
+  /**
+   * Flush all written digital objects.
+   */
+  void flush();
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.access.output;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Supported formats for the list of digital objects.
+ *
+ * @author hartmann-v
+ */
+public enum ListFormat {
+
+  /**
+   * Text as known from the list command.
+   */
+  TEXT,
+  /**
+   * One JSON object per line.
+   */
+  NDJSON,
+  /**
+   * Comma separated values with header.
+   */
+  CSV;
+
+  /**
+   * Get format by its name. (case insensitive)
+   *
+   * @param pFormat name of the format.
+   * @return format.
+   * @throws IllegalArgumentException if format is not supported.
+   */
+  public static ListFormat fromString(String pFormat) throws IllegalArgumentException {
+    for (ListFormat format : values()) {
+      if (format.name().equalsIgnoreCase(pFormat)) {
+        return format;
+      }
+    }
+    throw new IllegalArgumentException(String.format("Unknown format '%s'! Supported formats: %s", pFormat, Arrays.toString(values())));
+  }
+
+  /**
+   * Create writer for this format.
+   *
+   * @param pOutput stream to write to.
+   * @param pHumanReadable add note and date of the digital object.
+   * @return writer for this format.
+   */
+  public IListWriter createWriter(PrintStream pOutput, boolean pHumanReadable) {
+    IListWriter writer;
+    switch (this) {
+      case NDJSON:
+        writer = new NdjsonListWriter(pOutput);
+        break;
+      case CSV:
+        writer = new CsvListWriter(pOutput);
+        break;
+      default:
+        writer = new TextListWriter(pOutput, pHumanReadable);
+        break;
+    }
+    return writer;
+  }
+}
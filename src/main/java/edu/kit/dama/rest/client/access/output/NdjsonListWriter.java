@@ -0,0 +1,72 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.access.output;
+
+import edu.kit.dama.mdm.base.DigitalObject;
+import edu.kit.dama.staging.entities.ingest.INGEST_STATUS;
+import java.io.PrintStream;
+import java.text.SimpleDateFormat;
+import org.json.JSONObject;
+
+/**
+ * Writes each digital object as JSON object on a single line (newline
+ * delimited JSON).
+ *
+ * @author hartmann-v
+ */
+public class NdjsonListWriter implements IListWriter {
+
+  /**
+   * Stream to write to.
+   */
+  private final PrintStream output;
+  /**
+   * Format of all dates. (ISO 8601)
+   */
+  private final SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssXXX");
+
+  /**
+   * Constructor.
+   *
+   * @param pOutput stream to write to.
+   */
+  public NdjsonListWriter(PrintStream pOutput) {
+    output = pOutput;
+  }
+
+  @Override
+  public void writeHeader(String pHeader) {
+    // no header for machine readable output.
+  }
+
+  @Override
+  public void write(int pIndex, DigitalObject pDigitalObject, INGEST_STATUS pStatus) {
+    JSONObject json = new JSONObject();
+    json.put("index", pIndex);
+    json.put("digitalObjectId", pDigitalObject.getDigitalObjectIdentifier());
+    if (pDigitalObject.getStartDate() != null) {
+      json.put("startDate", sdf.format(pDigitalObject.getStartDate()));
+    }
+    json.putOpt("note", pDigitalObject.getNote());
+    json.put("state", pStatus.toString());
+    output.println(json.toString());
+  }
+
+  @Override
+  public void flush() {
+    output.flush();
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.access.output;
+
+import java.io.PrintStream;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Writes hits of a search as JSON array directly to the output. Each hit is
+ * written as soon as it is available. The output is either pretty printed
+ * (indented by 2) or compact (no whitespace at all).
+ *
+ * @author hartmann-v
+ */
+public class SearchHitWriter implements AutoCloseable {
+
+  /**
+   * Indentation for pretty printed output.
+   */
+  private static final int INDENT_FACTOR = 2;
+  /**
+   * Indentation of the hits inside the array.
+   */
+  private static final String INDENT = "  ";
+  /**
+   * Output stream.
+   */
+  private final PrintStream output;
+  /**
+   * Pretty print hits.
+   */
+  private final boolean pretty;
+  /**
+   * Number of hits written.
+   */
+  private int noOfHits = 0;
+
+  /**
+   * Constructor.
+   *
+   * @param pOutput output stream.
+   * @param pPretty pretty print (true) or compact output (false).
+   */
+  public SearchHitWriter(PrintStream pOutput, boolean pPretty) {
+    output = pOutput;
+    pretty = pPretty;
+  }
+
+  /**
+   * Write one hit.
+   *
+   * @param pHit hit (JSONObject, JSONArray or plain value).
+   */
+  public void write(Object pHit) {
+    output.print((noOfHits == 0) ? "[" : ",");
+    noOfHits++;
+    if (pretty) {
+      output.println();
+      for (String line : toJson(pHit).split("\n")) {
+        output.print(INDENT);
+        output.print(line);
+        output.println();
+      }
+    } else {
+      output.print(toJson(pHit));
+    }
+  }
+
+  /**
+   * Get number of hits written so far.
+   *
+   * @return number of hits.
+   */
+  public int getNoOfHits() {
+    return noOfHits;
+  }
+
+  /**
+   * Finish the array and flush the output.
+   */
+  @Override
+  public void close() {
+    if (noOfHits == 0) {
+      output.print("[");
+    }
+    output.println("]");
+    output.flush();
+  }
+
+  /**
+   * Serialize a hit.
+   *
+   * @param pHit hit.
+   * @return JSON representation of the hit.
+   */
+  private String toJson(Object pHit) {
+    String json;
+    if (pHit instanceof JSONObject) {
+      json = pretty ? ((JSONObject) pHit).toString(INDENT_FACTOR) : pHit.toString();
+    } else if (pHit instanceof JSONArray) {
+      json = pretty ? ((JSONArray) pHit).toString(INDENT_FACTOR) : pHit.toString();
+    } else if (pHit instanceof String) {
+      json = JSONObject.quote((String) pHit);
+    } else {
+      json = String.valueOf(pHit);
+    }
+    return json;
+  }
+}
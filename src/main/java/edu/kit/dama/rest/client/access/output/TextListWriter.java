@@ -0,0 +1,80 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.access.output;
+
+import edu.kit.dama.mdm.base.DigitalObject;
+import edu.kit.dama.staging.entities.ingest.INGEST_STATUS;
+import java.io.PrintStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Writes digital objects in the text format of the list command.
+ *
+ * @author hartmann-v
+ */
+public class TextListWriter implements IListWriter {
+
+  /**
+   * Stream to write to.
+   */
+  private final PrintStream output;
+  /**
+   * Add note and date of the digital object.
+   */
+  private final boolean humanReadable;
+  /**
+   * Format of the start date.
+   */
+  private final SimpleDateFormat sdf = new SimpleDateFormat("YYYY_MM_dd'T'HH_mm");
+
+  /**
+   * Constructor.
+   *
+   * @param pOutput stream to write to.
+   * @param pHumanReadable add note and date of the digital object.
+   */
+  public TextListWriter(PrintStream pOutput, boolean pHumanReadable) {
+    output = pOutput;
+    humanReadable = pHumanReadable;
+  }
+
+  @Override
+  public void writeHeader(String pHeader) {
+    output.println(pHeader);
+  }
+
+  @Override
+  public void write(int pIndex, DigitalObject pDigitalObject, INGEST_STATUS pStatus) {
+    StringBuilder sb = new StringBuilder();
+    if (humanReadable) {
+      Date startDate = pDigitalObject.getStartDate();
+      if (startDate == null) {
+        startDate = new Date(0);
+      }
+      sb.append(String.format("date: %s, note: %s",
+              sdf.format(startDate),
+              pDigitalObject.getNote()));
+    }
+    sb.append(String.format(", state: %s", pStatus));
+    output.println(String.format("%3d: %s %s", pIndex, pDigitalObject.getDigitalObjectIdentifier(), sb.toString()));
+  }
+
+  @Override
+  public void flush() {
+    output.flush();
+  }
+}
@@ -17,35 +17,32 @@ package edu.kit.dama.rest.client.generic;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import edu.kit.dama.client.exception.BaseMetadataException;
 import edu.kit.jcommander.generic.status.CommandStatus;
-import edu.kit.jcommander.generic.status.Status;
-import edu.kit.lsdf.adalapi.AbstractFile;
-import edu.kit.dama.mdm.admin.UserGroup;
 import edu.kit.dama.mdm.base.DigitalObject;
 import edu.kit.dama.mdm.base.Investigation;
 import edu.kit.dama.mdm.base.Study;
-import edu.kit.dama.mdm.base.UserData;
 import edu.kit.dama.rest.SimpleRESTContext;
-import edu.kit.dama.rest.client.generic.helper.CustomOutputObject;
-import edu.kit.dama.rest.client.generic.helper.RESTClientHelper;
-import edu.kit.dama.staging.entities.download.DOWNLOAD_STATUS;
+import edu.kit.dama.rest.client.generic.helper.BundleCompression;
+import edu.kit.dama.rest.client.generic.helper.DeduplicationPolicy;
+import edu.kit.dama.rest.client.generic.helper.DirectoryManifest;
+import edu.kit.dama.rest.client.generic.helper.IngestJournal;
+import edu.kit.dama.rest.client.generic.helper.ParallelWebDavDownloader;
+import edu.kit.dama.rest.client.generic.helper.ParallelWebDavUploader;
 import edu.kit.dama.staging.entities.download.DownloadInformation;
-import edu.kit.dama.staging.entities.ingest.INGEST_STATUS;
 import edu.kit.dama.staging.entities.ingest.IngestInformation;
-import org.apache.commons.lang.time.DateUtils;
 
 /**
  * This is the generic client which will perform various operations such as 1.
  * Create base metadata i.e. Base metadata for Study Investigation and
  * DigitalObject 2. Perform DataIngest in KIT DM 3. Get List of all IngestedData
  * from KITDM 4. Perform Download of data specified by the digital object ID
+ * <br/> All methods delegate to a default {@link KitDmClient} set by
+ * {@link #initialize(SimpleRESTContext, String)}.
  *
  * @author kb3353
  *
@@ -57,27 +54,150 @@ public final class KIT_DM_REST_CLIENT {
    */
   static final Logger LOGGER = LoggerFactory.getLogger(KIT_DM_REST_CLIENT.class);
   /**
-   * Number of trials before skip upload.
+   * Client all static methods delegate to.
    */
-  static final int NO_OF_TRIALS = 3;
+  private static volatile KitDmClient defaultClient;
   /**
-   * Wait time in seconds before retry failed transfer.
+   * Number of parallel uploads via WebDAV.
    */
-  static final int RETRY_DELAY_IN_SECONDS = 10;
+  private static volatile int parallelUploads = ParallelWebDavUploader.DEFAULT_PARALLEL_UPLOADS;
   /**
-   * Instance accessing REST services on a higher level.
+   * Policy for files already ingested for the same group.
    */
-  private static RESTClientHelper clientHelper;
+  private static volatile DeduplicationPolicy deduplicationPolicy = DeduplicationPolicy.OFF;
+  /**
+   * Minimum size in bytes of files uploaded in parts. (0: no chunked upload)
+   */
+  private static volatile long chunkThreshold = 0;
+  /**
+   * Number of parallel downloads via WebDAV.
+   */
+  private static volatile int parallelDownloads = ParallelWebDavDownloader.DEFAULT_PARALLEL_DOWNLOADS;
+  /**
+   * Target size in bytes of bundles of small files. (0: no bundling)
+   */
+  private static volatile long bundleSize = 0;
+  /**
+   * Compression of the bundles.
+   */
+  private static volatile BundleCompression bundleCompression = BundleCompression.NONE;
 
   /**
    * Initialize the REST client.
    * <b>This method has to be called first!</b>
+   * <br/> Replaces the default client. Applications serving several users or
+   * repositories in parallel should use one {@link KitDmClient} per user and
+   * repository instead.
    *
    * @param restContext AAI context for the REST services.
    * @param baseURL Base URL of the KIT DataManager.
    */
   public static void initialize(SimpleRESTContext restContext, String baseURL) {
-    clientHelper = new RESTClientHelper(restContext, baseURL);
+    KitDmClient client = new KitDmClient(restContext, baseURL);
+    client.setParallelUploads(parallelUploads);
+    client.setDeduplicationPolicy(deduplicationPolicy);
+    client.setChunkThreshold(chunkThreshold);
+    client.setParallelDownloads(parallelDownloads);
+    client.setBundling(bundleSize, bundleCompression);
+    defaultClient = client;
+  }
+
+  /**
+   * Get the client all static methods delegate to.
+   *
+   * @return default client.
+   * @throws IllegalStateException if client is not initialized yet.
+   */
+  public static KitDmClient getDefaultClient() {
+    KitDmClient client = defaultClient;
+    if (client == null) {
+      throw new IllegalStateException("KIT_DM_REST_CLIENT is not initialized!");
+    }
+    return client;
+  }
+
+  /**
+   * Set the number of parallel uploads for each ingest via WebDAV.
+   * (Default: number of available processors)
+   *
+   * @param pParallelUploads number of parallel uploads.
+   */
+  public static void setParallelUploads(int pParallelUploads) {
+    if (pParallelUploads < 1) {
+      throw new IllegalArgumentException("Number of parallel uploads has to be positive!");
+    }
+    parallelUploads = pParallelUploads;
+    KitDmClient client = defaultClient;
+    if (client != null) {
+      client.setParallelUploads(pParallelUploads);
+    }
+  }
+
+  /**
+   * Set the policy for files already ingested for the same group.
+   * (Default: OFF)
+   *
+   * @param pPolicy policy for duplicates.
+   */
+  public static void setDeduplicationPolicy(DeduplicationPolicy pPolicy) {
+    deduplicationPolicy = (pPolicy != null) ? pPolicy : DeduplicationPolicy.OFF;
+    KitDmClient client = defaultClient;
+    if (client != null) {
+      client.setDeduplicationPolicy(deduplicationPolicy);
+    }
+  }
+
+  /**
+   * Set the minimum size of files uploaded in parts via WebDAV.
+   * (Default: 0 - no chunked upload)
+   *
+   * @param pChunkThreshold minimum size in bytes.
+   */
+  public static void setChunkThreshold(long pChunkThreshold) {
+    if (pChunkThreshold < 0) {
+      throw new IllegalArgumentException("Threshold for chunked upload must not be negative!");
+    }
+    chunkThreshold = pChunkThreshold;
+    KitDmClient client = defaultClient;
+    if (client != null) {
+      client.setChunkThreshold(pChunkThreshold);
+    }
+  }
+
+  /**
+   * Set the bundling of small files for ingests via WebDAV.
+   * (Default: 0 - no bundling)
+   *
+   * @param pBundleSize target size of a bundle in bytes.
+   * @param pCompression compression of the bundles.
+   */
+  public static void setBundling(long pBundleSize, BundleCompression pCompression) {
+    if (pBundleSize < 0) {
+      throw new IllegalArgumentException("Size of bundles must not be negative!");
+    }
+    bundleSize = pBundleSize;
+    bundleCompression = (pCompression != null) ? pCompression : BundleCompression.NONE;
+    KitDmClient client = defaultClient;
+    if (client != null) {
+      client.setBundling(pBundleSize, bundleCompression);
+    }
+  }
+
+  /**
+   * Set the number of parallel downloads via WebDAV.
+   * (Default: number of available processors)
+   *
+   * @param pParallelDownloads number of parallel downloads.
+   */
+  public static void setParallelDownloads(int pParallelDownloads) {
+    if (pParallelDownloads < 1) {
+      throw new IllegalArgumentException("Number of parallel downloads has to be positive!");
+    }
+    parallelDownloads = pParallelDownloads;
+    KitDmClient client = defaultClient;
+    if (client != null) {
+      client.setParallelDownloads(pParallelDownloads);
+    }
   }
 
   /**
@@ -102,45 +222,7 @@ public final class KIT_DM_REST_CLIENT {
    * @return CommandStatus or OperationStatus
    */
   public static CommandStatus createBaseMetaData(Study defaultStudy, Investigation defaultInvestigation, DigitalObject digitalObject, String group) {
-    LOGGER.debug("Creating base metadata for study: '{}'\ninvestigation: '{}'\ndigital data '{}' for group '{}'",
-            defaultStudy.getTopic(),
-            defaultInvestigation.getTopic(),
-            digitalObject.getLabel(),
-            group);
-
-    CommandStatus status = null;
-
-    // Check user validity
-    UserGroup nanoscoypGroupID = clientHelper.getSpecificGroupID(group);
-
-    if (nanoscoypGroupID.getGroupId() == null) {
-      String message = "Unable to create the study as following group: " + group + " does not exists";
-      LOGGER.error(message);
-      status = new CommandStatus(Status.FAILED, new BaseMetadataException(message), defaultStudy);
-      return status;
-    }
-    Study nanoscopyStudy = clientHelper.createStudy(nanoscoypGroupID.getGroupId(), defaultStudy);
-
-    Investigation nanoscopyInvestigation = clientHelper.createInvestigation(group, nanoscopyStudy, defaultInvestigation);
-    if (nanoscopyInvestigation == null) {
-      String message = "Unable to create the investigation: " + defaultInvestigation.getTopic();
-      LOGGER.error(message);
-      status = new CommandStatus(Status.FAILED, new BaseMetadataException(message), defaultInvestigation);
-      return status;
-    }
-    DigitalObject nanoscopyDigitalObject;
-    try {
-      nanoscopyDigitalObject = clientHelper.createNanoscopyDigitalObject(group, nanoscopyInvestigation.getInvestigationId(), digitalObject);
-    } catch (Exception ex) {
-      String message = "Unable to add the digital object: " + digitalObject.getLabel()
-              + " to the investigation: " + defaultInvestigation.getTopic();
-      LOGGER.error(message + ex);
-      status = new CommandStatus(Status.FAILED, new BaseMetadataException(message + ex), digitalObject);
-      return status;
-    }
-
-    status = new CommandStatus(Status.SUCCESSFUL, null, nanoscopyDigitalObject);
-    return status;
+    return getDefaultClient().createBaseMetaData(defaultStudy, defaultInvestigation, digitalObject, group);
   }
 
   /**
@@ -153,39 +235,7 @@ public final class KIT_DM_REST_CLIENT {
    * @return CommandStatus
    */
   public static CommandStatus listContent(String group) {
-
-    LOGGER.debug("Generating list of available data for group: " + group);
-
-    List<IngestInformation> listEntries = clientHelper.getIngestInformationIDs(100, INGEST_STATUS.INGEST_FINISHED.getId());
-    CommandStatus status = new CommandStatus(Status.SUCCESSFUL);
-
-    // Get all IngestID
-    // Get all Information for 'maxEntries' IDs
-    int maxEntries = 10;
-    int startIndex = 0;
-    int noOfEntries = listEntries.size();
-
-    List<IngestInformation> subList;
-    if (noOfEntries < maxEntries) {
-      subList = listEntries.subList(startIndex, noOfEntries);
-    } else {
-      // If more than 'maxEntries' the show only the last 'maxEntries'
-      startIndex = noOfEntries - maxEntries;
-      subList = listEntries.subList(startIndex, noOfEntries);
-    }
-    List<IngestInformation> ingestInformation = clientHelper.getIngestInformation(subList);
-    // Get Detailed Information for each DigitalObject
-    List<DigitalObject> digitalObjectInformationById = clientHelper.getDigitalObjectInformationById(group, ingestInformation);
-    List<CustomOutputObject> customObjectsList = new ArrayList<>();
-
-    for (DigitalObject digitalObject : digitalObjectInformationById) {
-      UserData specificUser = clientHelper.getSpecificUser(digitalObject.getUploader().getUserId());
-      CustomOutputObject customObject = new CustomOutputObject.CustomOutputObjectBuilder(specificUser, digitalObject).build();
-      customObjectsList.add(customObject);
-    }
-    status.setReturnObject(customObjectsList);
-
-    return status;
+    return getDefaultClient().listContent(group);
   }
 
   /**
@@ -204,7 +254,7 @@ public final class KIT_DM_REST_CLIENT {
    * valid File or Directory
    */
   public static CommandStatus performDataIngest(String digitalObjectID, String accessMethod, File dataSource) throws FileNotFoundException {
-    return performDataIngest(digitalObjectID, accessMethod, dataSource, null);
+    return getDefaultClient().performDataIngest(digitalObjectID, accessMethod, dataSource);
   }
 
   /**
@@ -224,39 +274,66 @@ public final class KIT_DM_REST_CLIENT {
    * valid File or Directory
    */
   public static CommandStatus performDataIngest(String digitalObjectID, String accessMethod, File dataSource, String groupId) throws FileNotFoundException {
+    return getDefaultClient().performDataIngest(digitalObjectID, accessMethod, dataSource, groupId);
+  }
 
-    LOGGER.debug("Performing data ingest for digital object identified by: " + digitalObjectID + " from data source at path: " + dataSource.getAbsolutePath());
-
-    if (!(dataSource.isFile()) && (!dataSource.isDirectory())) {
-      LOGGER.error("Incorrect data source", new FileNotFoundException(dataSource.getAbsolutePath()));
-    }
-    CommandStatus status = new CommandStatus(Status.FAILED);
+  /**
+   * This method can be used to create the ingest entity for a digital object.
+   * The data may be transfered afterwards via
+   * {@link #performDataIngest(IngestInformation, File)}.
+   *
+   * @param digitalObjectID The data identified by the digital object which will
+   * be ingested
+   * @param accessMethod The accessmethod is the protocol that will be used to
+   * perform ingest for e.g. WebDav
+   * @param groupId The group the digital object belongs to.
+   * @return IngestInformation of the created ingest or null if the ingest
+   * entity couldn't be created.
+   */
+  public static IngestInformation createIngest(String digitalObjectID, String accessMethod, String groupId) {
+    return getDefaultClient().createIngest(digitalObjectID, accessMethod, groupId);
+  }
 
-    IngestInformation createdIngestEntity = clientHelper.createIngestEntity(digitalObjectID, accessMethod, groupId);
-    LOGGER.debug("Created ingest entity in database for digital data: " + digitalObjectID);
-    IngestInformation ingestInformation = clientHelper.getSpecifiedIngestInformation(createdIngestEntity.getId());
+  /**
+   * This method can be used to upload/ingest the data for an already created
+   * ingest entity into the KIT Data Manager. The data will be transfered to
+   * KIT Data Manger via the WebDav protocol using ADALAPI AbstractFile
+   *
+   * @param ingestInformation The ingest entity created by
+   * {@link #createIngest(String, String, String)}.
+   * @param dataSource The directory on the local machine the data will ingested
+   * from.
+   * @return CommandStatus or OperationStatus
+   */
+  public static CommandStatus performDataIngest(IngestInformation ingestInformation, File dataSource) {
+    return getDefaultClient().performDataIngest(ingestInformation, dataSource);
+  }
 
-    if (ingestInformation.getStatus() == INGEST_STATUS.PRE_INGEST_SCHEDULED.getId()) {
-      int index = 0;
-      while (index < NO_OF_TRIALS) {
-        status = clientHelper.performIngestADALAPI(dataSource, ingestInformation);
-        if (status.getStatus().isSuccess()) {
-          break;
-        }
-        index++;
-        LOGGER.warn("Try #{}: Ingest failed for digital object identified by: '{}' from data source at path: '{}'",
-                index,
-                digitalObjectID,
-                dataSource.getAbsolutePath());
+  /**
+   * This method can be used to upload/ingest the data for an already created
+   * ingest entity into the KIT Data Manager. The data source is not scanned
+   * again.
+   *
+   * @param ingestInformation The ingest entity created by
+   * {@link #createIngest(String, String, String)}.
+   * @param manifest The manifest of the data source.
+   * @return CommandStatus or OperationStatus
+   */
+  public static CommandStatus performDataIngest(IngestInformation ingestInformation, DirectoryManifest manifest) {
+    return getDefaultClient().performDataIngest(ingestInformation, manifest);
+  }
 
-        //wait retry delay
-        try {
-          Thread.sleep(RETRY_DELAY_IN_SECONDS * DateUtils.MILLIS_PER_SECOND);
-        } catch (InterruptedException ie) {
-        }
-      }
-    }
-    return status;
+  /**
+   * This method can be used to resume an interrupted or failed ingest. The
+   * data source is read from the local journal of the ingest. All files which
+   * were already uploaded and not modified since are skipped.
+   *
+   * @param ingestId The id of the ingest entity.
+   * @return CommandStatus or OperationStatus
+   * @see IngestJournal
+   */
+  public static CommandStatus resumeDataIngest(long ingestId) {
+    return getDefaultClient().resumeDataIngest(ingestId);
   }
 
   /**
@@ -276,7 +353,7 @@ public final class KIT_DM_REST_CLIENT {
    * valid File or Directory
    */
   public static CommandStatus performDataIngestTransferClient(String digitalObjectID, String accessMethod, File dataSource) throws FileNotFoundException {
-    return performDataIngestTransferClient(digitalObjectID, accessMethod, dataSource, null);
+    return getDefaultClient().performDataIngestTransferClient(digitalObjectID, accessMethod, dataSource);
   }
 
   /**
@@ -297,23 +374,7 @@ public final class KIT_DM_REST_CLIENT {
    * valid File or Directory
    */
   public static CommandStatus performDataIngestTransferClient(String digitalObjectID, String accessMethod, File dataSource, String groupId) throws FileNotFoundException {
-
-    LOGGER.debug("Performing data ingest for digital object identified by: " + digitalObjectID + " from data source at path: " + dataSource.getAbsolutePath());
-    LOGGER.debug("User group: " + groupId);
-
-    if (!(dataSource.isFile()) && (!dataSource.isDirectory())) {
-      LOGGER.error("Incorrect data source", new FileNotFoundException(dataSource.getAbsolutePath()));
-    }
-    CommandStatus status = new CommandStatus(Status.FAILED);
-
-    IngestInformation createdIngestEntity = clientHelper.createIngestEntity(digitalObjectID, accessMethod, groupId);
-    LOGGER.debug("Created ingest entity in database for digital data: " + digitalObjectID);
-    IngestInformation ingestInformation = clientHelper.getSpecifiedIngestInformation(createdIngestEntity.getId());
-
-    if (ingestInformation.getStatus() == INGEST_STATUS.PRE_INGEST_SCHEDULED.getId()) {
-      status = clientHelper.performIngestDataTransferClient(dataSource, ingestInformation);
-    }
-    return status;
+    return getDefaultClient().performDataIngestTransferClient(digitalObjectID, accessMethod, dataSource, groupId);
   }
 
   /**
@@ -332,7 +393,7 @@ public final class KIT_DM_REST_CLIENT {
    * valid directory
    */
   public static CommandStatus performDataDownload(String accessMethod, String digitalObjectID, File destination) throws FileNotFoundException {
-    return performDataDownload(accessMethod, digitalObjectID, destination, null);
+    return getDefaultClient().performDataDownload(accessMethod, digitalObjectID, destination);
   }
 
   /**
@@ -352,35 +413,42 @@ public final class KIT_DM_REST_CLIENT {
    * valid directory
    */
   public static CommandStatus performDataDownload(String accessMethod, String digitalObjectID, File destination, String groupId) throws FileNotFoundException {
-    LOGGER.debug("Performing data download for digital object identified by: " + digitalObjectID + " to data destination at path: " + destination.getAbsolutePath());
-    LOGGER.debug("User group: " + groupId);
-
-    if (!destination.isDirectory()) {
-      LOGGER.error("Invalid directory: " + destination.getAbsolutePath());
-      throw new FileNotFoundException(destination.getAbsolutePath());
-    }
-
-    CommandStatus commandStatus = new CommandStatus(Status.FAILED);
-    LOGGER.debug("Creating download entity in database for digital data: " + digitalObjectID);
-    DownloadInformation createdDownload = clientHelper.createDownloadEntity(digitalObjectID, accessMethod, groupId);
-
-    if (createdDownload == null) {
-      LOGGER.error("ERROR Unable to create download entity for digital data: " + digitalObjectID);
-      return commandStatus;
-    }
+    return getDefaultClient().performDataDownload(accessMethod, digitalObjectID, destination, groupId);
+  }
 
-    int status = clientHelper.checkDownloadStatus(createdDownload.getId());
+  /**
+   * This method can be used to download the data of an already prepared
+   * download onto your local machine using ADALAPI. The download may be
+   * prepared via
+   * {@link #prepareDataDownload(String, String, String)}.
+   *
+   * @param accessMethod The accessmethod is the protocol that will be used to
+   * perform download for e.g. WebDav
+   * @param dataToDownload The ready download.
+   * @param destination The directory on the local machine where the data will
+   * be downloaded
+   *
+   * @return CommandStatus Status of the command (success or failed).
+   */
+  public static CommandStatus performDataDownload(String accessMethod, DownloadInformation dataToDownload, File destination) {
+    return getDefaultClient().performDataDownload(accessMethod, dataToDownload, destination);
+  }
 
-    if (status == DOWNLOAD_STATUS.DOWNLOAD_READY.getId()) {
-      DownloadInformation dataToDownload = clientHelper.getDownloadInformation(createdDownload.getId());
-      if (dataToDownload != null) {
-        LOGGER.debug("Starting download for requested digital data: " + digitalObjectID);
-        AbstractFile downloadedContent = clientHelper.performDataDownloadADALAPI(accessMethod, dataToDownload, destination);
-        commandStatus.setReturnObject(downloadedContent);
-        commandStatus.setStatusCode(Status.SUCCESSFUL);
-      }
-    }
-    return commandStatus;
+  /**
+   * This method can be used to prepare the download of a digital object. The
+   * download entity is created and the returned future completes as soon as
+   * the download is ready. Many downloads may be prepared concurrently.
+   *
+   * @param accessMethod The accessmethod is the protocol that will be used to
+   * perform download for e.g. WebDav
+   * @param digitalObjectID The data identified by the digital object which will
+   * be downloaded
+   * @param groupId The groupID the digital object belongs to.
+   *
+   * @return future holding the DownloadInformation of the ready download.
+   */
+  public static CompletableFuture<DownloadInformation> prepareDataDownload(String accessMethod, String digitalObjectID, String groupId) {
+    return getDefaultClient().prepareDataDownload(accessMethod, digitalObjectID, groupId);
   }
 
   /**
@@ -400,7 +468,7 @@ public final class KIT_DM_REST_CLIENT {
    * valid directory
    */
   public static CommandStatus performDataDownloadDataTransferClient(String accessMethod, String digitalObjectID, File localDestination) throws FileNotFoundException {
-    return performDataDownloadDataTransferClient(accessMethod, digitalObjectID, localDestination, null);
+    return getDefaultClient().performDataDownloadDataTransferClient(accessMethod, digitalObjectID, localDestination);
   }
 
   /**
@@ -421,35 +489,7 @@ public final class KIT_DM_REST_CLIENT {
    * valid directory
    */
   public static CommandStatus performDataDownloadDataTransferClient(String accessMethod, String digitalObjectID, File localDestination, String groupId) throws FileNotFoundException {
-
-    LOGGER.debug("Performing data download for digital object identified by: " + digitalObjectID + " to data destination at path: " + localDestination.getAbsolutePath());
-    LOGGER.debug("User group: " + groupId);
-    if (!localDestination.isDirectory()) {
-      LOGGER.error("Invalid directory: " + localDestination.getAbsolutePath());
-      throw new FileNotFoundException(localDestination.getAbsolutePath());
-    }
-
-    CommandStatus commandStatus = new CommandStatus(Status.FAILED);
-    LOGGER.debug("Creating download entity in database for digital data: " + digitalObjectID);
-    DownloadInformation createdDownload = clientHelper.createDownloadEntity(digitalObjectID, accessMethod, groupId);
-
-    if (createdDownload == null) {
-      LOGGER.error("ERROR Unable to create download entity for digital data: " + digitalObjectID);
-      return commandStatus;
-    }
-
-    int status = clientHelper.checkDownloadStatus(createdDownload.getId());
-
-    if (status == DOWNLOAD_STATUS.DOWNLOAD_READY.getId()) {
-      DownloadInformation dataToDownload = clientHelper.getDownloadInformation(createdDownload.getId());
-      if (dataToDownload != null) {
-        LOGGER.debug("Starting download for requested digital data: " + digitalObjectID);
-        AbstractFile downloadedContent = clientHelper.performDataDownloadDataTransferClient(accessMethod, dataToDownload, localDestination);
-        commandStatus.setReturnObject(downloadedContent);
-        commandStatus.setStatusCode(Status.SUCCESSFUL);
-      }
-    }
-    return commandStatus;
+    return getDefaultClient().performDataDownloadDataTransferClient(accessMethod, digitalObjectID, localDestination, groupId);
   }
 
 }
@@ -0,0 +1,404 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.generic;
+
+import edu.kit.dama.mdm.base.DigitalObject;
+import edu.kit.dama.mdm.base.Investigation;
+import edu.kit.dama.mdm.base.Study;
+import edu.kit.dama.staging.entities.download.DownloadInformation;
+import edu.kit.dama.staging.entities.ingest.IngestInformation;
+import edu.kit.jcommander.generic.status.CommandStatus;
+import edu.kit.jcommander.generic.status.Status;
+import edu.kit.dama.client.exception.BaseMetadataException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Asynchronous counterpart of {@link KitDmClient}. All commands return
+ * immediately and run on an executor. Waiting for the preparation of a
+ * download doesn't block any thread.
+ * <br/> Cancelling a returned future also cancels the running command: A
+ * running transfer is interrupted (already uploaded files are recorded in the
+ * journal of the ingest, so the ingest may be resumed later) and waiting for a
+ * download to get ready is stopped.
+ * <br/> If no client is given the default client of
+ * {@link KIT_DM_REST_CLIENT} is used. In that case
+ * {@link KIT_DM_REST_CLIENT#initialize} has to be called first!
+ * <br/> Closing the client interrupts all running commands. Therefore wait for
+ * the results before the client is closed.
+ * <br/> Example:
+ * <pre>
+ * {@code
+ *  try (KitDmAsyncClient client = new KitDmAsyncClient()) {
+ *    CompletableFuture<CommandStatus> ingest = client.ingestAsync(digitalObjectId, "WEBDAV", dataSource, groupId);
+ *    CommandStatus status = ingest.join();
+ *    System.out.println(status.getStatus());
+ *  }
+ * }
+ * </pre>
+ *
+ * @author hartmann-v
+ */
+public class KitDmAsyncClient implements AutoCloseable {
+
+  /**
+   * The logger
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(KitDmAsyncClient.class);
+  /**
+   * Client executing the commands. (null for the default client)
+   */
+  private final KitDmClient client;
+  /**
+   * Executor running the commands.
+   */
+  private final Executor executor;
+  /**
+   * Executor created by this instance. (null if executor is supplied by the
+   * caller)
+   */
+  private final ExecutorService ownedExecutor;
+
+  /**
+   * Constructor using virtual threads if available (Java 21+) and a pool of
+   * daemon threads otherwise.
+   */
+  public KitDmAsyncClient() {
+    this((KitDmClient) null);
+  }
+
+  /**
+   * Constructor using virtual threads if available (Java 21+) and a pool of
+   * daemon threads otherwise.
+   *
+   * @param pClient client executing the commands. (null for the default
+   * client)
+   */
+  public KitDmAsyncClient(KitDmClient pClient) {
+    client = pClient;
+    ownedExecutor = createDefaultExecutor();
+    executor = ownedExecutor;
+  }
+
+  /**
+   * Constructor using the default client.
+   *
+   * @param pExecutor executor running the commands. The executor is not shut
+   * down by {@link #close()}.
+   */
+  public KitDmAsyncClient(Executor pExecutor) {
+    this(null, pExecutor);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param pClient client executing the commands. (null for the default
+   * client)
+   * @param pExecutor executor running the commands. The executor is not shut
+   * down by {@link #close()}.
+   */
+  public KitDmAsyncClient(KitDmClient pClient, Executor pExecutor) {
+    if (pExecutor == null) {
+      throw new IllegalArgumentException("Executor must not be null!");
+    }
+    client = pClient;
+    ownedExecutor = null;
+    executor = pExecutor;
+  }
+
+  /**
+   * Create the base metadata for study, investigation and digital object.
+   *
+   * @param defaultStudy The default study metadata
+   * @param defaultInvestigation The default investigation metadata
+   * @param digitalObject The default digital object metadata
+   * @param group the group under which the basemetadata will be created.
+   * @return future holding the CommandStatus.
+   * @see KitDmClient#createBaseMetaData(Study, Investigation,
+   * DigitalObject, String)
+   */
+  public CompletableFuture<CommandStatus> createBaseMetaDataAsync(Study defaultStudy, Investigation defaultInvestigation, DigitalObject digitalObject, String group) {
+    AsyncCommand command = new AsyncCommand();
+    return command.finish(command.stage(executor, () -> getClient().createBaseMetaData(defaultStudy, defaultInvestigation, digitalObject, group)));
+  }
+
+  /**
+   * List the already ingested digital data.
+   *
+   * @param group specifying under which the ingested metadata will be searched
+   * @return future holding the CommandStatus.
+   * @see KitDmClient#listContent(String)
+   */
+  public CompletableFuture<CommandStatus> listContentAsync(String group) {
+    AsyncCommand command = new AsyncCommand();
+    return command.finish(command.stage(executor, () -> getClient().listContent(group)));
+  }
+
+  /**
+   * Create an ingest for the digital object and upload the data via WebDAV.
+   *
+   * @param digitalObjectID The data identified by the digital object.
+   * @param accessMethod The accessmethod is the protocol that will be used to
+   * perform the ingest for e.g. WebDav
+   * @param dataSource The directory on the local machine the data will ingested
+   * from.
+   * @param groupId The group the digital object belongs to.
+   * @return future holding the CommandStatus. The future completes
+   * exceptionally with a FileNotFoundException if the data source doesn't
+   * exist.
+   * @see KitDmClient#performDataIngest(String, String, File, String)
+   */
+  public CompletableFuture<CommandStatus> ingestAsync(String digitalObjectID, String accessMethod, File dataSource, String groupId) {
+    AsyncCommand command = new AsyncCommand();
+    if (!dataSource.exists()) {
+      return command.fail(new FileNotFoundException(dataSource.getAbsolutePath()));
+    }
+    return command.finish(command.stage(executor, () -> {
+      IngestInformation ingestInformation = getClient().createIngest(digitalObjectID, accessMethod, groupId);
+      if (ingestInformation == null) {
+        return new CommandStatus(Status.FAILED, new BaseMetadataException("Unable to create ingest for digital data: " + digitalObjectID), null);
+      }
+      return getClient().performDataIngest(ingestInformation, dataSource);
+    }));
+  }
+
+  /**
+   * Prepare the download of a digital object and download the data via WebDAV
+   * as soon as it's ready.
+   *
+   * @param accessMethod The accessmethod is the protocol that will be used to
+   * perform download for e.g. WebDav
+   * @param digitalObjectID The data identified by the digital object which will
+   * be downloaded
+   * @param destination The directory on the local machine where the data will
+   * be downloaded
+   * @param groupId The groupID the digital object belongs to.
+   * @return future holding the CommandStatus. The future completes
+   * exceptionally with a FileNotFoundException if the destination is not a
+   * directory.
+   * @see KitDmClient#performDataDownload(String, String, File, String)
+   */
+  public CompletableFuture<CommandStatus> downloadAsync(String accessMethod, String digitalObjectID, File destination, String groupId) {
+    AsyncCommand command = new AsyncCommand();
+    if (!destination.isDirectory()) {
+      return command.fail(new FileNotFoundException(destination.getAbsolutePath()));
+    }
+    CompletableFuture<CommandStatus> download = command.stage(executor, () -> getClient().prepareDataDownload(accessMethod, digitalObjectID, groupId))
+            .thenCompose(command::track)
+            .thenCompose((DownloadInformation dataToDownload) -> command.stage(executor, () -> getClient().performDataDownload(accessMethod, dataToDownload, destination)))
+            .exceptionally((failure) -> {
+              Throwable cause = (failure instanceof CompletionException) && (failure.getCause() != null) ? failure.getCause() : failure;
+              if (!(cause instanceof CancellationException)) {
+                LOGGER.error("ERROR Unable to download digital data: " + digitalObjectID, cause);
+              }
+              return new CommandStatus(Status.FAILED, (cause instanceof Exception) ? (Exception) cause : new Exception(cause), null);
+            });
+    return command.finish(download);
+  }
+
+  /**
+   * Shut down the executor if it was created by this instance. Running
+   * commands are interrupted. (e.g. a running ingest stops and has to be
+   * resumed later) Wait for all pending futures before closing the client.
+   */
+  @Override
+  public void close() {
+    if (ownedExecutor != null) {
+      ownedExecutor.shutdownNow();
+    }
+  }
+
+  /**
+   * Get the client executing the commands.
+   *
+   * @return client.
+   */
+  private KitDmClient getClient() {
+    return (client != null) ? client : KIT_DM_REST_CLIENT.getDefaultClient();
+  }
+
+  /**
+   * Create the default executor. Virtual threads are used if the runtime
+   * supports them.
+   *
+   * @return executor.
+   */
+  private static ExecutorService createDefaultExecutor() {
+    try {
+      Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      LOGGER.debug("Asynchronous commands run on virtual threads.");
+      return (ExecutorService) factory.invoke(null);
+    } catch (ReflectiveOperationException ex) {
+      LOGGER.trace("Virtual threads not available.", ex);
+    }
+    AtomicInteger threadNumber = new AtomicInteger();
+    return Executors.newCachedThreadPool((runnable) -> {
+      Thread thread = new Thread(runnable, "kitdm-async-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * State of a single asynchronous command. Holds the currently running thread
+   * and the pending stage to cancel them if the result is cancelled.
+   */
+  private static final class AsyncCommand {
+
+    /**
+     * Result handed out to the caller.
+     */
+    private final CompletableFuture<CommandStatus> result = new CompletableFuture<>();
+    /**
+     * Thread executing the current stage. (null if no stage is running)
+     */
+    private Thread runner;
+    /**
+     * Current stage of the command.
+     */
+    private CompletableFuture<?> pendingStage;
+
+    /**
+     * Constructor.
+     */
+    AsyncCommand() {
+      result.whenComplete((status, failure) -> {
+        if (result.isCancelled()) {
+          cancelRunning();
+        }
+      });
+    }
+
+    /**
+     * Run a stage of the command on the executor.
+     *
+     * @param <T> type of the stage result.
+     * @param pExecutor executor running the stage.
+     * @param pTask task of the stage.
+     * @return future of the stage.
+     */
+    <T> CompletableFuture<T> stage(Executor pExecutor, Callable<T> pTask) {
+      CompletableFuture<T> stage = track(new CompletableFuture<>());
+      try {
+        pExecutor.execute(() -> run(stage, pTask));
+      } catch (RejectedExecutionException ex) {
+        stage.completeExceptionally(ex);
+      }
+      return stage;
+    }
+
+    /**
+     * Track a stage running elsewhere. (e.g. waiting for a download)
+     *
+     * @param <T> type of the stage result.
+     * @param pStage stage.
+     * @return the stage.
+     */
+    <T> CompletableFuture<T> track(CompletableFuture<T> pStage) {
+      synchronized (this) {
+        pendingStage = pStage;
+      }
+      if (result.isCancelled()) {
+        pStage.cancel(true);
+      }
+      return pStage;
+    }
+
+    /**
+     * Complete the result with the last stage.
+     *
+     * @param pLastStage last stage of the command.
+     * @return result of the command.
+     */
+    CompletableFuture<CommandStatus> finish(CompletableFuture<CommandStatus> pLastStage) {
+      pLastStage.whenComplete((status, failure) -> {
+        if (failure == null) {
+          result.complete(status);
+        } else {
+          result.completeExceptionally((failure instanceof CompletionException) && (failure.getCause() != null) ? failure.getCause() : failure);
+        }
+      });
+      return result;
+    }
+
+    /**
+     * Fail the command before it is started.
+     *
+     * @param pFailure reason.
+     * @return result of the command.
+     */
+    CompletableFuture<CommandStatus> fail(Exception pFailure) {
+      result.completeExceptionally(pFailure);
+      return result;
+    }
+
+    /**
+     * Execute the task of a stage on the current thread. The thread is
+     * interrupted if the command gets cancelled meanwhile.
+     *
+     * @param <T> type of the stage result.
+     * @param pStage future of the stage.
+     * @param pTask task of the stage.
+     */
+    private <T> void run(CompletableFuture<T> pStage, Callable<T> pTask) {
+      synchronized (this) {
+        if (pStage.isDone()) {
+          // cancelled before started
+          return;
+        }
+        runner = Thread.currentThread();
+      }
+      try {
+        pStage.complete(pTask.call());
+      } catch (Exception ex) {
+        pStage.completeExceptionally(ex);
+      } finally {
+        synchronized (this) {
+          runner = null;
+        }
+        if (result.isCancelled()) {
+          // Don't leak the interrupt to the next task of the executor.
+          Thread.interrupted();
+        }
+      }
+    }
+
+    /**
+     * Cancel the running stage.
+     */
+    private synchronized void cancelRunning() {
+      if (runner != null) {
+        runner.interrupt();
+      }
+      if (pendingStage != null) {
+        pendingStage.cancel(true);
+      }
+    }
+  }
+}
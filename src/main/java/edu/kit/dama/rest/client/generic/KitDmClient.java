@@ -0,0 +1,741 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.generic;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.kit.dama.client.exception.BaseMetadataException;
+import edu.kit.jcommander.generic.status.CommandStatus;
+import edu.kit.jcommander.generic.status.Status;
+import edu.kit.lsdf.adalapi.AbstractFile;
+import edu.kit.dama.mdm.admin.UserGroup;
+import edu.kit.dama.mdm.base.DigitalObject;
+import edu.kit.dama.mdm.base.Investigation;
+import edu.kit.dama.mdm.base.Study;
+import edu.kit.dama.mdm.base.UserData;
+import edu.kit.dama.rest.SimpleRESTContext;
+import edu.kit.dama.rest.client.generic.helper.BundleCompression;
+import edu.kit.dama.rest.client.generic.helper.CustomOutputObject;
+import edu.kit.dama.rest.client.generic.helper.DeduplicationPolicy;
+import edu.kit.dama.rest.client.generic.helper.DirectoryManifest;
+import edu.kit.dama.rest.client.generic.helper.IngestJournal;
+import edu.kit.dama.rest.client.generic.helper.RESTClientHelper;
+import edu.kit.dama.rest.client.generic.helper.RetryPolicy;
+import edu.kit.dama.staging.entities.download.DownloadInformation;
+import edu.kit.dama.staging.entities.ingest.INGEST_STATUS;
+import edu.kit.dama.staging.entities.ingest.IngestInformation;
+
+/**
+ * Client for KIT Data Manager bound to one repository and one user. Each
+ * instance holds its own context, base URL, REST helper and transfer settings.
+ * Therefore one JVM may serve many users and repositories in parallel.
+ * <br/>
+ * Some state is shared by all instances of the JVM:
+ * <ul>
+ * <li>The REST clients (and with them the HTTP connections) per base URL and
+ * context. (see {@link edu.kit.dama.rest.client.RestClientRegistry})</li>
+ * <li>The cache of users and groups of each shared REST client. (see
+ * {@link edu.kit.dama.rest.client.UserGroupDirectory})</li>
+ * <li>The limits of the REST endpoints, the metrics and the threads waiting
+ * for downloads. (see {@link edu.kit.dama.rest.client.RequestLimiter},
+ * {@link edu.kit.dama.rest.client.metrics.Metrics} and
+ * {@link edu.kit.dama.rest.client.generic.helper.DownloadReadinessWaiter})</li>
+ * </ul>
+ * The static setters of {@link KIT_DM_REST_CLIENT} change the settings of the
+ * default client and the defaults of all default clients initialized later.
+ * Use the setters of an instance to change only its settings.
+ * <br/> Example:
+ * <pre>
+ * {@code
+ *  KitDmClient client = new KitDmClient(context, baseUrl);
+ *  CommandStatus status = client.performDataIngest(digitalObjectId, "WEBDAV", dataSource, groupId);
+ * }
+ * </pre>
+ *
+ * @author hartmann-v
+ * @see KIT_DM_REST_CLIENT
+ */
+public class KitDmClient {
+
+  /**
+   * Logger for debug messages.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(KitDmClient.class);
+  /**
+   * AAI context for the REST services.
+   */
+  private final SimpleRESTContext context;
+  /**
+   * Base URL of the KIT DataManager.
+   */
+  private final String baseUrl;
+  /**
+   * Instance accessing REST services on a higher level.
+   */
+  private final RESTClientHelper clientHelper;
+
+  /**
+   * Constructor.
+   *
+   * @param restContext AAI context for the REST services.
+   * @param baseURL Base URL of the KIT DataManager.
+   */
+  public KitDmClient(SimpleRESTContext restContext, String baseURL) {
+    if ((restContext == null) || (baseURL == null)) {
+      throw new IllegalArgumentException("Context and base URL must not be null!");
+    }
+    context = restContext;
+    baseUrl = baseURL;
+    clientHelper = new RESTClientHelper(restContext, baseURL);
+  }
+
+  /**
+   * Get the AAI context for the REST services.
+   *
+   * @return the context.
+   */
+  public SimpleRESTContext getContext() {
+    return context;
+  }
+
+  /**
+   * Get the base URL of the KIT DataManager.
+   *
+   * @return the base URL.
+   */
+  public String getBaseUrl() {
+    return baseUrl;
+  }
+
+  /**
+   * Set the number of parallel uploads for each ingest via WebDAV.
+   * (Default: number of available processors)
+   *
+   * @param pParallelUploads number of parallel uploads.
+   */
+  public void setParallelUploads(int pParallelUploads) {
+    clientHelper.setParallelUploads(pParallelUploads);
+  }
+
+  /**
+   * Set the policy for files already ingested for the same group.
+   * (Default: OFF)
+   *
+   * @param pPolicy policy for duplicates.
+   */
+  public void setDeduplicationPolicy(DeduplicationPolicy pPolicy) {
+    clientHelper.setDeduplicationPolicy(pPolicy);
+  }
+
+  /**
+   * Set the minimum size of files uploaded in parts via WebDAV.
+   * (Default: 0 - no chunked upload)
+   *
+   * @param pChunkThreshold minimum size in bytes.
+   */
+  public void setChunkThreshold(long pChunkThreshold) {
+    clientHelper.setChunkThreshold(pChunkThreshold);
+  }
+
+  /**
+   * Set the bundling of small files for ingests via WebDAV.
+   * (Default: 0 - no bundling)
+   *
+   * @param pBundleSize target size of a bundle in bytes.
+   * @param pCompression compression of the bundles.
+   */
+  public void setBundling(long pBundleSize, BundleCompression pCompression) {
+    clientHelper.setBundling(pBundleSize, pCompression);
+  }
+
+  /**
+   * Set the number of parallel downloads via WebDAV.
+   * (Default: number of available processors)
+   *
+   * @param pParallelDownloads number of parallel downloads.
+   */
+  public void setParallelDownloads(int pParallelDownloads) {
+    clientHelper.setParallelDownloads(pParallelDownloads);
+  }
+
+  /**
+   * Set the maximum time waiting for a download to be ready.
+   *
+   * @param pDownloadTimeout timeout in milliseconds.
+   */
+  public void setDownloadTimeout(long pDownloadTimeout) {
+    clientHelper.setDownloadTimeout(pDownloadTimeout);
+  }
+
+  /**
+   * Set the policy for retrying failed REST requests.
+   * (Default: {@link RetryPolicy#RetryPolicy()})
+   *
+   * @param pRetryPolicy policy for retries.
+   */
+  public void setRetryPolicy(RetryPolicy pRetryPolicy) {
+    clientHelper.setRetryPolicy(pRetryPolicy);
+  }
+
+  /**
+   * Set the policy for retrying failed transfers. Each file, part, bundle or
+   * range is retried on its own.
+   * (Default: {@link RetryPolicy#newTransferPolicy()})
+   *
+   * @param pRetryPolicy policy for retries.
+   */
+  public void setTransferRetryPolicy(RetryPolicy pRetryPolicy) {
+    clientHelper.setTransferRetryPolicy(pRetryPolicy);
+  }
+
+  /**
+   * This method can be used to create the base metadata for the data which you
+   * wish to ingest/upload. The method will create the base metadata for Study,
+   * Investigation and Digital Data.
+   *
+   * @param defaultStudy The default study metadata
+   * @param defaultInvestigation The default investigation metadata
+   * @param digitalObject The default digital object metadata
+   * @param group the group under which the basemetadata will be created for
+   * e.g. eCodicology_group or NANOSCOPY_GROUP
+   *
+   * @return CommandStatus or OperationStatus
+   */
+  public CommandStatus createBaseMetaData(Study defaultStudy, Investigation defaultInvestigation, DigitalObject digitalObject, String group) {
+    LOGGER.debug("Creating base metadata for study: '{}'\ninvestigation: '{}'\ndigital data '{}' for group '{}'",
+            defaultStudy.getTopic(),
+            defaultInvestigation.getTopic(),
+            digitalObject.getLabel(),
+            group);
+
+    CommandStatus status = null;
+
+    // Check user validity
+    UserGroup nanoscoypGroupID = clientHelper.getSpecificGroupID(group);
+
+    if ((nanoscoypGroupID == null) || (nanoscoypGroupID.getGroupId() == null)) {
+      String message = "Unable to create the study as following group: " + group + " does not exists";
+      LOGGER.error(message);
+      status = new CommandStatus(Status.FAILED, new BaseMetadataException(message), defaultStudy);
+      return status;
+    }
+    Study nanoscopyStudy = clientHelper.createStudy(nanoscoypGroupID.getGroupId(), defaultStudy);
+
+    Investigation nanoscopyInvestigation = clientHelper.createInvestigation(group, nanoscopyStudy, defaultInvestigation);
+    if (nanoscopyInvestigation == null) {
+      String message = "Unable to create the investigation: " + defaultInvestigation.getTopic();
+      LOGGER.error(message);
+      status = new CommandStatus(Status.FAILED, new BaseMetadataException(message), defaultInvestigation);
+      return status;
+    }
+    DigitalObject nanoscopyDigitalObject;
+    try {
+      nanoscopyDigitalObject = clientHelper.createNanoscopyDigitalObject(group, nanoscopyInvestigation.getInvestigationId(), digitalObject);
+    } catch (Exception ex) {
+      String message = "Unable to add the digital object: " + digitalObject.getLabel()
+              + " to the investigation: " + defaultInvestigation.getTopic();
+      LOGGER.error(message + ex);
+      status = new CommandStatus(Status.FAILED, new BaseMetadataException(message + ex), digitalObject);
+      return status;
+    }
+
+    status = new CommandStatus(Status.SUCCESSFUL, null, nanoscopyDigitalObject);
+    return status;
+  }
+
+  /**
+   * This method can be used to list the already ingested and available digital
+   * data from the KIT DM.
+   * <b>Attention:</b> If there are more than 10 entries only the last 10
+   * entries are listed.
+   *
+   * @param group specifying under which the ingested metadata will be searched
+   * @return CommandStatus
+   */
+  public CommandStatus listContent(String group) {
+
+    LOGGER.debug("Generating list of available data for group: " + group);
+
+    List<IngestInformation> listEntries = clientHelper.getIngestInformationIDs(100, INGEST_STATUS.INGEST_FINISHED.getId());
+    CommandStatus status = new CommandStatus(Status.SUCCESSFUL);
+
+    // Get all IngestID
+    // Get all Information for 'maxEntries' IDs
+    int maxEntries = 10;
+    int startIndex = 0;
+    int noOfEntries = listEntries.size();
+
+    List<IngestInformation> subList;
+    if (noOfEntries < maxEntries) {
+      subList = listEntries.subList(startIndex, noOfEntries);
+    } else {
+      // If more than 'maxEntries' the show only the last 'maxEntries'
+      startIndex = noOfEntries - maxEntries;
+      subList = listEntries.subList(startIndex, noOfEntries);
+    }
+    List<IngestInformation> ingestInformation = clientHelper.getIngestInformation(subList);
+    // Get Detailed Information for each DigitalObject
+    List<DigitalObject> digitalObjectInformationById = clientHelper.getDigitalObjectInformationById(group, ingestInformation);
+    List<CustomOutputObject> customObjectsList = new ArrayList<>();
+
+    for (DigitalObject digitalObject : digitalObjectInformationById) {
+      UserData specificUser = clientHelper.getSpecificUser(digitalObject.getUploader().getUserId());
+      CustomOutputObject customObject = new CustomOutputObject.CustomOutputObjectBuilder(specificUser, digitalObject).build();
+      customObjectsList.add(customObject);
+    }
+    status.setReturnObject(customObjectsList);
+
+    return status;
+  }
+
+  /**
+   * This method can be used to upload/ingest the data into the KIT Data
+   * Manager. The data will be transfered to KIT Data Manger via the WebDav
+   * protocol using ADALAPI AbstractFile
+   *
+   * @param digitalObjectID The data identified by the digital object which will
+   * be downloaded
+   * @param accessMethod The accessmethod is the protocol that will be used to
+   * perform download for e.g. WebDav
+   * @param dataSource The directory on the local machine the data will ingested
+   * from.
+   * @return CommandStatus or OperationStatus
+   * @throws FileNotFoundException will be thrown if the dataSource is not a
+   * valid File or Directory
+   */
+  public CommandStatus performDataIngest(String digitalObjectID, String accessMethod, File dataSource) throws FileNotFoundException {
+    return performDataIngest(digitalObjectID, accessMethod, dataSource, null);
+  }
+
+  /**
+   * This method can be used to upload/ingest the data into the KIT Data
+   * Manager. The data will be transfered to KIT Data Manger via the WebDav
+   * protocol using ADALAPI AbstractFile
+   *
+   * @param digitalObjectID The data identified by the digital object which will
+   * be downloaded
+   * @param accessMethod The accessmethod is the protocol that will be used to
+   * perform download for e.g. WebDav
+   * @param dataSource The directory on the local machine the data will ingested
+   * from.
+   * @param groupId The group the digital object belongs to.
+   * @return CommandStatus or OperationStatus
+   * @throws FileNotFoundException will be thrown if the dataSource is not a
+   * valid File or Directory
+   */
+  public CommandStatus performDataIngest(String digitalObjectID, String accessMethod, File dataSource, String groupId) throws FileNotFoundException {
+
+    LOGGER.debug("Performing data ingest for digital object identified by: " + digitalObjectID + " from data source at path: " + dataSource.getAbsolutePath());
+
+    if (!(dataSource.isFile()) && (!dataSource.isDirectory())) {
+      LOGGER.error("Incorrect data source", new FileNotFoundException(dataSource.getAbsolutePath()));
+    }
+    IngestInformation ingestInformation = createIngest(digitalObjectID, accessMethod, groupId);
+    if (ingestInformation == null) {
+      return new CommandStatus(Status.FAILED, new BaseMetadataException("Unable to create ingest for digital data: " + digitalObjectID), null);
+    }
+    return performDataIngest(ingestInformation, dataSource);
+  }
+
+  /**
+   * This method can be used to create the ingest entity for a digital object.
+   * The data may be transfered afterwards via
+   * {@link #performDataIngest(IngestInformation, File)}.
+   *
+   * @param digitalObjectID The data identified by the digital object which will
+   * be ingested
+   * @param accessMethod The accessmethod is the protocol that will be used to
+   * perform ingest for e.g. WebDav
+   * @param groupId The group the digital object belongs to.
+   * @return IngestInformation of the created ingest or null if the ingest
+   * entity couldn't be created.
+   */
+  public IngestInformation createIngest(String digitalObjectID, String accessMethod, String groupId) {
+    IngestInformation ingestInformation = null;
+    IngestInformation createdIngestEntity = clientHelper.createIngestEntity(digitalObjectID, accessMethod, groupId);
+    if (createdIngestEntity == null) {
+      LOGGER.error("ERROR Unable to create ingest entity for digital data: " + digitalObjectID);
+    } else {
+      LOGGER.debug("Created ingest entity in database for digital data: " + digitalObjectID);
+      ingestInformation = clientHelper.getSpecifiedIngestInformation(createdIngestEntity.getId());
+    }
+    return ingestInformation;
+  }
+
+  /**
+   * This method can be used to upload/ingest the data for an already created
+   * ingest entity into the KIT Data Manager. The data will be transfered to
+   * KIT Data Manger via the WebDav protocol using ADALAPI AbstractFile
+   *
+   * @param ingestInformation The ingest entity created by
+   * {@link #createIngest(String, String, String)}.
+   * @param dataSource The directory on the local machine the data will ingested
+   * from.
+   * @return CommandStatus or OperationStatus
+   */
+  public CommandStatus performDataIngest(IngestInformation ingestInformation, File dataSource) {
+    CommandStatus status = new CommandStatus(Status.FAILED);
+
+    if ((ingestInformation != null) && (ingestInformation.getStatus() == INGEST_STATUS.PRE_INGEST_SCHEDULED.getId())) {
+      status = transferData(ingestInformation, dataSource);
+    }
+    return status;
+  }
+
+  /**
+   * This method can be used to upload/ingest the data for an already created
+   * ingest entity into the KIT Data Manager. The data source was already
+   * scanned. (e.g. while creating the digital object) Therefore it's not
+   * scanned again.
+   *
+   * @param ingestInformation The ingest entity created by
+   * {@link #createIngest(String, String, String)}.
+   * @param manifest The manifest of the data source.
+   * @return CommandStatus or OperationStatus
+   */
+  public CommandStatus performDataIngest(IngestInformation ingestInformation, DirectoryManifest manifest) {
+    CommandStatus status = new CommandStatus(Status.FAILED);
+
+    if ((ingestInformation != null) && (ingestInformation.getStatus() == INGEST_STATUS.PRE_INGEST_SCHEDULED.getId())) {
+      status = transferData(ingestInformation, manifest);
+    }
+    return status;
+  }
+
+  /**
+   * This method can be used to resume an interrupted or failed ingest. The
+   * data source is read from the local journal of the ingest. All files which
+   * were already uploaded and not modified since are skipped.
+   *
+   * @param ingestId The id of the ingest entity.
+   * @return CommandStatus or OperationStatus
+   * @see IngestJournal
+   */
+  public CommandStatus resumeDataIngest(long ingestId) {
+    CommandStatus status;
+    File dataSource;
+    try (IngestJournal journal = IngestJournal.open(ingestId)) {
+      dataSource = journal.getSource();
+    } catch (IOException ex) {
+      LOGGER.error("Unable to read journal of ingest '" + ingestId + "'!", ex);
+      return new CommandStatus(ex);
+    }
+    IngestInformation ingestInformation = clientHelper.getSpecifiedIngestInformation(ingestId);
+    if (ingestInformation == null) {
+      status = new CommandStatus(Status.FAILED, new BaseMetadataException("Unknown ingest '" + ingestId + "'!"), null);
+    } else if (ingestInformation.getStatus() == INGEST_STATUS.PRE_INGEST_FINISHED.getId()) {
+      LOGGER.info("Ingest '{}' is already finished!", ingestId);
+      status = new CommandStatus(Status.SUCCESSFUL, null, ingestInformation);
+    } else if ((ingestInformation.getStatus() == INGEST_STATUS.PRE_INGEST_SCHEDULED.getId())
+            || (ingestInformation.getStatus() == INGEST_STATUS.PRE_INGEST_RUNNING.getId())
+            || (ingestInformation.getStatus() == INGEST_STATUS.PRE_INGEST_FAILED.getId())) {
+      LOGGER.info("Resume ingest '{}' from data source at path: '{}'", ingestId, dataSource.getAbsolutePath());
+      status = transferData(ingestInformation, dataSource);
+    } else {
+      String message = String.format("Ingest '%d' can't be resumed! (Status: %s)", ingestId, ingestInformation.getStatusEnum());
+      status = new CommandStatus(Status.FAILED, new BaseMetadataException(message), ingestInformation);
+    }
+    return status;
+  }
+
+  /**
+   * Transfer data for an ingest. If transfer fails it will be retried. Files
+   * already transferred are not transferred again.
+   *
+   * @param ingestInformation The ingest entity.
+   * @param dataSource The directory on the local machine the data will ingested
+   * from.
+   * @return CommandStatus or OperationStatus
+   */
+  private CommandStatus transferData(IngestInformation ingestInformation, File dataSource) {
+    DirectoryManifest manifest;
+    try {
+      manifest = DirectoryManifest.scan(dataSource);
+    } catch (IOException ex) {
+      LOGGER.error("Unable to scan data source at path: '" + dataSource.getAbsolutePath() + "'!", ex);
+      return new CommandStatus(ex);
+    }
+    return transferData(ingestInformation, manifest);
+  }
+
+  /**
+   * Transfer data for an ingest. Failed transfers of single files are
+   * retried by the uploader. (see
+   * {@link #setTransferRetryPolicy(RetryPolicy)}) Files already transferred
+   * are not transferred again.
+   *
+   * @param ingestInformation The ingest entity.
+   * @param manifest The manifest of the data source.
+   * @return CommandStatus or OperationStatus
+   */
+  private CommandStatus transferData(IngestInformation ingestInformation, DirectoryManifest manifest) {
+    File dataSource = manifest.getSource();
+    CommandStatus status = clientHelper.performIngestADALAPI(manifest, ingestInformation);
+    if (!status.getStatus().isSuccess()) {
+      LOGGER.warn("Ingest failed for digital object identified by: '{}' from data source at path: '{}'",
+              ingestInformation.getDigitalObjectId(),
+              dataSource.getAbsolutePath());
+    }
+    return status;
+  }
+
+  /**
+   * This method can be used to upload/ingest the data into the KIT Data
+   * Manager. The data will be transfered to KIT Data Manger via the WebDav
+   * protocol using Data Transfer Client
+   *
+   * @param digitalObjectID The data identified by the digital object which will
+   * be downloaded
+   * @param accessMethod The accessmethod is the protocol that will be used to
+   * perform download for e.g. WebDav
+   * @param dataSource The directory on the local machine the data will ingested
+   * from.
+   * @return CommandStatus object containing the result if the transfer was
+   * successful or not
+   * @throws FileNotFoundException will be thrown if the dataSource is not a
+   * valid File or Directory
+   */
+  public CommandStatus performDataIngestTransferClient(String digitalObjectID, String accessMethod, File dataSource) throws FileNotFoundException {
+    return performDataIngestTransferClient(digitalObjectID, accessMethod, dataSource, null);
+  }
+
+  /**
+   * This method can be used to upload/ingest the data into the KIT Data
+   * Manager. The data will be transfered to KIT Data Manger via the WebDav
+   * protocol using Data Transfer Client
+   *
+   * @param digitalObjectID The data identified by the digital object which will
+   * be downloaded
+   * @param accessMethod The accessmethod is the protocol that will be used to
+   * perform download for e.g. WebDav
+   * @param dataSource The directory on the local machine the data will ingested
+   * from.
+   * @param groupId The groupID the digital object belongs to.
+   * @return CommandStatus object containing the result if the transfer was
+   * successful or not
+   * @throws FileNotFoundException will be thrown if the dataSource is not a
+   * valid File or Directory
+   */
+  public CommandStatus performDataIngestTransferClient(String digitalObjectID, String accessMethod, File dataSource, String groupId) throws FileNotFoundException {
+
+    LOGGER.debug("Performing data ingest for digital object identified by: " + digitalObjectID + " from data source at path: " + dataSource.getAbsolutePath());
+    LOGGER.debug("User group: " + groupId);
+
+    if (!(dataSource.isFile()) && (!dataSource.isDirectory())) {
+      LOGGER.error("Incorrect data source", new FileNotFoundException(dataSource.getAbsolutePath()));
+    }
+    CommandStatus status = new CommandStatus(Status.FAILED);
+
+    IngestInformation ingestInformation = createIngest(digitalObjectID, accessMethod, groupId);
+    if (ingestInformation == null) {
+      return new CommandStatus(Status.FAILED, new BaseMetadataException("Unable to create ingest for digital data: " + digitalObjectID), null);
+    }
+    if (ingestInformation.getStatus() == INGEST_STATUS.PRE_INGEST_SCHEDULED.getId()) {
+      status = clientHelper.performIngestDataTransferClient(dataSource, ingestInformation);
+    }
+    return status;
+  }
+
+  /**
+   * This method can be used to download the actual digital data onto your local
+   * machine using ADALAPI The method uses WebDav protocol to download the data.
+   *
+   * @param accessMethod The accessmethod is the protocol that will be used to
+   * perform download for e.g. WebDav
+   * @param digitalObjectID The data identified by the digital object which will
+   * be downloaded
+   * @param destination The directory on the local machine where the data will
+   * be downloaded
+   *
+   * @return CommandStatus Status of the command (success or failed).
+   * @throws FileNotFoundException will be thrown if the destination is not a
+   * valid directory
+   */
+  public CommandStatus performDataDownload(String accessMethod, String digitalObjectID, File destination) throws FileNotFoundException {
+    return performDataDownload(accessMethod, digitalObjectID, destination, null);
+  }
+
+  /**
+   * This method can be used to download the actual digital data onto your local
+   * machine using ADALAPI The method uses WebDav protocol to download the data.
+   *
+   * @param accessMethod The accessmethod is the protocol that will be used to
+   * perform download for e.g. WebDav
+   * @param digitalObjectID The data identified by the digital object which will
+   * be downloaded
+   * @param destination The directory on the local machine where the data will
+   * be downloaded
+   * @param groupId The groupID the digital object belongs to.
+   *
+   * @return CommandStatus Status of the command (success or failed).
+   * @throws FileNotFoundException will be thrown if the destination is not a
+   * valid directory
+   */
+  public CommandStatus performDataDownload(String accessMethod, String digitalObjectID, File destination, String groupId) throws FileNotFoundException {
+    LOGGER.debug("Performing data download for digital object identified by: " + digitalObjectID + " to data destination at path: " + destination.getAbsolutePath());
+    LOGGER.debug("User group: " + groupId);
+
+    if (!destination.isDirectory()) {
+      LOGGER.error("Invalid directory: " + destination.getAbsolutePath());
+      throw new FileNotFoundException(destination.getAbsolutePath());
+    }
+
+    CommandStatus commandStatus = new CommandStatus(Status.FAILED);
+    DownloadInformation dataToDownload = awaitDownload(prepareDataDownload(accessMethod, digitalObjectID, groupId), digitalObjectID);
+
+    if (dataToDownload != null) {
+      commandStatus = performDataDownload(accessMethod, dataToDownload, destination);
+    }
+    return commandStatus;
+  }
+
+  /**
+   * This method can be used to download the data of an already prepared
+   * download onto your local machine using ADALAPI. The download may be
+   * prepared via
+   * {@link #prepareDataDownload(String, String, String)}.
+   *
+   * @param accessMethod The accessmethod is the protocol that will be used to
+   * perform download for e.g. WebDav
+   * @param dataToDownload The ready download.
+   * @param destination The directory on the local machine where the data will
+   * be downloaded
+   *
+   * @return CommandStatus Status of the command (success or failed).
+   */
+  public CommandStatus performDataDownload(String accessMethod, DownloadInformation dataToDownload, File destination) {
+    LOGGER.debug("Starting download for requested digital data: " + dataToDownload.getDigitalObjectId());
+    CommandStatus commandStatus = new CommandStatus(Status.FAILED);
+    // Failed ranges are retried by the downloader.
+    AbstractFile downloadedContent = clientHelper.performDataDownloadADALAPI(accessMethod, dataToDownload, destination);
+    commandStatus.setReturnObject(downloadedContent);
+    commandStatus.setStatusCode((downloadedContent != null) ? Status.SUCCESSFUL : Status.FAILED);
+    return commandStatus;
+  }
+
+  /**
+   * This method can be used to prepare the download of a digital object. The
+   * download entity is created and the returned future completes as soon as
+   * the download is ready. Many downloads may be prepared concurrently.
+   *
+   * @param accessMethod The accessmethod is the protocol that will be used to
+   * perform download for e.g. WebDav
+   * @param digitalObjectID The data identified by the digital object which will
+   * be downloaded
+   * @param groupId The groupID the digital object belongs to.
+   *
+   * @return future holding the DownloadInformation of the ready download.
+   */
+  public CompletableFuture<DownloadInformation> prepareDataDownload(String accessMethod, String digitalObjectID, String groupId) {
+    LOGGER.debug("Creating download entity in database for digital data: " + digitalObjectID);
+    DownloadInformation createdDownload = clientHelper.createDownloadEntity(digitalObjectID, accessMethod, groupId);
+
+    if (createdDownload == null) {
+      CompletableFuture<DownloadInformation> failed = new CompletableFuture<>();
+      failed.completeExceptionally(new BaseMetadataException("Unable to create download entity for digital data: " + digitalObjectID));
+      return failed;
+    }
+    return clientHelper.waitForDownload(createdDownload.getId());
+  }
+
+  /**
+   * Wait until prepared download is ready.
+   *
+   * @param preparedDownload future of the prepared download.
+   * @param digitalObjectID The data identified by the digital object which will
+   * be downloaded
+   * @return DownloadInformation of the ready download or null if download
+   * couldn't be prepared.
+   */
+  private static DownloadInformation awaitDownload(CompletableFuture<DownloadInformation> preparedDownload, String digitalObjectID) {
+    DownloadInformation dataToDownload = null;
+    try {
+      dataToDownload = preparedDownload.join();
+    } catch (CompletionException | CancellationException ex) {
+      LOGGER.error("ERROR Unable to prepare download for digital data: " + digitalObjectID, ex.getCause() != null ? ex.getCause() : ex);
+    }
+    return dataToDownload;
+  }
+
+  /**
+   * This method can be used to download the actual digital data onto your local
+   * machine using Data Transfer Client The method uses WebDav protocol to
+   * download the data.
+   *
+   * @param accessMethod The accessmethod is the protocol that will be used to
+   * perform download for e.g. WebDav
+   * @param digitalObjectID The data identified by the digital object which will
+   * be downloaded
+   * @param localDestination The directory on the local machine where the data
+   * will be downloaded
+   *
+   * @return CommandStatus
+   * @throws FileNotFoundException will be thrown if the destination is not a
+   * valid directory
+   */
+  public CommandStatus performDataDownloadDataTransferClient(String accessMethod, String digitalObjectID, File localDestination) throws FileNotFoundException {
+    return performDataDownloadDataTransferClient(accessMethod, digitalObjectID, localDestination, null);
+  }
+
+  /**
+   * This method can be used to download the actual digital data onto your local
+   * machine using Data Transfer Client The method uses WebDav protocol to
+   * download the data.
+   *
+   * @param accessMethod The accessmethod is the protocol that will be used to
+   * perform download for e.g. WebDav
+   * @param digitalObjectID The data identified by the digital object which will
+   * be downloaded
+   * @param localDestination The directory on the local machine where the data
+   * will be downloaded
+   * @param groupId The groupID the digital object belongs to.
+   *
+   * @return CommandStatus
+   * @throws FileNotFoundException will be thrown if the destination is not a
+   * valid directory
+   */
+  public CommandStatus performDataDownloadDataTransferClient(String accessMethod, String digitalObjectID, File localDestination, String groupId) throws FileNotFoundException {
+
+    LOGGER.debug("Performing data download for digital object identified by: " + digitalObjectID + " to data destination at path: " + localDestination.getAbsolutePath());
+    LOGGER.debug("User group: " + groupId);
+    if (!localDestination.isDirectory()) {
+      LOGGER.error("Invalid directory: " + localDestination.getAbsolutePath());
+      throw new FileNotFoundException(localDestination.getAbsolutePath());
+    }
+
+    CommandStatus commandStatus = new CommandStatus(Status.FAILED);
+    DownloadInformation dataToDownload = awaitDownload(prepareDataDownload(accessMethod, digitalObjectID, groupId), digitalObjectID);
+
+    if (dataToDownload != null) {
+      LOGGER.debug("Starting download for requested digital data: " + digitalObjectID);
+      AbstractFile downloadedContent = clientHelper.performDataDownloadDataTransferClient(accessMethod, dataToDownload, localDestination);
+      commandStatus.setReturnObject(downloadedContent);
+      commandStatus.setStatusCode(Status.SUCCESSFUL);
+    }
+    return commandStatus;
+  }
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.generic.helper;
+
+import java.util.Arrays;
+
+/**
+ * Compression of the entries of a bundle.
+ *
+ * @author hartmann-v
+ * @see FileBundler
+ */
+public enum BundleCompression {
+
+  /**
+   * Entries are stored without compression.
+   */
+  NONE,
+  /**
+   * Entries are compressed with deflate.
+   */
+  DEFLATE;
+
+  /**
+   * Get compression by its name. (case insensitive)
+   *
+   * @param pCompression name of the compression.
+   * @return compression.
+   * @throws IllegalArgumentException if compression is not supported.
+   */
+  public static BundleCompression fromString(String pCompression) throws IllegalArgumentException {
+    for (BundleCompression compression : values()) {
+      if (compression.name().equalsIgnoreCase(pCompression)) {
+        return compression;
+      }
+    }
+    throw new IllegalArgumentException(String.format("Unknown compression '%s'! Supported compressions: %s", pCompression, Arrays.toString(values())));
+  }
+}
@@ -0,0 +1,546 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.generic.helper;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Upload very large files via WebDAV in parts. Each part is a range of the
+ * file written with a partial PUT (header 'Content-Range'). The parts of a file
+ * are uploaded in parallel and retried on their own. (see {@link RetryPolicy})
+ * Afterwards each part is read back with a range request and compared with the
+ * MD5 checksum calculated during its upload. (see {@link TransferChannels})
+ * Corrupt parts are uploaded again one after another.
+ * Verified parts are recorded in the journal. Therefore a resumed ingest
+ * uploads only the missing parts.
+ * <br/>
+ * Support of partial PUT is probed with the last part of the first file: If
+ * the server rejects the range (HTTP status 400, 405 or 501) or ignores it
+ * (the remote file doesn't get the size of the local file) {@link #upload(File, long, long, URL, IngestJournal)}
+ * returns false and the file has to be uploaded as a whole.
+ * <br/> Example:
+ * <pre>
+ * {@code
+ *  try (ChunkedWebDavUploader uploader = new ChunkedWebDavUploader(ChunkedWebDavUploader.DEFAULT_PART_SIZE, 8, RetryPolicy.newTransferPolicy())) {
+ *    if (!uploader.upload(file, file.length(), file.lastModified(), remoteDirectory, journal)) {
+ *      // upload file as a whole
+ *    }
+ *  }
+ * }
+ * </pre>
+ *
+ * @author hartmann-v
+ */
+public class ChunkedWebDavUploader implements Closeable {
+
+  /**
+   * The logger
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(ChunkedWebDavUploader.class);
+  /**
+   * Default size of a part in bytes.
+   */
+  public static final long DEFAULT_PART_SIZE = 64L * 1024 * 1024;
+  /**
+   * Name of the endpoint for uploads of parts.
+   */
+  private static final String UPLOAD_PART = "webdav.part";
+  /**
+   * Maximum number of rounds uploading corrupt parts again.
+   */
+  private static final int MAX_REPAIR_ROUNDS = 3;
+  /**
+   * HTTP status of servers rejecting partial PUT. (e.g. 400 for Apache
+   * mod_dav)
+   */
+  private static final List<Integer> PARTIAL_PUT_REJECTED = Collections.unmodifiableList(Arrays.asList(
+          HttpURLConnection.HTTP_BAD_REQUEST, HttpURLConnection.HTTP_BAD_METHOD, HttpURLConnection.HTTP_NOT_IMPLEMENTED));
+  /**
+   * Algorithm for the checksum of a part.
+   */
+  private static final String CHECKSUM_ALGORITHM = "MD5";
+  /**
+   * Size of a part in bytes.
+   */
+  private final long partSize;
+  /**
+   * Policy for retrying failed uploads of parts.
+   */
+  private final RetryPolicy retryPolicy;
+  /**
+   * Value of the header 'Authorization' (null if no credentials available).
+   */
+  private final String authorization;
+  /**
+   * Executor uploading and verifying parts.
+   */
+  private final ExecutorService executor;
+  /**
+   * Server supports partial PUT. (Set to false after failed probe.)
+   */
+  private volatile boolean partialPutSupported = true;
+  /**
+   * Server supports range requests. (Set to false if server ignores range.)
+   */
+  private volatile boolean rangeRequestsSupported = true;
+
+  /**
+   * Range of a file.
+   */
+  private static final class Part {
+
+    /**
+     * Offset of the first byte.
+     */
+    private final long offset;
+    /**
+     * Length in bytes.
+     */
+    private final long length;
+    /**
+     * Checksum calculated during upload. (null before upload)
+     */
+    private String checksum;
+
+    /**
+     * Constructor.
+     *
+     * @param pOffset offset of the first byte.
+     * @param pLength length in bytes.
+     */
+    Part(long pOffset, long pLength) {
+      offset = pOffset;
+      length = pLength;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("bytes %d-%d", offset, offset + length - 1);
+    }
+  }
+
+  /**
+   * Server rejected a partial PUT.
+   */
+  private static final class PartialPutRejectedException extends WebDavStatusException {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructor.
+     *
+     * @param pMessage message.
+     * @param pStatus HTTP status of the response.
+     */
+    PartialPutRejectedException(String pMessage, int pStatus) {
+      super(pMessage, pStatus);
+    }
+  }
+
+  /**
+   * Operation executed for a single part.
+   */
+  @FunctionalInterface
+  private interface PartOperation {
+
+    /**
+     * Execute operation.
+     *
+     * @param pPart part of the file.
+     * @return true if operation was successful.
+     * @throws IOException if operation failed.
+     * @throws InterruptedException if operation was interrupted.
+     */
+    boolean execute(Part pPart) throws IOException, InterruptedException;
+  }
+
+  /**
+   * Constructor. The credentials are read from the properties of the client.
+   * (see {@link edu.kit.dama.rest.client.DataManagerPropertiesImpl#getDefaultInstance()})
+   *
+   * @param pPartSize size of a part in bytes.
+   * @param pParallelParts number of parts uploaded in parallel.
+   * @param pRetryPolicy policy for retrying failed uploads of parts.
+   */
+  public ChunkedWebDavUploader(long pPartSize, int pParallelParts, RetryPolicy pRetryPolicy) {
+    if (pPartSize < 1) {
+      throw new IllegalArgumentException("Size of a part has to be positive!");
+    }
+    if (pParallelParts < 1) {
+      throw new IllegalArgumentException("Number of parallel parts has to be positive!");
+    }
+    if (pRetryPolicy == null) {
+      throw new IllegalArgumentException("Retry policy must not be null!");
+    }
+    partSize = pPartSize;
+    retryPolicy = pRetryPolicy;
+    authorization = WebDavRequests.getAuthorization();
+    AtomicInteger threadNumber = new AtomicInteger();
+    executor = Executors.newFixedThreadPool(pParallelParts, (runnable) -> {
+      Thread thread = new Thread(runnable, "webdav-part-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Upload the given file in parts to the remote directory. Parts already
+   * recorded in the journal are skipped.
+   *
+   * @param pFile local file.
+   * @param pSize size of the file.
+   * @param pLastModified last modification of the file.
+   * @param pRemoteDirectory URL of the remote directory.
+   * @param pJournal journal of the ingest (may be null).
+   * @return true if file was uploaded, false if the server doesn't support
+   * partial PUT.
+   * @throws IOException if upload of a part failed after all trials.
+   * @throws InterruptedException if upload was interrupted.
+   */
+  public boolean upload(File pFile, long pSize, long pLastModified, URL pRemoteDirectory, IngestJournal pJournal) throws IOException, InterruptedException {
+    if (!partialPutSupported) {
+      return false;
+    }
+    URL remoteFile = WebDavRequests.resolve(pRemoteDirectory, pFile.getName());
+    Map<Long, Long> uploadedParts = (pJournal != null) ? pJournal.getUploadedParts(pFile, pSize, pLastModified) : Collections.emptyMap();
+    List<Part> pendingParts = new ArrayList<>();
+    for (long offset = 0; offset < pSize; offset += partSize) {
+      long length = Math.min(partSize, pSize - offset);
+      if (!Long.valueOf(length).equals(uploadedParts.get(offset))) {
+        pendingParts.add(new Part(offset, length));
+      }
+    }
+    LOGGER.debug("Uploading '{}' in {} part(s). {} part(s) already uploaded.", pFile.getAbsolutePath(), pendingParts.size(), uploadedParts.size());
+    List<Part> partsToUpload = new ArrayList<>(pendingParts);
+    if (uploadedParts.isEmpty() && !partsToUpload.isEmpty()) {
+      // <editor-fold defaultstate="collapsed" desc="Probe partial PUT with last part">
+      delete(remoteFile);
+      Part lastPart = partsToUpload.remove(partsToUpload.size() - 1);
+      AtomicBoolean rejected = new AtomicBoolean();
+      if (!uploadWithRetries(pFile, remoteFile, pSize, lastPart, rejected)) {
+        throw new IOException("Upload of " + lastPart + " of '" + pFile.getAbsolutePath() + "' failed!");
+      }
+      if (rejected.get()) {
+        LOGGER.warn("Server doesn't support partial PUT! (Range rejected for '{}') Files are uploaded as a whole.", remoteFile);
+        partialPutSupported = false;
+        return false;
+      }
+      long remoteSize = getRemoteSize(remoteFile);
+      if (remoteSize != pSize) {
+        LOGGER.warn("Server doesn't support partial PUT! (Size of '{}': {} instead of {}) Files are uploaded as a whole.", remoteFile, remoteSize, pSize);
+        partialPutSupported = false;
+        return false;
+      }
+      // </editor-fold>
+    }
+    List<Part> failedParts = executeParallel(partsToUpload, (part) -> uploadWithRetries(pFile, remoteFile, pSize, part));
+    List<Part> uploadedPendingParts = new ArrayList<>(pendingParts);
+    uploadedPendingParts.removeAll(failedParts);
+    // <editor-fold defaultstate="collapsed" desc="Verify parts and upload corrupt parts again">
+    List<Part> corruptParts = executeParallel(uploadedPendingParts, (part) -> verify(remoteFile, part));
+    for (int round = 1; !corruptParts.isEmpty() && (round <= MAX_REPAIR_ROUNDS); round++) {
+      // Some servers rewrite the whole file for each partial PUT. Parallel
+      // uploads may overwrite each other. Therefore repair one by one.
+      LOGGER.warn("Round #{}: {} corrupt part(s) of '{}'. Upload them again one by one.", round, corruptParts.size(), pFile.getAbsolutePath());
+      List<Part> repairedParts = new ArrayList<>();
+      for (Part part : corruptParts) {
+        if (uploadWithRetries(pFile, remoteFile, pSize, part)) {
+          repairedParts.add(part);
+        }
+      }
+      corruptParts.removeAll(repairedParts);
+      corruptParts.addAll(executeParallel(repairedParts, (part) -> verify(remoteFile, part)));
+    }
+    // </editor-fold>
+    uploadedPendingParts.removeAll(corruptParts);
+    journalParts(pJournal, pFile, pSize, pLastModified, uploadedPendingParts);
+    if (!failedParts.isEmpty() || !corruptParts.isEmpty()) {
+      throw new IOException(String.format("%d of %d part(s) of '%s' failed to upload!", failedParts.size() + corruptParts.size(), pendingParts.size(), pFile.getAbsolutePath()));
+    }
+    long remoteSize = getRemoteSize(remoteFile);
+    if (remoteSize != pSize) {
+      throw new IOException(String.format("Size of '%s' is %d instead of %d!", remoteFile, remoteSize, pSize));
+    }
+    LOGGER.trace("Uploaded '{}' in {} part(s) to '{}'", pFile.getAbsolutePath(), pendingParts.size(), remoteFile);
+    return true;
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Execute operation for all parts in parallel.
+   *
+   * @param pParts parts of the file.
+   * @param pOperation operation executed for each part.
+   * @return all parts the operation failed for.
+   * @throws InterruptedException if execution was interrupted.
+   */
+  private List<Part> executeParallel(List<Part> pParts, PartOperation pOperation) throws InterruptedException {
+    List<Future<Boolean>> results = new ArrayList<>();
+    for (Part part : pParts) {
+      results.add(executor.submit(() -> pOperation.execute(part)));
+    }
+    List<Part> failedParts = new ArrayList<>();
+    try {
+      for (int index = 0; index < results.size(); index++) {
+        boolean successful;
+        try {
+          successful = results.get(index).get();
+        } catch (ExecutionException ex) {
+          LOGGER.warn("Error processing " + pParts.get(index) + "!", ex.getCause());
+          successful = false;
+        }
+        if (!successful) {
+          failedParts.add(pParts.get(index));
+        }
+      }
+    } catch (InterruptedException ie) {
+      for (Future<Boolean> result : results) {
+        result.cancel(true);
+      }
+      throw ie;
+    }
+    return failedParts;
+  }
+
+  /**
+   * Upload a part. The upload is retried according to the retry policy.
+   *
+   * @param pFile local file.
+   * @param pRemoteFile URL of the remote file.
+   * @param pTotalSize size of the file.
+   * @param pPart part of the file.
+   * @return true if part was uploaded.
+   * @throws InterruptedException if upload was interrupted.
+   */
+  private boolean uploadWithRetries(File pFile, URL pRemoteFile, long pTotalSize, Part pPart) throws InterruptedException {
+    return uploadWithRetries(pFile, pRemoteFile, pTotalSize, pPart, null);
+  }
+
+  /**
+   * Upload a part. The upload is retried according to the retry policy. If
+   * the server rejects partial PUT the upload is not retried.
+   *
+   * @param pFile local file.
+   * @param pRemoteFile URL of the remote file.
+   * @param pTotalSize size of the file.
+   * @param pPart part of the file.
+   * @param pRejected set to true if the server rejects partial PUT. (null:
+   * rejection is a failure)
+   * @return true if part was uploaded or partial PUT was rejected.
+   * @throws InterruptedException if upload was interrupted.
+   */
+  private boolean uploadWithRetries(File pFile, URL pRemoteFile, long pTotalSize, Part pPart, AtomicBoolean pRejected) throws InterruptedException {
+    Exception failure = retryPolicy.executeTransfer(UPLOAD_PART, () -> {
+      try {
+        uploadPart(pFile, pRemoteFile, pTotalSize, pPart);
+        return null;
+      } catch (PartialPutRejectedException ex) {
+        if (pRejected != null) {
+          pRejected.set(true);
+          return null;
+        }
+        LOGGER.warn("Upload failed for " + pPart + " of '" + pFile.getAbsolutePath() + "'", ex);
+        return ex;
+      } catch (IOException ex) {
+        LOGGER.warn("Upload failed for " + pPart + " of '" + pFile.getAbsolutePath() + "'", ex);
+        return ex;
+      }
+    });
+    if (Thread.currentThread().isInterrupted()) {
+      throw new InterruptedException();
+    }
+    return failure == null;
+  }
+
+  /**
+   * Upload a part with a partial PUT. The checksum of the part is calculated
+   * while uploading.
+   *
+   * @param pFile local file.
+   * @param pRemoteFile URL of the remote file.
+   * @param pTotalSize size of the file.
+   * @param pPart part of the file.
+   * @throws IOException if upload failed.
+   */
+  private void uploadPart(File pFile, URL pRemoteFile, long pTotalSize, Part pPart) throws IOException {
+    MessageDigest digest = newDigest();
+    HttpURLConnection connection = WebDavRequests.open(pRemoteFile, "PUT", authorization);
+    connection.setDoOutput(true);
+    connection.setFixedLengthStreamingMode(pPart.length);
+    connection.setRequestProperty("Content-Type", "application/octet-stream");
+    connection.setRequestProperty("Content-Range", String.format("bytes %d-%d/%d", pPart.offset, pPart.offset + pPart.length - 1, pTotalSize));
+    try (FileChannel channel = FileChannel.open(pFile.toPath(), StandardOpenOption.READ);
+            WritableByteChannel output = Channels.newChannel(connection.getOutputStream())) {
+      TransferChannels.copy(channel, pPart.offset, pPart.length, output, digest);
+    }
+    int status = WebDavRequests.getResponseCode(connection);
+    if (PARTIAL_PUT_REJECTED.contains(status)) {
+      throw new PartialPutRejectedException(String.format("Upload of %s rejected!", pPart), status);
+    }
+    if ((status / 100) != 2) {
+      throw new WebDavStatusException(String.format("Upload of %s failed!", pPart), status);
+    }
+    pPart.checksum = toHex(digest.digest());
+  }
+
+  /**
+   * Verify a part by reading it back with a range request. If the server
+   * doesn't support range requests the part can't be verified.
+   *
+   * @param pRemoteFile URL of the remote file.
+   * @param pPart part of the file.
+   * @return true if remote part matches the checksum.
+   * @throws IOException if part couldn't be read.
+   */
+  private boolean verify(URL pRemoteFile, Part pPart) throws IOException {
+    if (!rangeRequestsSupported) {
+      return true;
+    }
+    HttpURLConnection connection = WebDavRequests.open(pRemoteFile, "GET", authorization);
+    connection.setRequestProperty("Range", String.format("bytes=%d-%d", pPart.offset, pPart.offset + pPart.length - 1));
+    int status = connection.getResponseCode();
+    if (status == HttpURLConnection.HTTP_OK) {
+      // Range ignored. Don't read the whole file.
+      connection.disconnect();
+      rangeRequestsSupported = false;
+      LOGGER.warn("Server doesn't support range requests! Parts of '{}' can't be verified.", pRemoteFile);
+      return true;
+    }
+    if (status != HttpURLConnection.HTTP_PARTIAL) {
+      WebDavRequests.getResponseCode(connection);
+      throw new WebDavStatusException(String.format("Reading %s of '%s' failed!", pPart, pRemoteFile), status);
+    }
+    MessageDigest digest = newDigest();
+    long bytesTotal;
+    try (ReadableByteChannel input = Channels.newChannel(connection.getInputStream())) {
+      bytesTotal = TransferChannels.digest(input, digest);
+    }
+    boolean valid = (bytesTotal == pPart.length) && toHex(digest.digest()).equals(pPart.checksum);
+    if (!valid) {
+      LOGGER.warn("Checksum of {} of '{}' doesn't match!", pPart, pRemoteFile);
+    }
+    return valid;
+  }
+
+  /**
+   * Get size of the remote file.
+   *
+   * @param pRemoteFile URL of the remote file.
+   * @return size in bytes.
+   * @throws IOException if size couldn't be determined.
+   */
+  private long getRemoteSize(URL pRemoteFile) throws IOException {
+    HttpURLConnection connection = WebDavRequests.open(pRemoteFile, "HEAD", authorization);
+    int status = WebDavRequests.getResponseCode(connection);
+    if (status != HttpURLConnection.HTTP_OK) {
+      throw new WebDavStatusException(String.format("Unable to determine size of '%s'!", pRemoteFile), status);
+    }
+    return connection.getContentLengthLong();
+  }
+
+  /**
+   * Delete remote file if it exists. (e.g. from an aborted upload)
+   *
+   * @param pRemoteFile URL of the remote file.
+   * @throws IOException if file couldn't be deleted.
+   */
+  private void delete(URL pRemoteFile) throws IOException {
+    HttpURLConnection connection = WebDavRequests.open(pRemoteFile, "DELETE", authorization);
+    int status = WebDavRequests.getResponseCode(connection);
+    if (((status / 100) != 2) && (status != HttpURLConnection.HTTP_NOT_FOUND)) {
+      throw new WebDavStatusException(String.format("Unable to delete '%s'!", pRemoteFile), status);
+    }
+  }
+
+  /**
+   * Record verified parts in the journal.
+   *
+   * @param pJournal journal of the ingest (may be null).
+   * @param pFile local file.
+   * @param pSize size of the file.
+   * @param pLastModified last modification of the file.
+   * @param pParts verified parts.
+   */
+  private static void journalParts(IngestJournal pJournal, File pFile, long pSize, long pLastModified, List<Part> pParts) {
+    if (pJournal != null) {
+      try {
+        for (Part part : pParts) {
+          pJournal.partUploaded(pFile, pSize, pLastModified, part.offset, part.length, part.checksum);
+        }
+      } catch (IOException ex) {
+        LOGGER.warn("Unable to record parts of '" + pFile.getAbsolutePath() + "' in journal!", ex);
+      }
+    }
+  }
+
+  /**
+   * Create new digest for checksums.
+   *
+   * @return digest.
+   */
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance(CHECKSUM_ALGORITHM);
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  /**
+   * Convert checksum to hex string.
+   *
+   * @param pDigest checksum.
+   * @return hex string.
+   */
+  private static String toHex(byte[] pDigest) {
+    StringBuilder hex = new StringBuilder();
+    for (byte value : pDigest) {
+      hex.append(String.format("%02x", value));
+    }
+    return hex.toString();
+  }
+}
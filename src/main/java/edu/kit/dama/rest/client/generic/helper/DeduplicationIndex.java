@@ -0,0 +1,277 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.generic.helper;
+
+import edu.kit.dama.rest.client.DataManagerPropertiesImpl;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Local append-only index of the content of all files already ingested for a
+ * group. The index maps the SHA-256 hash of the content to the first digital
+ * object (and relative path) holding a file with this content.
+ * <br/>
+ * The indices are stored in the directory 'dedup' inside the home directory of
+ * the client. (see {@link DataManagerPropertiesImpl#getHomeDir()}) Each line
+ * holds one entry. Fields are separated by tabs:
+ * <ul>
+ * <li>&lt;SHA-256&gt; &lt;digital object id&gt; &lt;path&gt;</li>
+ * </ul>
+ * All indices of the same group opened in one JVM (e.g. parallel ingests)
+ * share the entries and one writer. Therefore lines of parallel ingests never
+ * interleave and contents ingested by one of them are known to all others.
+ * The index file is closed with the last index of the group.
+ *
+ * @author hartmann-v
+ */
+public final class DeduplicationIndex implements Closeable {
+
+  /**
+   * The logger
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(DeduplicationIndex.class);
+  /**
+   * Name of the directory holding all indices.
+   */
+  private static final String INDEX_DIR = "dedup";
+  /**
+   * Suffix of the file name of an index.
+   */
+  private static final String INDEX_SUFFIX = ".index";
+  /**
+   * Separator of the fields.
+   */
+  private static final String SEPARATOR = "\t";
+  /**
+   * Group used by KIT Data Manager if no group is given.
+   */
+  private static final String DEFAULT_GROUP = "USERS";
+  /**
+   * All open index files. (key: real path of the index file)
+   */
+  private static final Map<Path, IndexFile> OPEN_INDEX_FILES = new HashMap<>();
+  /**
+   * Index file shared by all indices of the group.
+   */
+  private final IndexFile indexFile;
+  /**
+   * Index closed or not.
+   */
+  private boolean closed = false;
+
+  /**
+   * Content and writer of an index file shared by all indices of a group.
+   */
+  private static final class IndexFile {
+
+    /**
+     * Path of the index file.
+     */
+    private final Path path;
+    /**
+     * Origin of all known contents. (key: hash, value: digital object id and
+     * path)
+     */
+    private final Map<String, String[]> origins = new HashMap<>();
+    /**
+     * Writer appending to the index.
+     */
+    private BufferedWriter writer;
+    /**
+     * Number of open indices using this file.
+     */
+    private int users = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param pPath path of the index file.
+     */
+    IndexFile(Path pPath) {
+      path = pPath;
+    }
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param pIndexFile index file shared by all indices of the group.
+   */
+  private DeduplicationIndex(IndexFile pIndexFile) {
+    indexFile = pIndexFile;
+  }
+
+  /**
+   * Open the index of the given group. If there is no index yet a new one will
+   * be created.
+   *
+   * @param pGroupId id of the group. (null for the default group)
+   * @return index of the group.
+   * @throws IOException if index couldn't be read or created.
+   */
+  public static DeduplicationIndex open(String pGroupId) throws IOException {
+    Path indexDir = new File(DataManagerPropertiesImpl.getHomeDir(), INDEX_DIR).toPath();
+    Files.createDirectories(indexDir);
+    String groupId = (pGroupId != null) ? pGroupId : DEFAULT_GROUP;
+    Path path = indexDir.toRealPath().resolve(encode(groupId) + INDEX_SUFFIX);
+    synchronized (OPEN_INDEX_FILES) {
+      IndexFile indexFile = OPEN_INDEX_FILES.get(path);
+      if (indexFile == null) {
+        indexFile = new IndexFile(path);
+        if (Files.exists(path)) {
+          read(indexFile);
+        }
+        indexFile.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        OPEN_INDEX_FILES.put(path, indexFile);
+      }
+      indexFile.users++;
+      LOGGER.debug("Deduplication index for group '{}' holds {} content(s).", groupId, indexFile.origins.size());
+      return new DeduplicationIndex(indexFile);
+    }
+  }
+
+  /**
+   * Get the origin of the given content.
+   *
+   * @param pHash SHA-256 hash of the content.
+   * @return digital object id and path of the first file with this content or
+   * null if content is unknown.
+   */
+  public String getOrigin(String pHash) {
+    synchronized (indexFile) {
+      String[] origin = indexFile.origins.get(pHash);
+      return (origin != null) ? origin[0] + ":" + origin[1] : null;
+    }
+  }
+
+  /**
+   * Record the content of an ingested file. Already known contents are
+   * ignored.
+   *
+   * @param pHash SHA-256 hash of the content.
+   * @param pDigitalObjectId digital object holding the file.
+   * @param pPath relative path of the file inside the digital object.
+   * @throws IOException if index couldn't be written.
+   * @throws IllegalStateException if index is already closed.
+   */
+  public void add(String pHash, String pDigitalObjectId, String pPath) throws IOException {
+    synchronized (indexFile) {
+      if (closed) {
+        throw new IllegalStateException("Deduplication index '" + indexFile.path + "' is closed!");
+      }
+      if (!indexFile.origins.containsKey(pHash)) {
+        indexFile.origins.put(pHash, new String[]{pDigitalObjectId, pPath});
+        indexFile.writer.write(pHash + SEPARATOR + encode(pDigitalObjectId) + SEPARATOR + encode(pPath));
+        indexFile.writer.newLine();
+      }
+    }
+  }
+
+  /**
+   * Close the index. The index file is closed with the last index of the
+   * group. Otherwise the entries are only flushed.
+   */
+  @Override
+  public void close() {
+    synchronized (OPEN_INDEX_FILES) {
+      synchronized (indexFile) {
+        if (closed) {
+          return;
+        }
+        closed = true;
+        try {
+          if (--indexFile.users == 0) {
+            OPEN_INDEX_FILES.remove(indexFile.path);
+            indexFile.writer.close();
+          } else {
+            indexFile.writer.flush();
+          }
+        } catch (IOException ex) {
+          LOGGER.warn("Unable to close deduplication index '" + indexFile.path + "'!", ex);
+        }
+      }
+    }
+  }
+
+  /**
+   * Read existing index. Incomplete entries (e.g. last line after a crash) are
+   * ignored.
+   *
+   * @param pIndexFile index file.
+   * @throws IOException if index couldn't be read.
+   */
+  private static void read(IndexFile pIndexFile) throws IOException {
+    Path indexFile = pIndexFile.path;
+    Map<String, String[]> origins = pIndexFile.origins;
+    try (BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] entry = line.split(SEPARATOR);
+        if (entry.length != 3) {
+          LOGGER.warn("Invalid entry in deduplication index '{}': {}", indexFile, line);
+          continue;
+        }
+        try {
+          origins.putIfAbsent(entry[0], new String[]{decode(entry[1]), decode(entry[2])});
+        } catch (IllegalArgumentException iae) {
+          LOGGER.warn("Invalid entry in deduplication index '{}': {}", indexFile, line);
+        }
+      }
+    }
+  }
+
+  /**
+   * Encode field to avoid separators inside.
+   *
+   * @param pValue value of the field.
+   * @return encoded value.
+   */
+  private static String encode(String pValue) {
+    try {
+      return URLEncoder.encode(pValue, StandardCharsets.UTF_8.name());
+    } catch (UnsupportedEncodingException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  /**
+   * Decode field.
+   *
+   * @param pValue encoded value of the field.
+   * @return decoded value.
+   */
+  private static String decode(String pValue) {
+    try {
+      return URLDecoder.decode(pValue, StandardCharsets.UTF_8.name());
+    } catch (UnsupportedEncodingException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+}
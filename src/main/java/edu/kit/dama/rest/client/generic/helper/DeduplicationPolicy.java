@@ -0,0 +1,56 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.generic.helper;
+
+import java.util.Arrays;
+
+/**
+ * Policy for files already ingested with the same content.
+ *
+ * @author hartmann-v
+ * @see Deduplicator
+ */
+public enum DeduplicationPolicy {
+
+  /**
+   * No deduplication. Files are not hashed before upload.
+   */
+  OFF,
+  /**
+   * Report duplicates but upload them anyway.
+   */
+  REPORT,
+  /**
+   * Report duplicates and skip their upload.
+   */
+  SKIP;
+
+  /**
+   * Get policy by its name. (case insensitive)
+   *
+   * @param pPolicy name of the policy.
+   * @return policy.
+   * @throws IllegalArgumentException if policy is not supported.
+   */
+  public static DeduplicationPolicy fromString(String pPolicy) throws IllegalArgumentException {
+    for (DeduplicationPolicy policy : values()) {
+      if (policy.name().equalsIgnoreCase(pPolicy)) {
+        return policy;
+      }
+    }
+    throw new IllegalArgumentException(String.format("Unknown deduplication policy '%s'! Supported policies: %s", pPolicy, Arrays.toString(values())));
+  }
+}
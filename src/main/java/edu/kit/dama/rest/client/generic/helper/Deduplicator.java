@@ -0,0 +1,241 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.generic.helper;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Find files of an ingest whose content was already ingested for the same
+ * group. All files of the {@link DirectoryManifest} are hashed (SHA-256) in
+ * parallel on all cores. The hashes are looked up in the {@link DeduplicationIndex} of
+ * the group. Depending on the {@link DeduplicationPolicy} duplicates are only
+ * reported or skipped during upload. After a successful ingest the content of
+ * all uploaded files is added to the index.
+ * <br/> Example:
+ * <pre>
+ * {@code
+ *  try (Deduplicator deduplicator = Deduplicator.scan(DeduplicationPolicy.SKIP, groupId, digitalObjectId, manifest)) {
+ *    uploader.upload(manifest, remoteLocation, journal, deduplicator::isSkipped);
+ *    deduplicator.ingestFinished();
+ *  }
+ * }
+ * </pre>
+ *
+ * @author hartmann-v
+ */
+public final class Deduplicator implements Closeable {
+
+  /**
+   * The logger
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(Deduplicator.class);
+  /**
+   * Algorithm for the hash of the content.
+   */
+  private static final String HASH_ALGORITHM = "SHA-256";
+  /**
+   * Number of threads hashing files.
+   */
+  private static final int HASH_THREADS = Runtime.getRuntime().availableProcessors();
+  /**
+   * Policy for duplicates.
+   */
+  private final DeduplicationPolicy policy;
+  /**
+   * Index of the group.
+   */
+  private final DeduplicationIndex index;
+  /**
+   * Digital object of the ingest.
+   */
+  private final String digitalObjectId;
+  /**
+   * Root directory of all relative paths.
+   */
+  private final Path rootDir;
+  /**
+   * Hash of each file of the ingest.
+   */
+  private final Map<File, String> hashes;
+  /**
+   * Files already ingested.
+   */
+  private final Set<File> duplicates = new HashSet<>();
+
+  /**
+   * Constructor.
+   *
+   * @param pPolicy policy for duplicates.
+   * @param pIndex index of the group.
+   * @param pDigitalObjectId digital object of the ingest.
+   * @param pRootDir root directory of all relative paths.
+   * @param pHashes hash of each file of the ingest.
+   */
+  private Deduplicator(DeduplicationPolicy pPolicy, DeduplicationIndex pIndex, String pDigitalObjectId, Path pRootDir, Map<File, String> pHashes) {
+    policy = pPolicy;
+    index = pIndex;
+    digitalObjectId = pDigitalObjectId;
+    rootDir = pRootDir;
+    hashes = pHashes;
+  }
+
+  /**
+   * Hash all files of the manifest and look for duplicates.
+   *
+   * @param pPolicy policy for duplicates. (not OFF)
+   * @param pGroupId group of the ingest.
+   * @param pDigitalObjectId digital object of the ingest.
+   * @param pManifest manifest of the local source.
+   * @return deduplicator holding the duplicates.
+   * @throws IOException if a file couldn't be read or index couldn't be
+   * opened.
+   */
+  public static Deduplicator scan(DeduplicationPolicy pPolicy, String pGroupId, String pDigitalObjectId, DirectoryManifest pManifest) throws IOException {
+    if (pPolicy == DeduplicationPolicy.OFF) {
+      throw new IllegalArgumentException("Deduplication is switched off!");
+    }
+    Path rootDir = pManifest.getRootDirectory().toPath();
+    long start = System.currentTimeMillis();
+    Map<File, String> hashes = hashAll(pManifest);
+    DeduplicationIndex index = DeduplicationIndex.open(pGroupId);
+    Deduplicator deduplicator = new Deduplicator(pPolicy, index, pDigitalObjectId, rootDir, hashes);
+    for (Map.Entry<File, String> entry : hashes.entrySet()) {
+      String origin = index.getOrigin(entry.getValue());
+      if (origin != null) {
+        deduplicator.duplicates.add(entry.getKey());
+        LOGGER.info("Duplicate: '{}' already ingested as '{}'{}", entry.getKey().getAbsolutePath(), origin,
+                (pPolicy == DeduplicationPolicy.SKIP) ? " -> skipped" : "");
+      }
+    }
+    LOGGER.debug("Hashed {} file(s) in {} ms. {} duplicate(s) found.", hashes.size(), System.currentTimeMillis() - start, deduplicator.duplicates.size());
+    return deduplicator;
+  }
+
+  /**
+   * Test if upload of the file should be skipped.
+   *
+   * @param pFile local file.
+   * @return true if file is a duplicate and policy is SKIP.
+   */
+  public boolean isSkipped(File pFile) {
+    return (policy == DeduplicationPolicy.SKIP) && duplicates.contains(pFile.getAbsoluteFile());
+  }
+
+  /**
+   * Get the number of duplicates found.
+   *
+   * @return number of duplicates.
+   */
+  public int getNoOfDuplicates() {
+    return duplicates.size();
+  }
+
+  /**
+   * Record the content of all uploaded files in the index. Should be called
+   * only after a successful ingest.
+   *
+   * @throws IOException if index couldn't be written.
+   */
+  public void ingestFinished() throws IOException {
+    for (Map.Entry<File, String> entry : hashes.entrySet()) {
+      if (!isSkipped(entry.getKey())) {
+        String path = rootDir.relativize(entry.getKey().toPath()).toString().replace(File.separatorChar, '/');
+        index.add(entry.getValue(), digitalObjectId, path);
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    index.close();
+  }
+
+  /**
+   * Hash all files of the manifest in parallel.
+   *
+   * @param pManifest manifest of the local source.
+   * @return hash of each file.
+   * @throws IOException if a file couldn't be read.
+   */
+  private static Map<File, String> hashAll(DirectoryManifest pManifest) throws IOException {
+    AtomicInteger threadNumber = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(HASH_THREADS, (runnable) -> {
+      Thread thread = new Thread(runnable, "dedup-hash-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    try {
+      Map<File, Future<String>> pendingHashes = new LinkedHashMap<>();
+      for (DirectoryManifest.Entry entry : pManifest.getFiles()) {
+        pendingHashes.put(entry.getFile(), executor.submit(() -> hash(entry.getFile().toPath())));
+      }
+      Map<File, String> hashes = new LinkedHashMap<>();
+      for (Map.Entry<File, Future<String>> entry : pendingHashes.entrySet()) {
+        hashes.put(entry.getKey(), entry.getValue().get());
+      }
+      return hashes;
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Hashing of '" + pManifest.getSource() + "' was interrupted!", ie);
+    } catch (ExecutionException ee) {
+      throw new IOException("Unable to hash content of '" + pManifest.getSource() + "'!", ee.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Calculate hash of the content of the given file.
+   *
+   * @param pFile local file.
+   * @return hash as hex string.
+   * @throws IOException if file couldn't be read.
+   */
+  static String hash(Path pFile) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance(HASH_ALGORITHM);
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IOException(ex);
+    }
+    try (FileChannel input = FileChannel.open(pFile, StandardOpenOption.READ)) {
+      TransferChannels.digest(input, digest);
+    }
+    StringBuilder hash = new StringBuilder();
+    for (byte value : digest.digest()) {
+      hash.append(String.format("%02x", value));
+    }
+    return hash.toString();
+  }
+}
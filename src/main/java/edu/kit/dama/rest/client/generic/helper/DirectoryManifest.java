@@ -0,0 +1,429 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.generic.helper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Immutable manifest of all directories and files of an ingest source. The
+ * source is scanned only once: Each directory is read via
+ * {@link Files#walkFileTree} with its {@link BasicFileAttributes} and all
+ * subdirectories are scanned in parallel using fork/join. The manifest holds
+ * path, size and last modification of each file as well as the totals and the
+ * earliest and latest modification. It is shared by the metadata of the
+ * digital object, the deduplication and the upload. Therefore no file has to
+ * be read from disk more than once.
+ * <br/>
+ * Symbolic links are followed. Links to a directory containing the link
+ * (loops) and all entries which are neither files nor directories (e.g.
+ * broken links) are skipped with a warning.
+ * <br/> Example:
+ * <pre>
+ * {@code
+ *  DirectoryManifest manifest = DirectoryManifest.scan(inputDir);
+ *  LOGGER.info("{} file(s) with {} bytes.", manifest.getNoOfFiles(), manifest.getTotalSize());
+ * }
+ * </pre>
+ *
+ * @author hartmann-v
+ */
+public final class DirectoryManifest {
+
+  /**
+   * The logger
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(DirectoryManifest.class);
+  /**
+   * Default number of directories scanned in parallel.
+   */
+  public static final int DEFAULT_PARALLELISM = Runtime.getRuntime().availableProcessors();
+  /**
+   * Local source of the ingest.
+   */
+  private final File source;
+  /**
+   * Root directory of the manifest. (source or parent of source if source is a
+   * file)
+   */
+  private final File rootDirectory;
+  /**
+   * All subdirectories sorted by depth. (parents first)
+   */
+  private final List<File> directories;
+  /**
+   * All files sorted by path.
+   */
+  private final List<Entry> files;
+  /**
+   * Sum of the sizes of all files.
+   */
+  private final long totalSize;
+  /**
+   * Last modification of the source.
+   */
+  private final long sourceLastModified;
+  /**
+   * Earliest modification of all files.
+   */
+  private final long minLastModified;
+  /**
+   * Latest modification of all files.
+   */
+  private final long maxLastModified;
+
+  /**
+   * Entry of a single file.
+   */
+  public static final class Entry {
+
+    /**
+     * Local file.
+     */
+    private final File file;
+    /**
+     * Size of the file in bytes.
+     */
+    private final long size;
+    /**
+     * Last modification of the file in milliseconds.
+     */
+    private final long lastModified;
+
+    /**
+     * Constructor.
+     *
+     * @param pFile local file.
+     * @param pAttributes attributes of the file.
+     */
+    Entry(File pFile, BasicFileAttributes pAttributes) {
+      file = pFile;
+      size = pAttributes.size();
+      lastModified = pAttributes.lastModifiedTime().toMillis();
+    }
+
+    /**
+     * Get local file.
+     *
+     * @return the file.
+     */
+    public File getFile() {
+      return file;
+    }
+
+    /**
+     * Get size of the file.
+     *
+     * @return size in bytes.
+     */
+    public long getSize() {
+      return size;
+    }
+
+    /**
+     * Get last modification of the file.
+     *
+     * @return last modification in milliseconds.
+     */
+    public long getLastModified() {
+      return lastModified;
+    }
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param pSource local source of the ingest.
+   * @param pSourceAttributes attributes of the source.
+   * @param pDirectories all subdirectories.
+   * @param pFiles all files.
+   */
+  private DirectoryManifest(File pSource, BasicFileAttributes pSourceAttributes, List<File> pDirectories, List<Entry> pFiles) {
+    source = pSource;
+    rootDirectory = pSourceAttributes.isDirectory() ? source : source.getParentFile();
+    sourceLastModified = pSourceAttributes.lastModifiedTime().toMillis();
+    directories = Collections.unmodifiableList(pDirectories);
+    files = Collections.unmodifiableList(pFiles);
+    long size = 0;
+    long min = Long.MAX_VALUE;
+    long max = Long.MIN_VALUE;
+    for (Entry entry : pFiles) {
+      size += entry.size;
+      min = Math.min(min, entry.lastModified);
+      max = Math.max(max, entry.lastModified);
+    }
+    totalSize = size;
+    minLastModified = pFiles.isEmpty() ? sourceLastModified : min;
+    maxLastModified = pFiles.isEmpty() ? sourceLastModified : max;
+  }
+
+  /**
+   * Scan the given source using the default parallelism.
+   *
+   * @param pSource local directory or file.
+   * @return manifest of the source.
+   * @throws IOException if source couldn't be read.
+   */
+  public static DirectoryManifest scan(File pSource) throws IOException {
+    return scan(pSource, DEFAULT_PARALLELISM);
+  }
+
+  /**
+   * Scan the given source. Subdirectories are scanned in parallel.
+   *
+   * @param pSource local directory or file.
+   * @param pParallelism maximum number of directories scanned in parallel.
+   * @return manifest of the source.
+   * @throws IOException if source couldn't be read.
+   */
+  public static DirectoryManifest scan(File pSource, int pParallelism) throws IOException {
+    long start = System.currentTimeMillis();
+    Path source = pSource.getAbsoluteFile().toPath();
+    BasicFileAttributes sourceAttributes = Files.readAttributes(source, BasicFileAttributes.class);
+    Queue<File> directories = new ConcurrentLinkedQueue<>();
+    Queue<Entry> files = new ConcurrentLinkedQueue<>();
+    if (sourceAttributes.isDirectory()) {
+      ForkJoinPool pool = new ForkJoinPool(pParallelism);
+      try {
+        pool.invoke(new ScanTask(source, Collections.singletonList(getDirectoryKey(source, sourceAttributes)), directories, files));
+      } catch (UncheckedIOException ex) {
+        throw ex.getCause();
+      } finally {
+        pool.shutdownNow();
+      }
+    } else {
+      files.add(new Entry(source.toFile(), sourceAttributes));
+    }
+    List<File> sortedDirectories = new ArrayList<>(directories);
+    sortedDirectories.sort(Comparator.comparingInt((File directory) -> directory.toPath().getNameCount()).thenComparing(File::getPath));
+    List<Entry> sortedFiles = new ArrayList<>(files);
+    sortedFiles.sort(Comparator.comparing((Entry entry) -> entry.file.getPath()));
+    DirectoryManifest manifest = new DirectoryManifest(source.toFile(), sourceAttributes, sortedDirectories, sortedFiles);
+    LOGGER.debug("Scanned '{}' in {} ms: {} directories, {} file(s), {} bytes.", source, System.currentTimeMillis() - start,
+            sortedDirectories.size(), sortedFiles.size(), manifest.totalSize);
+    return manifest;
+  }
+
+  /**
+   * Get key identifying a directory independent of the path it is reached by.
+   *
+   * @param pDirectory path of the directory.
+   * @param pAttributes attributes of the directory.
+   * @return file key (e.g. inode) or real path if the file system doesn't
+   * provide file keys.
+   * @throws IOException if real path couldn't be determined.
+   */
+  private static Object getDirectoryKey(Path pDirectory, BasicFileAttributes pAttributes) throws IOException {
+    Object fileKey = pAttributes.fileKey();
+    return (fileKey != null) ? fileKey : pDirectory.toRealPath();
+  }
+
+  /**
+   * Get local source of the ingest.
+   *
+   * @return absolute path of the source.
+   */
+  public File getSource() {
+    return source;
+  }
+
+  /**
+   * Get root directory. All paths are relative to this directory.
+   *
+   * @return the source if it's a directory or the parent of the source.
+   */
+  public File getRootDirectory() {
+    return rootDirectory;
+  }
+
+  /**
+   * Get all subdirectories of the source. Parents are listed before their
+   * children.
+   *
+   * @return unmodifiable list of directories.
+   */
+  public List<File> getDirectories() {
+    return directories;
+  }
+
+  /**
+   * Get all files sorted by path.
+   *
+   * @return unmodifiable list of files.
+   */
+  public List<Entry> getFiles() {
+    return files;
+  }
+
+  /**
+   * Get all files sorted by size. Largest files first.
+   *
+   * @return new list of files.
+   */
+  public List<Entry> getFilesLargestFirst() {
+    List<Entry> largestFirst = new ArrayList<>(files);
+    largestFirst.sort((entry1, entry2) -> Long.compare(entry2.size, entry1.size));
+    return largestFirst;
+  }
+
+  /**
+   * Get number of files.
+   *
+   * @return number of files.
+   */
+  public int getNoOfFiles() {
+    return files.size();
+  }
+
+  /**
+   * Get sum of the sizes of all files.
+   *
+   * @return size in bytes.
+   */
+  public long getTotalSize() {
+    return totalSize;
+  }
+
+  /**
+   * Get last modification of the source itself.
+   *
+   * @return last modification in milliseconds.
+   */
+  public long getSourceLastModified() {
+    return sourceLastModified;
+  }
+
+  /**
+   * Get earliest modification of all files.
+   *
+   * @return last modification in milliseconds. (last modification of source if
+   * there are no files)
+   */
+  public long getMinLastModified() {
+    return minLastModified;
+  }
+
+  /**
+   * Get latest modification of all files.
+   *
+   * @return last modification in milliseconds. (last modification of source if
+   * there are no files)
+   */
+  public long getMaxLastModified() {
+    return maxLastModified;
+  }
+
+  /**
+   * Task scanning one directory. Each subdirectory is scanned by a forked
+   * task.
+   */
+  private static final class ScanTask extends RecursiveAction {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+    /**
+     * Directory to scan.
+     */
+    private final Path directory;
+    /**
+     * Keys of the directory and all its parents. (see
+     * {@link DirectoryManifest#getDirectoryKey(Path, BasicFileAttributes)})
+     */
+    private final List<Object> directoryKeys;
+    /**
+     * Collector of all directories.
+     */
+    private final Queue<File> directories;
+    /**
+     * Collector of all files.
+     */
+    private final Queue<Entry> files;
+
+    /**
+     * Constructor.
+     *
+     * @param pDirectory directory to scan.
+     * @param pDirectoryKeys keys of the directory and all its parents.
+     * @param pDirectories collector of all directories.
+     * @param pFiles collector of all files.
+     */
+    ScanTask(Path pDirectory, List<Object> pDirectoryKeys, Queue<File> pDirectories, Queue<Entry> pFiles) {
+      directory = pDirectory;
+      directoryKeys = pDirectoryKeys;
+      directories = pDirectories;
+      files = pFiles;
+    }
+
+    @Override
+    protected void compute() {
+      List<ScanTask> subTasks = new ArrayList<>();
+      try {
+        // Depth 1: Entries of the directory are visited with their attributes.
+        // Loops can't be detected by the walk itself. Therefore the keys of
+        // all parents are passed to the subtasks.
+        Files.walkFileTree(directory, EnumSet.of(FileVisitOption.FOLLOW_LINKS), 1, new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult visitFile(Path pPath, BasicFileAttributes pAttributes) throws IOException {
+            if (pAttributes.isDirectory()) {
+              Object key = getDirectoryKey(pPath, pAttributes);
+              if (directoryKeys.contains(key)) {
+                LOGGER.warn("Skipping '{}': Link to a parent directory. (loop)", pPath);
+              } else {
+                List<Object> keys = new ArrayList<>(directoryKeys);
+                keys.add(key);
+                directories.add(pPath.toFile());
+                subTasks.add(new ScanTask(pPath, keys, directories, files));
+              }
+            } else if (pAttributes.isRegularFile()) {
+              files.add(new Entry(pPath.toFile(), pAttributes));
+            } else {
+              LOGGER.warn("Skipping '{}': Neither a file nor a directory. (e.g. broken link)", pPath);
+            }
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFileFailed(Path pPath, IOException pException) throws IOException {
+            throw pException;
+          }
+        });
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+      invokeAll(subTasks);
+    }
+  }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.generic.helper;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only record of a download inside the destination directory. It lists
+ * each range and each file already downloaded. If a download is interrupted
+ * the next download to the same destination continues with the missing ranges.
+ * The record is removed after all files are downloaded.
+ * <br/>
+ * Each line holds one entry. Fields are separated by tabs:
+ * <ul>
+ * <li>R &lt;URL&gt; &lt;size&gt; &lt;validator&gt; &lt;offset&gt;
+ * &lt;length&gt; - Range of a file downloaded.</li>
+ * <li>F &lt;URL&gt; &lt;size&gt; &lt;validator&gt; - File downloaded
+ * completely.</li>
+ * </ul>
+ * The validator is the entity tag or the date of the last modification of the
+ * remote file. If the remote file has changed since the interruption its
+ * ranges are downloaded again.
+ *
+ * @author hartmann-v
+ */
+final class DownloadProgress implements Closeable {
+
+  /**
+   * The logger
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(DownloadProgress.class);
+  /**
+   * Name of the file holding the progress.
+   */
+  static final String PROGRESS_FILE = ".download.progress";
+  /**
+   * Type of entry holding a downloaded range.
+   */
+  private static final String RANGE = "R";
+  /**
+   * Type of entry holding a downloaded file.
+   */
+  private static final String FILE = "F";
+  /**
+   * Separator of the fields.
+   */
+  private static final String SEPARATOR = "\t";
+  /**
+   * Path of the progress file.
+   */
+  private final Path progressFile;
+  /**
+   * Downloaded ranges. (key: URL, size and validator, value: offset and length)
+   */
+  private final Map<String, Set<String>> ranges = new HashMap<>();
+  /**
+   * Downloaded files. (URL and size)
+   */
+  private final Set<String> files = new HashSet<>();
+  /**
+   * Writer appending to the progress file.
+   */
+  private final BufferedWriter writer;
+
+  /**
+   * Constructor. Reads the progress of an interrupted download if there is
+   * one.
+   *
+   * @param pDestination local destination directory.
+   * @throws IOException if progress couldn't be read or written.
+   */
+  DownloadProgress(File pDestination) throws IOException {
+    progressFile = new File(pDestination, PROGRESS_FILE).toPath();
+    if (Files.exists(progressFile)) {
+      read();
+      LOGGER.debug("Resume download to '{}': {} file(s) already downloaded.", pDestination.getAbsolutePath(), files.size());
+    }
+    writer = Files.newBufferedWriter(progressFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+  }
+
+  /**
+   * Test if file was already downloaded.
+   *
+   * @param pRemoteFile URL of the remote file.
+   * @param pSize size of the remote file.
+   * @param pValidator entity tag or date of the last modification.
+   * @return true if file was downloaded.
+   */
+  synchronized boolean isDownloaded(String pRemoteFile, long pSize, String pValidator) {
+    return files.contains(key(pRemoteFile, pSize, pValidator));
+  }
+
+  /**
+   * Test if range of a file was already downloaded.
+   *
+   * @param pRemoteFile URL of the remote file.
+   * @param pSize size of the remote file.
+   * @param pValidator entity tag or date of the last modification.
+   * @param pOffset offset of the range.
+   * @param pLength length of the range.
+   * @return true if range was downloaded.
+   */
+  synchronized boolean isDownloaded(String pRemoteFile, long pSize, String pValidator, long pOffset, long pLength) {
+    Set<String> rangesOfFile = ranges.get(key(pRemoteFile, pSize, pValidator));
+    return (rangesOfFile != null) && rangesOfFile.contains(pOffset + SEPARATOR + pLength);
+  }
+
+  /**
+   * Forget all ranges of a file. (e.g. if the partially downloaded file is
+   * missing)
+   *
+   * @param pRemoteFile URL of the remote file.
+   * @param pSize size of the remote file.
+   * @param pValidator entity tag or date of the last modification.
+   */
+  synchronized void reset(String pRemoteFile, long pSize, String pValidator) {
+    ranges.remove(key(pRemoteFile, pSize, pValidator));
+  }
+
+  /**
+   * Record download of a range.
+   *
+   * @param pRemoteFile URL of the remote file.
+   * @param pSize size of the remote file.
+   * @param pValidator entity tag or date of the last modification.
+   * @param pOffset offset of the range.
+   * @param pLength length of the range.
+   * @throws IOException if progress couldn't be written.
+   */
+  synchronized void rangeDownloaded(String pRemoteFile, long pSize, String pValidator, long pOffset, long pLength) throws IOException {
+    ranges.computeIfAbsent(key(pRemoteFile, pSize, pValidator), (file) -> new HashSet<>()).add(pOffset + SEPARATOR + pLength);
+    append(RANGE + SEPARATOR + key(pRemoteFile, pSize, pValidator) + SEPARATOR + pOffset + SEPARATOR + pLength);
+  }
+
+  /**
+   * Record download of a file.
+   *
+   * @param pRemoteFile URL of the remote file.
+   * @param pSize size of the remote file.
+   * @param pValidator entity tag or date of the last modification.
+   * @throws IOException if progress couldn't be written.
+   */
+  synchronized void fileDownloaded(String pRemoteFile, long pSize, String pValidator) throws IOException {
+    ranges.remove(key(pRemoteFile, pSize, pValidator));
+    files.add(key(pRemoteFile, pSize, pValidator));
+    append(FILE + SEPARATOR + key(pRemoteFile, pSize, pValidator));
+  }
+
+  /**
+   * Finish download. The progress is no longer needed and will be removed.
+   *
+   * @throws IOException if progress couldn't be removed.
+   */
+  synchronized void finish() throws IOException {
+    close();
+    Files.deleteIfExists(progressFile);
+  }
+
+  @Override
+  public synchronized void close() {
+    try {
+      writer.close();
+    } catch (IOException ex) {
+      LOGGER.warn("Unable to close progress of download '" + progressFile + "'!", ex);
+    }
+  }
+
+  /**
+   * Read progress of an interrupted download. Incomplete entries (e.g. last
+   * line after a crash) are ignored.
+   *
+   * @throws IOException if progress couldn't be read.
+   */
+  private void read() throws IOException {
+    try (BufferedReader reader = Files.newBufferedReader(progressFile, StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] entry = line.split(SEPARATOR, -1);
+        if (RANGE.equals(entry[0]) && (entry.length == 6)) {
+          ranges.computeIfAbsent(entry[1] + SEPARATOR + entry[2] + SEPARATOR + entry[3], (file) -> new HashSet<>()).add(entry[4] + SEPARATOR + entry[5]);
+        } else if (FILE.equals(entry[0]) && (entry.length == 4)) {
+          files.add(entry[1] + SEPARATOR + entry[2] + SEPARATOR + entry[3]);
+        } else {
+          LOGGER.warn("Invalid entry in progress of download '{}': {}", progressFile, line);
+        }
+      }
+    }
+  }
+
+  /**
+   * Append entry to the progress file. Entry is flushed immediately.
+   *
+   * @param pLine entry.
+   * @throws IOException if entry couldn't be written.
+   */
+  private void append(String pLine) throws IOException {
+    writer.write(pLine);
+    writer.newLine();
+    writer.flush();
+  }
+
+  /**
+   * Get key of a file.
+   *
+   * @param pRemoteFile URL of the remote file.
+   * @param pSize size of the remote file.
+   * @param pValidator entity tag or date of the last modification.
+   * @return key of the file.
+   */
+  private static String key(String pRemoteFile, long pSize, String pValidator) {
+    return pRemoteFile + SEPARATOR + pSize + SEPARATOR + pValidator;
+  }
+}
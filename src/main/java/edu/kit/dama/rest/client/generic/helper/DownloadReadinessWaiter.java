@@ -0,0 +1,307 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.generic.helper;
+
+import edu.kit.dama.staging.entities.download.DOWNLOAD_STATUS;
+import edu.kit.dama.staging.entities.download.DownloadInformation;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Wait asynchronously until downloads are ready. The status of each pending
+ * download is polled with an exponential backoff (with jitter) up to a maximum
+ * delay. All pending downloads share one scheduler thread which only times the
+ * polls. The status is read by a small pool of threads. Therefore a slow
+ * status request doesn't delay the polls of other downloads. The deadline
+ * of a download is kept even if its status request hangs.
+ * <br/>
+ * Closing a waiter stops its threads and cancels all pending downloads. The
+ * default instance is shared by all clients and therefore can't be closed.
+ * <br/> Example:
+ * <pre>
+ * {@code
+ *  CompletableFuture<DownloadInformation> ready = DownloadReadinessWaiter.getDefaultInstance()
+ *          .waitUntilReady(downloadId, clientHelper::getDownloadInformation, TimeUnit.HOURS.toMillis(1));
+ *  DownloadInformation downloadInformation = ready.join();
+ * }
+ * </pre>
+ *
+ * @author hartmann-v
+ */
+public final class DownloadReadinessWaiter implements AutoCloseable {
+
+  /**
+   * The logger
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(DownloadReadinessWaiter.class);
+  /**
+   * Delay in milliseconds before the first poll.
+   */
+  public static final long DEFAULT_INITIAL_DELAY = 500;
+  /**
+   * Maximum delay in milliseconds between two polls.
+   */
+  public static final long DEFAULT_MAX_DELAY = TimeUnit.SECONDS.toMillis(30);
+  /**
+   * Default number of threads reading the status of downloads.
+   */
+  public static final int DEFAULT_STATUS_THREADS = 4;
+  /**
+   * Singleton shared by all clients.
+   */
+  private static final DownloadReadinessWaiter singletonImpl = new DownloadReadinessWaiter(DEFAULT_INITIAL_DELAY, DEFAULT_MAX_DELAY);
+  /**
+   * Scheduler timing the polls of all pending downloads.
+   */
+  private final ScheduledThreadPoolExecutor scheduler;
+  /**
+   * Executor reading the status of downloads. (blocking REST calls)
+   */
+  private final ExecutorService statusExecutor;
+  /**
+   * Delay in milliseconds before the first poll.
+   */
+  private final long initialDelay;
+  /**
+   * Maximum delay in milliseconds between two polls.
+   */
+  private final long maxDelay;
+  /**
+   * All pending downloads.
+   */
+  private final Set<PendingDownload> pendingDownloads = ConcurrentHashMap.newKeySet();
+  /**
+   * Waiter closed or not.
+   */
+  private volatile boolean closed = false;
+
+  /**
+   * Pending download.
+   */
+  private static final class PendingDownload {
+
+    /**
+     * Future of the download.
+     */
+    private final CompletableFuture<DownloadInformation> future = new CompletableFuture<>();
+    /**
+     * Id of the download.
+     */
+    private final Long downloadId;
+    /**
+     * Function reading the current download information.
+     */
+    private final Function<Long, DownloadInformation> statusProvider;
+    /**
+     * Time in milliseconds when waiting is given up.
+     */
+    private final long deadline;
+    /**
+     * Last status read. (null if not read yet)
+     */
+    private volatile DOWNLOAD_STATUS lastStatus;
+
+    /**
+     * Constructor.
+     *
+     * @param pDownloadId id of the download.
+     * @param pStatusProvider function reading the current download information.
+     * @param pDeadline time in milliseconds when waiting is given up.
+     */
+    PendingDownload(Long pDownloadId, Function<Long, DownloadInformation> pStatusProvider, long pDeadline) {
+      downloadId = pDownloadId;
+      statusProvider = pStatusProvider;
+      deadline = pDeadline;
+    }
+
+    /**
+     * Give up waiting.
+     */
+    void timeout() {
+      future.completeExceptionally(new TimeoutException("Download '" + downloadId + "' not ready in time! (Last status: " + lastStatus + ")"));
+    }
+  }
+
+  /**
+   * Constructor using default number of threads reading the status.
+   *
+   * @param pInitialDelay delay in milliseconds before the first poll.
+   * @param pMaxDelay maximum delay in milliseconds between two polls.
+   */
+  public DownloadReadinessWaiter(long pInitialDelay, long pMaxDelay) {
+    this(pInitialDelay, pMaxDelay, DEFAULT_STATUS_THREADS);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param pInitialDelay delay in milliseconds before the first poll.
+   * @param pMaxDelay maximum delay in milliseconds between two polls.
+   * @param pStatusThreads maximum number of status requests in parallel.
+   */
+  public DownloadReadinessWaiter(long pInitialDelay, long pMaxDelay, int pStatusThreads) {
+    if ((pInitialDelay < 1) || (pMaxDelay < pInitialDelay)) {
+      throw new IllegalArgumentException("Invalid delays for polling download status!");
+    }
+    if (pStatusThreads < 1) {
+      throw new IllegalArgumentException("Number of threads has to be positive!");
+    }
+    initialDelay = pInitialDelay;
+    maxDelay = pMaxDelay;
+    scheduler = new ScheduledThreadPoolExecutor(1, (runnable) -> {
+      Thread thread = new Thread(runnable, "download-readiness");
+      thread.setDaemon(true);
+      return thread;
+    });
+    // Timers of completed downloads are removed immediately.
+    scheduler.setRemoveOnCancelPolicy(true);
+    AtomicInteger threadNumber = new AtomicInteger();
+    statusExecutor = Executors.newFixedThreadPool(pStatusThreads, (runnable) -> {
+      Thread thread = new Thread(runnable, "download-status-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Get the default instance of this class.
+   *
+   * @return instance of this class.
+   */
+  public static DownloadReadinessWaiter getDefaultInstance() {
+    return singletonImpl;
+  }
+
+  /**
+   * Wait until the download is ready. The returned future completes
+   * exceptionally if the preparation of the download failed, the download was
+   * removed or the deadline was reached. Cancelling the future stops polling.
+   *
+   * @param pDownloadId id of the download.
+   * @param pStatusProvider function reading the current download information
+   * (may return null on errors).
+   * @param pTimeout maximum time in milliseconds to wait.
+   * @return future holding the download information of the ready download.
+   * @throws IllegalStateException if the waiter is closed.
+   */
+  public CompletableFuture<DownloadInformation> waitUntilReady(Long pDownloadId,
+          Function<Long, DownloadInformation> pStatusProvider, long pTimeout) {
+    if (closed) {
+      throw new IllegalStateException("Waiter for downloads is closed!");
+    }
+    PendingDownload download = new PendingDownload(pDownloadId, pStatusProvider, System.currentTimeMillis() + pTimeout);
+    pendingDownloads.add(download);
+    ScheduledFuture<?> timer = scheduler.schedule(download::timeout, pTimeout, TimeUnit.MILLISECONDS);
+    download.future.whenComplete((downloadInformation, error) -> {
+      timer.cancel(false);
+      pendingDownloads.remove(download);
+    });
+    scheduler.execute(() -> poll(download, initialDelay));
+    return download.future;
+  }
+
+  /**
+   * Stop all threads and cancel all pending downloads. Closing the default
+   * instance has no effect.
+   */
+  @Override
+  public void close() {
+    if (this == singletonImpl) {
+      LOGGER.debug("Default instance of DownloadReadinessWaiter can't be closed.");
+      return;
+    }
+    closed = true;
+    scheduler.shutdownNow();
+    statusExecutor.shutdownNow();
+    for (PendingDownload download : pendingDownloads) {
+      download.future.cancel(false);
+    }
+  }
+
+  /**
+   * Read status of the download once. The status is read by the status
+   * executor, the scheduler thread is never blocked.
+   *
+   * @param pDownload pending download.
+   * @param pDelay delay in milliseconds before the next poll.
+   */
+  private void poll(PendingDownload pDownload, long pDelay) {
+    if (pDownload.future.isDone()) {
+      // cancelled or timed out
+      return;
+    }
+    CompletableFuture.supplyAsync(() -> pDownload.statusProvider.apply(pDownload.downloadId), statusExecutor)
+            .whenComplete((downloadInformation, error) -> evaluate(pDownload, downloadInformation, error, pDelay));
+  }
+
+  /**
+   * Evaluate status of the download and schedule next poll if download is not
+   * ready yet.
+   *
+   * @param pDownload pending download.
+   * @param pDownloadInformation current download information (may be null).
+   * @param pError error reading the download information (may be null).
+   * @param pDelay delay in milliseconds before the next poll.
+   */
+  private void evaluate(PendingDownload pDownload, DownloadInformation pDownloadInformation, Throwable pError, long pDelay) {
+    if (pError != null) {
+      Throwable cause = (pError instanceof CompletionException) ? pError.getCause() : pError;
+      LOGGER.warn("Unable to read status of download '" + pDownload.downloadId + "'!", cause);
+    } else if (pDownloadInformation != null) {
+      DOWNLOAD_STATUS status = DOWNLOAD_STATUS.idToStatus(pDownloadInformation.getStatus());
+      if (status == null) {
+        pDownload.future.completeExceptionally(new IllegalStateException("Download '" + pDownload.downloadId + "' has unknown status '" + pDownloadInformation.getStatus() + "'!"));
+        return;
+      }
+      pDownload.lastStatus = status;
+      LOGGER.trace("Status of download '{}': {}", pDownload.downloadId, status);
+      switch (status) {
+        case DOWNLOAD_READY:
+          pDownload.future.complete(pDownloadInformation);
+          return;
+        case SCHEDULED:
+        case PREPARING:
+          break;
+        default:
+          pDownload.future.completeExceptionally(new IllegalStateException("Download '" + pDownload.downloadId + "' can't be prepared! (Status: " + status + ")"));
+          return;
+      }
+    }
+    long now = System.currentTimeMillis();
+    if (now >= pDownload.deadline) {
+      pDownload.timeout();
+      return;
+    }
+    // Equal jitter: wait between half and full delay.
+    long delay = pDelay / 2 + ThreadLocalRandom.current().nextLong(pDelay / 2 + 1);
+    delay = Math.min(delay, pDownload.deadline - now);
+    long nextDelay = Math.min(pDelay * 2, maxDelay);
+    scheduler.schedule(() -> poll(pDownload, nextDelay), delay, TimeUnit.MILLISECONDS);
+  }
+}
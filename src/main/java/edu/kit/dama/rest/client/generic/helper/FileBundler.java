@@ -0,0 +1,314 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.generic.helper;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pack small files into ZIP bundles for upload via WebDAV. Uploading many tiny
+ * files is dominated by one WebDAV round trip per file. Therefore all files
+ * below a threshold are grouped (in the order of their paths) into bundles of
+ * a target size. Each bundle is packed while it is streamed to the server.
+ * (chunked PUT) No temporary files are written.
+ * <br/>
+ * The entries of a bundle hold the path relative to the root of the ingest.
+ * Additionally a manifest named {@link #MANIFEST_NAME} is uploaded to the
+ * remote root directory. It lists each bundled file with its bundle, size and
+ * last modification. Fields are separated by tabs. Therefore the original
+ * data organization can be reconstructed.
+ * <br/> Example:
+ * <pre>
+ * {@code
+ *  FileBundler bundler = new FileBundler(256L * 1024 * 1024, BundleCompression.DEFLATE);
+ *  List<UploadResult> results = new ParallelWebDavUploader(8, RetryPolicy.newTransferPolicy(), 0, bundler).upload(manifest, remoteLocation, journal, null);
+ * }
+ * </pre>
+ *
+ * @author hartmann-v
+ */
+public class FileBundler {
+
+  /**
+   * The logger
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(FileBundler.class);
+  /**
+   * Default maximum size of files packed into bundles.
+   */
+  public static final long DEFAULT_SMALL_FILE_SIZE = 1024L * 1024;
+  /**
+   * Name of the manifest listing all bundled files.
+   */
+  public static final String MANIFEST_NAME = "bundles.tsv";
+  /**
+   * Pattern for the names of the bundles.
+   */
+  private static final String BUNDLE_NAME = "bundle-%05d.zip";
+  /**
+   * Separator of the fields in the manifest.
+   */
+  private static final String SEPARATOR = "\t";
+  /**
+   * Target size of a bundle in bytes.
+   */
+  private final long bundleSize;
+  /**
+   * Files smaller than this size are bundled.
+   */
+  private final long smallFileSize;
+  /**
+   * Compression of the entries.
+   */
+  private final BundleCompression compression;
+  /**
+   * Value of the header 'Authorization' (null if no credentials available).
+   */
+  private final String authorization;
+
+  /**
+   * Small files uploaded together.
+   */
+  public static final class Bundle {
+
+    /**
+     * Name of the bundle.
+     */
+    private final String name;
+    /**
+     * Files of the bundle.
+     */
+    private final List<DirectoryManifest.Entry> files = new ArrayList<>();
+    /**
+     * Size of all files.
+     */
+    private long size;
+
+    /**
+     * Constructor.
+     *
+     * @param pName name of the bundle.
+     */
+    Bundle(String pName) {
+      name = pName;
+    }
+
+    /**
+     * Get name of the bundle.
+     *
+     * @return the name
+     */
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * Get files of the bundle.
+     *
+     * @return the files (ordered by path).
+     */
+    public List<DirectoryManifest.Entry> getFiles() {
+      return Collections.unmodifiableList(files);
+    }
+
+    /**
+     * Get size of all files of the bundle.
+     *
+     * @return size in bytes (uncompressed).
+     */
+    public long getSize() {
+      return size;
+    }
+  }
+
+  /**
+   * Constructor bundling all files smaller than
+   * {@link #DEFAULT_SMALL_FILE_SIZE}.
+   *
+   * @param pBundleSize target size of a bundle in bytes.
+   * @param pCompression compression of the entries.
+   */
+  public FileBundler(long pBundleSize, BundleCompression pCompression) {
+    this(pBundleSize, DEFAULT_SMALL_FILE_SIZE, pCompression);
+  }
+
+  /**
+   * Constructor. The credentials are read from the properties of the client.
+   * (see {@link edu.kit.dama.rest.client.DataManagerPropertiesImpl#getDefaultInstance()})
+   *
+   * @param pBundleSize target size of a bundle in bytes.
+   * @param pSmallFileSize files smaller than this size are bundled.
+   * @param pCompression compression of the entries.
+   */
+  public FileBundler(long pBundleSize, long pSmallFileSize, BundleCompression pCompression) {
+    if (pBundleSize < 1) {
+      throw new IllegalArgumentException("Size of a bundle has to be positive!");
+    }
+    if (pSmallFileSize < 1) {
+      throw new IllegalArgumentException("Size of small files has to be positive!");
+    }
+    bundleSize = pBundleSize;
+    smallFileSize = pSmallFileSize;
+    compression = (pCompression != null) ? pCompression : BundleCompression.NONE;
+    authorization = WebDavRequests.getAuthorization();
+  }
+
+  /**
+   * Group all small files of the manifest into bundles. The bundles only
+   * depend on the files of the manifest. Therefore a resumed ingest gets the
+   * same bundles.
+   *
+   * @param pManifest manifest of the local source.
+   * @return all bundles. (empty if source is a single file)
+   */
+  public List<Bundle> plan(DirectoryManifest pManifest) {
+    List<Bundle> bundles = new ArrayList<>();
+    if (!pManifest.getSource().isDirectory()) {
+      return bundles;
+    }
+    Bundle bundle = null;
+    for (DirectoryManifest.Entry entry : pManifest.getFiles()) {
+      if (entry.getSize() < smallFileSize) {
+        if ((bundle == null) || (bundle.size >= bundleSize)) {
+          bundle = new Bundle(String.format(BUNDLE_NAME, bundles.size() + 1));
+          bundles.add(bundle);
+        }
+        bundle.files.add(entry);
+        bundle.size += entry.getSize();
+      }
+    }
+    LOGGER.debug("{} small file(s) of '{}' planned in {} bundle(s).", bundles.stream().mapToInt((item) -> item.files.size()).sum(), pManifest.getSource().getAbsolutePath(), bundles.size());
+    return bundles;
+  }
+
+  /**
+   * Pack the given files of a bundle and stream it to the remote root
+   * directory.
+   *
+   * @param pBundle bundle.
+   * @param pFiles files of the bundle to upload. (e.g. without duplicates)
+   * @param pRootDirectory local root directory of all relative paths.
+   * @param pRemoteLocation URL of the remote root directory.
+   * @throws IOException if bundle couldn't be uploaded.
+   */
+  public void upload(Bundle pBundle, List<DirectoryManifest.Entry> pFiles, File pRootDirectory, URL pRemoteLocation) throws IOException {
+    URL remoteBundle = WebDavRequests.resolve(pRemoteLocation, pBundle.name);
+    HttpURLConnection connection = WebDavRequests.open(remoteBundle, "PUT", authorization);
+    connection.setDoOutput(true);
+    connection.setChunkedStreamingMode(WebDavRequests.BUFFER_SIZE);
+    connection.setRequestProperty("Content-Type", "application/zip");
+    try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(connection.getOutputStream(), TransferChannels.BUFFER_SIZE))) {
+      if (compression == BundleCompression.NONE) {
+        zip.setMethod(ZipOutputStream.STORED);
+      }
+      for (DirectoryManifest.Entry entry : pFiles) {
+        addEntry(zip, entry, getRelativePath(pRootDirectory, entry.getFile()));
+      }
+    }
+    int status = WebDavRequests.getResponseCode(connection);
+    if ((status / 100) != 2) {
+      throw new WebDavStatusException(String.format("Upload of bundle '%s' failed!", remoteBundle), status);
+    }
+    LOGGER.trace("Uploaded {} file(s) in bundle '{}'", pFiles.size(), remoteBundle);
+  }
+
+  /**
+   * Upload the manifest of all bundles to the remote root directory.
+   *
+   * @param pBundles all bundles.
+   * @param pRootDirectory local root directory of all relative paths.
+   * @param pRemoteLocation URL of the remote root directory.
+   * @throws IOException if manifest couldn't be uploaded.
+   */
+  public void uploadManifest(List<Bundle> pBundles, File pRootDirectory, URL pRemoteLocation) throws IOException {
+    StringBuilder manifest = new StringBuilder("#bundle").append(SEPARATOR).append("path").append(SEPARATOR)
+            .append("size").append(SEPARATOR).append("lastModified\n");
+    for (Bundle bundle : pBundles) {
+      for (DirectoryManifest.Entry entry : bundle.files) {
+        manifest.append(bundle.name).append(SEPARATOR)
+                .append(getRelativePath(pRootDirectory, entry.getFile())).append(SEPARATOR)
+                .append(entry.getSize()).append(SEPARATOR)
+                .append(entry.getLastModified()).append('\n');
+      }
+    }
+    byte[] content = manifest.toString().getBytes(StandardCharsets.UTF_8);
+    URL remoteManifest = WebDavRequests.resolve(pRemoteLocation, MANIFEST_NAME);
+    HttpURLConnection connection = WebDavRequests.open(remoteManifest, "PUT", authorization);
+    connection.setDoOutput(true);
+    connection.setFixedLengthStreamingMode(content.length);
+    connection.setRequestProperty("Content-Type", "text/tab-separated-values; charset=UTF-8");
+    try (OutputStream output = connection.getOutputStream()) {
+      output.write(content);
+    }
+    int status = WebDavRequests.getResponseCode(connection);
+    if ((status / 100) != 2) {
+      throw new WebDavStatusException(String.format("Upload of manifest '%s' failed!", remoteManifest), status);
+    }
+  }
+
+  /**
+   * Add file to the bundle. Stored entries need size and CRC in advance. As
+   * the files are small they are read completely.
+   *
+   * @param pZip stream of the bundle.
+   * @param pEntry local file.
+   * @param pPath relative path of the file.
+   * @throws IOException if file couldn't be read.
+   */
+  private void addEntry(ZipOutputStream pZip, DirectoryManifest.Entry pEntry, String pPath) throws IOException {
+    ZipEntry zipEntry = new ZipEntry(pPath);
+    zipEntry.setTime(pEntry.getLastModified());
+    if (compression == BundleCompression.NONE) {
+      byte[] content = Files.readAllBytes(pEntry.getFile().toPath());
+      CRC32 crc = new CRC32();
+      crc.update(content);
+      zipEntry.setSize(content.length);
+      zipEntry.setCompressedSize(content.length);
+      zipEntry.setCrc(crc.getValue());
+      pZip.putNextEntry(zipEntry);
+      pZip.write(content);
+    } else {
+      pZip.putNextEntry(zipEntry);
+      Files.copy(pEntry.getFile().toPath(), pZip);
+    }
+    pZip.closeEntry();
+  }
+
+  /**
+   * Get path relative to the root directory.
+   *
+   * @param pRootDirectory root directory.
+   * @param pFile local file.
+   * @return relative path using '/' as separator.
+   */
+  private static String getRelativePath(File pRootDirectory, File pFile) {
+    return pRootDirectory.toPath().relativize(pFile.toPath()).toString().replace(File.separatorChar, '/');
+  }
+}
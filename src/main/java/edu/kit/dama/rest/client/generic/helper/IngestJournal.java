@@ -0,0 +1,505 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.generic.helper;
+
+import edu.kit.dama.rest.client.DataManagerPropertiesImpl;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Local append-only journal of a single ingest. The journal records each
+ * remote directory created and each file uploaded (relative path, size and
+ * last modification). If an ingest is retried or resumed all files
+ * which are unchanged since their upload are skipped.
+ * <br/>
+ * The journals are stored in the directory 'journal' inside the home
+ * directory of the client. (see {@link DataManagerPropertiesImpl#getHomeDir()})
+ * Each line of a journal holds one entry. Fields are separated by tabs:
+ * <ul>
+ * <li>S &lt;source&gt; - Local source of the ingest.</li>
+ * <li>D &lt;path&gt; &lt;URL&gt; - Remote directory created.</li>
+ * <li>F &lt;path&gt; &lt;size&gt; &lt;lastModified&gt; - File uploaded.</li>
+ * <li>P &lt;path&gt; &lt;size&gt; &lt;lastModified&gt; &lt;offset&gt;
+ * &lt;length&gt; &lt;MD5&gt; - Part of a file uploaded. (see
+ * {@link ChunkedWebDavUploader})</li>
+ * </ul>
+ *
+ * @author hartmann-v
+ */
+public final class IngestJournal implements Closeable {
+
+  /**
+   * The logger
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(IngestJournal.class);
+  /**
+   * Name of the directory holding all journals.
+   */
+  private static final String JOURNAL_DIR = "journal";
+  /**
+   * Prefix of the file name of a journal.
+   */
+  private static final String JOURNAL_PREFIX = "ingest_";
+  /**
+   * Suffix of the file name of a journal.
+   */
+  private static final String JOURNAL_SUFFIX = ".journal";
+  /**
+   * Type of entry holding the source.
+   */
+  private static final String SOURCE = "S";
+  /**
+   * Type of entry holding a remote directory.
+   */
+  private static final String DIRECTORY = "D";
+  /**
+   * Type of entry holding an uploaded file.
+   */
+  private static final String FILE = "F";
+  /**
+   * Type of entry holding an uploaded part of a file.
+   */
+  private static final String PART = "P";
+  /**
+   * Separator of the fields.
+   */
+  private static final String SEPARATOR = "\t";
+  /**
+   * Path of the journal file.
+   */
+  private final Path journalFile;
+  /**
+   * Local source of the ingest.
+   */
+  private final File source;
+  /**
+   * Root directory of all relative paths.
+   */
+  private final File rootDir;
+  /**
+   * All remote directories. (key: relative path)
+   */
+  private final Map<String, URL> directories = new HashMap<>();
+  /**
+   * All uploaded files. (key: relative path)
+   */
+  private final Map<String, String[]> files = new HashMap<>();
+  /**
+   * All uploaded parts of files not completely uploaded yet. (key: relative
+   * path)
+   */
+  private final Map<String, List<String[]>> parts = new HashMap<>();
+  /**
+   * Writer appending to the journal.
+   */
+  private BufferedWriter writer;
+
+  /**
+   * Constructor.
+   *
+   * @param pJournalFile path of the journal file.
+   * @param pSource local source of the ingest.
+   */
+  private IngestJournal(Path pJournalFile, File pSource) {
+    journalFile = pJournalFile;
+    source = pSource.getAbsoluteFile();
+    rootDir = source.isDirectory() ? source : source.getParentFile();
+  }
+
+  /**
+   * Open the journal of the given ingest. If there is no journal yet a new one
+   * will be created.
+   *
+   * @param pIngestId id of the ingest.
+   * @param pSource local source of the ingest.
+   * @return journal of the ingest.
+   * @throws IOException if journal couldn't be read or created.
+   */
+  public static IngestJournal open(long pIngestId, File pSource) throws IOException {
+    Path path = getJournalFile(pIngestId);
+    IngestJournal journal;
+    if (Files.exists(path)) {
+      journal = read(path);
+      if (!journal.source.equals(pSource.getAbsoluteFile())) {
+        LOGGER.warn("Source of ingest '{}' changed from '{}' to '{}'! Start with new journal.", pIngestId, journal.source, pSource.getAbsolutePath());
+        journal = create(path, pSource);
+      } else {
+        LOGGER.debug("Resume ingest '{}': {} file(s) already uploaded.", pIngestId, journal.files.size());
+      }
+    } else {
+      journal = create(path, pSource);
+    }
+    journal.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    return journal;
+  }
+
+  /**
+   * Open an existing journal of the given ingest.
+   *
+   * @param pIngestId id of the ingest.
+   * @return journal of the ingest.
+   * @throws IOException if there is no journal for the given ingest.
+   */
+  public static IngestJournal open(long pIngestId) throws IOException {
+    Path path = getJournalFile(pIngestId);
+    if (!Files.exists(path)) {
+      throw new IOException("There is no journal for ingest '" + pIngestId + "'!");
+    }
+    IngestJournal journal = read(path);
+    journal.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+    return journal;
+  }
+
+  /**
+   * Get the local source of the ingest.
+   *
+   * @return local directory or file.
+   */
+  public File getSource() {
+    return source;
+  }
+
+  /**
+   * Get URL of the remote directory if it was already created.
+   *
+   * @param pDirectory local directory.
+   * @return URL of the remote directory or null.
+   */
+  public synchronized URL getRemoteDirectory(File pDirectory) {
+    return directories.get(getRelativePath(pDirectory));
+  }
+
+  /**
+   * Test if file was already uploaded and is not modified since.
+   *
+   * @param pFile local file.
+   * @return true if file has not to be uploaded again.
+   */
+  public boolean isUploaded(File pFile) {
+    return isUploaded(pFile, pFile.length(), pFile.lastModified());
+  }
+
+  /**
+   * Test if file was already uploaded and is not modified since. Size and
+   * last modification are already known. (e.g. from a
+   * {@link DirectoryManifest})
+   *
+   * @param pFile local file.
+   * @param pSize current size of the file.
+   * @param pLastModified current last modification of the file.
+   * @return true if file has not to be uploaded again.
+   */
+  public synchronized boolean isUploaded(File pFile, long pSize, long pLastModified) {
+    String[] entry = files.get(getRelativePath(pFile));
+    return (entry != null)
+            && entry[2].equals(Long.toString(pSize))
+            && entry[3].equals(Long.toString(pLastModified));
+  }
+
+  /**
+   * Get all parts of the file already uploaded. Parts are only valid if the
+   * file is not modified since.
+   *
+   * @param pFile local file.
+   * @param pSize current size of the file.
+   * @param pLastModified current last modification of the file.
+   * @return length of the uploaded parts. (key: offset)
+   */
+  public synchronized Map<Long, Long> getUploadedParts(File pFile, long pSize, long pLastModified) {
+    Map<Long, Long> uploadedParts = new HashMap<>();
+    for (String[] entry : parts.getOrDefault(getRelativePath(pFile), Collections.emptyList())) {
+      if (entry[2].equals(Long.toString(pSize)) && entry[3].equals(Long.toString(pLastModified))) {
+        try {
+          uploadedParts.put(Long.valueOf(entry[4]), Long.valueOf(entry[5]));
+        } catch (NumberFormatException nfe) {
+          LOGGER.warn("Invalid part in journal '{}': {}", journalFile, String.join(SEPARATOR, entry));
+        }
+      }
+    }
+    return uploadedParts;
+  }
+
+  /**
+   * Record creation of a remote directory.
+   *
+   * @param pDirectory local directory.
+   * @param pRemoteDirectory URL of the remote directory.
+   * @throws IOException if journal couldn't be written.
+   */
+  public synchronized void directoryCreated(File pDirectory, URL pRemoteDirectory) throws IOException {
+    String[] entry = {DIRECTORY, getRelativePath(pDirectory), pRemoteDirectory.toString()};
+    directories.put(entry[1], pRemoteDirectory);
+    append(entry);
+  }
+
+  /**
+   * Record upload of a file together with its size and last modification.
+   *
+   * @param pFile local file.
+   * @throws IOException if journal couldn't be written.
+   */
+  public void fileUploaded(File pFile) throws IOException {
+    fileUploaded(pFile, pFile.length(), pFile.lastModified());
+  }
+
+  /**
+   * Record upload of a file. Size and last modification are already known.
+   * (e.g. from a {@link DirectoryManifest})
+   *
+   * @param pFile local file.
+   * @param pSize size of the uploaded file.
+   * @param pLastModified last modification of the uploaded file.
+   * @throws IOException if journal couldn't be written.
+   */
+  public synchronized void fileUploaded(File pFile, long pSize, long pLastModified) throws IOException {
+    String[] entry = {FILE, getRelativePath(pFile), Long.toString(pSize), Long.toString(pLastModified)};
+    files.put(entry[1], entry);
+    parts.remove(entry[1]);
+    append(entry);
+  }
+
+  /**
+   * Record upload of a part of a file.
+   *
+   * @param pFile local file.
+   * @param pSize size of the file.
+   * @param pLastModified last modification of the file.
+   * @param pOffset offset of the part.
+   * @param pLength length of the part.
+   * @param pChecksum MD5 checksum of the part.
+   * @throws IOException if journal couldn't be written.
+   */
+  public synchronized void partUploaded(File pFile, long pSize, long pLastModified, long pOffset, long pLength, String pChecksum) throws IOException {
+    String[] entry = {PART, getRelativePath(pFile), Long.toString(pSize), Long.toString(pLastModified),
+      Long.toString(pOffset), Long.toString(pLength), pChecksum};
+    parts.computeIfAbsent(entry[1], (path) -> new ArrayList<>()).add(entry);
+    append(entry);
+  }
+
+  /**
+   * Rewrite the journal with only one entry for each directory, file and
+   * part. If the journal couldn't be rewritten the original journal is kept
+   * and appended to.
+   *
+   * @throws IOException if journal couldn't be written.
+   */
+  public synchronized void compact() throws IOException {
+    close();
+    Path tempFile = journalFile.resolveSibling(journalFile.getFileName() + ".tmp");
+    try {
+      try (BufferedWriter compactWriter = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+        writer = compactWriter;
+        append(new String[]{SOURCE, source.getPath()});
+        for (Map.Entry<String, URL> directory : directories.entrySet()) {
+          append(new String[]{DIRECTORY, directory.getKey(), directory.getValue().toString()});
+        }
+        for (String[] file : files.values()) {
+          append(file);
+        }
+        for (List<String[]> partsOfFile : parts.values()) {
+          for (String[] part : partsOfFile) {
+            append(part);
+          }
+        }
+      }
+      Files.move(tempFile, journalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException ex) {
+      Files.deleteIfExists(tempFile);
+      throw ex;
+    } finally {
+      // Append to the compacted or (on error) the original journal.
+      writer = Files.newBufferedWriter(journalFile, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+    }
+    LOGGER.debug("Journal '{}' compacted: {} directories, {} files.", journalFile, directories.size(), files.size());
+  }
+
+  /**
+   * Finish the journal after successful ingest. The journal is no longer
+   * needed and will be removed.
+   *
+   * @throws IOException if journal couldn't be removed.
+   */
+  public synchronized void finish() throws IOException {
+    close();
+    Files.deleteIfExists(journalFile);
+    LOGGER.debug("Journal '{}' removed.", journalFile);
+  }
+
+  @Override
+  public synchronized void close() {
+    if (writer != null) {
+      try {
+        writer.close();
+      } catch (IOException ex) {
+        LOGGER.warn("Unable to close journal '" + journalFile + "'!", ex);
+      }
+      writer = null;
+    }
+  }
+
+  /**
+   * Get path of the journal for the given ingest.
+   *
+   * @param pIngestId id of the ingest.
+   * @return path of the journal.
+   * @throws IOException if directory for journals couldn't be created.
+   */
+  private static Path getJournalFile(long pIngestId) throws IOException {
+    Path journalDir = new File(DataManagerPropertiesImpl.getHomeDir(), JOURNAL_DIR).toPath();
+    Files.createDirectories(journalDir);
+    return journalDir.resolve(JOURNAL_PREFIX + pIngestId + JOURNAL_SUFFIX);
+  }
+
+  /**
+   * Create new journal. An existing journal will be overwritten.
+   *
+   * @param pPath path of the journal.
+   * @param pSource local source of the ingest.
+   * @return new journal.
+   * @throws IOException if journal couldn't be written.
+   */
+  private static IngestJournal create(Path pPath, File pSource) throws IOException {
+    IngestJournal journal = new IngestJournal(pPath, pSource);
+    try (BufferedWriter initialWriter = Files.newBufferedWriter(pPath, StandardCharsets.UTF_8)) {
+      journal.writer = initialWriter;
+      journal.append(new String[]{SOURCE, journal.source.getPath()});
+    }
+    journal.writer = null;
+    return journal;
+  }
+
+  /**
+   * Read existing journal. Incomplete entries (e.g. last line after a crash)
+   * are ignored.
+   *
+   * @param pPath path of the journal.
+   * @return journal.
+   * @throws IOException if journal couldn't be read.
+   */
+  private static IngestJournal read(Path pPath) throws IOException {
+    IngestJournal journal = null;
+    try (BufferedReader reader = Files.newBufferedReader(pPath, StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] entry = line.split(SEPARATOR);
+        try {
+          for (int index = 1; index < entry.length; index++) {
+            entry[index] = decode(entry[index]);
+          }
+        } catch (IllegalArgumentException iae) {
+          LOGGER.warn("Invalid entry in journal '{}': {}", pPath, line);
+          continue;
+        }
+        if (SOURCE.equals(entry[0]) && (entry.length == 2) && (journal == null)) {
+          journal = new IngestJournal(pPath, new File(entry[1]));
+        } else if (journal == null) {
+          break;
+        } else if (DIRECTORY.equals(entry[0]) && (entry.length == 3)) {
+          try {
+            journal.directories.put(entry[1], new URL(entry[2]));
+          } catch (MalformedURLException ex) {
+            LOGGER.warn("Invalid entry in journal '{}': {}", pPath, line);
+          }
+        } else if (FILE.equals(entry[0]) && (entry.length == 4)) {
+          journal.files.put(entry[1], entry);
+          journal.parts.remove(entry[1]);
+        } else if (PART.equals(entry[0]) && (entry.length == 7)) {
+          journal.parts.computeIfAbsent(entry[1], (path) -> new ArrayList<>()).add(entry);
+        } else {
+          LOGGER.warn("Invalid entry in journal '{}': {}", pPath, line);
+        }
+      }
+    }
+    if (journal == null) {
+      throw new IOException("Journal '" + pPath + "' doesn't contain the source of the ingest!");
+    }
+    return journal;
+  }
+
+  /**
+   * Append entry to journal. Entry is flushed immediately.
+   *
+   * @param pEntry fields of the entry.
+   * @throws IOException if entry couldn't be written.
+   */
+  private void append(String[] pEntry) throws IOException {
+    StringBuilder line = new StringBuilder(pEntry[0]);
+    for (int index = 1; index < pEntry.length; index++) {
+      line.append(SEPARATOR).append(encode(pEntry[index]));
+    }
+    writer.write(line.toString());
+    writer.newLine();
+    writer.flush();
+  }
+
+  /**
+   * Get path relative to the root directory.
+   *
+   * @param pFile local file or directory.
+   * @return relative path using '/' as separator.
+   */
+  private String getRelativePath(File pFile) {
+    return rootDir.toPath().relativize(pFile.getAbsoluteFile().toPath()).toString().replace(File.separatorChar, '/');
+  }
+
+  /**
+   * Encode field to avoid separators inside.
+   *
+   * @param pValue value of the field.
+   * @return encoded value.
+   */
+  private static String encode(String pValue) {
+    try {
+      return URLEncoder.encode(pValue, StandardCharsets.UTF_8.name());
+    } catch (UnsupportedEncodingException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  /**
+   * Decode field.
+   *
+   * @param pValue encoded value of the field.
+   * @return decoded value.
+   */
+  private static String decode(String pValue) {
+    try {
+      return URLDecoder.decode(pValue, StandardCharsets.UTF_8.name());
+    } catch (UnsupportedEncodingException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+}
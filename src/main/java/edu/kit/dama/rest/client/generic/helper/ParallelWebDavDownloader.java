@@ -0,0 +1,572 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.generic.helper;
+
+import edu.kit.lsdf.adalapi.AbstractFile;
+import edu.kit.lsdf.adalapi.exception.AdalapiException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.ProtocolException;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Download a directory via WebDAV using multiple parallel streams. The remote
+ * directory tree is listed once (PROPFIND) before the download starts. The
+ * listing provides size and entity tag of all files. Afterwards all files are
+ * downloaded in parallel starting with the largest files. Large files are
+ * split into ranges (HTTP range requests) if the server supports them. Each
+ * range is transferred directly to its position inside a preallocated file
+ * (see {@link TransferChannels}) and retried on its own if its download
+ * fails. (see {@link RetryPolicy})
+ * <br/>
+ * Files are downloaded to '&lt;name&gt;.part' and renamed when complete. The
+ * downloaded ranges are recorded inside the destination. (see
+ * {@link DownloadProgress}) If a download is interrupted the next download to
+ * the same destination fetches only the missing ranges unless the remote file
+ * has changed. (different entity tag or date of the last modification)
+ * <br/> Example:
+ * <pre>
+ * {@code
+ *  ParallelWebDavDownloader downloader = new ParallelWebDavDownloader(8);
+ *  List<DownloadResult> results = downloader.download(new AbstractFile(remoteUrl), localDirectory);
+ * }
+ * </pre>
+ *
+ * @author hartmann-v
+ */
+public class ParallelWebDavDownloader {
+
+  /**
+   * The logger
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(ParallelWebDavDownloader.class);
+  /**
+   * Default number of parallel downloads.
+   */
+  public static final int DEFAULT_PARALLEL_DOWNLOADS = Runtime.getRuntime().availableProcessors();
+  /**
+   * Default size of a range in bytes.
+   */
+  public static final long DEFAULT_RANGE_SIZE = 64L * 1024 * 1024;
+  /**
+   * Name of the endpoint for downloads of ranges.
+   */
+  private static final String DOWNLOAD_RANGE = "webdav.download";
+  /**
+   * Suffix of files not downloaded completely.
+   */
+  private static final String PART_SUFFIX = ".part";
+  /**
+   * Number of parallel downloads.
+   */
+  private final int parallelDownloads;
+  /**
+   * Policy for retrying failed downloads of ranges.
+   */
+  private final RetryPolicy retryPolicy;
+  /**
+   * Size of a range in bytes.
+   */
+  private final long rangeSize;
+  /**
+   * Value of the header 'Authorization' (null if no credentials available).
+   */
+  private final String authorization;
+
+  /**
+   * Result of the download of a single file.
+   */
+  public static final class DownloadResult {
+
+    /**
+     * Local file.
+     */
+    private final File file;
+    /**
+     * Number of bytes downloaded.
+     */
+    private final long downloadedBytes;
+    /**
+     * Exception of the last failed trial or null.
+     */
+    private final Exception exception;
+    /**
+     * Download successful or not.
+     */
+    private final boolean successful;
+
+    /**
+     * Constructor.
+     *
+     * @param pFile local file.
+     * @param pSuccessful download successful or not.
+     * @param pDownloadedBytes number of bytes downloaded.
+     * @param pException exception of the last failed trial.
+     */
+    DownloadResult(File pFile, boolean pSuccessful, long pDownloadedBytes, Exception pException) {
+      file = pFile;
+      successful = pSuccessful;
+      downloadedBytes = pDownloadedBytes;
+      exception = pException;
+    }
+
+    /**
+     * Get local file.
+     *
+     * @return the file
+     */
+    public File getFile() {
+      return file;
+    }
+
+    /**
+     * Download successful or not.
+     *
+     * @return true if file was downloaded.
+     */
+    public boolean isSuccessful() {
+      return successful;
+    }
+
+    /**
+     * Get number of bytes downloaded. Ranges downloaded before an
+     * interruption are not counted.
+     *
+     * @return the number of bytes.
+     */
+    public long getDownloadedBytes() {
+      return downloadedBytes;
+    }
+
+    /**
+     * Get exception of the last failed trial.
+     *
+     * @return the exception or null.
+     */
+    public Exception getException() {
+      return exception;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s: %s (%d bytes)", file.getAbsolutePath(), successful ? "downloaded" : "FAILED", downloadedBytes);
+    }
+  }
+
+  /**
+   * Remote file and the state of its download.
+   */
+  private static final class RemoteFile {
+
+    /**
+     * URL of the remote file.
+     */
+    private final URL url;
+    /**
+     * Local file.
+     */
+    private final File target;
+    /**
+     * Local file while downloading.
+     */
+    private final File partFile;
+    /**
+     * Size of the file.
+     */
+    private final long size;
+    /**
+     * Entity tag or date of the last modification of the file.
+     */
+    private final String validator;
+    /**
+     * Number of ranges not finished yet.
+     */
+    private final AtomicInteger pendingRanges = new AtomicInteger();
+    /**
+     * Number of bytes downloaded.
+     */
+    private final AtomicLong downloadedBytes = new AtomicLong();
+    /**
+     * Result of the download.
+     */
+    private final CompletableFuture<DownloadResult> result = new CompletableFuture<>();
+    /**
+     * Channel writing the ranges.
+     */
+    private FileChannel channel;
+    /**
+     * Exception of a failed range or null.
+     */
+    private volatile Exception failure;
+
+    /**
+     * Constructor.
+     *
+     * @param pUrl URL of the remote file.
+     * @param pTarget local file.
+     * @param pSize size of the file.
+     * @param pValidator entity tag or date of the last modification.
+     */
+    RemoteFile(URL pUrl, File pTarget, long pSize, String pValidator) {
+      url = pUrl;
+      target = pTarget;
+      partFile = new File(pTarget.getParentFile(), pTarget.getName() + PART_SUFFIX);
+      size = pSize;
+      validator = pValidator;
+    }
+  }
+
+  /**
+   * Constructor using default policy for retries and size of ranges.
+   * (see {@link RetryPolicy#newTransferPolicy()})
+   *
+   * @param pParallelDownloads number of parallel downloads.
+   */
+  public ParallelWebDavDownloader(int pParallelDownloads) {
+    this(pParallelDownloads, RetryPolicy.newTransferPolicy(), DEFAULT_RANGE_SIZE);
+  }
+
+  /**
+   * Constructor. The credentials are read from the properties of the client.
+   * (see {@link edu.kit.dama.rest.client.DataManagerPropertiesImpl#getDefaultInstance()})
+   *
+   * @param pParallelDownloads number of parallel downloads.
+   * @param pRetryPolicy policy for retrying failed downloads of ranges.
+   * @param pRangeSize maximum size of a range in bytes.
+   */
+  public ParallelWebDavDownloader(int pParallelDownloads, RetryPolicy pRetryPolicy, long pRangeSize) {
+    if (pParallelDownloads < 1) {
+      throw new IllegalArgumentException("Number of parallel downloads has to be positive!");
+    }
+    if (pRetryPolicy == null) {
+      throw new IllegalArgumentException("Retry policy must not be null!");
+    }
+    if (pRangeSize < 1) {
+      throw new IllegalArgumentException("Size of a range has to be positive!");
+    }
+    parallelDownloads = pParallelDownloads;
+    retryPolicy = pRetryPolicy;
+    rangeSize = pRangeSize;
+    authorization = WebDavRequests.getAuthorization();
+  }
+
+  /**
+   * Download the content of the remote directory to the given local
+   * directory. Files already downloaded by an interrupted download to the same
+   * destination are skipped if they haven't changed on the server.
+   *
+   * @param pRemoteDirectory remote directory.
+   * @param pDestination local directory.
+   * @return result for each file (largest files first).
+   * @throws AdalapiException if remote directory tree couldn't be listed.
+   */
+  public List<DownloadResult> download(AbstractFile pRemoteDirectory, File pDestination) throws AdalapiException {
+    List<RemoteFile> remoteFiles = new ArrayList<>();
+    list(pRemoteDirectory.getUrl(), pDestination, remoteFiles);
+    LOGGER.debug("Found {} file(s) in '{}'.", remoteFiles.size(), pRemoteDirectory.getUrl());
+    List<DownloadResult> results = new ArrayList<>();
+    if (remoteFiles.isEmpty()) {
+      return results;
+    }
+    AtomicInteger threadNumber = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(parallelDownloads, (runnable) -> {
+      Thread thread = new Thread(runnable, "webdav-download-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    try (DownloadProgress progress = new DownloadProgress(pDestination)) {
+      // <editor-fold defaultstate="collapsed" desc="Determine missing sizes">
+      // Only needed if the size of a file wasn't listed.
+      List<RemoteFile> withoutSize = new ArrayList<>();
+      remoteFiles.removeIf((remoteFile) -> (remoteFile.size < 0) && withoutSize.add(remoteFile));
+      for (RemoteFile remoteFile : withoutSize) {
+        try {
+          HttpURLConnection connection = head(remoteFile.url);
+          String validator = connection.getHeaderField("ETag");
+          if (validator == null) {
+            validator = connection.getHeaderField("Last-Modified");
+          }
+          remoteFiles.add(new RemoteFile(remoteFile.url, remoteFile.target, connection.getContentLengthLong(), (validator != null) ? validator : ""));
+        } catch (IOException ex) {
+          results.add(new DownloadResult(remoteFile.target, false, 0, ex));
+        }
+      }
+      // </editor-fold>
+      // Largest files first to avoid a long tail at the end of the download.
+      remoteFiles.sort(Comparator.comparingLong((RemoteFile remoteFile) -> remoteFile.size).reversed());
+      boolean rangesSupported = !remoteFiles.isEmpty() && (remoteFiles.get(0).size > rangeSize) && isRangesSupported(remoteFiles.get(0).url);
+      long totalSize = 0;
+      for (RemoteFile remoteFile : remoteFiles) {
+        totalSize += remoteFile.size;
+        try {
+          for (long[] range : prepare(remoteFile, rangesSupported, progress)) {
+            executor.execute(() -> downloadRange(remoteFile, range[0], range[1], progress));
+          }
+        } catch (IOException ex) {
+          remoteFile.result.complete(new DownloadResult(remoteFile.target, false, 0, ex));
+        }
+      }
+      LOGGER.debug("Downloading {} file(s) with {} bytes.", remoteFiles.size(), totalSize);
+      int noOfFailedDownloads = results.size();
+      for (int fileIndex = 0; fileIndex < remoteFiles.size(); fileIndex++) {
+        DownloadResult result = getResult(remoteFiles.get(fileIndex));
+        if (!result.isSuccessful()) {
+          noOfFailedDownloads++;
+        }
+        results.add(result);
+        LOGGER.trace("Progress: {} of {} file(s).", fileIndex + 1, remoteFiles.size());
+      }
+      if (noOfFailedDownloads == 0) {
+        progress.finish();
+      }
+    } catch (IOException ex) {
+      throw new AdalapiException("Unable to record progress of download to '" + pDestination.getAbsolutePath() + "'!", ex);
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new AdalapiException("Download of '" + pRemoteDirectory.getUrl() + "' was interrupted!", ie);
+    } finally {
+      executor.shutdownNow();
+    }
+    return results;
+  }
+
+  /**
+   * List remote directory recursively. Local directories are created while
+   * listing.
+   *
+   * @param pRemoteDirectory URL of the remote directory.
+   * @param pLocalDirectory local directory.
+   * @param pFiles all remote files found.
+   * @throws AdalapiException if directory couldn't be listed or created.
+   */
+  private void list(URL pRemoteDirectory, File pLocalDirectory, List<RemoteFile> pFiles) throws AdalapiException {
+    try {
+      Files.createDirectories(pLocalDirectory.toPath());
+    } catch (IOException ex) {
+      throw new AdalapiException("Unable to create directory '" + pLocalDirectory.getAbsolutePath() + "'!", ex);
+    }
+    List<WebDavRequests.Resource> children = new ArrayList<>();
+    try {
+      children = WebDavRequests.list(pRemoteDirectory, authorization);
+    } catch (ProtocolException ex) {
+      // PROPFIND not supported by this JVM, sizes are requested per file.
+      LOGGER.debug("Unable to send PROPFIND. Listing '{}' via ADALAPI.", pRemoteDirectory, ex);
+      for (AbstractFile child : new AbstractFile(pRemoteDirectory).list()) {
+        children.add(new WebDavRequests.Resource(child.getUrl(), child.getName(), child.isDirectory(), -1, ""));
+      }
+    } catch (IOException ex) {
+      throw new AdalapiException("Unable to list directory '" + pRemoteDirectory + "'!", ex);
+    }
+    for (WebDavRequests.Resource child : children) {
+      File localChild = new File(pLocalDirectory, child.getName());
+      if (child.isDirectory()) {
+        list(child.getUrl(), localChild, pFiles);
+      } else {
+        pFiles.add(new RemoteFile(child.getUrl(), localChild, child.getSize(), child.getValidator()));
+      }
+    }
+  }
+
+  /**
+   * Request header of a remote file.
+   *
+   * @param pUrl URL of the remote file.
+   * @return connection holding the header.
+   * @throws IOException if size couldn't be determined.
+   */
+  private HttpURLConnection head(URL pUrl) throws IOException {
+    HttpURLConnection connection = WebDavRequests.open(pUrl, "HEAD", authorization);
+    int status = WebDavRequests.getResponseCode(connection);
+    if ((status != HttpURLConnection.HTTP_OK) || (connection.getContentLengthLong() < 0)) {
+      throw new WebDavStatusException(String.format("Unable to determine size of '%s'!", pUrl), status);
+    }
+    return connection;
+  }
+
+  /**
+   * Test if the server supports range requests. The listing doesn't provide
+   * this information. Hence the header of one file is requested per download.
+   *
+   * @param pUrl URL of a remote file.
+   * @return true if server supports range requests.
+   */
+  private boolean isRangesSupported(URL pUrl) {
+    try {
+      return "bytes".equalsIgnoreCase(head(pUrl).getHeaderField("Accept-Ranges"));
+    } catch (IOException ex) {
+      LOGGER.debug("Unable to determine support of range requests. Files are downloaded as a whole.", ex);
+      return false;
+    }
+  }
+
+  /**
+   * Prepare download of a file. The local file is preallocated and all ranges
+   * not downloaded yet are determined.
+   *
+   * @param pFile remote file.
+   * @param pRangesSupported server supports range requests.
+   * @param pProgress progress of the download.
+   * @return offset and length of all ranges to download.
+   * @throws IOException if local file couldn't be prepared.
+   */
+  private List<long[]> prepare(RemoteFile pFile, boolean pRangesSupported, DownloadProgress pProgress) throws IOException {
+    List<long[]> ranges = new ArrayList<>();
+    String key = pFile.url.toString();
+    if (pProgress.isDownloaded(key, pFile.size, pFile.validator) && (pFile.target.length() == pFile.size)) {
+      pFile.result.complete(new DownloadResult(pFile.target, true, 0, null));
+      return ranges;
+    }
+    if (pFile.partFile.length() != pFile.size) {
+      pProgress.reset(key, pFile.size, pFile.validator);
+    }
+    try (RandomAccessFile file = new RandomAccessFile(pFile.partFile, "rw")) {
+      file.setLength(pFile.size);
+    }
+    long step = pRangesSupported ? rangeSize : Math.max(pFile.size, 1);
+    for (long offset = 0; offset < pFile.size; offset += step) {
+      long length = Math.min(step, pFile.size - offset);
+      if (!pProgress.isDownloaded(key, pFile.size, pFile.validator, offset, length)) {
+        ranges.add(new long[]{offset, length});
+      }
+    }
+    if (ranges.isEmpty()) {
+      complete(pFile, pProgress);
+    } else {
+      pFile.channel = FileChannel.open(pFile.partFile.toPath(), StandardOpenOption.WRITE);
+      pFile.pendingRanges.set(ranges.size());
+    }
+    return ranges;
+  }
+
+  /**
+   * Download a range of a file. The download is retried according to the
+   * retry policy. The download of the file is completed
+   * after its last range.
+   *
+   * @param pFile remote file.
+   * @param pOffset offset of the range.
+   * @param pLength length of the range.
+   * @param pProgress progress of the download.
+   */
+  private void downloadRange(RemoteFile pFile, long pOffset, long pLength, DownloadProgress pProgress) {
+    Exception failure = retryPolicy.executeTransfer(DOWNLOAD_RANGE, () -> {
+      try {
+        fetch(pFile, pOffset, pLength);
+        return null;
+      } catch (IOException | RuntimeException ex) {
+        LOGGER.warn("Download failed for bytes {}-{} of '{}'", pOffset, pOffset + pLength - 1, pFile.url);
+        return ex;
+      }
+    });
+    if (failure == null) {
+      pFile.downloadedBytes.addAndGet(pLength);
+      try {
+        pProgress.rangeDownloaded(pFile.url.toString(), pFile.size, pFile.validator, pOffset, pLength);
+      } catch (IOException ex) {
+        LOGGER.warn("Unable to record download of '" + pFile.url + "'!", ex);
+      }
+    } else {
+      pFile.failure = failure;
+    }
+    if (pFile.pendingRanges.decrementAndGet() == 0) {
+      complete(pFile, pProgress);
+    }
+  }
+
+  /**
+   * Fetch a range of a file and write it to its position in the local file.
+   *
+   * @param pFile remote file.
+   * @param pOffset offset of the range.
+   * @param pLength length of the range.
+   * @throws IOException if range couldn't be downloaded.
+   */
+  private void fetch(RemoteFile pFile, long pOffset, long pLength) throws IOException {
+    HttpURLConnection connection = WebDavRequests.open(pFile.url, "GET", authorization);
+    boolean wholeFile = (pOffset == 0) && (pLength == pFile.size);
+    if (!wholeFile) {
+      connection.setRequestProperty("Range", String.format("bytes=%d-%d", pOffset, pOffset + pLength - 1));
+    }
+    int status = connection.getResponseCode();
+    if (status != (wholeFile ? HttpURLConnection.HTTP_OK : HttpURLConnection.HTTP_PARTIAL)) {
+      connection.disconnect();
+      throw new WebDavStatusException(String.format("Download of '%s' failed!", pFile.url), status);
+    }
+    try (ReadableByteChannel input = Channels.newChannel(connection.getInputStream())) {
+      TransferChannels.copy(input, pFile.channel, pOffset, pLength);
+    } catch (IOException ex) {
+      throw new IOException("Download of '" + pFile.url + "' failed!", ex);
+    }
+  }
+
+  /**
+   * Complete download of a file. If all ranges were downloaded the file gets
+   * its final name.
+   *
+   * @param pFile remote file.
+   * @param pProgress progress of the download.
+   */
+  private static void complete(RemoteFile pFile, DownloadProgress pProgress) {
+    Exception failure = pFile.failure;
+    try {
+      if (pFile.channel != null) {
+        pFile.channel.close();
+      }
+      if (failure == null) {
+        Files.move(pFile.partFile.toPath(), pFile.target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        pProgress.fileDownloaded(pFile.url.toString(), pFile.size, pFile.validator);
+        LOGGER.trace("Downloaded '{}' to '{}'", pFile.url, pFile.target.getAbsolutePath());
+      }
+    } catch (IOException ex) {
+      failure = ex;
+    }
+    pFile.result.complete(new DownloadResult(pFile.target, failure == null, pFile.downloadedBytes.get(), failure));
+  }
+
+  /**
+   * Wait for the result of a file.
+   *
+   * @param pFile remote file.
+   * @return result of the download.
+   * @throws InterruptedException if waiting was interrupted.
+   */
+  private static DownloadResult getResult(RemoteFile pFile) throws InterruptedException {
+    try {
+      return pFile.result.get();
+    } catch (ExecutionException ex) {
+      return new DownloadResult(pFile.target, false, 0, ex);
+    }
+  }
+}
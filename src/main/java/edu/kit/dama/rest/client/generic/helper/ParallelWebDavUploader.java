@@ -0,0 +1,690 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.generic.helper;
+
+import edu.kit.lsdf.adalapi.AbstractFile;
+import edu.kit.lsdf.adalapi.exception.AdalapiException;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Upload a directory via WebDAV using multiple parallel streams. The remote
+ * directory tree is created once before the upload starts. Afterwards all files
+ * are uploaded in parallel starting with the largest files. Each file is
+ * retried on its own if its upload fails. (see {@link RetryPolicy}) Files
+ * exceeding a threshold are uploaded in parts.
+ * (see {@link ChunkedWebDavUploader}) Small files may be packed into bundles
+ * instead. (see {@link FileBundler})
+ * <br/> Example:
+ * <pre>
+ * {@code
+ *  ParallelWebDavUploader uploader = new ParallelWebDavUploader(8);
+ *  List<UploadResult> results = uploader.upload(localDirectory, new AbstractFile(remoteUrl));
+ * }
+ * </pre>
+ *
+ * @author hartmann-v
+ */
+public class ParallelWebDavUploader {
+
+  /**
+   * The logger
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(ParallelWebDavUploader.class);
+  /**
+   * Default number of parallel uploads.
+   */
+  public static final int DEFAULT_PARALLEL_UPLOADS = Runtime.getRuntime().availableProcessors();
+  /**
+   * Name of the endpoint for uploads of files.
+   */
+  private static final String UPLOAD_FILE = "webdav.upload";
+  /**
+   * Name of the endpoint for uploads of bundles and their manifest.
+   */
+  private static final String UPLOAD_BUNDLE = "webdav.bundle";
+  /**
+   * Number of parallel uploads.
+   */
+  private final int parallelUploads;
+  /**
+   * Policy for retrying failed uploads of files, parts and bundles.
+   */
+  private final RetryPolicy retryPolicy;
+  /**
+   * Minimum size in bytes of files uploaded in parts. (0: no chunked upload)
+   */
+  private final long chunkThreshold;
+  /**
+   * Bundler packing small files (null: no bundling).
+   */
+  private final FileBundler bundler;
+
+  /**
+   * Result of the upload of a single file.
+   */
+  public static final class UploadResult {
+
+    /**
+     * Local file.
+     */
+    private final File file;
+    /**
+     * Size of the local file in bytes as recorded in the manifest.
+     */
+    private final long size;
+    /**
+     * Number of trials needed.
+     */
+    private final int trials;
+    /**
+     * Exception of the last failed trial or null.
+     */
+    private final Exception exception;
+    /**
+     * Upload successful or not.
+     */
+    private final boolean successful;
+    /**
+     * File skipped. (already uploaded or filtered)
+     */
+    private final boolean skipped;
+
+    /**
+     * Constructor.
+     *
+     * @param pFile local file.
+     * @param pSize size of the local file in bytes.
+     * @param pSuccessful upload successful or not.
+     * @param pTrials number of trials needed.
+     * @param pException exception of the last failed trial.
+     */
+    UploadResult(File pFile, long pSize, boolean pSuccessful, int pTrials, Exception pException) {
+      this(pFile, pSize, pSuccessful, pTrials, pException, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param pFile local file.
+     * @param pSize size of the local file in bytes.
+     * @param pSuccessful upload successful or not.
+     * @param pTrials number of trials needed.
+     * @param pException exception of the last failed trial.
+     * @param pSkipped file skipped or not.
+     */
+    private UploadResult(File pFile, long pSize, boolean pSuccessful, int pTrials, Exception pException, boolean pSkipped) {
+      file = pFile;
+      size = pSize;
+      successful = pSuccessful;
+      trials = pTrials;
+      exception = pException;
+      skipped = pSkipped;
+    }
+
+    /**
+     * Get result of a file not uploaded as it is already recorded in the
+     * journal or matches the filter.
+     *
+     * @param pFile local file.
+     * @param pSize size of the local file in bytes.
+     * @return successful result with 0 trials.
+     */
+    static UploadResult skipped(File pFile, long pSize) {
+      return new UploadResult(pFile, pSize, true, 0, null, true);
+    }
+
+    /**
+     * Get local file.
+     *
+     * @return the file
+     */
+    public File getFile() {
+      return file;
+    }
+
+    /**
+     * Get size of the local file as recorded in the manifest. The file is not
+     * accessed again.
+     *
+     * @return size in bytes.
+     */
+    public long getSize() {
+      return size;
+    }
+
+    /**
+     * Upload successful or not.
+     *
+     * @return true if file was uploaded.
+     */
+    public boolean isSuccessful() {
+      return successful;
+    }
+
+    /**
+     * File skipped or not. Skipped files are already recorded in the journal
+     * or match the filter. (e.g. duplicates)
+     *
+     * @return true if file wasn't uploaded.
+     */
+    public boolean isSkipped() {
+      return skipped;
+    }
+
+    /**
+     * Get number of trials.
+     *
+     * @return the trials
+     */
+    public int getTrials() {
+      return trials;
+    }
+
+    /**
+     * Get exception of the last failed trial.
+     *
+     * @return the exception or null.
+     */
+    public Exception getException() {
+      return exception;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s: %s (%d trial(s))", file.getAbsolutePath(), skipped ? "skipped" : successful ? "uploaded" : "FAILED", trials);
+    }
+  }
+
+  /**
+   * Constructor using default policy for retries.
+   * (see {@link RetryPolicy#newTransferPolicy()})
+   *
+   * @param pParallelUploads number of parallel uploads.
+   */
+  public ParallelWebDavUploader(int pParallelUploads) {
+    this(pParallelUploads, RetryPolicy.newTransferPolicy());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param pParallelUploads number of parallel uploads.
+   * @param pRetryPolicy policy for retrying failed uploads.
+   */
+  public ParallelWebDavUploader(int pParallelUploads, RetryPolicy pRetryPolicy) {
+    this(pParallelUploads, pRetryPolicy, 0);
+  }
+
+  /**
+   * Constructor. All files with at least the given size are uploaded in parts
+   * of {@link ChunkedWebDavUploader#DEFAULT_PART_SIZE} bytes. The parts of a
+   * file are uploaded with the same number of parallel uploads.
+   *
+   * @param pParallelUploads number of parallel uploads.
+   * @param pRetryPolicy policy for retrying failed uploads of files or parts.
+   * @param pChunkThreshold minimum size in bytes of files uploaded in parts.
+   * (0: no chunked upload)
+   */
+  public ParallelWebDavUploader(int pParallelUploads, RetryPolicy pRetryPolicy, long pChunkThreshold) {
+    this(pParallelUploads, pRetryPolicy, pChunkThreshold, null);
+  }
+
+  /**
+   * Constructor. All files bundled by the given bundler are uploaded in
+   * bundles instead of one by one. Remote directories are only created for
+   * files not bundled. (and empty directories)
+   *
+   * @param pParallelUploads number of parallel uploads.
+   * @param pRetryPolicy policy for retrying failed uploads of files, parts or
+   * bundles.
+   * @param pChunkThreshold minimum size in bytes of files uploaded in parts.
+   * (0: no chunked upload)
+   * @param pBundler bundler packing small files. (null: no bundling)
+   */
+  public ParallelWebDavUploader(int pParallelUploads, RetryPolicy pRetryPolicy, long pChunkThreshold, FileBundler pBundler) {
+    if (pParallelUploads < 1) {
+      throw new IllegalArgumentException("Number of parallel uploads has to be positive!");
+    }
+    if (pRetryPolicy == null) {
+      throw new IllegalArgumentException("Retry policy must not be null!");
+    }
+    if (pChunkThreshold < 0) {
+      throw new IllegalArgumentException("Threshold for chunked upload must not be negative!");
+    }
+    parallelUploads = pParallelUploads;
+    retryPolicy = pRetryPolicy;
+    chunkThreshold = pChunkThreshold;
+    bundler = pBundler;
+  }
+
+  /**
+   * Upload the content of the given directory to the remote location. If the
+   * source is a file it will be uploaded directly to the remote location.
+   *
+   * @param pSource local directory or file.
+   * @param pRemoteLocation remote directory.
+   * @return result for each file (largest files first).
+   * @throws AdalapiException if remote directory tree couldn't be created.
+   */
+  public List<UploadResult> upload(File pSource, AbstractFile pRemoteLocation) throws AdalapiException {
+    return upload(pSource, pRemoteLocation, null);
+  }
+
+  /**
+   * Upload the content of the given directory to the remote location. If the
+   * source is a file it will be uploaded directly to the remote location.
+   * Directories and files already recorded in the journal are skipped. Skipped
+   * files are reported as successful with 0 trials. (see
+   * {@link UploadResult#isSkipped()})
+   *
+   * @param pSource local directory or file.
+   * @param pRemoteLocation remote directory.
+   * @param pJournal journal of the ingest (may be null).
+   * @return result for each file (largest files first).
+   * @throws AdalapiException if remote directory tree couldn't be created.
+   */
+  public List<UploadResult> upload(File pSource, AbstractFile pRemoteLocation, IngestJournal pJournal) throws AdalapiException {
+    return upload(pSource, pRemoteLocation, pJournal, null);
+  }
+
+  /**
+   * Upload the content of the given directory to the remote location. If the
+   * source is a file it will be uploaded directly to the remote location.
+   * Directories and files already recorded in the journal are skipped as well
+   * as all files matching the given filter. (e.g. duplicates) Skipped files
+   * are reported as successful with 0 trials.
+   *
+   * @param pSource local directory or file.
+   * @param pRemoteLocation remote directory.
+   * @param pJournal journal of the ingest (may be null).
+   * @param pSkip filter for files not to upload (may be null).
+   * @return result for each file (largest files first).
+   * @throws AdalapiException if remote directory tree couldn't be created.
+   */
+  public List<UploadResult> upload(File pSource, AbstractFile pRemoteLocation, IngestJournal pJournal, Predicate<File> pSkip) throws AdalapiException {
+    DirectoryManifest manifest;
+    try {
+      manifest = DirectoryManifest.scan(pSource);
+    } catch (IOException ex) {
+      throw new AdalapiException("Unable to list content of '" + pSource.getAbsolutePath() + "'!", ex);
+    }
+    return upload(manifest, pRemoteLocation, pJournal, pSkip);
+  }
+
+  /**
+   * Upload all directories and files of the manifest to the remote location.
+   * Directories and files already recorded in the journal are skipped as well
+   * as all files matching the given filter. (e.g. duplicates) Skipped files
+   * are reported as successful with 0 trials. Sizes and dates are taken from
+   * the manifest. Therefore the source is not scanned again. Bundled files
+   * are reported after the bundles are uploaded. If the manifest of the
+   * bundles couldn't be uploaded it is reported as a failed file.
+   *
+   * @param pManifest manifest of the local source.
+   * @param pRemoteLocation remote directory.
+   * @param pJournal journal of the ingest (may be null).
+   * @param pSkip filter for files not to upload (may be null).
+   * @return result for each file (largest files first).
+   * @throws AdalapiException if remote directory tree couldn't be created.
+   */
+  public List<UploadResult> upload(DirectoryManifest pManifest, AbstractFile pRemoteLocation, IngestJournal pJournal, Predicate<File> pSkip) throws AdalapiException {
+    List<FileBundler.Bundle> bundles = (bundler != null) ? bundler.plan(pManifest) : Collections.emptyList();
+    Set<File> bundledFiles = new HashSet<>();
+    for (FileBundler.Bundle bundle : bundles) {
+      for (DirectoryManifest.Entry entry : bundle.getFiles()) {
+        bundledFiles.add(entry.getFile());
+      }
+    }
+    Set<File> requiredDirectories = bundles.isEmpty() ? null : getRequiredDirectories(pManifest, bundledFiles);
+    Map<File, URL> remoteDirectories = new HashMap<>();
+    remoteDirectories.put(pManifest.getRootDirectory(), pRemoteLocation.getUrl());
+    // <editor-fold defaultstate="collapsed" desc="Create remote directory tree">
+    Map<File, AbstractFile> remoteParents = new HashMap<>();
+    for (File directory : pManifest.getDirectories()) {
+      if ((requiredDirectories != null) && !requiredDirectories.contains(directory)) {
+        // only bundled files inside
+        continue;
+      }
+      // Parents are listed before their children.
+      URL remoteChild = (pJournal != null) ? pJournal.getRemoteDirectory(directory) : null;
+      if (remoteChild == null) {
+        File parent = directory.getParentFile();
+        AbstractFile remoteParent = remoteParents.get(parent);
+        if (remoteParent == null) {
+          remoteParent = new AbstractFile(remoteDirectories.get(parent));
+          remoteParents.put(parent, remoteParent);
+        }
+        remoteChild = remoteParent.createDirectory(directory.getName()).getUrl();
+        journalDirectory(pJournal, directory, remoteChild);
+      }
+      remoteDirectories.put(directory, remoteChild);
+    }
+    LOGGER.debug("Created {} remote directories for '{}'.", remoteDirectories.size() - 1, pManifest.getSource().getAbsolutePath());
+    // </editor-fold>
+    // Largest files first to avoid a long tail at the end of the upload.
+    List<DirectoryManifest.Entry> files = new ArrayList<>();
+    for (DirectoryManifest.Entry entry : pManifest.getFilesLargestFirst()) {
+      if (!bundledFiles.contains(entry.getFile())) {
+        files.add(entry);
+      }
+    }
+
+    List<UploadResult> results = new ArrayList<>();
+    if (files.isEmpty() && bundles.isEmpty()) {
+      return results;
+    }
+    LOGGER.debug("Uploading {} file(s) and {} bundle(s) with {} bytes.", files.size(), bundles.size(), pManifest.getTotalSize());
+    AtomicInteger threadNumber = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelUploads, files.size() + bundles.size()), (runnable) -> {
+      Thread thread = new Thread(runnable, "webdav-upload-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    ChunkedWebDavUploader chunkedUploader = null;
+    if ((chunkThreshold > 0) && !files.isEmpty() && (files.get(0).getSize() >= chunkThreshold)) {
+      chunkedUploader = new ChunkedWebDavUploader(ChunkedWebDavUploader.DEFAULT_PART_SIZE, parallelUploads, retryPolicy);
+    }
+    try {
+      // Bundles first as they consist of many small files.
+      List<Future<List<UploadResult>>> bundleUploads = new ArrayList<>();
+      for (FileBundler.Bundle bundle : bundles) {
+        bundleUploads.add(executor.submit(uploadBundle(bundle, pManifest.getRootDirectory(), pRemoteLocation.getUrl(), pJournal, pSkip)));
+      }
+      List<Future<UploadResult>> uploads = new ArrayList<>();
+      for (DirectoryManifest.Entry entry : files) {
+        File file = entry.getFile();
+        if (((pJournal != null) && pJournal.isUploaded(file, entry.getSize(), entry.getLastModified())) || ((pSkip != null) && pSkip.test(file))) {
+          uploads.add(CompletableFuture.completedFuture(UploadResult.skipped(file, entry.getSize())));
+        } else {
+          URL remoteDirectory = remoteDirectories.get(file.getParentFile());
+          uploads.add(executor.submit(uploadFile(entry, remoteDirectory, pJournal, chunkedUploader)));
+        }
+      }
+      boolean bundlesUploaded = true;
+      for (int index = 0; index < bundleUploads.size(); index++) {
+        List<UploadResult> bundleResults;
+        try {
+          bundleResults = bundleUploads.get(index).get();
+        } catch (ExecutionException ex) {
+          bundleResults = new ArrayList<>();
+          for (DirectoryManifest.Entry entry : bundles.get(index).getFiles()) {
+            bundleResults.add(new UploadResult(entry.getFile(), entry.getSize(), false, 0, ex));
+          }
+        }
+        bundlesUploaded &= bundleResults.stream().allMatch(UploadResult::isSuccessful);
+        results.addAll(bundleResults);
+      }
+      if (!bundles.isEmpty() && bundlesUploaded) {
+        UploadResult manifestResult = uploadBundleManifest(bundles, pManifest.getRootDirectory(), pRemoteLocation.getUrl());
+        if (!manifestResult.isSuccessful()) {
+          results.add(manifestResult);
+        }
+      }
+      long processedBytes = 0;
+      for (int index = 0; index < uploads.size(); index++) {
+        try {
+          results.add(uploads.get(index).get());
+        } catch (ExecutionException ex) {
+          results.add(new UploadResult(files.get(index).getFile(), files.get(index).getSize(), false, 0, ex));
+        }
+        processedBytes += files.get(index).getSize();
+        LOGGER.trace("Progress: {} of {} file(s), {} of {} bytes.", index + 1, files.size(), processedBytes, pManifest.getTotalSize());
+      }
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new AdalapiException("Upload of '" + pManifest.getSource().getAbsolutePath() + "' was interrupted!", ie);
+    } finally {
+      executor.shutdownNow();
+      if (chunkedUploader != null) {
+        chunkedUploader.close();
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Create task uploading a single file. Files exceeding the threshold are
+   * uploaded in parts if the server supports partial PUT. If the server
+   * doesn't support partial PUT or the upload in parts fails the file is
+   * uploaded as a whole. This upload is retried according to the retry policy.
+   *
+   * @param pEntry entry of the local file.
+   * @param pRemoteDirectory URL of the remote directory.
+   * @param pJournal journal recording the upload (may be null).
+   * @param pChunkedUploader uploader for large files (may be null).
+   * @return task uploading the file.
+   */
+  private Callable<UploadResult> uploadFile(DirectoryManifest.Entry pEntry, URL pRemoteDirectory, IngestJournal pJournal, ChunkedWebDavUploader pChunkedUploader) {
+    File file = pEntry.getFile();
+    return () -> {
+      if ((pChunkedUploader != null) && (pEntry.getSize() >= chunkThreshold)) {
+        try {
+          if (pChunkedUploader.upload(file, pEntry.getSize(), pEntry.getLastModified(), pRemoteDirectory, pJournal)) {
+            journalFile(pJournal, pEntry);
+            return new UploadResult(file, pEntry.getSize(), true, 1, null);
+          }
+        } catch (IOException ex) {
+          LOGGER.warn("Upload in parts failed for '{}'. Uploading file as a whole.", file.getAbsolutePath(), ex);
+        }
+      }
+      AtomicInteger trials = new AtomicInteger();
+      Exception failure = retryPolicy.executeTransfer(UPLOAD_FILE, () -> {
+        trials.incrementAndGet();
+        try {
+          if (new AbstractFile(file).uploadFileToDirectory(new AbstractFile(pRemoteDirectory)) != null) {
+            return null;
+          }
+          return new AdalapiException("Upload of '" + file.getAbsolutePath() + "' failed!");
+        } catch (AdalapiException ex) {
+          return ex;
+        }
+      });
+      if (failure != null) {
+        return new UploadResult(file, pEntry.getSize(), false, trials.get(), failure);
+      }
+      LOGGER.trace("Uploaded '{}' to '{}'", file.getAbsolutePath(), pRemoteDirectory);
+      journalFile(pJournal, pEntry);
+      return new UploadResult(file, pEntry.getSize(), true, trials.get(), null);
+    };
+  }
+
+  /**
+   * Create task uploading a bundle. The bundle is packed again for each
+   * attempt. Files matching the filter are not packed and reported as skipped.
+   * If all other files of the bundle are recorded in the journal the bundle is
+   * skipped.
+   *
+   * @param pBundle bundle.
+   * @param pRootDirectory local root directory.
+   * @param pRemoteLocation URL of the remote root directory.
+   * @param pJournal journal recording the upload (may be null).
+   * @param pSkip filter for files not to upload (may be null).
+   * @return task uploading the bundle returning a result for each file.
+   */
+  private Callable<List<UploadResult>> uploadBundle(FileBundler.Bundle pBundle, File pRootDirectory, URL pRemoteLocation, IngestJournal pJournal, Predicate<File> pSkip) {
+    return () -> {
+      List<DirectoryManifest.Entry> content = new ArrayList<>();
+      boolean journaled = true;
+      for (DirectoryManifest.Entry entry : pBundle.getFiles()) {
+        if ((pSkip == null) || !pSkip.test(entry.getFile())) {
+          content.add(entry);
+          journaled &= (pJournal != null) && pJournal.isUploaded(entry.getFile(), entry.getSize(), entry.getLastModified());
+        }
+      }
+      if (content.isEmpty() || journaled) {
+        return getBundleResults(pBundle, Collections.emptyList(), true, 0, null);
+      }
+      AtomicInteger trials = new AtomicInteger();
+      Exception failure = retryPolicy.executeTransfer(UPLOAD_BUNDLE, () -> {
+        trials.incrementAndGet();
+        try {
+          bundler.upload(pBundle, content, pRootDirectory, pRemoteLocation);
+          return null;
+        } catch (IOException ex) {
+          LOGGER.warn("Upload failed for bundle '{}'", pBundle.getName());
+          return ex;
+        }
+      });
+      if (failure != null) {
+        return getBundleResults(pBundle, content, false, trials.get(), failure);
+      }
+      for (DirectoryManifest.Entry entry : content) {
+        journalFile(pJournal, entry);
+      }
+      return getBundleResults(pBundle, content, true, trials.get(), null);
+    };
+  }
+
+  /**
+   * Upload manifest of all bundles. The upload is retried according to the
+   * retry policy.
+   *
+   * @param pBundles all bundles.
+   * @param pRootDirectory local root directory.
+   * @param pRemoteLocation URL of the remote root directory.
+   * @return result of the upload.
+   */
+  private UploadResult uploadBundleManifest(List<FileBundler.Bundle> pBundles, File pRootDirectory, URL pRemoteLocation) {
+    File manifestFile = new File(pRootDirectory, FileBundler.MANIFEST_NAME);
+    AtomicInteger trials = new AtomicInteger();
+    Exception failure = retryPolicy.executeTransfer(UPLOAD_BUNDLE, () -> {
+      trials.incrementAndGet();
+      try {
+        bundler.uploadManifest(pBundles, pRootDirectory, pRemoteLocation);
+        return null;
+      } catch (IOException ex) {
+        LOGGER.warn("Upload failed for manifest of bundles");
+        return ex;
+      }
+    });
+    return new UploadResult(manifestFile, 0, failure == null, trials.get(), failure);
+  }
+
+  /**
+   * Get result for each file of a bundle. Files not packed into the bundle are
+   * reported as skipped.
+   *
+   * @param pBundle bundle.
+   * @param pContent files packed into the bundle.
+   * @param pSuccessful upload successful or not.
+   * @param pTrials number of trials needed.
+   * @param pException exception of the last failed trial.
+   * @return result for each file.
+   */
+  private static List<UploadResult> getBundleResults(FileBundler.Bundle pBundle, List<DirectoryManifest.Entry> pContent, boolean pSuccessful, int pTrials, Exception pException) {
+    List<UploadResult> results = new ArrayList<>();
+    Set<DirectoryManifest.Entry> content = new HashSet<>(pContent);
+    for (DirectoryManifest.Entry entry : pBundle.getFiles()) {
+      if (content.contains(entry)) {
+        results.add(new UploadResult(entry.getFile(), entry.getSize(), pSuccessful, pTrials, pException));
+      } else {
+        results.add(UploadResult.skipped(entry.getFile(), entry.getSize()));
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Get all directories which have to be created remotely. These are all
+   * directories containing files not bundled and all empty directories
+   * including their parents.
+   *
+   * @param pManifest manifest of the local source.
+   * @param pBundledFiles all bundled files.
+   * @return required directories.
+   */
+  private static Set<File> getRequiredDirectories(DirectoryManifest pManifest, Set<File> pBundledFiles) {
+    Set<File> nonEmptyDirectories = new HashSet<>();
+    Set<File> leafs = new HashSet<>();
+    for (DirectoryManifest.Entry entry : pManifest.getFiles()) {
+      nonEmptyDirectories.add(entry.getFile().getParentFile());
+      if (!pBundledFiles.contains(entry.getFile())) {
+        leafs.add(entry.getFile().getParentFile());
+      }
+    }
+    for (File directory : pManifest.getDirectories()) {
+      nonEmptyDirectories.add(directory.getParentFile());
+    }
+    for (File directory : pManifest.getDirectories()) {
+      if (!nonEmptyDirectories.contains(directory)) {
+        leafs.add(directory);
+      }
+    }
+    Set<File> requiredDirectories = new HashSet<>();
+    File root = pManifest.getRootDirectory();
+    for (File leaf : leafs) {
+      File directory = leaf;
+      // add all parents up to the root directory
+      while ((directory != null) && !directory.equals(root) && requiredDirectories.add(directory)) {
+        directory = directory.getParentFile();
+      }
+    }
+    return requiredDirectories;
+  }
+
+  /**
+   * Record upload of a file in the journal. Size and last modification are
+   * taken from the manifest.
+   *
+   * @param pJournal journal of the ingest (may be null).
+   * @param pEntry entry of the local file.
+   */
+  private static void journalFile(IngestJournal pJournal, DirectoryManifest.Entry pEntry) {
+    if (pJournal != null) {
+      try {
+        pJournal.fileUploaded(pEntry.getFile(), pEntry.getSize(), pEntry.getLastModified());
+      } catch (IOException ex) {
+        LOGGER.warn("Unable to record upload of '" + pEntry.getFile().getAbsolutePath() + "' in journal!", ex);
+      }
+    }
+  }
+
+  /**
+   * Record creation of a remote directory in the journal.
+   *
+   * @param pJournal journal of the ingest (may be null).
+   * @param pDirectory local directory.
+   * @param pRemoteDirectory URL of the remote directory.
+   */
+  private static void journalDirectory(IngestJournal pJournal, File pDirectory, URL pRemoteDirectory) {
+    if (pJournal != null) {
+      try {
+        pJournal.directoryCreated(pDirectory, pRemoteDirectory);
+      } catch (IOException ex) {
+        LOGGER.warn("Unable to record directory '" + pDirectory.getAbsolutePath() + "' in journal!", ex);
+      }
+    }
+  }
+}
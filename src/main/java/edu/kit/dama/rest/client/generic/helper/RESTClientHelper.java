@@ -31,8 +31,6 @@ import edu.kit.jcommander.generic.status.Status;
 import edu.kit.lsdf.adalapi.AbstractFile;
 import edu.kit.lsdf.adalapi.exception.AdalapiException;
 import edu.kit.dama.rest.admin.client.impl.UserGroupRestClient;
-import edu.kit.dama.rest.admin.types.UserGroupWrapper;
-import edu.kit.dama.rest.admin.types.UserDataWrapper;
 import edu.kit.dama.transfer.client.impl.InProcStagingClient;
 import edu.kit.dama.transfer.client.interfaces.IStagingCallback;
 import edu.kit.dama.transfer.client.interfaces.ITransferTaskListener;
@@ -49,23 +47,25 @@ import edu.kit.dama.rest.basemetadata.types.DigitalObjectWrapper;
 import edu.kit.dama.rest.basemetadata.types.InvestigationWrapper;
 import edu.kit.dama.rest.basemetadata.types.StudyWrapper;
 import edu.kit.dama.rest.client.IDataManagerRestUrl;
+import edu.kit.dama.rest.client.RequestLimiter;
+import edu.kit.dama.rest.client.RestClientRegistry;
+import edu.kit.dama.rest.client.UserGroupDirectory;
+import edu.kit.dama.rest.client.metrics.Metrics;
 import edu.kit.dama.rest.staging.client.impl.StagingRestClient;
 import edu.kit.dama.rest.staging.types.DownloadInformationWrapper;
 import edu.kit.dama.rest.staging.types.IngestInformationWrapper;
 import edu.kit.dama.rest.staging.types.TransferTaskContainer;
-import edu.kit.dama.staging.entities.download.DOWNLOAD_STATUS;
-import static edu.kit.dama.staging.entities.download.DOWNLOAD_STATUS.DOWNLOAD_READY;
-import static edu.kit.dama.staging.entities.download.DOWNLOAD_STATUS.DOWNLOAD_REMOVED;
-import static edu.kit.dama.staging.entities.download.DOWNLOAD_STATUS.PREPARATION_FAILED;
-import static edu.kit.dama.staging.entities.download.DOWNLOAD_STATUS.PREPARING;
-import static edu.kit.dama.staging.entities.download.DOWNLOAD_STATUS.SCHEDULED;
 import edu.kit.dama.staging.entities.download.DownloadInformation;
 import edu.kit.dama.staging.entities.ingest.INGEST_STATUS;
 import edu.kit.dama.staging.entities.ingest.IngestInformation;
 import edu.kit.dama.staging.exceptions.ContainerInitializationException;
 import edu.kit.dama.staging.util.DataOrganizationUtils;
 import edu.kit.dama.transfer.client.impl.AbstractTransferClient;
-import java.util.Collection;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import javax.ws.rs.core.Response;
 
 /**
@@ -86,6 +86,11 @@ public class RESTClientHelper implements IStagingCallback, ITransferTaskListener
    * Path separator.
    */
   public static final String PATH_SEPARATOR = "/";
+  /**
+   * Default for the maximum time in milliseconds waiting for a download to be
+   * ready.
+   */
+  public static final long DEFAULT_DOWNLOAD_TIMEOUT = TimeUnit.HOURS.toMillis(1);
   /**
    * Authentication context for REST services.
    */
@@ -103,13 +108,49 @@ public class RESTClientHelper implements IStagingCallback, ITransferTaskListener
    */
   private final String stagingRESTURL;
   /**
-   * Flag for download status.
+   * Registry holding the shared REST clients.
+   */
+  private final RestClientRegistry clientRegistry = RestClientRegistry.getDefaultInstance();
+  /**
+   * Number of parallel uploads via WebDAV.
+   */
+  private volatile int parallelUploads = ParallelWebDavUploader.DEFAULT_PARALLEL_UPLOADS;
+  /**
+   * Maximum time in milliseconds waiting for a download to be ready.
+   */
+  private volatile long downloadTimeout = DEFAULT_DOWNLOAD_TIMEOUT;
+  /**
+   * Policy for files already ingested for the same group.
+   */
+  private volatile DeduplicationPolicy deduplicationPolicy = DeduplicationPolicy.OFF;
+  /**
+   * Minimum size in bytes of files uploaded in parts. (0: no chunked upload)
+   */
+  private volatile long chunkThreshold = 0;
+  /**
+   * Number of parallel downloads via WebDAV.
+   */
+  private volatile int parallelDownloads = ParallelWebDavDownloader.DEFAULT_PARALLEL_DOWNLOADS;
+  /**
+   * Target size in bytes of bundles of small files. (0: no bundling)
    */
-  private boolean breakRecursion = false;
+  private volatile long bundleSize = 0;
   /**
-   * Status of download.
+   * Compression of the bundles.
    */
-  private int downloadStatus = -1;
+  private volatile BundleCompression bundleCompression = BundleCompression.NONE;
+  /**
+   * Policy for retrying failed REST requests.
+   */
+  private volatile RetryPolicy retryPolicy = new RetryPolicy();
+  /**
+   * Executor of REST requests using the retry policy.
+   */
+  private volatile RestRequestExecutor requests = new RestRequestExecutor(retryPolicy);
+  /**
+   * Policy for retrying failed transfers of files, parts and ranges.
+   */
+  private volatile RetryPolicy transferRetryPolicy = RetryPolicy.newTransferPolicy();
 //	private final String dataOrganizationRESTURL;
 
   /**
@@ -130,6 +171,171 @@ public class RESTClientHelper implements IStagingCallback, ITransferTaskListener
 //		this.dataOrganizationRESTURL = baseURL + REST_DATA_ORGANIZATION_PATH;
   }
 
+  /**
+   * Set the number of parallel uploads used for ingests via WebDAV.
+   *
+   * @param pParallelUploads number of parallel uploads.
+   */
+  public void setParallelUploads(int pParallelUploads) {
+    if (pParallelUploads < 1) {
+      throw new IllegalArgumentException("Number of parallel uploads has to be positive!");
+    }
+    parallelUploads = pParallelUploads;
+  }
+
+  /**
+   * Set the policy for files already ingested for the same group.
+   *
+   * @param pPolicy policy for duplicates.
+   * @see Deduplicator
+   */
+  public void setDeduplicationPolicy(DeduplicationPolicy pPolicy) {
+    deduplicationPolicy = (pPolicy != null) ? pPolicy : DeduplicationPolicy.OFF;
+  }
+
+  /**
+   * Set the minimum size of files uploaded in parts via WebDAV.
+   *
+   * @param pChunkThreshold minimum size in bytes. (0: no chunked upload)
+   * @see ChunkedWebDavUploader
+   */
+  public void setChunkThreshold(long pChunkThreshold) {
+    if (pChunkThreshold < 0) {
+      throw new IllegalArgumentException("Threshold for chunked upload must not be negative!");
+    }
+    chunkThreshold = pChunkThreshold;
+  }
+
+  /**
+   * Set the bundling of small files for ingests via WebDAV.
+   *
+   * @param pBundleSize target size of a bundle in bytes. (0: no bundling)
+   * @param pCompression compression of the bundles.
+   * @see FileBundler
+   */
+  public void setBundling(long pBundleSize, BundleCompression pCompression) {
+    if (pBundleSize < 0) {
+      throw new IllegalArgumentException("Size of bundles must not be negative!");
+    }
+    bundleSize = pBundleSize;
+    bundleCompression = (pCompression != null) ? pCompression : BundleCompression.NONE;
+  }
+
+  /**
+   * Set the policy for retrying failed REST requests. The circuit breakers of
+   * the endpoints are held by the policy.
+   *
+   * @param pRetryPolicy policy for retries.
+   */
+  public void setRetryPolicy(RetryPolicy pRetryPolicy) {
+    if (pRetryPolicy == null) {
+      throw new IllegalArgumentException("Retry policy must not be null!");
+    }
+    retryPolicy = pRetryPolicy;
+    requests = new RestRequestExecutor(pRetryPolicy);
+  }
+
+  /**
+   * Set the policy for retrying failed transfers via WebDAV. Each file, part,
+   * bundle or range is retried on its own.
+   *
+   * @param pRetryPolicy policy for retries of transfers.
+   */
+  public void setTransferRetryPolicy(RetryPolicy pRetryPolicy) {
+    if (pRetryPolicy == null) {
+      throw new IllegalArgumentException("Retry policy must not be null!");
+    }
+    transferRetryPolicy = pRetryPolicy;
+  }
+
+  /**
+   * Set the number of parallel downloads used for downloads via WebDAV.
+   *
+   * @param pParallelDownloads number of parallel downloads.
+   */
+  public void setParallelDownloads(int pParallelDownloads) {
+    if (pParallelDownloads < 1) {
+      throw new IllegalArgumentException("Number of parallel downloads has to be positive!");
+    }
+    parallelDownloads = pParallelDownloads;
+  }
+
+  /**
+   * Set the maximum time waiting for a download to be ready.
+   *
+   * @param pDownloadTimeout timeout in milliseconds.
+   */
+  public void setDownloadTimeout(long pDownloadTimeout) {
+    downloadTimeout = pDownloadTimeout;
+  }
+
+  /**
+   * Execute a REST request. The request is retried on transient errors. (see
+   * {@link #setRetryPolicy(RetryPolicy)}) Each attempt waits for the limits of
+   * the endpoint (see {@link RequestLimiter}) and its latency is recorded.
+   *
+   * @param <T> type of the response.
+   * @param pEndpoint name of the endpoint (e.g. 'staging.ingests.get').
+   * @param pRequest request.
+   * @return response of the request.
+   */
+  private <T> T request(String pEndpoint, Supplier<T> pRequest) {
+    return requests.execute(pEndpoint, pRequest);
+  }
+
+  /**
+   * Execute a REST request creating an entity. The request is only retried
+   * if the server didn't process it. The latency of each attempt is recorded.
+   *
+   * @param <T> type of the response.
+   * @param pEndpoint name of the endpoint (e.g. 'staging.ingests.create').
+   * @param pRequest request.
+   * @return response of the request.
+   */
+  private <T> T create(String pEndpoint, Supplier<T> pRequest) {
+    return requests.executeNonIdempotent(pEndpoint, pRequest);
+  }
+
+  /**
+   * Get the shared REST client for user/group services.
+   *
+   * @return REST client for user/group services.
+   */
+  private UserGroupRestClient getUserGroupClient() {
+    return clientRegistry.getClient(UserGroupRestClient.class, this.userGroupRESTURL, this.context,
+            (url, restContext) -> new UserGroupRestClient(url, restContext));
+  }
+
+  /**
+   * Get the cache holding all users and groups. Each REST request of the
+   * cache is retried, limited and timed like all other requests.
+   *
+   * @return cache for users and groups.
+   */
+  public final UserGroupDirectory getUserGroupDirectory() {
+    return UserGroupDirectory.getInstance(getUserGroupClient(), this.context, requests);
+  }
+
+  /**
+   * Get the shared REST client for base metadata services.
+   *
+   * @return REST client for base metadata services.
+   */
+  private BaseMetaDataRestClient getBaseMetaDataClient() {
+    return clientRegistry.getClient(BaseMetaDataRestClient.class, this.baseMetadataRESTURL, this.context,
+            (url, restContext) -> new BaseMetaDataRestClient(url, restContext));
+  }
+
+  /**
+   * Get the shared REST client for staging services.
+   *
+   * @return REST client for staging services.
+   */
+  private StagingRestClient getStagingClient() {
+    return clientRegistry.getClient(StagingRestClient.class, this.stagingRESTURL, this.context,
+            (url, restContext) -> new StagingRestClient(url, restContext));
+  }
+
   /*
    * User Group Specific Methods
    * 
@@ -144,19 +350,9 @@ public class RESTClientHelper implements IStagingCallback, ITransferTaskListener
    * requested user
    */
   public UserData getSpecificUser(String pDistinguishedName) {
-    UserGroupRestClient userGroupClient = new UserGroupRestClient(this.userGroupRESTURL, this.context);
     UserData returnValue = null;
     try {
-      UserDataWrapper userCount = userGroupClient.getUserCount(this.context);
-
-      UserDataWrapper users = userGroupClient.getAllUsers(0, userCount.getCount(), this.context);
-      for (UserData item : users.getEntities()) {
-        UserData detailedUser = userGroupClient.getUserById(item.getUserId(), this.context).getEntities().get(0);
-        if (detailedUser.getDistinguishedName().equals(pDistinguishedName)) {
-          returnValue = detailedUser;
-          break;
-        }
-      }
+      returnValue = getUserGroupDirectory().getUserByDistinguishedName(pDistinguishedName);
     } catch (Exception ex) {
       LOGGER.error("Unable to get the requested user '" + pDistinguishedName + "'!", ex);
     }
@@ -176,20 +372,9 @@ public class RESTClientHelper implements IStagingCallback, ITransferTaskListener
    *
    */
   public final UserGroup getSpecificGroupID(String groupID) {
-    UserGroupRestClient userGroupClient = new UserGroupRestClient(this.userGroupRESTURL, this.context);
-
     UserGroup returnValue = null;
     try {
-      UserGroupWrapper groupCount = userGroupClient.getGroupCount(this.context);
-
-      UserGroupWrapper groups = userGroupClient.getAllGroups(0, groupCount.getCount(), this.context);
-      for (UserGroup item : groups.getEntities()) {
-        UserGroup detailedUser = userGroupClient.getGroupById(item.getId(), this.context).getEntities().get(0);
-        if (detailedUser.getGroupId().contains(groupID)) {
-          returnValue = detailedUser;
-          break;
-        }
-      }
+      returnValue = getUserGroupDirectory().findGroupByGroupId(groupID);
     } catch (Exception ex) {
       LOGGER.error("Unable to get the requestd group by GroupID '" + groupID + "'!", ex);
     }
@@ -207,11 +392,7 @@ public class RESTClientHelper implements IStagingCallback, ITransferTaskListener
   public final UserData getSpecificUser(Long userID) {
     UserData returnValue = null;
     try {
-      UserGroupRestClient userGroupClient = new UserGroupRestClient(this.userGroupRESTURL, this.context);
-      UserDataWrapper userById = userGroupClient.getUserById(userID, this.context);
-      if (userById != null) {
-        returnValue = userById.getEntities().get(0);
-      }
+      returnValue = getUserGroupDirectory().getUserById(userID);
     } catch (Exception ex) {
       LOGGER.error("Unable to get the specified user, identified by userID '" + userID + "'!", ex);
     }
@@ -228,9 +409,10 @@ public class RESTClientHelper implements IStagingCallback, ITransferTaskListener
    */
   public final Investigation getSpecificInvestigation(Long pInvestigationID) {
     Investigation returnValue = null;
-    BaseMetaDataRestClient baseMetaDataClient = new BaseMetaDataRestClient(this.baseMetadataRESTURL, this.context);
+    BaseMetaDataRestClient baseMetaDataClient = getBaseMetaDataClient();
     try {
-      InvestigationWrapper investigationById = baseMetaDataClient.getInvestigationById(pInvestigationID, null, context);
+      InvestigationWrapper investigationById = request("basemetadata.investigations.get",
+              () -> baseMetaDataClient.getInvestigationById(pInvestigationID, null, context));
       returnValue = investigationById.getEntities().get(0);
     } catch (Exception ex) {
       LOGGER.error("Unable to get the specified investigation, identified by investigationID '" + pInvestigationID + "'!", ex);
@@ -255,7 +437,7 @@ public class RESTClientHelper implements IStagingCallback, ITransferTaskListener
    */
   public Study createStudy(String groupID, Study defaultStudy) {
 
-    BaseMetaDataRestClient baseMetaDataClient = new BaseMetaDataRestClient(this.baseMetadataRESTURL, this.context);
+    BaseMetaDataRestClient baseMetaDataClient = getBaseMetaDataClient();
     StudyWrapper createdStudy = null;
     Study studyByTopic = null;
 
@@ -263,7 +445,7 @@ public class RESTClientHelper implements IStagingCallback, ITransferTaskListener
       studyByTopic = getStudyByTopic(groupID, defaultStudy.getTopic());
 
       if (studyByTopic == null) {
-        createdStudy = baseMetaDataClient.addStudy(defaultStudy, groupID, this.context);
+        createdStudy = create("basemetadata.studies.create", () -> baseMetaDataClient.addStudy(defaultStudy, groupID, this.context));
         studyByTopic = createdStudy.getEntities().get(0);
       }
     } catch (Exception ex) {
@@ -288,11 +470,11 @@ public class RESTClientHelper implements IStagingCallback, ITransferTaskListener
   public final Study getStudyByTopic(String groupID, String topic) {
     Study detailedStudy = null;
     try {
-      BaseMetaDataRestClient baseMetaDataClient = new BaseMetaDataRestClient(this.baseMetadataRESTURL, this.context);
-      StudyWrapper studyCount = baseMetaDataClient.getStudyCount(this.context);
-      StudyWrapper studies = baseMetaDataClient.getAllStudies(studyCount.getCount(), 0, groupID, this.context);
+      BaseMetaDataRestClient baseMetaDataClient = getBaseMetaDataClient();
+      StudyWrapper studyCount = request("basemetadata.studies.count", () -> baseMetaDataClient.getStudyCount(this.context));
+      StudyWrapper studies = request("basemetadata.studies.list", () -> baseMetaDataClient.getAllStudies(studyCount.getCount(), 0, groupID, this.context));
       for (Study item : studies.getEntities()) {
-        detailedStudy = baseMetaDataClient.getStudyById(item.getStudyId(), groupID, this.context).getEntities().get(0);
+        detailedStudy = request("basemetadata.studies.get", () -> baseMetaDataClient.getStudyById(item.getStudyId(), groupID, this.context)).getEntities().get(0);
         if (detailedStudy.getTopic() != null) {
           if (detailedStudy.getTopic().equalsIgnoreCase(topic)) {
             break;
@@ -324,14 +506,17 @@ public class RESTClientHelper implements IStagingCallback, ITransferTaskListener
     Investigation createdInvestigation = null;
     InvestigationWrapper allInvestigations;
 
-    BaseMetaDataRestClient baseMetaDataClient = new BaseMetaDataRestClient(this.baseMetadataRESTURL, this.context);
-    InvestigationWrapper investigationWrapper = baseMetaDataClient.getInvestigationCount(study.getStudyId(), group, this.context);
+    BaseMetaDataRestClient baseMetaDataClient = getBaseMetaDataClient();
+    InvestigationWrapper investigationWrapper = request("basemetadata.investigations.count",
+            () -> baseMetaDataClient.getInvestigationCount(study.getStudyId(), group, this.context));
 
     if (investigationWrapper != null) {
-      allInvestigations = baseMetaDataClient.getAllInvestigations(study.getStudyId(), 0, investigationWrapper.getCount(), group, this.context);
+      allInvestigations = request("basemetadata.investigations.list",
+              () -> baseMetaDataClient.getAllInvestigations(study.getStudyId(), 0, investigationWrapper.getCount(), group, this.context));
       if (allInvestigations.getCount() != 0) {
         for (Investigation existingInvestigation : allInvestigations.getEntities()) {
-          InvestigationWrapper investigationById = baseMetaDataClient.getInvestigationById(existingInvestigation.getInvestigationId(), group, this.context);
+          InvestigationWrapper investigationById = request("basemetadata.investigations.get",
+                  () -> baseMetaDataClient.getInvestigationById(existingInvestigation.getInvestigationId(), group, this.context));
           Investigation foundInvestigation = investigationById.getEntities().get(0);
 
           if (foundInvestigation.getStudy().getStudyId().equals(study.getStudyId()) && foundInvestigation.getTopic().trim().equals(investigation.getTopic().trim())) {
@@ -339,12 +524,14 @@ public class RESTClientHelper implements IStagingCallback, ITransferTaskListener
             createdInvestigation = foundInvestigation;
             break;
           } else {
-            InvestigationWrapper addInvestigationToStudy = baseMetaDataClient.addInvestigationToStudy(study.getStudyId(), investigation, group, this.context);
+            InvestigationWrapper addInvestigationToStudy = create("basemetadata.investigations.create",
+                    () -> baseMetaDataClient.addInvestigationToStudy(study.getStudyId(), investigation, group, this.context));
             createdInvestigation = addInvestigationToStudy.getEntities().get(0);
           }
         }
       } else {
-        InvestigationWrapper addInvestigationToStudy = baseMetaDataClient.addInvestigationToStudy(study.getStudyId(), investigation, group, this.context);
+        InvestigationWrapper addInvestigationToStudy = create("basemetadata.investigations.create",
+                () -> baseMetaDataClient.addInvestigationToStudy(study.getStudyId(), investigation, group, this.context));
         createdInvestigation = addInvestigationToStudy.getEntities().get(0);
       }
     } else {
@@ -368,8 +555,9 @@ public class RESTClientHelper implements IStagingCallback, ITransferTaskListener
   public DigitalObject createNanoscopyDigitalObject(String group, Long investigationId, DigitalObject digitalObject) {
     DigitalObject createdDigitalObject = null;
     try {
-      BaseMetaDataRestClient baseMetaDataClient = new BaseMetaDataRestClient(this.baseMetadataRESTURL, this.context);
-      createdDigitalObject = baseMetaDataClient.addDigitalObjectToInvestigation(investigationId, digitalObject, group, this.context).getEntities().get(0);
+      BaseMetaDataRestClient baseMetaDataClient = getBaseMetaDataClient();
+      createdDigitalObject = create("basemetadata.digitalObjects.create",
+              () -> baseMetaDataClient.addDigitalObjectToInvestigation(investigationId, digitalObject, group, this.context)).getEntities().get(0);
     } catch (Exception ex) {
       LOGGER.error("Unable to add the digital object " + digitalObject.getLabel() + " for the the given investigation id '" + investigationId + "'!", ex);
     }
@@ -391,10 +579,11 @@ public class RESTClientHelper implements IStagingCallback, ITransferTaskListener
     DigitalObjectWrapper digitalObjectByDOI = new DigitalObjectWrapper();
 
     // try {
-    BaseMetaDataRestClient baseMetaDataClient = new BaseMetaDataRestClient(this.baseMetadataRESTURL, this.context);
+    BaseMetaDataRestClient baseMetaDataClient = getBaseMetaDataClient();
 
     for (IngestInformation ingestInfo : ingestInformation) {
-      digitalObjectByDOI = baseMetaDataClient.getDigitalObjectByDOI(group, ingestInfo.getDigitalObjectId(), this.context);
+      digitalObjectByDOI = request("basemetadata.digitalObjects.get",
+              () -> baseMetaDataClient.getDigitalObjectByDOI(group, ingestInfo.getDigitalObjectId(), this.context));
       resultDOList.add(digitalObjectByDOI.getEntities().get(0));
     }
     /*   } catch (Exception ex) {
@@ -424,8 +613,9 @@ public class RESTClientHelper implements IStagingCallback, ITransferTaskListener
   public IngestInformation createIngestEntity(String digitalObjectID, String accessMethod, String groupId) {
     IngestInformation ingestInformation = null;
     try {
-      StagingRestClient stagingClient = new StagingRestClient(this.stagingRESTURL, this.context);
-      IngestInformationWrapper postNewIngest = stagingClient.createIngest(digitalObjectID, accessMethod, groupId);
+      StagingRestClient stagingClient = getStagingClient();
+      IngestInformationWrapper postNewIngest = create("staging.ingests.create",
+              () -> stagingClient.createIngest(digitalObjectID, accessMethod, groupId));
       ingestInformation = postNewIngest.getEntities().get(0);
     } catch (Exception ex) {
       LOGGER.error("Unable to create the ingest entity!", ex);
@@ -446,8 +636,8 @@ public class RESTClientHelper implements IStagingCallback, ITransferTaskListener
   public IngestInformation getSpecifiedIngestInformation(Long ingestID) {
     IngestInformation ingestInformation = null;
     try {
-      StagingRestClient stagingClient = new StagingRestClient(this.stagingRESTURL, this.context);
-      ingestInformation = stagingClient.getIngestById(ingestID, this.context).getEntities().get(0);
+      StagingRestClient stagingClient = getStagingClient();
+      ingestInformation = request("staging.ingests.get", () -> stagingClient.getIngestById(ingestID, this.context)).getEntities().get(0);
     } catch (Exception ex) {
       LOGGER.error("Unable to get the ingest information requested by ingestID '" + ingestID + "'", ex);
     }
@@ -456,7 +646,8 @@ public class RESTClientHelper implements IStagingCallback, ITransferTaskListener
 
   /**
    * This method is used to actually ingest/upload the digital data into the KIT
-   * Data Manger. The method uses ADALAPI for uploading the data.
+   * Data Manger. The method uses ADALAPI for uploading the data. The files are
+   * uploaded in parallel. (see {@link #setParallelUploads(int)})
    *
    * @param filesToIngest List of files that needs to be ingested in the KIT DM
    * @param ingestInfo The IngestInformation object for which the files will be
@@ -467,12 +658,35 @@ public class RESTClientHelper implements IStagingCallback, ITransferTaskListener
    * failed then the null object will be returned
    */
   public CommandStatus performIngestADALAPI(File filesToIngest, IngestInformation ingestInfo) {
+    DirectoryManifest manifest;
+    try {
+      manifest = DirectoryManifest.scan(filesToIngest);
+    } catch (IOException ex) {
+      LOGGER.error("Unable to scan data source '" + filesToIngest.getAbsolutePath() + "'!", ex);
+      return new CommandStatus(ex);
+    }
+    return performIngestADALAPI(manifest, ingestInfo);
+  }
+
+  /**
+   * This method is used to actually ingest/upload the digital data into the KIT
+   * Data Manger. The method uses ADALAPI for uploading the data. The files are
+   * uploaded in parallel. (see {@link #setParallelUploads(int)}) The source is
+   * not scanned again. All sizes and dates are taken from the manifest.
+   *
+   * @param manifest manifest of the data source.
+   * @param ingestInfo The IngestInformation object for which the files will be
+   * ingested to KIT DM.
+   * @return The finished Ingest Information object is returned, If the ingest
+   * failed then the null object will be returned
+   */
+  public CommandStatus performIngestADALAPI(DirectoryManifest manifest, IngestInformation ingestInfo) {
+    File filesToIngest = manifest.getSource();
     /*
      * This method requires to some refactoring to check the clientResponse when the Status for the ingest is requested
      * 
      */
     // the updateIngestStatus is wrong the methods needs to be fixed in the BaseUserClient - updateIngestInformationById
-    AbstractFile uploadedFile;
     IngestInformation ingestInformation;
     CommandStatus commandStatus;
 
@@ -483,27 +697,37 @@ public class RESTClientHelper implements IStagingCallback, ITransferTaskListener
 //      return commandStatus;
 //    }
 
-    try {
-      //File[] listFiles = filesToIngest.listFiles();
+    try (IngestJournal journal = openJournal(ingestInfo.getId(), filesToIngest);
+            Deduplicator deduplicator = openDeduplicator(ingestInfo, manifest)) {
       AbstractFile remoteLocation = new AbstractFile(ingestInfo.getDataFolderUrl());
-
-      //for (File file : listFiles) {
-      AbstractFile directoryToUpload = new AbstractFile(filesToIngest);
-      Collection<AbstractFile> list = directoryToUpload.list();
-      for (AbstractFile directoryOrFile : list) {
-        if (directoryOrFile.isDirectory()) {
-          uploadedFile = directoryOrFile.uploadDirectory(remoteLocation);
-        } else {
-          uploadedFile = directoryOrFile.uploadFileToDirectory(remoteLocation);
-        }
-        if (uploadedFile == null) {
-          updateIngestStatus(ingestInfo.getId(), INGEST_STATUS.PRE_INGEST_FAILED.getId());
-          commandStatus = new CommandStatus(Status.FAILED, null, ingestInfo);
-          // Log the information for the eachFile object as that is the one which failed to upload
-          // Throw an exception stating which file failed to upload
-          return commandStatus;
+      long start = System.nanoTime();
+      FileBundler bundler = (bundleSize > 0) ? new FileBundler(bundleSize, bundleCompression) : null;
+      List<ParallelWebDavUploader.UploadResult> results = new ParallelWebDavUploader(parallelUploads, transferRetryPolicy, chunkThreshold, bundler)
+              .upload(manifest, remoteLocation, journal, (deduplicator != null) ? deduplicator::isSkipped : null);
+      int noOfFailedUploads = 0;
+      int noOfUploadedFiles = 0;
+      long uploadedBytes = 0;
+      for (ParallelWebDavUploader.UploadResult result : results) {
+        if (!result.isSuccessful()) {
+          LOGGER.error("Upload of file '{}' failed after {} trial(s)!", result.getFile().getAbsolutePath(), result.getTrials(), result.getException());
+          noOfFailedUploads++;
+        } else if (!result.isSkipped()) {
+          // Files skipped due to journal or deduplication are not counted.
+          noOfUploadedFiles++;
+          uploadedBytes += result.getSize();
         }
       }
+      Metrics.recordTransfer(Metrics.UPLOAD, uploadedBytes, noOfUploadedFiles, System.nanoTime() - start);
+      LOGGER.debug("{} of {} file(s) uploaded for ingest '{}'.", results.size() - noOfFailedUploads, results.size(), ingestInfo.getId());
+      if (noOfFailedUploads > 0) {
+        updateIngestStatus(ingestInfo.getId(), INGEST_STATUS.PRE_INGEST_FAILED.getId());
+        compactJournal(journal);
+        String message = String.format("%d of %d file(s) failed to upload!", noOfFailedUploads, results.size());
+        commandStatus = new CommandStatus(Status.FAILED, new AdalapiException(message), ingestInfo);
+        return commandStatus;
+      }
+      finishJournal(journal);
+      recordContent(deduplicator);
     } catch (AdalapiException e) {
       LOGGER.error("The upload via Adalapi WebDAV failed!", e);
       updateIngestStatus(ingestInfo.getId(), INGEST_STATUS.PRE_INGEST_FAILED.getId());
@@ -517,6 +741,91 @@ public class RESTClientHelper implements IStagingCallback, ITransferTaskListener
     return commandStatus;
   }
 
+  /**
+   * Open the journal of the given ingest. If journal couldn't be opened ingest
+   * will continue without journal.
+   *
+   * @param pIngestId id of the ingest.
+   * @param pSource local source of the ingest.
+   * @return journal or null.
+   */
+  private IngestJournal openJournal(Long pIngestId, File pSource) {
+    IngestJournal journal = null;
+    try {
+      journal = IngestJournal.open(pIngestId, pSource);
+    } catch (IOException ex) {
+      LOGGER.warn("Unable to open journal for ingest '" + pIngestId + "'! Ingest can't be resumed.", ex);
+    }
+    return journal;
+  }
+
+  /**
+   * Scan the source for files already ingested for the group of the ingest. If
+   * the source couldn't be scanned ingest will continue without
+   * deduplication.
+   *
+   * @param pIngestInfo ingest.
+   * @param pManifest manifest of the local source.
+   * @return deduplicator or null if deduplication is switched off.
+   */
+  private Deduplicator openDeduplicator(IngestInformation pIngestInfo, DirectoryManifest pManifest) {
+    DeduplicationPolicy policy = deduplicationPolicy;
+    Deduplicator deduplicator = null;
+    if (policy != DeduplicationPolicy.OFF) {
+      try {
+        deduplicator = Deduplicator.scan(policy, pIngestInfo.getGroupId(), pIngestInfo.getDigitalObjectId(), pManifest);
+      } catch (IOException ex) {
+        LOGGER.warn("Unable to look for duplicates of ingest '" + pIngestInfo.getId() + "'! All files will be uploaded.", ex);
+      }
+    }
+    return deduplicator;
+  }
+
+  /**
+   * Record content of all uploaded files after successful ingest.
+   *
+   * @param pDeduplicator deduplicator of the ingest (may be null).
+   */
+  private void recordContent(Deduplicator pDeduplicator) {
+    if (pDeduplicator != null) {
+      try {
+        pDeduplicator.ingestFinished();
+      } catch (IOException ex) {
+        LOGGER.warn("Unable to record content of ingest in deduplication index!", ex);
+      }
+    }
+  }
+
+  /**
+   * Compact journal after failed ingest.
+   *
+   * @param pJournal journal of the ingest (may be null).
+   */
+  private void compactJournal(IngestJournal pJournal) {
+    if (pJournal != null) {
+      try {
+        pJournal.compact();
+      } catch (IOException ex) {
+        LOGGER.warn("Unable to compact journal!", ex);
+      }
+    }
+  }
+
+  /**
+   * Remove journal after successful ingest.
+   *
+   * @param pJournal journal of the ingest (may be null).
+   */
+  private void finishJournal(IngestJournal pJournal) {
+    if (pJournal != null) {
+      try {
+        pJournal.finish();
+      } catch (IOException ex) {
+        LOGGER.warn("Unable to remove journal!", ex);
+      }
+    }
+  }
+
   /**
    * Method to ingest data using the DataTransferClient. The number of parallel
    * transfer tasks are defined in datamanger.xml file, they can be changed as
@@ -603,8 +912,9 @@ public class RESTClientHelper implements IStagingCallback, ITransferTaskListener
 
     ClientResponse ingestInfoWrapper = null;
     try {
-      StagingRestClient stagingClient = new StagingRestClient(this.stagingRESTURL, this.context);
-      ingestInfoWrapper = stagingClient.updateIngest(ingestID, null, statusID);
+      StagingRestClient stagingClient = getStagingClient();
+      ingestInfoWrapper = retryPolicy.execute("staging.ingests.update", RestRequestExecutor.limited("staging.ingests.update", () -> stagingClient.updateIngest(ingestID, null, statusID)),
+              (response) -> (response != null) && RetryPolicy.isRetryable(response.getStatus()));
     } catch (Exception e) {
       LOGGER.error("Unable to update the ingest status!", e);
     }
@@ -620,8 +930,8 @@ public class RESTClientHelper implements IStagingCallback, ITransferTaskListener
   public int getIngestCount() {
     int count = 0;
     try {
-      StagingRestClient stagingClient = new StagingRestClient(this.stagingRESTURL, this.context);
-      IngestInformationWrapper ingestCount = stagingClient.getIngestCount(this.context);
+      StagingRestClient stagingClient = getStagingClient();
+      IngestInformationWrapper ingestCount = request("staging.ingests.count", () -> stagingClient.getIngestCount(this.context));
       count = ingestCount.getCount();
     } catch (Exception ex) {
       LOGGER.error("Unable to get the ingest count!", ex);
@@ -641,15 +951,16 @@ public class RESTClientHelper implements IStagingCallback, ITransferTaskListener
    * @return The list of all IngestInformation according to the ingestStatus
    */
   public List<IngestInformation> getIngestInformationIDs(int fetchSize, int ingestStatus) {
-    StagingRestClient stagingClient = new StagingRestClient(this.stagingRESTURL, this.context);
+    StagingRestClient stagingClient = getStagingClient();
     List<IngestInformation> finalizedIngests = new ArrayList<>();
     //Get Ingest count for querying the next rest call
 
     try {
       if (fetchSize > 0) {
-        IngestInformationWrapper allIngestInformation = stagingClient.getAllIngestInformation(null, null, ingestStatus, 0, fetchSize, this.context);
+        IngestInformationWrapper allIngestInformation = request("staging.ingests.list",
+                () -> stagingClient.getAllIngestInformation(null, null, ingestStatus, 0, fetchSize, this.context));
         for (IngestInformation ingestInfo : allIngestInformation.getEntities()) {
-          IngestInformationWrapper ingestById = stagingClient.getIngestById(ingestInfo.getId(), this.context);
+          IngestInformationWrapper ingestById = request("staging.ingests.get", () -> stagingClient.getIngestById(ingestInfo.getId(), this.context));
           finalizedIngests.add(ingestById.getEntities().get(0));
         }
       }
@@ -669,11 +980,11 @@ public class RESTClientHelper implements IStagingCallback, ITransferTaskListener
    * @return List of IngestInformation Objects
    */
   public List<IngestInformation> getIngestInformation(List<IngestInformation> listEntries) {
-    StagingRestClient stagingClient = new StagingRestClient(this.stagingRESTURL, this.context);
+    StagingRestClient stagingClient = getStagingClient();
     List<IngestInformation> resultIngestList = new ArrayList<>();
 
     for (IngestInformation ingestInformation : listEntries) {
-      IngestInformationWrapper ingestInfo = stagingClient.getIngestById(ingestInformation.getId(), this.context);
+      IngestInformationWrapper ingestInfo = request("staging.ingests.get", () -> stagingClient.getIngestById(ingestInformation.getId(), this.context));
       resultIngestList.add(ingestInfo.getEntities().get(0));
     }
     return resultIngestList;
@@ -691,8 +1002,8 @@ public class RESTClientHelper implements IStagingCallback, ITransferTaskListener
   public DownloadInformation getDownloadInformation(Long downloadID) {
     DownloadInformation downloadInformation = null;
     try {
-      StagingRestClient stagingClient = new StagingRestClient(this.stagingRESTURL, this.context);
-      DownloadInformationWrapper downloadById = stagingClient.getDownloadById(downloadID, this.context);
+      StagingRestClient stagingClient = getStagingClient();
+      DownloadInformationWrapper downloadById = request("staging.downloads.get", () -> stagingClient.getDownloadById(downloadID, this.context));
       downloadInformation = downloadById.getEntities().get(0);
     } catch (Exception ex) {
       LOGGER.error("Unable to get download information for requested donwload ID '" + downloadID + "'", ex);
@@ -716,8 +1027,9 @@ public class RESTClientHelper implements IStagingCallback, ITransferTaskListener
   public DownloadInformation createDownloadEntity(String digitalObjectID, String accessMethod, String groupId) {
     DownloadInformation downloadInformation = null;
     try {
-      StagingRestClient stagingClient = new StagingRestClient(this.stagingRESTURL, this.context);
-      DownloadInformationWrapper createdDownload = stagingClient.createDownload(digitalObjectID, accessMethod, groupId);
+      StagingRestClient stagingClient = getStagingClient();
+      DownloadInformationWrapper createdDownload = create("staging.downloads.create",
+              () -> stagingClient.createDownload(digitalObjectID, accessMethod, groupId));
       downloadInformation = createdDownload.getEntities().get(0);
     } catch (Exception ex) {
       LOGGER.error("Unable to create download entity for the given digital object id '" + digitalObjectID + "'.", ex);
@@ -739,9 +1051,10 @@ public class RESTClientHelper implements IStagingCallback, ITransferTaskListener
   public IngestInformation getIngestInformationByDOI(String digitalObjectID) {
     IngestInformation ingestInformation = null;
     try {
-      StagingRestClient stagingClient = new StagingRestClient(this.stagingRESTURL, this.context);
-      IngestInformationWrapper ingestInfoID = stagingClient.getAllIngestInformation(null, digitalObjectID, 0, 0, 0, this.context);
-      IngestInformationWrapper informationWrapper = stagingClient.getIngestById(ingestInfoID.getEntities().get(0).getId());
+      StagingRestClient stagingClient = getStagingClient();
+      IngestInformationWrapper ingestInfoID = request("staging.ingests.list",
+              () -> stagingClient.getAllIngestInformation(null, digitalObjectID, 0, 0, 0, this.context));
+      IngestInformationWrapper informationWrapper = request("staging.ingests.get", () -> stagingClient.getIngestById(ingestInfoID.getEntities().get(0).getId()));
       ingestInformation = informationWrapper.getEntities().get(0);
     } catch (Exception ex) {
       LOGGER.error("Unable to get ingest information using the digital object id '" + digitalObjectID + "'", ex);
@@ -757,7 +1070,10 @@ public class RESTClientHelper implements IStagingCallback, ITransferTaskListener
   /**
    * The performDataDownload_ADALAPI method is responsible for downloading the
    * data from the remote repository to your local machine. Currently it uses
-   * the Webdav protocol. In future it will support all protocols
+   * the Webdav protocol. In future it will support all protocols. The files
+   * are downloaded in parallel, large files in ranges. (see
+   * {@link #setParallelDownloads(int)}) An interrupted download is resumed if
+   * the same destination is used again.
    *
    * @param accessMethod The protocol to be used to perform the download from
    * remote repository. for e.g. Webdav
@@ -766,6 +1082,7 @@ public class RESTClientHelper implements IStagingCallback, ITransferTaskListener
    * @param destination The destination to which the data will be downloaded.
    * for e.g. An existing folder on your local machine. C:\mydownloadeddata\
    * @return the abstract file object which was downloaded to the local machine
+   * or null if the download failed.
    */
   public AbstractFile performDataDownloadADALAPI(String accessMethod, DownloadInformation dataToDownload, File destination) {
 
@@ -774,9 +1091,29 @@ public class RESTClientHelper implements IStagingCallback, ITransferTaskListener
 
     try {
       AbstractFile downloadFrom = new AbstractFile(dataToDownload.getDataFolderUrl());
-      AbstractFile downloadTo = new AbstractFile(localDestination);
-      downloadedContent = downloadFrom.downloadDirectory(downloadTo);
-      return downloadedContent;
+      long start = System.nanoTime();
+      List<ParallelWebDavDownloader.DownloadResult> results = new ParallelWebDavDownloader(parallelDownloads, transferRetryPolicy, ParallelWebDavDownloader.DEFAULT_RANGE_SIZE)
+              .download(downloadFrom, localDestination);
+      int noOfFailedDownloads = 0;
+      int noOfDownloadedFiles = 0;
+      long downloadedBytes = 0;
+      for (ParallelWebDavDownloader.DownloadResult result : results) {
+        if (!result.isSuccessful()) {
+          LOGGER.error("Download of file '{}' failed!", result.getFile().getAbsolutePath(), result.getException());
+          noOfFailedDownloads++;
+        } else if (result.getDownloadedBytes() > 0) {
+          // Files downloaded before an interruption are not counted.
+          noOfDownloadedFiles++;
+        }
+        downloadedBytes += result.getDownloadedBytes();
+      }
+      Metrics.recordTransfer(Metrics.DOWNLOAD, downloadedBytes, noOfDownloadedFiles, System.nanoTime() - start);
+      LOGGER.debug("{} of {} file(s) downloaded to '{}'.", results.size() - noOfFailedDownloads, results.size(), localDestination.getAbsolutePath());
+      if (noOfFailedDownloads > 0) {
+        LOGGER.error("{} of {} file(s) failed to download! Download again to the same destination to resume.", noOfFailedDownloads, results.size());
+      } else {
+        downloadedContent = new AbstractFile(localDestination);
+      }
     } catch (AdalapiException e) {
       LOGGER.error("Download via WebDAV failed!", e);
     }
@@ -833,59 +1170,35 @@ public class RESTClientHelper implements IStagingCallback, ITransferTaskListener
   }
 
   /**
-   * Check download status. Wait 5 seconds if status is 'scheduled' and check
-   * again!? (but only once) In case of 'preparing' wait 5 seconds and check
-   * again!? (but only once)
+   * Wait asynchronously until the download is ready. The status is polled with
+   * an exponential backoff until the download is ready, its preparation failed
+   * or the download timeout is reached.
    *
    * @param downloadID id of the download.
-   * @return status as int
+   * @return future holding the download information of the ready download.
+   * @see #setDownloadTimeout(long)
    */
-  public int checkDownloadStatus(Long downloadID) {
-
-    if (breakRecursion == false) {
-      DownloadInformation downloadInformation = getDownloadInformation(downloadID);
-
-      switch (DOWNLOAD_STATUS.idToStatus(downloadInformation.getStatus())) {
-
-        case SCHEDULED:
-          try {
-            Thread.sleep(5000);
-            downloadStatus = checkDownloadStatus(downloadInformation.getId());
-          } catch (InterruptedException e) {
-            // Log thread interrupted exception
-          }
-          break;
-
-        case DOWNLOAD_READY:
-          downloadStatus = downloadInformation.getStatus();
-          breakRecursion = true;
-          break;
-
-        case DOWNLOAD_REMOVED:
-          // Print info that the download is already removed
-          break;
-
-        case PREPARATION_FAILED:
-          // Print error on systemout stating the prepartion of download failed
-          break;
-
-        case PREPARING:
-          try {
-            Thread.sleep(5000);
-            checkDownloadStatus(downloadInformation.getId());
-          } catch (InterruptedException e) {
-            // Log thread interrupted exception
-          }
-          break;
-
-        case UNKNOWN:
-          //Print error on systemout stating the download is unknown
-          break;
+  public CompletableFuture<DownloadInformation> waitForDownload(Long downloadID) {
+    long start = System.nanoTime();
+    CompletableFuture<DownloadInformation> ready = DownloadReadinessWaiter.getDefaultInstance().waitUntilReady(downloadID, this::getDownloadInformation, downloadTimeout);
+    ready.whenComplete((downloadInformation, failure) -> Metrics.record(Metrics.DOWNLOAD_WAIT, System.nanoTime() - start));
+    return ready;
+  }
 
-        default:
-          // Invalid state exit
-          break;
-      }
+  /**
+   * Check download status. Wait until download is ready or preparation of the
+   * download failed.
+   *
+   * @param downloadID id of the download.
+   * @return status as int (-1 if download is not ready)
+   * @see #waitForDownload(java.lang.Long)
+   */
+  public int checkDownloadStatus(Long downloadID) {
+    int downloadStatus = -1;
+    try {
+      downloadStatus = waitForDownload(downloadID).join().getStatus();
+    } catch (CompletionException | CancellationException ex) {
+      LOGGER.error("Download '" + downloadID + "' is not ready!", ex.getCause() != null ? ex.getCause() : ex);
     }
     return downloadStatus;
   }
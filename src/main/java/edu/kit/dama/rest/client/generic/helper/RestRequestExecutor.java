@@ -0,0 +1,96 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.generic.helper;
+
+import edu.kit.dama.rest.client.IRequestExecutor;
+import edu.kit.dama.rest.client.RequestLimiter;
+import edu.kit.dama.rest.client.metrics.Metrics;
+import java.util.function.Supplier;
+
+/**
+ * Executor of REST requests used by all clients. Each request is retried on
+ * transient errors (see {@link RetryPolicy}), each attempt waits for the
+ * limits of its endpoint (see {@link RequestLimiter}) and its latency is
+ * recorded (see {@link Metrics}).
+ * <br/> Example:
+ * <pre>
+ * {@code
+ *  RestRequestExecutor requests = new RestRequestExecutor(new RetryPolicy());
+ *  DigitalObjectWrapper digitalObject = requests.execute("basemetadata.digitalObjects.get",
+ *          () -> baseMetaDataClient.getDigitalObjectById(id, groupId, context));
+ * }
+ * </pre>
+ *
+ * @author hartmann-v
+ */
+public final class RestRequestExecutor implements IRequestExecutor {
+
+  /**
+   * Policy for retries.
+   */
+  private final RetryPolicy retryPolicy;
+
+  /**
+   * Constructor.
+   *
+   * @param pRetryPolicy policy for retries.
+   */
+  public RestRequestExecutor(RetryPolicy pRetryPolicy) {
+    if (pRetryPolicy == null) {
+      throw new IllegalArgumentException("Retry policy must not be null!");
+    }
+    retryPolicy = pRetryPolicy;
+  }
+
+  /**
+   * Execute a REST request. The request is retried on transient errors.
+   *
+   * @param <T> type of the response.
+   * @param pEndpoint name of the endpoint (e.g. 'staging.ingests.get').
+   * @param pRequest request.
+   * @return response of the request.
+   */
+  @Override
+  public <T> T execute(String pEndpoint, Supplier<T> pRequest) {
+    return retryPolicy.execute(pEndpoint, limited(pEndpoint, pRequest));
+  }
+
+  /**
+   * Execute a REST request creating an entity. The request is only retried
+   * if the server didn't process it.
+   *
+   * @param <T> type of the response.
+   * @param pEndpoint name of the endpoint (e.g. 'staging.ingests.create').
+   * @param pRequest request.
+   * @return response of the request.
+   */
+  public <T> T executeNonIdempotent(String pEndpoint, Supplier<T> pRequest) {
+    return retryPolicy.executeNonIdempotent(pEndpoint, limited(pEndpoint, pRequest));
+  }
+
+  /**
+   * Get a single attempt of a REST request waiting for the limits of the
+   * endpoint and recording its latency.
+   *
+   * @param <T> type of the response.
+   * @param pEndpoint name of the endpoint.
+   * @param pRequest request.
+   * @return limited and timed request.
+   */
+  static <T> Supplier<T> limited(String pEndpoint, Supplier<T> pRequest) {
+    return () -> RequestLimiter.getDefaultInstance().execute(pEndpoint, () -> Metrics.timeRequest(pEndpoint, pRequest));
+  }
+}
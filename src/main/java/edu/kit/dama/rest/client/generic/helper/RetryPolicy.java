@@ -0,0 +1,580 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.generic.helper;
+
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.UniformInterfaceException;
+import edu.kit.dama.rest.client.metrics.Metrics;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import javax.net.ssl.SSLException;
+import javax.ws.rs.WebApplicationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Retry failed requests and transfers. Failed calls are retried with an
+ * exponential backoff (with jitter) until the maximum number of attempts or
+ * the time budget is reached. Only transient errors are retried:
+ * <ul>
+ * <li>HTTP status 5xx, 408 (request timeout) and 429 (too many requests)</li>
+ * <li>I/O errors (e.g. connection refused or timeouts)</li>
+ * </ul>
+ * All other errors (e.g. HTTP status 4xx) are thrown immediately. Calls which
+ * are not idempotent (e.g. creating entities) are only retried if the server
+ * didn't process the request. (HTTP status 429, 503 or connection refused)
+ * <br/>
+ * Each endpoint has its own circuit breaker. After a number of consecutive
+ * transient errors the circuit opens and all calls of the endpoint wait until
+ * the circuit is half open again. Then one call probes the endpoint while
+ * all others wait for the outcome of the probe. The circuit breakers are held
+ * by the policy.
+ * Therefore one policy should only be shared by clients of the same server.
+ * <br/> Example:
+ * <pre>
+ * {@code
+ *  RetryPolicy policy = new RetryPolicy();
+ *  IngestInformationWrapper ingest = policy.execute("staging.ingests.get", () -> stagingClient.getIngestById(id, context));
+ * }
+ * </pre>
+ *
+ * @author hartmann-v
+ */
+public class RetryPolicy {
+
+  /**
+   * The logger
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(RetryPolicy.class);
+  /**
+   * Default maximum number of attempts for each call.
+   */
+  public static final int DEFAULT_MAX_ATTEMPTS = 4;
+  /**
+   * Default delay in milliseconds before the first retry.
+   */
+  public static final long DEFAULT_INITIAL_DELAY = 500;
+  /**
+   * Default maximum delay in milliseconds between two attempts.
+   */
+  public static final long DEFAULT_MAX_DELAY = TimeUnit.SECONDS.toMillis(30);
+  /**
+   * Default time budget in milliseconds for all attempts of a call.
+   */
+  public static final long DEFAULT_TIME_BUDGET = TimeUnit.MINUTES.toMillis(2);
+  /**
+   * Time budget without limit.
+   */
+  public static final long UNLIMITED_TIME_BUDGET = 0;
+  /**
+   * Default number of consecutive transient errors opening the circuit of an
+   * endpoint.
+   */
+  public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+  /**
+   * Default time in milliseconds a circuit stays open.
+   */
+  public static final long DEFAULT_OPEN_DURATION = TimeUnit.SECONDS.toMillis(30);
+  /**
+   * Default maximum number of attempts for the transfer of a file, part or
+   * range.
+   */
+  public static final int DEFAULT_TRANSFER_ATTEMPTS = 3;
+  /**
+   * Default delay in milliseconds before the first retry of a transfer.
+   */
+  public static final long DEFAULT_TRANSFER_DELAY = 1000;
+  /**
+   * HTTP status 'Request Timeout'.
+   */
+  private static final int REQUEST_TIMEOUT = 408;
+  /**
+   * HTTP status 'Too Many Requests'.
+   */
+  private static final int TOO_MANY_REQUESTS = 429;
+  /**
+   * HTTP status 'Service Unavailable'.
+   */
+  private static final int SERVICE_UNAVAILABLE = 503;
+  /**
+   * Maximum number of attempts for each call.
+   */
+  private final int maxAttempts;
+  /**
+   * Delay in milliseconds before the first retry.
+   */
+  private final long initialDelay;
+  /**
+   * Maximum delay in milliseconds between two attempts.
+   */
+  private final long maxDelay;
+  /**
+   * Time budget in milliseconds for all attempts of a call.
+   */
+  private final long timeBudget;
+  /**
+   * Number of consecutive transient errors opening the circuit.
+   */
+  private final int failureThreshold;
+  /**
+   * Time in milliseconds a circuit stays open.
+   */
+  private final long openDuration;
+  /**
+   * Circuit breaker for each endpoint.
+   */
+  private final Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+  /**
+   * Circuit breaker of one endpoint.
+   */
+  private final class CircuitBreaker {
+
+    /**
+     * Number of consecutive transient errors.
+     */
+    private int failures = 0;
+    /**
+     * Time in milliseconds the circuit is open until. (0: circuit closed)
+     */
+    private long openUntil = 0;
+    /**
+     * A call probes the half open circuit.
+     */
+    private boolean probing = false;
+
+    /**
+     * Acquire permission for a call. While another call probes the half open
+     * circuit the caller waits for the outcome of the probe.
+     *
+     * @param pDeadline time in milliseconds to stop waiting for a probe.
+     * @return 0 if call is permitted otherwise the time in milliseconds to wait
+     * before asking again. (Long.MAX_VALUE if the probe didn't finish before
+     * the deadline)
+     * @throws InterruptedException if waiting for the probe was interrupted.
+     */
+    synchronized long acquire(long pDeadline) throws InterruptedException {
+      while (true) {
+        long now = System.currentTimeMillis();
+        if (openUntil == 0) {
+          return 0;
+        }
+        if (now < openUntil) {
+          return openUntil - now;
+        }
+        if (!probing) {
+          probing = true;
+          return 0;
+        }
+        if (now >= pDeadline) {
+          return Long.MAX_VALUE;
+        }
+        wait(pDeadline - now);
+      }
+    }
+
+    /**
+     * Endpoint responded. The circuit is closed.
+     */
+    synchronized void success() {
+      failures = 0;
+      openUntil = 0;
+      probing = false;
+      notifyAll();
+    }
+
+    /**
+     * Call failed without telling anything about the endpoint. (e.g. local
+     * I/O error) If the call was the probe another call may probe the
+     * endpoint.
+     */
+    synchronized void release() {
+      if (probing) {
+        probing = false;
+        notifyAll();
+      }
+    }
+
+    /**
+     * Endpoint failed with a transient error.
+     *
+     * @param pEndpoint name of the endpoint.
+     * @param pNow current time in milliseconds.
+     */
+    synchronized void failure(String pEndpoint, long pNow) {
+      failures++;
+      if (probing || (failures >= failureThreshold)) {
+        if (openUntil == 0) {
+          LOGGER.warn("Circuit for endpoint '{}' opened after {} failure(s).", pEndpoint, failures);
+        }
+        openUntil = pNow + openDuration;
+        probing = false;
+        notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Constructor using default values.
+   */
+  public RetryPolicy() {
+    this(DEFAULT_MAX_ATTEMPTS, DEFAULT_INITIAL_DELAY, DEFAULT_MAX_DELAY, DEFAULT_TIME_BUDGET);
+  }
+
+  /**
+   * Constructor using default values for the circuit breakers.
+   *
+   * @param pMaxAttempts maximum number of attempts for each call.
+   * @param pInitialDelay delay in milliseconds before the first retry.
+   * @param pMaxDelay maximum delay in milliseconds between two attempts.
+   * @param pTimeBudget time budget in milliseconds for all attempts of a call.
+   * (see {@link #UNLIMITED_TIME_BUDGET})
+   */
+  public RetryPolicy(int pMaxAttempts, long pInitialDelay, long pMaxDelay, long pTimeBudget) {
+    this(pMaxAttempts, pInitialDelay, pMaxDelay, pTimeBudget, DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_DURATION);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param pMaxAttempts maximum number of attempts for each call.
+   * @param pInitialDelay delay in milliseconds before the first retry.
+   * @param pMaxDelay maximum delay in milliseconds between two attempts.
+   * @param pTimeBudget time budget in milliseconds for all attempts of a call.
+   * (see {@link #UNLIMITED_TIME_BUDGET})
+   * @param pFailureThreshold number of consecutive transient errors opening
+   * the circuit of an endpoint.
+   * @param pOpenDuration time in milliseconds a circuit stays open.
+   */
+  public RetryPolicy(int pMaxAttempts, long pInitialDelay, long pMaxDelay, long pTimeBudget, int pFailureThreshold, long pOpenDuration) {
+    if (pMaxAttempts < 1) {
+      throw new IllegalArgumentException("Number of attempts has to be positive!");
+    }
+    if ((pInitialDelay < 1) || (pMaxDelay < pInitialDelay)) {
+      throw new IllegalArgumentException("Invalid delays for retries!");
+    }
+    if (pTimeBudget < 0) {
+      throw new IllegalArgumentException("Time budget must not be negative!");
+    }
+    if ((pFailureThreshold < 1) || (pOpenDuration < 1)) {
+      throw new IllegalArgumentException("Invalid settings for circuit breaker!");
+    }
+    maxAttempts = pMaxAttempts;
+    initialDelay = pInitialDelay;
+    maxDelay = pMaxDelay;
+    timeBudget = pTimeBudget;
+    failureThreshold = pFailureThreshold;
+    openDuration = pOpenDuration;
+  }
+
+  /**
+   * Execute a call and retry it on transient errors. If the thread is
+   * interrupted while waiting the last error is thrown immediately. (The
+   * interrupt flag is kept.)
+   *
+   * @param <T> type of the result.
+   * @param pEndpoint name of the endpoint (e.g. 'staging.ingests.get').
+   * @param pCall call of the endpoint.
+   * @return result of the call.
+   * @throws IllegalStateException if circuit of the endpoint stays open
+   * longer than the time budget.
+   */
+  public <T> T execute(String pEndpoint, Supplier<T> pCall) {
+    return execute(pEndpoint, pCall, null, null, true);
+  }
+
+  /**
+   * Execute a call which is not idempotent. (e.g. creating an entity) The
+   * call is only retried if the server didn't process the request.
+   *
+   * @param <T> type of the result.
+   * @param pEndpoint name of the endpoint (e.g. 'staging.ingests.create').
+   * @param pCall call of the endpoint.
+   * @return result of the call.
+   * @throws IllegalStateException if circuit of the endpoint stays open
+   * longer than the time budget.
+   */
+  public <T> T executeNonIdempotent(String pEndpoint, Supplier<T> pCall) {
+    return execute(pEndpoint, pCall, null, null, false);
+  }
+
+  /**
+   * Execute a call and retry it on transient errors or results matching the
+   * given filter. (e.g. failed transfers) If all attempts fail the last result
+   * is returned. If the thread is interrupted while waiting the last result or
+   * error is returned or thrown immediately. (The interrupt flag is kept.)
+   *
+   * @param <T> type of the result.
+   * @param pEndpoint name of the endpoint (e.g. 'ingest').
+   * @param pCall call of the endpoint.
+   * @param pFailed filter for failed results (may be null).
+   * @return result of the call.
+   * @throws IllegalStateException if circuit of the endpoint stays open
+   * longer than the time budget.
+   */
+  public <T> T execute(String pEndpoint, Supplier<T> pCall, Predicate<T> pFailed) {
+    return execute(pEndpoint, pCall, pFailed, null, true);
+  }
+
+  /**
+   * Execute a transfer via WebDAV and retry it on any error. Transfers report
+   * their errors instead of throwing them. Only errors of the connection
+   * (e.g. connection refused or timeouts) and transient HTTP status of the
+   * server count for the circuit breaker. Local errors (e.g. file not
+   * readable) are retried but don't open the circuit of the endpoint.
+   * <br/> Example:
+   * <pre>
+   * {@code
+   *  Exception failure = policy.executeTransfer("webdav.upload", () -> {
+   *    try {
+   *      upload(file);
+   *      return null;
+   *    } catch (IOException ex) {
+   *      return ex;
+   *    }
+   *  });
+   * }
+   * </pre>
+   *
+   * @param pEndpoint name of the endpoint (e.g. 'webdav.upload').
+   * @param pTransfer single attempt of the transfer returning null on success
+   * or the error of the attempt.
+   * @return null if transfer succeeded or the error of the last attempt. (An
+   * IllegalStateException if the circuit stayed open or waiting was
+   * interrupted.)
+   */
+  public Exception executeTransfer(String pEndpoint, Supplier<Exception> pTransfer) {
+    try {
+      return execute(pEndpoint, pTransfer, Objects::nonNull, RetryPolicy::isTransportFailure, true);
+    } catch (IllegalStateException ise) {
+      return ise;
+    }
+  }
+
+  /**
+   * Create a policy for transfers of files, parts or ranges via WebDAV. The
+   * time budget is unlimited as a single transfer may take very long.
+   *
+   * @return policy for transfers.
+   */
+  public static RetryPolicy newTransferPolicy() {
+    return new RetryPolicy(DEFAULT_TRANSFER_ATTEMPTS, DEFAULT_TRANSFER_DELAY, DEFAULT_MAX_DELAY, UNLIMITED_TIME_BUDGET);
+  }
+
+  /**
+   * Execute a call and retry it on transient errors or results matching the
+   * given filter.
+   *
+   * @param <T> type of the result.
+   * @param pEndpoint name of the endpoint.
+   * @param pCall call of the endpoint.
+   * @param pFailed filter for failed results (may be null).
+   * @param pEndpointFailed filter for failed results caused by the endpoint
+   * (null: all failed results).
+   * @param pIdempotent call may be repeated without side effects.
+   * @return result of the call.
+   */
+  private <T> T execute(String pEndpoint, Supplier<T> pCall, Predicate<T> pFailed, Predicate<T> pEndpointFailed, boolean pIdempotent) {
+    CircuitBreaker circuitBreaker = circuitBreakers.computeIfAbsent(pEndpoint, (key) -> new CircuitBreaker());
+    long deadline = (timeBudget == UNLIMITED_TIME_BUDGET) ? Long.MAX_VALUE : System.currentTimeMillis() + timeBudget;
+    int attempt = 0;
+    T result = null;
+    RuntimeException lastException = null;
+    while (true) {
+      long wait;
+      try {
+        wait = circuitBreaker.acquire(deadline);
+      } catch (InterruptedException ie) {
+        // waiting for the probe was interrupted
+        Thread.currentThread().interrupt();
+        wait = -1;
+      }
+      if (wait != 0) {
+        // <editor-fold defaultstate="collapsed" desc="Wait for half open circuit">
+        if ((wait > 0) && (wait > deadline - System.currentTimeMillis())) {
+          throw new IllegalStateException("Circuit for endpoint '" + pEndpoint + "' is open!", lastException);
+        }
+        if ((wait < 0) || !sleep(wait)) {
+          if (attempt == 0) {
+            throw new IllegalStateException("Waiting for endpoint '" + pEndpoint + "' was interrupted!");
+          }
+          return finish(result, lastException);
+        }
+        continue;
+        // </editor-fold>
+      }
+      attempt++;
+      boolean endpointFailed = true;
+      try {
+        result = pCall.get();
+        lastException = null;
+        if ((pFailed == null) || !pFailed.test(result)) {
+          circuitBreaker.success();
+          return result;
+        }
+        endpointFailed = (pEndpointFailed == null) || pEndpointFailed.test(result);
+        LOGGER.warn("Try #{}: Call of endpoint '{}' failed!", attempt, pEndpoint);
+      } catch (RuntimeException rex) {
+        if (!isRetryable(rex, pIdempotent)) {
+          // Endpoint responded properly.
+          circuitBreaker.success();
+          throw rex;
+        }
+        lastException = rex;
+        LOGGER.warn("Try #{}: Call of endpoint '{}' failed! ({})", attempt, pEndpoint, rex.getMessage());
+      }
+      if (endpointFailed) {
+        circuitBreaker.failure(pEndpoint, System.currentTimeMillis());
+      } else {
+        circuitBreaker.release();
+      }
+      long delay = getDelay(attempt);
+      if ((attempt >= maxAttempts) || (System.currentTimeMillis() + delay > deadline) || !sleep(delay)) {
+        return finish(result, lastException);
+      }
+      Metrics.increment(Metrics.RETRIES_PREFIX + pEndpoint);
+    }
+  }
+
+  /**
+   * Is error transient and the call should be retried?
+   *
+   * @param pException error of the call.
+   * @return true if call should be retried.
+   */
+  public static boolean isRetryable(Throwable pException) {
+    return isRetryable(pException, true);
+  }
+
+  /**
+   * Is error transient and the call should be retried?
+   *
+   * @param pException error of the call.
+   * @param pIdempotent call may be repeated without side effects.
+   * @return true if call should be retried.
+   */
+  public static boolean isRetryable(Throwable pException, boolean pIdempotent) {
+    for (Throwable cause = pException; cause != null; cause = cause.getCause()) {
+      int status = 0;
+      if (cause instanceof UniformInterfaceException) {
+        status = ((UniformInterfaceException) cause).getResponse().getStatus();
+      } else if (cause instanceof WebApplicationException) {
+        status = ((WebApplicationException) cause).getResponse().getStatus();
+      }
+      if (status > 0) {
+        if (!pIdempotent) {
+          return (status == TOO_MANY_REQUESTS) || (status == SERVICE_UNAVAILABLE);
+        }
+        return isRetryable(status);
+      }
+      if ((cause instanceof ConnectException) || (cause instanceof UnknownHostException)) {
+        // request not sent
+        return true;
+      }
+      if (pIdempotent && ((cause instanceof IOException) || (cause instanceof ClientHandlerException))) {
+        // no response from server
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Is error of a transfer caused by the connection or by a transient error of
+   * the server? The cause chain is searched for errors of the network (e.g.
+   * connection refused, reset or timed out) and HTTP status of the WebDAV
+   * server. All other errors are regarded as local errors.
+   *
+   * @param pException error of the transfer.
+   * @return true if error should count for the circuit breaker.
+   */
+  private static boolean isTransportFailure(Exception pException) {
+    for (Throwable cause = pException; cause != null; cause = cause.getCause()) {
+      if (cause instanceof WebDavStatusException) {
+        return isRetryable(((WebDavStatusException) cause).getStatus());
+      }
+      if ((cause instanceof SocketException) || (cause instanceof SocketTimeoutException)
+              || (cause instanceof UnknownHostException) || (cause instanceof SSLException)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Is HTTP status transient and the call should be retried?
+   *
+   * @param pStatus HTTP status of the response.
+   * @return true if call should be retried.
+   */
+  public static boolean isRetryable(int pStatus) {
+    return (pStatus >= 500) || (pStatus == TOO_MANY_REQUESTS) || (pStatus == REQUEST_TIMEOUT);
+  }
+
+  /**
+   * Get delay before next attempt. The delay is doubled for each attempt.
+   * Equal jitter: wait between half and full delay.
+   *
+   * @param pAttempt number of the failed attempt.
+   * @return delay in milliseconds.
+   */
+  private long getDelay(int pAttempt) {
+    long delay = initialDelay << Math.min(pAttempt - 1, 30);
+    delay = Math.min(Math.max(delay, initialDelay), maxDelay);
+    return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+  }
+
+  /**
+   * Wait before next attempt.
+   *
+   * @param pDelay delay in milliseconds.
+   * @return false if thread was interrupted.
+   */
+  private static boolean sleep(long pDelay) {
+    try {
+      TimeUnit.MILLISECONDS.sleep(pDelay);
+      return true;
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  /**
+   * Give up retrying.
+   *
+   * @param <T> type of the result.
+   * @param pResult last result.
+   * @param pException error of the last attempt (may be null).
+   * @return last result if last attempt didn't throw an error.
+   */
+  private static <T> T finish(T pResult, RuntimeException pException) {
+    if (pException != null) {
+      throw pException;
+    }
+    return pResult;
+  }
+}
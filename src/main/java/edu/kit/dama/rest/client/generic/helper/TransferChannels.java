@@ -0,0 +1,240 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.generic.helper;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local I/O of the transfer engines based on channels. Files are read and
+ * written with {@link FileChannel#transferTo(long, long, WritableByteChannel)}
+ * and {@link FileChannel#transferFrom(ReadableByteChannel, long, long)}. If a
+ * checksum has to be calculated while reading, the content passes through
+ * pooled direct buffers or, for large ranges, through a memory mapping of the
+ * file. Therefore no heap buffers are allocated per transfer and heap usage
+ * doesn't depend on the size of the files.
+ * <br/>
+ * Memory mapped reads may be switched off with the system property
+ * 'repoClient.mmap=false' or {@link #setMemoryMappedReads(boolean)}.
+ *
+ * @author hartmann-v
+ */
+public final class TransferChannels {
+
+  /**
+   * System property enabling memory mapped reads.
+   */
+  private static final String MEMORY_MAPPED_READS = "repoClient.mmap";
+  /**
+   * Size of a pooled direct buffer.
+   */
+  static final int BUFFER_SIZE = 256 * 1024;
+  /**
+   * Maximum number of buffers kept in the pool.
+   */
+  private static final int MAX_POOLED_BUFFERS = 64;
+  /**
+   * Minimum size of a range read via memory mapping.
+   */
+  static final long MAPPING_THRESHOLD = 16L * 1024 * 1024;
+  /**
+   * Pool of direct buffers.
+   */
+  private static final Queue<ByteBuffer> BUFFER_POOL = new ConcurrentLinkedQueue<>();
+  /**
+   * Number of buffers in the pool.
+   */
+  private static final AtomicInteger pooledBuffers = new AtomicInteger();
+  /**
+   * Read large ranges via memory mapping.
+   */
+  private static volatile boolean memoryMappedReads = Boolean.parseBoolean(System.getProperty(MEMORY_MAPPED_READS, Boolean.TRUE.toString()));
+
+  /**
+   * This is a utility class and hence does not require any public constructor.
+   */
+  private TransferChannels() {
+  }
+
+  /**
+   * Enable or disable memory mapped reads of large ranges. (Default: true)
+   *
+   * @param pEnabled read large ranges via memory mapping.
+   */
+  public static void setMemoryMappedReads(boolean pEnabled) {
+    memoryMappedReads = pEnabled;
+  }
+
+  /**
+   * Get a direct buffer from the pool. The buffer has to be returned via
+   * {@link #release(ByteBuffer)}.
+   *
+   * @return cleared direct buffer of {@link #BUFFER_SIZE} bytes.
+   */
+  static ByteBuffer acquire() {
+    ByteBuffer buffer = BUFFER_POOL.poll();
+    if (buffer == null) {
+      return ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+    pooledBuffers.decrementAndGet();
+    buffer.clear();
+    return buffer;
+  }
+
+  /**
+   * Return a buffer to the pool. If the pool is full the buffer is dropped.
+   *
+   * @param pBuffer buffer acquired via {@link #acquire()}.
+   */
+  static void release(ByteBuffer pBuffer) {
+    if (pooledBuffers.incrementAndGet() <= MAX_POOLED_BUFFERS) {
+      BUFFER_POOL.offer(pBuffer);
+    } else {
+      pooledBuffers.decrementAndGet();
+    }
+  }
+
+  /**
+   * Copy a range of a file to the target. If a digest is given it is updated
+   * with the content of the range.
+   *
+   * @param pSource channel of the local file.
+   * @param pPosition offset of the range.
+   * @param pCount length of the range.
+   * @param pTarget target channel.
+   * @param pDigest digest of the range (may be null).
+   * @throws IOException if the range couldn't be copied.
+   */
+  static void copy(FileChannel pSource, long pPosition, long pCount, WritableByteChannel pTarget, MessageDigest pDigest) throws IOException {
+    long end = pPosition + pCount;
+    if (pDigest == null) {
+      long position = pPosition;
+      while (position < end) {
+        long bytesTransferred = pSource.transferTo(position, end - position, pTarget);
+        if (bytesTransferred <= 0) {
+          throw new IOException("Unexpected end of file at position " + position + "!");
+        }
+        position += bytesTransferred;
+      }
+    } else if (memoryMappedReads && (pCount >= MAPPING_THRESHOLD)) {
+      for (long position = pPosition; position < end;) {
+        long length = Math.min(end - position, Integer.MAX_VALUE);
+        MappedByteBuffer mapping = pSource.map(FileChannel.MapMode.READ_ONLY, position, length);
+        pDigest.update(mapping.duplicate());
+        writeFully(mapping, pTarget);
+        position += length;
+      }
+    } else {
+      ByteBuffer buffer = acquire();
+      try {
+        long position = pPosition;
+        while (position < end) {
+          buffer.clear();
+          buffer.limit((int) Math.min(buffer.capacity(), end - position));
+          int bytesRead = pSource.read(buffer, position);
+          if (bytesRead < 0) {
+            throw new IOException("Unexpected end of file at position " + position + "!");
+          }
+          buffer.flip();
+          pDigest.update(buffer.duplicate());
+          writeFully(buffer, pTarget);
+          position += bytesRead;
+        }
+      } finally {
+        release(buffer);
+      }
+    }
+  }
+
+  /**
+   * Copy the content of the source to a range of a file. The source has to
+   * provide exactly the given number of bytes. The file has to be
+   * preallocated, because no bytes are transferred beyond its current size.
+   *
+   * @param pSource source channel.
+   * @param pTarget channel of the local file.
+   * @param pPosition offset of the range.
+   * @param pCount length of the range.
+   * @throws IOException if the range couldn't be copied or the size of the
+   * source doesn't match.
+   */
+  static void copy(ReadableByteChannel pSource, FileChannel pTarget, long pPosition, long pCount) throws IOException {
+    long position = pPosition;
+    long end = pPosition + pCount;
+    while (position < end) {
+      long bytesTransferred = pTarget.transferFrom(pSource, position, end - position);
+      if (bytesTransferred <= 0) {
+        throw new IOException(String.format("Incomplete content! (%d of %d bytes)", position - pPosition, pCount));
+      }
+      position += bytesTransferred;
+    }
+    ByteBuffer buffer = acquire();
+    try {
+      buffer.limit(1);
+      if (pSource.read(buffer) > 0) {
+        throw new IOException("Source provides more than " + pCount + " bytes!");
+      }
+    } finally {
+      release(buffer);
+    }
+  }
+
+  /**
+   * Update digest with the whole content of the source.
+   *
+   * @param pSource source channel.
+   * @param pDigest digest.
+   * @return number of bytes read.
+   * @throws IOException if source couldn't be read.
+   */
+  static long digest(ReadableByteChannel pSource, MessageDigest pDigest) throws IOException {
+    long bytesTotal = 0;
+    ByteBuffer buffer = acquire();
+    try {
+      int bytesRead;
+      while ((bytesRead = pSource.read(buffer)) != -1) {
+        buffer.flip();
+        pDigest.update(buffer);
+        buffer.clear();
+        bytesTotal += bytesRead;
+      }
+    } finally {
+      release(buffer);
+    }
+    return bytesTotal;
+  }
+
+  /**
+   * Write all remaining bytes of the buffer.
+   *
+   * @param pBuffer buffer.
+   * @param pTarget target channel.
+   * @throws IOException if buffer couldn't be written.
+   */
+  private static void writeFully(ByteBuffer pBuffer, WritableByteChannel pTarget) throws IOException {
+    while (pBuffer.hasRemaining()) {
+      pTarget.write(pBuffer);
+    }
+  }
+}
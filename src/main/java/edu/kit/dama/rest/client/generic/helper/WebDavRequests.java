@@ -0,0 +1,383 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.generic.helper;
+
+import edu.kit.dama.rest.client.DataManagerPropertiesImpl;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Field;
+import java.net.HttpURLConnection;
+import java.net.ProtocolException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+/**
+ * Plain HTTP requests to the WebDAV server for transfers not supported by
+ * ADALAPI. (e.g. partial PUT or range requests) The requests authenticate with
+ * the same credentials as ADALAPI. (see
+ * {@link edu.kit.lsdf.adalapi.authentication.UserPasswordAuthenticationFromFile})
+ *
+ * @author hartmann-v
+ */
+final class WebDavRequests {
+
+  /**
+   * The logger
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(WebDavRequests.class);
+  /**
+   * Size of the buffer for reading bodies.
+   */
+  static final int BUFFER_SIZE = 64 * 1024;
+  /**
+   * Timeout in milliseconds for connecting and reading.
+   */
+  private static final int TIMEOUT_IN_MILLISECONDS = (int) TimeUnit.MINUTES.toMillis(5);
+  /**
+   * Namespace of the WebDAV properties.
+   */
+  private static final String DAV_NAMESPACE = "DAV:";
+  /**
+   * Body of a PROPFIND request for the properties needed by transfers.
+   */
+  private static final String PROPFIND_BODY = "<?xml version=\"1.0\" encoding=\"utf-8\"?>"
+          + "<D:propfind xmlns:D=\"DAV:\"><D:prop>"
+          + "<D:resourcetype/><D:getcontentlength/><D:getetag/><D:getlastmodified/>"
+          + "</D:prop></D:propfind>";
+  /**
+   * HTTP status 'Multi-Status'.
+   */
+  private static final int HTTP_MULTI_STATUS = 207;
+
+  /**
+   * Member of a remote directory as listed by PROPFIND.
+   */
+  static final class Resource {
+
+    /**
+     * URL of the resource.
+     */
+    private final URL url;
+    /**
+     * Name of the resource.
+     */
+    private final String name;
+    /**
+     * Resource is a directory or not.
+     */
+    private final boolean directory;
+    /**
+     * Size in bytes. (-1 if unknown)
+     */
+    private final long size;
+    /**
+     * Entity tag or date of the last modification. (empty if unknown)
+     */
+    private final String validator;
+
+    /**
+     * Constructor.
+     *
+     * @param pUrl URL of the resource.
+     * @param pName name of the resource.
+     * @param pDirectory resource is a directory or not.
+     * @param pSize size in bytes.
+     * @param pValidator entity tag or date of the last modification.
+     */
+    Resource(URL pUrl, String pName, boolean pDirectory, long pSize, String pValidator) {
+      url = pUrl;
+      name = pName;
+      directory = pDirectory;
+      size = pSize;
+      validator = pValidator;
+    }
+
+    /**
+     * Get URL of the resource.
+     *
+     * @return the URL
+     */
+    URL getUrl() {
+      return url;
+    }
+
+    /**
+     * Get name of the resource.
+     *
+     * @return the name
+     */
+    String getName() {
+      return name;
+    }
+
+    /**
+     * Resource is a directory or not.
+     *
+     * @return true for directories.
+     */
+    boolean isDirectory() {
+      return directory;
+    }
+
+    /**
+     * Get size of the resource.
+     *
+     * @return size in bytes or -1 if unknown.
+     */
+    long getSize() {
+      return size;
+    }
+
+    /**
+     * Get value identifying the version of the resource. This is the entity
+     * tag or, if the server provides none, the date of the last
+     * modification.
+     *
+     * @return the validator or an empty string if unknown.
+     */
+    String getValidator() {
+      return validator;
+    }
+  }
+
+  /**
+   * This is a utility class and hence does not require any public constructor.
+   */
+  private WebDavRequests() {
+  }
+
+  /**
+   * Get value of the header 'Authorization' for basic authentication. The
+   * credentials are read from the properties of the client. (see
+   * {@link DataManagerPropertiesImpl#getDefaultInstance()})
+   *
+   * @return value of the header or null if no user is defined.
+   */
+  static String getAuthorization() {
+    DataManagerPropertiesImpl properties = DataManagerPropertiesImpl.getDefaultInstance();
+    String userName = properties.getUserName();
+    if ((userName == null) || userName.isEmpty()) {
+      return null;
+    }
+    String password = (properties.getPassword() != null) ? properties.getPassword() : "";
+    String credentials = userName + ":" + password;
+    return "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Open connection to a remote file.
+   *
+   * @param pRemoteFile URL of the remote file.
+   * @param pMethod HTTP method.
+   * @param pAuthorization value of the header 'Authorization' (may be null).
+   * @return connection.
+   * @throws IOException if connection couldn't be opened.
+   */
+  static HttpURLConnection open(URL pRemoteFile, String pMethod, String pAuthorization) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) pRemoteFile.openConnection();
+    setRequestMethod(connection, pMethod);
+    connection.setConnectTimeout(TIMEOUT_IN_MILLISECONDS);
+    connection.setReadTimeout(TIMEOUT_IN_MILLISECONDS);
+    if (pAuthorization != null) {
+      connection.setRequestProperty("Authorization", pAuthorization);
+    }
+    return connection;
+  }
+
+  /**
+   * Get status of the response. The body of the response is skipped to allow
+   * reuse of the connection.
+   *
+   * @param pConnection connection.
+   * @return HTTP status.
+   * @throws IOException if response couldn't be read.
+   */
+  static int getResponseCode(HttpURLConnection pConnection) throws IOException {
+    int status = pConnection.getResponseCode();
+    try (InputStream input = (status >= HttpURLConnection.HTTP_BAD_REQUEST) ? pConnection.getErrorStream() : pConnection.getInputStream()) {
+      if (input != null) {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        while (input.read(buffer) != -1) {
+          // skip body
+        }
+      }
+    } catch (IOException ex) {
+      LOGGER.trace("Unable to read body of response.", ex);
+    }
+    return status;
+  }
+
+  /**
+   * List members of a remote directory. (PROPFIND with depth 1) The directory
+   * itself is not part of the result.
+   *
+   * @param pRemoteDirectory URL of the remote directory.
+   * @param pAuthorization value of the header 'Authorization' (may be null).
+   * @return members of the directory.
+   * @throws IOException if directory couldn't be listed.
+   */
+  static List<Resource> list(URL pRemoteDirectory, String pAuthorization) throws IOException {
+    HttpURLConnection connection = open(pRemoteDirectory, "PROPFIND", pAuthorization);
+    connection.setRequestProperty("Depth", "1");
+    connection.setRequestProperty("Content-Type", "application/xml; charset=utf-8");
+    connection.setDoOutput(true);
+    try (OutputStream output = connection.getOutputStream()) {
+      output.write(PROPFIND_BODY.getBytes(StandardCharsets.UTF_8));
+    }
+    int status = connection.getResponseCode();
+    if (status != HTTP_MULTI_STATUS) {
+      getResponseCode(connection);
+      throw new WebDavStatusException(String.format("Unable to list '%s'!", pRemoteDirectory), status);
+    }
+    Document multiStatus;
+    try (InputStream input = connection.getInputStream()) {
+      DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+      factory.setNamespaceAware(true);
+      factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+      multiStatus = factory.newDocumentBuilder().parse(input);
+    } catch (ParserConfigurationException | SAXException ex) {
+      throw new IOException("Invalid listing of '" + pRemoteDirectory + "'!", ex);
+    }
+    String directoryPath = getPath(pRemoteDirectory);
+    List<Resource> resources = new ArrayList<>();
+    NodeList responses = multiStatus.getElementsByTagNameNS(DAV_NAMESPACE, "response");
+    for (int index = 0; index < responses.getLength(); index++) {
+      Element response = (Element) responses.item(index);
+      URL url = new URL(pRemoteDirectory, getText(response, "href"));
+      String path = getPath(url);
+      if (path.equals(directoryPath)) {
+        continue;
+      }
+      boolean directory = response.getElementsByTagNameNS(DAV_NAMESPACE, "collection").getLength() > 0;
+      String contentLength = getText(response, "getcontentlength");
+      long size = -1;
+      if (!contentLength.isEmpty()) {
+        try {
+          size = Long.parseLong(contentLength);
+        } catch (NumberFormatException ex) {
+          LOGGER.warn("Invalid size of '{}': {}", url, contentLength);
+        }
+      }
+      String validator = getText(response, "getetag");
+      if (validator.isEmpty()) {
+        validator = getText(response, "getlastmodified");
+      }
+      resources.add(new Resource(url, path.substring(path.lastIndexOf('/') + 1), directory, size, validator));
+    }
+    return resources;
+  }
+
+  /**
+   * Get URL of a file inside a remote directory.
+   *
+   * @param pRemoteDirectory URL of the remote directory.
+   * @param pName name of the file.
+   * @return URL of the remote file.
+   * @throws IOException if URL is invalid.
+   */
+  static URL resolve(URL pRemoteDirectory, String pName) throws IOException {
+    String directory = pRemoteDirectory.toString();
+    if (!directory.endsWith("/")) {
+      directory += "/";
+    }
+    try {
+      return new URL(directory + URLEncoder.encode(pName, StandardCharsets.UTF_8.name()).replace("+", "%20"));
+    } catch (UnsupportedEncodingException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  /**
+   * Set HTTP method of a connection. HttpURLConnection accepts only the
+   * methods of HTTP/1.1. WebDAV methods (e.g. PROPFIND) are set directly.
+   *
+   * @param pConnection connection.
+   * @param pMethod HTTP method.
+   * @throws IOException if method couldn't be set.
+   */
+  private static void setRequestMethod(HttpURLConnection pConnection, String pMethod) throws IOException {
+    try {
+      pConnection.setRequestMethod(pMethod);
+    } catch (ProtocolException ex) {
+      try {
+        Field method = HttpURLConnection.class.getDeclaredField("method");
+        method.setAccessible(true);
+        method.set(pConnection, pMethod);
+        // HTTPS connections delegate to a separate HTTP connection.
+        for (Class<?> type = pConnection.getClass(); type != null; type = type.getSuperclass()) {
+          try {
+            Field delegate = type.getDeclaredField("delegate");
+            delegate.setAccessible(true);
+            Object target = delegate.get(pConnection);
+            if (target instanceof HttpURLConnection) {
+              method.set(target, pMethod);
+            }
+            break;
+          } catch (NoSuchFieldException nsfe) {
+            // try super class
+          }
+        }
+      } catch (ReflectiveOperationException | RuntimeException roe) {
+        ex.addSuppressed(roe);
+        throw ex;
+      }
+    }
+  }
+
+  /**
+   * Get decoded path of an URL without trailing '/'.
+   *
+   * @param pUrl URL.
+   * @return path.
+   * @throws IOException if URL is invalid.
+   */
+  private static String getPath(URL pUrl) throws IOException {
+    try {
+      String path = pUrl.toURI().getPath();
+      return path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+    } catch (URISyntaxException ex) {
+      throw new IOException("Invalid URL '" + pUrl + "'!", ex);
+    }
+  }
+
+  /**
+   * Get text of the first WebDAV element with the given name.
+   *
+   * @param pParent parent element.
+   * @param pName local name of the element.
+   * @return trimmed text or an empty string if element doesn't exist.
+   */
+  private static String getText(Element pParent, String pName) {
+    NodeList elements = pParent.getElementsByTagNameNS(DAV_NAMESPACE, pName);
+    return (elements.getLength() > 0) ? elements.item(0).getTextContent().trim() : "";
+  }
+}
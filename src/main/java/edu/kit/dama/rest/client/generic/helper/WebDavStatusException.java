@@ -0,0 +1,57 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.generic.helper;
+
+import java.io.IOException;
+
+/**
+ * WebDAV server answered a request with an unexpected HTTP status. The status
+ * allows the retry policy to tell transient errors of the server from local
+ * errors. (see {@link RetryPolicy#executeTransfer(String, java.util.function.Supplier)})
+ *
+ * @author hartmann-v
+ */
+class WebDavStatusException extends IOException {
+
+  /**
+   * Serial version UID.
+   */
+  private static final long serialVersionUID = 1L;
+  /**
+   * HTTP status of the response.
+   */
+  private final int status;
+
+  /**
+   * Constructor. The status is appended to the message.
+   *
+   * @param pMessage message.
+   * @param pStatus HTTP status of the response.
+   */
+  WebDavStatusException(String pMessage, int pStatus) {
+    super(String.format("%s (HTTP status: %d)", pMessage, pStatus));
+    status = pStatus;
+  }
+
+  /**
+   * Get HTTP status of the response.
+   *
+   * @return the status
+   */
+  int getStatus() {
+    return status;
+  }
+}
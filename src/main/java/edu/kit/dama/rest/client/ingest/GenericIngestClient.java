@@ -30,10 +30,17 @@ import edu.kit.dama.rest.admin.types.UserDataWrapper;
 import edu.kit.dama.rest.basemetadata.client.impl.BaseMetaDataRestClient;
 import edu.kit.dama.rest.basemetadata.types.DigitalObjectWrapper;
 import edu.kit.dama.rest.client.generic.KIT_DM_REST_CLIENT;
+import edu.kit.dama.rest.client.generic.helper.BundleCompression;
+import edu.kit.dama.rest.client.generic.helper.DeduplicationPolicy;
+import edu.kit.dama.rest.client.generic.helper.DirectoryManifest;
+import edu.kit.dama.rest.client.generic.helper.RestRequestExecutor;
+import edu.kit.dama.rest.client.generic.helper.RetryPolicy;
+import edu.kit.dama.staging.entities.ingest.IngestInformation;
 import edu.kit.jcommander.generic.status.Status;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.EnumSet;
@@ -41,7 +48,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 import org.fzk.grid.util.JWhich;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -73,13 +80,29 @@ public class GenericIngestClient extends AbstractGenericRestClient implements IM
    */
   private static final Logger LOGGER = LoggerFactory.getLogger(GenericIngestClient.class);
   /**
-   * Directory to ingest.
+   * Number of bytes of one MiB.
    */
-  private File inputDir;
+  private static final long BYTES_PER_MIB = 1024L * 1024;
   /**
-   * Note for the ingest.
+   * Number of threads registering digital objects.
    */
-  private String note;
+  private int metadataThreads = IngestPipeline.DEFAULT_METADATA_THREADS;
+  /**
+   * Number of threads creating ingest entities.
+   */
+  private int ingestThreads = IngestPipeline.DEFAULT_INGEST_THREADS;
+  /**
+   * Number of threads transferring data.
+   */
+  private int transferThreads = IngestPipeline.DEFAULT_TRANSFER_THREADS;
+  /**
+   * Manifests of all registered input directories not transferred yet.
+   */
+  private final Map<File, DirectoryManifest> manifests = new ConcurrentHashMap<>();
+  /**
+   * Executor of REST requests. (retries, limits and metrics)
+   */
+  private final RestRequestExecutor requests = new RestRequestExecutor(new RetryPolicy());
 
   /**
    * Execute command using jcommander. Parameters already parsed by JCommander.
@@ -88,7 +111,62 @@ public class GenericIngestClient extends AbstractGenericRestClient implements IM
    * @return Status of the command.
    */
   public static CommandStatus executeCommand(IngestParameters ip) {
-    return ingestData(ip.inputDir, ip.note);
+    KIT_DM_REST_CLIENT.setParallelUploads(ip.uploadStreams);
+    try {
+      KIT_DM_REST_CLIENT.setChunkThreshold(ip.chunkThreshold * BYTES_PER_MIB);
+      KIT_DM_REST_CLIENT.setDeduplicationPolicy(DeduplicationPolicy.fromString(ip.dedup));
+      KIT_DM_REST_CLIENT.setBundling(ip.bundleSize * BYTES_PER_MIB, BundleCompression.fromString(ip.bundleCompression));
+    } catch (IllegalArgumentException iae) {
+      LOGGER.error(iae.getMessage());
+      return new CommandStatus(iae);
+    }
+    if (ip.resume != null) {
+      return resumeIngest(ip.resume);
+    }
+    if ((ip.inputDir == null) || ip.inputDir.isEmpty() || (ip.note == null)) {
+      String message = "Input directory and note are required for a new ingest!";
+      LOGGER.error(message);
+      return new CommandStatus(new IllegalArgumentException(message));
+    }
+    GenericIngestClient gic = new GenericIngestClient();
+    gic.setConcurrency(ip.metadataThreads, ip.ingestThreads, ip.transferThreads);
+    return gic.ingest(ip.inputDir, ip.note, null);
+  }
+
+  /**
+   * Resume an interrupted or failed ingest using default settings. All files
+   * already uploaded are skipped.
+   *
+   * @param pIngestId id of the ingest.
+   * @return command status.
+   */
+  public static CommandStatus resumeIngest(long pIngestId) {
+    GenericIngestClient gic = new GenericIngestClient();
+    CommandStatus commandStatus;
+    try {
+      DataManagerPropertiesImpl properties = gic.testDataManagerSettings();
+      DataManagerPropertiesHelper.initializeWebDav(properties);
+      KIT_DM_REST_CLIENT.initialize(gic.getRestContext(properties), properties.getRestUrl());
+      commandStatus = KIT_DM_REST_CLIENT.resumeDataIngest(pIngestId);
+    } catch (IllegalArgumentException ex) {
+      LOGGER.error(null, ex);
+      commandStatus = new CommandStatus(ex);
+    }
+    return commandStatus;
+  }
+
+  /**
+   * Set the number of threads used for each stage of the ingest.
+   *
+   * @param pMetadataThreads number of threads registering digital objects.
+   * @param pIngestThreads number of threads creating ingest entities.
+   * @param pTransferThreads number of threads transferring data.
+   * @see IngestPipeline
+   */
+  public void setConcurrency(int pMetadataThreads, int pIngestThreads, int pTransferThreads) {
+    metadataThreads = pMetadataThreads;
+    ingestThreads = pIngestThreads;
+    transferThreads = pTransferThreads;
   }
 
   /**
@@ -113,14 +191,25 @@ public class GenericIngestClient extends AbstractGenericRestClient implements IM
    * @return command status.
    */
   public static CommandStatus ingestData(List<File> pInputDir, String pNote, IMetadata4Ingest pMetadata4Ingest) {
-    GenericIngestClient gic = new GenericIngestClient();
-    registerPlugin(gic, pMetadata4Ingest);
+    return new GenericIngestClient().ingest(pInputDir, pNote, pMetadata4Ingest);
+  }
+
+  /**
+   * Ingest data to repository using default settings.
+   *
+   * @param pInputDir input directories to transfer to repository.
+   * @param pNote note for digital object.
+   * @param pMetadata4Ingest instance for additional operations during ingest.
+   * @return command status.
+   */
+  private CommandStatus ingest(List<File> pInputDir, String pNote, IMetadata4Ingest pMetadata4Ingest) {
+    registerPlugin(this, pMetadata4Ingest);
     DataManagerPropertiesImpl properties;
     CommandStatus commandStatus;
     try {
-      properties = gic.testDataManagerSettings();
+      properties = testDataManagerSettings();
       DataManagerPropertiesHelper.initializeWebDav(properties);
-      commandStatus = gic.executeCommand(properties, pInputDir, pNote);
+      commandStatus = executeCommand(properties, pInputDir, pNote);
     } catch (IllegalArgumentException ex) {
       LOGGER.error(null, ex);
       commandStatus = new CommandStatus(ex);
@@ -250,11 +339,26 @@ public class GenericIngestClient extends AbstractGenericRestClient implements IM
     int exitValue = 0;
     returnStatus = new CommandStatus(Status.SUCCESSFUL);
     if (pProperties != null) {
-      SimpleRESTContext context = new SimpleRESTContext(pProperties.getAccessKey(), pProperties.getAccessSecret());
-      UserGroupRestClient ugrc = new UserGroupRestClient(pProperties.getRestUrl() + REST_USER_GROUP_PATH, context);
-      UserData user = ugrc.getUserById(-1).getEntities().get(0); // Get actual user
+      SimpleRESTContext context = getRestContext(pProperties);
+      UserGroupRestClient ugrc = getRestClient(UserGroupRestClient.class, pProperties.getRestUrl() + REST_USER_GROUP_PATH, context, UserGroupRestClient::new);
+      UserData user = requests.execute("usergroup.users.get", () -> ugrc.getUserById(-1)).getEntities().get(0); // Get actual user
       KIT_DM_REST_CLIENT.initialize(context, pProperties.getRestUrl());
-      Map<Status, List<CommandStatus>> collect = pInputDir.parallelStream().map((inputDirectory) -> ingestDirectory(pProperties, inputDirectory, pNote, user)).collect(Collectors.groupingBy(CommandStatus::getStatus));
+      if (metadata4Ingest == null) {
+        metadata4Ingest = this;
+      }
+      List<CommandStatus> statusList;
+      try (IngestPipeline pipeline = new IngestPipeline(metadataThreads, ingestThreads, transferThreads)) {
+        statusList = pipeline.execute(pInputDir,
+                (inputDirectory) -> registerDigitalObject(pProperties, inputDirectory, pNote, user),
+                (inputDirectory, digitalObject) -> createIngest(pProperties, digitalObject),
+                (inputDirectory, ingestInformation) -> transferData(inputDirectory, ingestInformation));
+      } finally {
+        manifests.clear();
+      }
+      Map<Status, List<CommandStatus>> collect = new HashMap<>();
+      for (CommandStatus status : statusList) {
+        collect.computeIfAbsent(status.getStatus(), (key) -> new ArrayList<>()).add(status);
+      }
 
       // <editor-fold defaultstate="collapsed" desc="Summarize ingests and set status">
       List<CommandStatus> succeededIngests = collect.get(Status.SUCCESSFUL);
@@ -282,33 +386,21 @@ public class GenericIngestClient extends AbstractGenericRestClient implements IM
   }
 
   /**
-   * Ingest single directory.
+   * Create ingest entity for a registered digital object.
    *
    * @param pProperties Properties to connect to KIT Data Manager.
-   * @param pInputDir input directory to transfer to repository. Files are not
-   * allowed.
-   * @param pNote note for digital object.
-   * @param pUser User who ingests the directory.
-   * @return command status.
+   * @param pDigitalObject registered digital object.
+   * @return ingest entity ready for transfer.
+   * @throws BaseMetadataException if ingest entity couldn't be created.
    */
-  private CommandStatus ingestDirectory(DataManagerPropertiesImpl pProperties, File pInputDir, String pNote, UserData pUser) {
-    CommandStatus commandStatus;
-    try {
-      DigitalObject digitalObject = registerDigitalObject(pProperties, pInputDir, pNote, pUser);
-      // <editor-fold defaultstate="collapsed" desc="Initialize REST">
-      // Read ids
-      LOGGER.info("Start ingest for directory '{}'", pInputDir.getAbsolutePath());
-//        returnStatus = KIT_DM_REST_CLIENT.performDataIngestTransferClient(digitalObj.getDigitalObjectId().getStringRepresentation(), pProperties.getAccessPoint(), inputDir, pProperties.getUserGroup());
-      commandStatus = KIT_DM_REST_CLIENT.performDataIngest(digitalObject.getDigitalObjectId().getStringRepresentation(), pProperties.getAccessPoint(), pInputDir, pProperties.getUserGroup());
-      LOGGER.info("Ingest for directory '{}' finished! Status: {} - {}", pInputDir.getAbsolutePath(), commandStatus.getStatusCode(), commandStatus.getStatusMessage());
-    } catch (BaseMetadataException | FileNotFoundException e) {
-      LOGGER.error("Error during ingest!", e);
-      commandStatus = new CommandStatus(e);
-      LOGGER.error("Ingest for directory '{}' finished! Status: {} - {}", pInputDir.getAbsolutePath(), commandStatus.getStatusCode(), commandStatus.getStatusMessage());
-      LOGGER.info("Exception: {}", commandStatus.getException().toString());
-
+  private IngestInformation createIngest(DataManagerPropertiesImpl pProperties, DigitalObject pDigitalObject) throws BaseMetadataException {
+    String digitalObjectId = pDigitalObject.getDigitalObjectId().getStringRepresentation();
+    IngestInformation ingestInformation = KIT_DM_REST_CLIENT.createIngest(digitalObjectId, pProperties.getAccessPoint(), pProperties.getUserGroup());
+    if (ingestInformation == null) {
+      throw new BaseMetadataException("Unable to create ingest for digital object '" + digitalObjectId + "'!");
     }
-    return commandStatus;
+    LOGGER.info("Ingest '{}' created for digital object '{}'. (Resume with 'ingest --resume {}')", ingestInformation.getId(), digitalObjectId, ingestInformation.getId());
+    return ingestInformation;
   }
 
   /**
@@ -328,14 +420,12 @@ public class GenericIngestClient extends AbstractGenericRestClient implements IM
    * not allowed.
    * @param pNote note for digital object.
    * @param pUser user executing this ingest
-   * @return Map with digital objects and their related directories.
+   * @return registered digital object.
    */
   private DigitalObject registerDigitalObject(DataManagerPropertiesImpl pProperties, File inputDirectory, String pNote, UserData pUser) throws BaseMetadataException {
-    note = pNote;
-    inputDir = inputDirectory;
     DigitalObject digitalObject = null;
     // Test for valid arguments.
-    checkArguments();
+    checkInputDirectory(inputDirectory);
     // Workflow for ingest: 
     // 1. initialize REST
     // 2. Create new digital object
@@ -348,28 +438,39 @@ public class GenericIngestClient extends AbstractGenericRestClient implements IM
     // 9. Register transfer to be satisfied.
     // Steps 2-7 are now done by the generic client.
     // Read settings
-    if (metadata4Ingest == null) {
-      metadata4Ingest = this;
-    }
     if (pProperties != null) {
-      SimpleRESTContext context = new SimpleRESTContext(pProperties.getAccessKey(), pProperties.getAccessSecret());
+      SimpleRESTContext context = getRestContext(pProperties);
       // Read ids
-      BaseMetaDataRestClient bmdrc = new BaseMetaDataRestClient(pProperties.getRestUrl() + REST_BASE_META_DATA_PATH, context);
-      synchronized (this) {
-        // <editor-fold defaultstate="collapsed" desc="Prepare digital object for ingest.">
-        digitalObject = createDigitalObject(pUser);
-        // Maybe some adaptions from properitary client.
+      BaseMetaDataRestClient bmdrc = getRestClient(BaseMetaDataRestClient.class, pProperties.getRestUrl() + REST_BASE_META_DATA_PATH, context, BaseMetaDataRestClient::new);
+      // <editor-fold defaultstate="collapsed" desc="Prepare digital object for ingest.">
+      DirectoryManifest manifest;
+      try {
+        manifest = DirectoryManifest.scan(inputDirectory);
+      } catch (IOException ex) {
+        LOGGER.error("Unable to scan input directory '" + inputDirectory.getAbsolutePath() + "'!", ex);
+        throw new BaseMetadataException("Unable to scan input directory '" + inputDirectory.getAbsolutePath() + "': " + ex.getMessage());
+      }
+      // Reused for the transfer.
+      manifests.put(inputDirectory, manifest);
+      digitalObject = createDigitalObject(pUser, manifest, pNote);
+      // Maybe some adaptions from properitary client.
+      // Plugins are not expected to be thread safe.
+      synchronized (metadata4Ingest) {
         digitalObject = metadata4Ingest.modifyMetadata(inputDirectory, digitalObject);
-        // </editor-fold>
+      }
+      // </editor-fold>
 
-        // <editor-fold defaultstate="collapsed" desc="Register digital object at repository.">
-        Long investigationId = Long.parseLong(pProperties.getInvestigation());
-        DigitalObjectWrapper registeredDigitalObject = bmdrc.addDigitalObjectToInvestigation(investigationId, digitalObject, pProperties.getUserGroup());
-        digitalObject = registeredDigitalObject.getEntities().get(0);
-        LOGGER.trace("Digital Object registered at repository: {}", digitalObject);
-        // </editor-fold>
+      // <editor-fold defaultstate="collapsed" desc="Register digital object at repository.">
+      Long investigationId = Long.parseLong(pProperties.getInvestigation());
+      DigitalObject newDigitalObject = digitalObject;
+      DigitalObjectWrapper registeredDigitalObject = requests.executeNonIdempotent("basemetadata.digitalObjects.create",
+              () -> bmdrc.addDigitalObjectToInvestigation(investigationId, newDigitalObject, pProperties.getUserGroup()));
+      digitalObject = registeredDigitalObject.getEntities().get(0);
+      LOGGER.trace("Digital Object registered at repository: {}", digitalObject);
+      // </editor-fold>
 
-        // Mabe some additional stuff from properitary client.
+      // Mabe some additional stuff from properitary client.
+      synchronized (metadata4Ingest) {
         metadata4Ingest.preTransfer(inputDirectory, digitalObject.getDigitalObjectIdentifier());
       }
     }
@@ -378,39 +479,55 @@ public class GenericIngestClient extends AbstractGenericRestClient implements IM
 
   @Override
   protected void checkArguments() throws IllegalArgumentException {
-    if (!inputDir.isDirectory()) {
-      String message = String.format("Input directory '%s' is not a directory or doesn't exist!", inputDir.getAbsolutePath());
+    // Input directories are checked individually before registration.
+    // See checkInputDirectory(File)
+  }
+
+  /**
+   * Check if input directory is valid.
+   *
+   * @param pInputDir input directory.
+   * @throws IllegalArgumentException if input directory is not a directory.
+   */
+  private static void checkInputDirectory(File pInputDir) throws IllegalArgumentException {
+    if (!pInputDir.isDirectory()) {
+      String message = String.format("Input directory '%s' is not a directory or doesn't exist!", pInputDir.getAbsolutePath());
       LOGGER.error(message);
       throw new IllegalArgumentException(message);
     }
   }
 
+  /**
+   * Transfer data of an input directory. The manifest created during
+   * registration is reused if available.
+   *
+   * @param pInputDirectory input directory.
+   * @param pIngestInformation ingest entity ready for transfer.
+   * @return command status.
+   */
+  private CommandStatus transferData(File pInputDirectory, IngestInformation pIngestInformation) {
+    DirectoryManifest manifest = manifests.remove(pInputDirectory);
+    if (manifest != null) {
+      return KIT_DM_REST_CLIENT.performDataIngest(pIngestInformation, manifest);
+    }
+    return KIT_DM_REST_CLIENT.performDataIngest(pIngestInformation, pInputDirectory);
+  }
+
   /**
    * Create digital object for registering dataset in KIT Datamanager.
    *
-   * @param pProperties Label of the digital object. (Should be more or less
-   * unique.)
    * @param pUploader User which will be registered as uploader and
    * experimenter.
+   * @param pManifest manifest of the input directory of the digital object.
+   * @param note note for digital object.
    * @return digital object with some prefilled values.
    */
-  private DigitalObject createDigitalObject(UserData pUploader) {
+  private DigitalObject createDigitalObject(UserData pUploader, DirectoryManifest pManifest, String note) {
     DigitalObject digitalObject = new DigitalObject();
-    // Determine start and end date according to the last modified dates.
+    // Determine start and end date according to the last modified dates of all files.
     SimpleDateFormat sdf = new SimpleDateFormat("YYYY_MM_dd'T'HH_mm");
-    Date endDate = new Date(inputDir.lastModified());
-    Date startDate = new Date(endDate.getTime() - 1000); // if inputDir is a file instead of a directory.
-    if (inputDir.isDirectory()) {
-      File[] listFiles = inputDir.listFiles();
-      long startDateLong = startDate.getTime();
-      for (File file : listFiles) {
-        long timeStamp = file.lastModified();
-        if (timeStamp < startDateLong) {
-          startDateLong = timeStamp;
-        }
-      }
-      startDate = new Date(startDateLong);
-    }
+    Date endDate = new Date(Math.max(pManifest.getSourceLastModified(), pManifest.getMaxLastModified()));
+    Date startDate = new Date(pManifest.getMinLastModified());
     if (!startDate.before(endDate)) {
       startDate = new Date(endDate.getTime() - 1000);
     }
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.ingest;
+
+import edu.kit.dama.mdm.base.DigitalObject;
+import edu.kit.dama.staging.entities.ingest.IngestInformation;
+import edu.kit.jcommander.generic.status.CommandStatus;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pipeline ingesting directories in three stages:
+ * <ol>
+ * <li>Register the digital object (metadata registration)</li>
+ * <li>Create the ingest entity</li>
+ * <li>Transfer the data</li>
+ * </ol>
+ * Each stage has its own thread pool. The stages are connected by bounded
+ * queues. If a stage can't keep up the previous stage will wait until there is
+ * space in the queue again.
+ *
+ * @author hartmann-v
+ */
+public class IngestPipeline implements AutoCloseable {
+
+  /**
+   * The logger
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(IngestPipeline.class);
+  /**
+   * Default number of threads registering digital objects.
+   */
+  public static final int DEFAULT_METADATA_THREADS = 2;
+  /**
+   * Default number of threads creating ingest entities.
+   */
+  public static final int DEFAULT_INGEST_THREADS = 2;
+  /**
+   * Default number of threads transferring data.
+   */
+  public static final int DEFAULT_TRANSFER_THREADS = 4;
+  /**
+   * Capacity of the queue of each stage relative to its number of threads.
+   */
+  private static final int QUEUE_CAPACITY_PER_THREAD = 2;
+  /**
+   * Executor registering digital objects.
+   */
+  private final ExecutorService metadataExecutor;
+  /**
+   * Executor creating ingest entities.
+   */
+  private final ExecutorService ingestExecutor;
+  /**
+   * Executor transferring data.
+   */
+  private final ExecutorService transferExecutor;
+
+  /**
+   * Stage registering the digital object for an input directory.
+   */
+  public interface IMetadataStage {
+
+    /**
+     * Register digital object.
+     *
+     * @param pInputDir input directory.
+     * @return registered digital object.
+     * @throws Exception if registration failed.
+     */
+    DigitalObject registerDigitalObject(File pInputDir) throws Exception;
+  }
+
+  /**
+   * Stage creating the ingest entity for a registered digital object.
+   */
+  public interface IIngestStage {
+
+    /**
+     * Create ingest entity.
+     *
+     * @param pInputDir input directory.
+     * @param pDigitalObject registered digital object.
+     * @return ingest entity.
+     * @throws Exception if ingest entity couldn't be created.
+     */
+    IngestInformation createIngest(File pInputDir, DigitalObject pDigitalObject) throws Exception;
+  }
+
+  /**
+   * Stage transferring the data of an input directory.
+   */
+  public interface ITransferStage {
+
+    /**
+     * Transfer data.
+     *
+     * @param pInputDir input directory.
+     * @param pIngestInformation ingest entity.
+     * @return status of the ingest.
+     * @throws Exception if transfer failed.
+     */
+    CommandStatus transfer(File pInputDir, IngestInformation pIngestInformation) throws Exception;
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param pMetadataThreads number of threads registering digital objects.
+   * @param pIngestThreads number of threads creating ingest entities.
+   * @param pTransferThreads number of threads transferring data.
+   */
+  public IngestPipeline(int pMetadataThreads, int pIngestThreads, int pTransferThreads) {
+    metadataExecutor = newStageExecutor("metadata", pMetadataThreads);
+    ingestExecutor = newStageExecutor("ingest", pIngestThreads);
+    transferExecutor = newStageExecutor("transfer", pTransferThreads);
+  }
+
+  /**
+   * Ingest all input directories.
+   *
+   * @param pInputDirs all input directories.
+   * @param pMetadataStage stage registering digital objects.
+   * @param pIngestStage stage creating ingest entities.
+   * @param pTransferStage stage transferring data.
+   * @return status of each ingest in the order of the input directories.
+   */
+  public List<CommandStatus> execute(List<File> pInputDirs, IMetadataStage pMetadataStage,
+          IIngestStage pIngestStage, ITransferStage pTransferStage) {
+    List<CompletableFuture<CommandStatus>> ingests = new ArrayList<>();
+    for (File inputDir : pInputDirs) {
+      CompletableFuture<CommandStatus> ingest = CompletableFuture
+              .supplyAsync(() -> call(() -> pMetadataStage.registerDigitalObject(inputDir)), metadataExecutor)
+              .thenApplyAsync((digitalObject) -> call(() -> pIngestStage.createIngest(inputDir, digitalObject)), ingestExecutor)
+              .thenApplyAsync((ingestInformation) -> call(() -> {
+                LOGGER.info("Start ingest for directory '{}'", inputDir.getAbsolutePath());
+                return pTransferStage.transfer(inputDir, ingestInformation);
+              }), transferExecutor)
+              .handle((commandStatus, throwable) -> {
+                CommandStatus status = commandStatus;
+                if (throwable != null) {
+                  Throwable cause = (throwable instanceof CompletionException) ? throwable.getCause() : throwable;
+                  LOGGER.error("Error during ingest!", cause);
+                  status = new CommandStatus((cause instanceof Exception) ? (Exception) cause : new Exception(cause));
+                  LOGGER.error("Ingest for directory '{}' finished! Status: {} - {}", inputDir.getAbsolutePath(), status.getStatusCode(), status.getStatusMessage());
+                } else {
+                  LOGGER.info("Ingest for directory '{}' finished! Status: {} - {}", inputDir.getAbsolutePath(), status.getStatusCode(), status.getStatusMessage());
+                }
+                return status;
+              });
+      ingests.add(ingest);
+    }
+    List<CommandStatus> statusList = new ArrayList<>();
+    for (CompletableFuture<CommandStatus> ingest : ingests) {
+      statusList.add(ingest.join());
+    }
+    return statusList;
+  }
+
+  @Override
+  public void close() {
+    metadataExecutor.shutdown();
+    ingestExecutor.shutdown();
+    transferExecutor.shutdown();
+  }
+
+  /**
+   * Call stage and wrap checked exceptions.
+   *
+   * @param <T> type of the result.
+   * @param pStage stage to call.
+   * @return result of the stage.
+   */
+  private static <T> T call(Callable<T> pStage) {
+    try {
+      return pStage.call();
+    } catch (RuntimeException rex) {
+      throw rex;
+    } catch (Exception ex) {
+      throw new CompletionException(ex);
+    }
+  }
+
+  /**
+   * Create executor for one stage. The queue of the executor is bounded. If
+   * the queue is full the submitting thread waits until there is space again.
+   *
+   * @param pName name of the stage.
+   * @param pThreads number of threads.
+   * @return executor of the stage.
+   */
+  private static ExecutorService newStageExecutor(String pName, int pThreads) {
+    if (pThreads < 1) {
+      throw new IllegalArgumentException(String.format("Number of threads for stage '%s' has to be positive!", pName));
+    }
+    AtomicInteger threadNumber = new AtomicInteger();
+    return new ThreadPoolExecutor(pThreads, pThreads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(pThreads * QUEUE_CAPACITY_PER_THREAD),
+            (runnable) -> {
+              Thread thread = new Thread(runnable, "ingest-" + pName + "-" + threadNumber.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            },
+            (runnable, executor) -> {
+              if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Stage '" + pName + "' is already shut down!");
+              }
+              try {
+                executor.getQueue().put(runnable);
+              } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException(ie);
+              }
+            });
+  }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.metrics;
+
+import java.util.function.Supplier;
+
+/**
+ * Access to the metrics registry of the client. By default all metrics are
+ * ignored. Register a {@link SimpleMetricsRegistry} or a
+ * {@link MicrometerMetricsRegistry} to collect them.
+ * <br/> Names of the metrics:
+ * <ul>
+ * <li>rest.&lt;endpoint&gt; - latency of REST requests (timer)</li>
+ * <li>rest.&lt;endpoint&gt;.requests / .errors - number of requests and
+ * failed requests</li>
+ * <li>transfer.upload / transfer.download - duration of transfers (timer)</li>
+ * <li>transfer.upload.bytes / .files - bytes and files transferred (same for
+ * download)</li>
+ * <li>retries.&lt;endpoint&gt; - number of retried calls (e.g.
+ * retries.webdav.upload for retried uploads of files)</li>
+ * <li>download.wait - time waiting for downloads to get ready (timer)</li>
+ * </ul>
+ * <br/> Example:
+ * <pre>
+ * {@code
+ *  SimpleMetricsRegistry registry = new SimpleMetricsRegistry();
+ *  Metrics.setRegistry(registry);
+ *  // do ingest...
+ *  registry.printSummary(System.out);
+ * }
+ * </pre>
+ *
+ * @author hartmann-v
+ */
+public final class Metrics {
+
+  /**
+   * Prefix of REST metrics.
+   */
+  public static final String REST_PREFIX = "rest.";
+  /**
+   * Suffix for number of requests.
+   */
+  public static final String REQUESTS_SUFFIX = ".requests";
+  /**
+   * Suffix for number of failed requests.
+   */
+  public static final String ERRORS_SUFFIX = ".errors";
+  /**
+   * Timer for uploads.
+   */
+  public static final String UPLOAD = "transfer.upload";
+  /**
+   * Timer for downloads.
+   */
+  public static final String DOWNLOAD = "transfer.download";
+  /**
+   * Suffix for number of bytes transferred.
+   */
+  public static final String BYTES_SUFFIX = ".bytes";
+  /**
+   * Suffix for number of files transferred.
+   */
+  public static final String FILES_SUFFIX = ".files";
+  /**
+   * Prefix for counters of retried calls.
+   */
+  public static final String RETRIES_PREFIX = "retries.";
+  /**
+   * Counter for retried ingests.
+   */
+  public static final String INGEST_RETRIES = RETRIES_PREFIX + "ingest";
+  /**
+   * Timer for waiting for downloads.
+   */
+  public static final String DOWNLOAD_WAIT = "download.wait";
+  /**
+   * Registry collecting all metrics.
+   */
+  private static volatile IMetricsRegistry registry = new NoOpMetricsRegistry();
+
+  /**
+   * Utility class.
+   */
+  private Metrics() {
+  }
+
+  /**
+   * Get the current registry.
+   *
+   * @return registry.
+   */
+  public static IMetricsRegistry getRegistry() {
+    return registry;
+  }
+
+  /**
+   * Set the registry collecting all metrics.
+   *
+   * @param pRegistry registry (null disables metrics).
+   */
+  public static void setRegistry(IMetricsRegistry pRegistry) {
+    registry = (pRegistry != null) ? pRegistry : new NoOpMetricsRegistry();
+  }
+
+  /**
+   * Are metrics collected? Allows to skip expensive measurements.
+   *
+   * @return true if a registry other than the no-op registry is set.
+   */
+  public static boolean isEnabled() {
+    return !(registry instanceof NoOpMetricsRegistry);
+  }
+
+  /**
+   * Execute a REST request and record its latency. Requests throwing an
+   * exception are counted as errors.
+   *
+   * @param <T> type of the response.
+   * @param pEndpoint name of the endpoint (e.g. 'staging.ingests.get').
+   * @param pRequest request.
+   * @return response of the request.
+   */
+  public static <T> T timeRequest(String pEndpoint, Supplier<T> pRequest) {
+    IMetricsRegistry actualRegistry = registry;
+    String name = REST_PREFIX + pEndpoint;
+    long start = System.nanoTime();
+    boolean success = false;
+    try {
+      T response = pRequest.get();
+      success = true;
+      return response;
+    } finally {
+      actualRegistry.record(name, System.nanoTime() - start);
+      actualRegistry.increment(name + REQUESTS_SUFFIX, 1);
+      if (!success) {
+        actualRegistry.increment(name + ERRORS_SUFFIX, 1);
+      }
+    }
+  }
+
+  /**
+   * Record a finished transfer.
+   *
+   * @param pTransfer {@link #UPLOAD} or {@link #DOWNLOAD}.
+   * @param pBytes number of bytes transferred.
+   * @param pFiles number of files transferred.
+   * @param pDurationInNanos duration of the transfer in nanoseconds.
+   */
+  public static void recordTransfer(String pTransfer, long pBytes, int pFiles, long pDurationInNanos) {
+    IMetricsRegistry actualRegistry = registry;
+    actualRegistry.record(pTransfer, pDurationInNanos);
+    actualRegistry.increment(pTransfer + BYTES_SUFFIX, pBytes);
+    actualRegistry.increment(pTransfer + FILES_SUFFIX, pFiles);
+  }
+
+  /**
+   * Increment a counter by one.
+   *
+   * @param pName name of the counter.
+   */
+  public static void increment(String pName) {
+    registry.increment(pName, 1);
+  }
+
+  /**
+   * Record a duration.
+   *
+   * @param pName name of the timer.
+   * @param pDurationInNanos duration in nanoseconds.
+   */
+  public static void record(String pName, long pDurationInNanos) {
+    registry.record(pName, pDurationInNanos);
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of the collected metrics.
+ *
+ * @author hartmann-v
+ */
+public interface MetricsMXBean {
+
+  /**
+   * Get all counters.
+   *
+   * @return value of each counter.
+   */
+  Map<String, Long> getCounters();
+
+  /**
+   * Get summary of all timers.
+   *
+   * @return summary (count, mean, percentiles, max) of each timer.
+   */
+  Map<String, String> getTimers();
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registry forwarding all metrics to Micrometer. Micrometer is an optional
+ * dependency and has to be added by the embedding application.
+ * <br/> Example:
+ * <pre>
+ * {@code
+ *  Metrics.setRegistry(new MicrometerMetricsRegistry(meterRegistry));
+ * }
+ * </pre>
+ *
+ * @author hartmann-v
+ */
+public class MicrometerMetricsRegistry implements IMetricsRegistry {
+
+  /**
+   * Micrometer registry.
+   */
+  private final MeterRegistry meterRegistry;
+
+  /**
+   * Constructor.
+   *
+   * @param pMeterRegistry Micrometer registry.
+   */
+  public MicrometerMetricsRegistry(MeterRegistry pMeterRegistry) {
+    meterRegistry = pMeterRegistry;
+  }
+
+  @Override
+  public void increment(String pName, long pAmount) {
+    meterRegistry.counter(pName).increment(pAmount);
+  }
+
+  @Override
+  public void record(String pName, long pDurationInNanos) {
+    meterRegistry.timer(pName).record(pDurationInNanos, TimeUnit.NANOSECONDS);
+  }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.metrics;
+
+/**
+ * Registry ignoring all metrics. (default)
+ *
+ * @author hartmann-v
+ */
+public final class NoOpMetricsRegistry implements IMetricsRegistry {
+
+  @Override
+  public void increment(String pName, long pAmount) {
+    // ignore
+  }
+
+  @Override
+  public void record(String pName, long pDurationInNanos) {
+    // ignore
+  }
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registry holding all metrics in memory. Durations are collected in
+ * histograms with logarithmic buckets (4 buckets per power of two) which allows
+ * percentiles with an error below 20%. The metrics may be printed as summary,
+ * exported to a JSON file or published via JMX.
+ *
+ * @author hartmann-v
+ */
+public class SimpleMetricsRegistry implements IMetricsRegistry, MetricsMXBean {
+
+  /**
+   * The logger
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(SimpleMetricsRegistry.class);
+  /**
+   * Name of the MBean.
+   */
+  public static final String OBJECT_NAME = "edu.kit.dama.rest.client:type=Metrics";
+  /**
+   * Nanoseconds per millisecond.
+   */
+  private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+  /**
+   * Bytes per MiB.
+   */
+  private static final double BYTES_PER_MIB = 1024.0 * 1024.0;
+  /**
+   * All counters.
+   */
+  private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+  /**
+   * All timers.
+   */
+  private final Map<String, Histogram> timers = new ConcurrentHashMap<>();
+
+  /**
+   * Histogram of durations.
+   */
+  static final class Histogram {
+
+    /**
+     * Number of sub buckets per power of two (log2).
+     */
+    private static final int SUB_BUCKET_BITS = 2;
+    /**
+     * Number of sub buckets per power of two.
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * Counts per bucket.
+     */
+    private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+    /**
+     * Number of values.
+     */
+    private final LongAdder count = new LongAdder();
+    /**
+     * Sum of all values.
+     */
+    private final LongAdder sum = new LongAdder();
+    /**
+     * Maximum value.
+     */
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Record a value.
+     *
+     * @param pValue value (negative values are treated as 0).
+     */
+    void record(long pValue) {
+      long value = Math.max(pValue, 0);
+      buckets.incrementAndGet(bucketOf(value));
+      count.increment();
+      sum.add(value);
+      max.accumulate(value);
+    }
+
+    /**
+     * Get number of values.
+     *
+     * @return number of values.
+     */
+    long getCount() {
+      return count.sum();
+    }
+
+    /**
+     * Get sum of all values.
+     *
+     * @return sum of all values.
+     */
+    long getSum() {
+      return sum.sum();
+    }
+
+    /**
+     * Get maximum value.
+     *
+     * @return maximum value.
+     */
+    long getMax() {
+      return max.get();
+    }
+
+    /**
+     * Get mean of all values.
+     *
+     * @return mean or 0 if there are no values.
+     */
+    double getMean() {
+      long noOfValues = getCount();
+      return (noOfValues == 0) ? 0 : (double) getSum() / noOfValues;
+    }
+
+    /**
+     * Get percentile. The upper bound of the bucket holding the percentile is
+     * returned.
+     *
+     * @param pPercentile percentile (0 &lt; pPercentile &lt;= 100).
+     * @return value of the percentile.
+     */
+    long getPercentile(double pPercentile) {
+      long noOfValues = getCount();
+      long rank = (long) Math.ceil(noOfValues * pPercentile / 100.0);
+      long seen = 0;
+      for (int index = 0; index < buckets.length(); index++) {
+        seen += buckets.get(index);
+        if ((seen >= rank) && (seen > 0)) {
+          return Math.min(upperBoundOf(index), getMax());
+        }
+      }
+      return getMax();
+    }
+
+    /**
+     * Get bucket of a value.
+     *
+     * @param pValue value.
+     * @return index of the bucket.
+     */
+    static int bucketOf(long pValue) {
+      if (pValue < SUB_BUCKETS) {
+        return (int) pValue;
+      }
+      int exponent = 63 - Long.numberOfLeadingZeros(pValue);
+      int subBucket = (int) (pValue >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+      return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Get upper bound of a bucket.
+     *
+     * @param pBucket index of the bucket.
+     * @return largest value of the bucket.
+     */
+    static long upperBoundOf(int pBucket) {
+      if (pBucket < SUB_BUCKETS) {
+        return pBucket;
+      }
+      int exponent = pBucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+      int subBucket = pBucket % SUB_BUCKETS;
+      long lowerBound = (long) (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+      return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+  }
+
+  @Override
+  public void increment(String pName, long pAmount) {
+    counters.computeIfAbsent(pName, (name) -> new LongAdder()).add(pAmount);
+  }
+
+  @Override
+  public void record(String pName, long pDurationInNanos) {
+    timers.computeIfAbsent(pName, (name) -> new Histogram()).record(pDurationInNanos);
+  }
+
+  /**
+   * Get value of a counter.
+   *
+   * @param pName name of the counter.
+   * @return value or 0 if counter doesn't exist.
+   */
+  public long getCounter(String pName) {
+    LongAdder counter = counters.get(pName);
+    return (counter != null) ? counter.sum() : 0;
+  }
+
+  @Override
+  public Map<String, Long> getCounters() {
+    Map<String, Long> values = new TreeMap<>();
+    for (Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+      values.put(counter.getKey(), counter.getValue().sum());
+    }
+    return values;
+  }
+
+  @Override
+  public Map<String, String> getTimers() {
+    Map<String, String> values = new TreeMap<>();
+    for (Map.Entry<String, Histogram> timer : timers.entrySet()) {
+      Histogram histogram = timer.getValue();
+      values.put(timer.getKey(), String.format("count=%d, mean=%.2fms, p50=%.2fms, p95=%.2fms, p99=%.2fms, max=%.2fms",
+              histogram.getCount(), histogram.getMean() / NANOS_PER_MILLI,
+              histogram.getPercentile(50) / NANOS_PER_MILLI, histogram.getPercentile(95) / NANOS_PER_MILLI,
+              histogram.getPercentile(99) / NANOS_PER_MILLI, histogram.getMax() / NANOS_PER_MILLI));
+    }
+    return values;
+  }
+
+  /**
+   * Publish metrics via JMX. (see {@link #OBJECT_NAME})
+   */
+  public void registerMBean() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(OBJECT_NAME);
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+      server.registerMBean(this, name);
+    } catch (InstanceAlreadyExistsException ex) {
+      LOGGER.warn("Metrics already published via JMX!", ex);
+    } catch (JMException ex) {
+      LOGGER.warn("Unable to publish metrics via JMX!", ex);
+    }
+  }
+
+  /**
+   * Export all metrics as JSON. Durations are given in milliseconds.
+   *
+   * @param pFile output file.
+   * @throws IOException if file couldn't be written.
+   */
+  public void export(File pFile) throws IOException {
+    JSONObject timerValues = new JSONObject();
+    for (Map.Entry<String, Histogram> timer : new TreeMap<>(timers).entrySet()) {
+      Histogram histogram = timer.getValue();
+      JSONObject value = new JSONObject();
+      value.put("count", histogram.getCount());
+      value.put("totalMs", histogram.getSum() / NANOS_PER_MILLI);
+      value.put("meanMs", histogram.getMean() / NANOS_PER_MILLI);
+      value.put("p50Ms", histogram.getPercentile(50) / NANOS_PER_MILLI);
+      value.put("p95Ms", histogram.getPercentile(95) / NANOS_PER_MILLI);
+      value.put("p99Ms", histogram.getPercentile(99) / NANOS_PER_MILLI);
+      value.put("maxMs", histogram.getMax() / NANOS_PER_MILLI);
+      timerValues.put(timer.getKey(), value);
+    }
+    JSONObject metrics = new JSONObject();
+    metrics.put("counters", new JSONObject(getCounters()));
+    metrics.put("timers", timerValues);
+    try (Writer writer = new OutputStreamWriter(Files.newOutputStream(pFile.toPath()), StandardCharsets.UTF_8)) {
+      writer.write(metrics.toString(2));
+    }
+  }
+
+  /**
+   * Print summary of all metrics.
+   *
+   * @param pOutput output stream.
+   */
+  public void printSummary(PrintStream pOutput) {
+    pOutput.println("Statistics:");
+    // <editor-fold defaultstate="collapsed" desc="REST requests">
+    String format = "  %-45s %8s %7s %10s %10s %10s %10s%n";
+    pOutput.format(format, "REST endpoint", "requests", "errors", "mean[ms]", "p95[ms]", "p99[ms]", "max[ms]");
+    for (Map.Entry<String, Histogram> timer : new TreeMap<>(timers).entrySet()) {
+      String name = timer.getKey();
+      if (name.startsWith(Metrics.REST_PREFIX)) {
+        Histogram histogram = timer.getValue();
+        pOutput.format(format, name.substring(Metrics.REST_PREFIX.length()), histogram.getCount(),
+                getCounter(name + Metrics.ERRORS_SUFFIX),
+                String.format("%.2f", histogram.getMean() / NANOS_PER_MILLI),
+                String.format("%.2f", histogram.getPercentile(95) / NANOS_PER_MILLI),
+                String.format("%.2f", histogram.getPercentile(99) / NANOS_PER_MILLI),
+                String.format("%.2f", histogram.getMax() / NANOS_PER_MILLI));
+      }
+    }
+    // </editor-fold>
+    // <editor-fold defaultstate="collapsed" desc="Transfers">
+    for (String transfer : new String[]{Metrics.UPLOAD, Metrics.DOWNLOAD}) {
+      Histogram histogram = timers.get(transfer);
+      if (histogram != null) {
+        double seconds = histogram.getSum() / (double) TimeUnit.SECONDS.toNanos(1);
+        long bytes = getCounter(transfer + Metrics.BYTES_SUFFIX);
+        long files = getCounter(transfer + Metrics.FILES_SUFFIX);
+        pOutput.format("  %-9s %d file(s), %.2f MiB in %.2f s (%.2f MiB/s, %.1f files/s)%n",
+                transfer.substring(transfer.indexOf('.') + 1) + ":", files, bytes / BYTES_PER_MIB, seconds,
+                (seconds > 0) ? bytes / BYTES_PER_MIB / seconds : 0, (seconds > 0) ? files / seconds : 0);
+      }
+    }
+    // </editor-fold>
+    pOutput.format("  Retried ingests: %d%n", getCounter(Metrics.INGEST_RETRIES));
+    Histogram waiting = timers.get(Metrics.DOWNLOAD_WAIT);
+    if (waiting != null) {
+      pOutput.format("  Waiting for downloads: %d download(s), %.2f s total, %.2f s max%n", waiting.getCount(),
+              waiting.getSum() / (double) TimeUnit.SECONDS.toNanos(1), waiting.getMax() / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+  }
+}
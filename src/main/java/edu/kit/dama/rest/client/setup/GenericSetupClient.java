@@ -155,8 +155,8 @@ public class GenericSetupClient extends AbstractGenericRestClient {
 
       if (properties != null) {
         // <editor-fold defaultstate="collapsed" desc="Initialize REST">
-        SimpleRESTContext context = new SimpleRESTContext(properties.getAccessKey(), properties.getAccessSecret());
-        bmdrc = new BaseMetaDataRestClient(properties.getRestUrl() + REST_BASE_META_DATA_PATH, context);
+        SimpleRESTContext context = getRestContext(properties);
+        bmdrc = getRestClient(BaseMetaDataRestClient.class, properties.getRestUrl() + REST_BASE_META_DATA_PATH, context, BaseMetaDataRestClient::new);
       }
     } catch (IllegalArgumentException ex) {
       LOGGER.error(null, ex);
@@ -493,7 +493,7 @@ public class GenericSetupClient extends AbstractGenericRestClient {
 
     PrintUtil.printOrganizationUnit(organization);
     if (queryYesNoAnswer("Do you want to update the organization unit?", NO)) {
-      SimpleRESTContext context = new SimpleRESTContext(properties.getAccessKey(), properties.getAccessSecret());
+      SimpleRESTContext context = getRestContext(properties);
       output.println("Update organization unit: ");
       bmdrc.updateOrganizationUnit(organizationId, organization, properties.getUserGroup(), context);
       output.println("Update organization unit: " + returnValue.getStatus());
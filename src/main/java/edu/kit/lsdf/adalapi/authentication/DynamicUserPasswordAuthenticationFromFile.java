@@ -27,9 +27,9 @@ import org.slf4j.LoggerFactory;
  * credentials will be read out from a properties file. Mandatory properties
  * are:
  * <ul><li>Username</li><li>Password</li></ul>
- * <b>Attention:</b> This class checks for new credentials every time. Due to
- * this the protocol may not so fast and it should only used for connection
- * testing in a separate application.
+ * This class checks for new credentials every time. The credentials are only
+ * compared again if the version of the properties has changed since the last
+ * successful check. (see {@link DataManagerPropertiesImpl#getVersion()})
  *
  * @author hartmann-v
  */
@@ -39,21 +39,34 @@ public class DynamicUserPasswordAuthenticationFromFile extends UserPasswordAuthe
    * Logger for debug messages.
    */
   private static final Logger LOGGER = LoggerFactory.getLogger(DynamicUserPasswordAuthenticationFromFile.class);
+  /**
+   * Version of the properties matching the credentials. (-1 if not checked
+   * yet)
+   */
+  private volatile long connectedVersion = -1;
 
   @Override
   public boolean isConnected() {
+    DataManagerPropertiesImpl defaultInstance = DataManagerPropertiesImpl.getDefaultInstance();
+    long version = defaultInstance.getVersion();
+    if (version == connectedVersion) {
+      // Credentials are only set from properties of the same version.
+      return true;
+    }
     boolean connected = true;
     Collection<AuthField> authVector = getUserInteractionVector();
-    DataManagerPropertiesImpl defaultInstance = DataManagerPropertiesImpl.getDefaultInstance();
     String newValue;
     for (AuthField field : authVector) {
       newValue = defaultInstance.getPropertyValue(DataManagerProperties.getPropertyByKey(field.getLabel()));
       if (!field.getValue().equals(newValue)) {
         connected = false;
-        LOGGER.debug("New Value for '" + field.getLabel() + "': " + newValue);
+        LOGGER.debug("New Value for '{}'!", field.getLabel());
       }
     }
-    LOGGER.debug("DynamicUserPasswordAuthenticationFromFile is connected: " + connected);
+    if (connected) {
+      connectedVersion = version;
+    }
+    LOGGER.debug("DynamicUserPasswordAuthenticationFromFile is connected: {}", connected);
     return connected;
   }
 }
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.cmdline.generic.test;
+
+import edu.kit.dama.cmdline.generic.RepoClientDaemon;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Properties;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RepoClientDaemonTest {
+
+  private String userHome;
+
+  private File home;
+
+  private RepoClientDaemon daemon;
+
+  private String token;
+
+  @Before
+  public void setup() throws IOException {
+    // State file is written to the home directory of the client.
+    userHome = System.getProperty("user.home");
+    home = Files.createTempDirectory("daemon").toFile();
+    System.setProperty("user.home", home.getAbsolutePath());
+    File stateFile = new File(home, ".repoClient/daemon.properties");
+    Assert.assertTrue(stateFile.getParentFile().mkdirs());
+    daemon = new RepoClientDaemon(0);
+    daemon.start();
+    Properties state = new Properties();
+    try (InputStream input = Files.newInputStream(stateFile.toPath())) {
+      state.load(input);
+    }
+    Assert.assertEquals(Integer.toString(daemon.getPort()), state.getProperty("port"));
+    token = state.getProperty("token");
+    Assert.assertNotNull(token);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    daemon.stop();
+    System.setProperty("user.home", userHome);
+    try (Stream<Path> paths = Files.walk(home.toPath())) {
+      paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+  }
+
+  /**
+   * +ve Command with valid token is executed. Output is streamed and followed
+   * by the status code.
+   */
+  @Test
+  public void validTokenTest() throws IOException {
+    HttpURLConnection connection = post("/command", "Bearer " + token);
+    Assert.assertEquals(200, connection.getResponseCode());
+    Assert.assertEquals("chunked", connection.getHeaderField("Transfer-Encoding"));
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    ByteArrayOutputStream error = new ByteArrayOutputStream();
+    Assert.assertEquals(0, read(connection, output, error));
+    // usage
+    Assert.assertTrue(output.size() > 0);
+    Assert.assertEquals(0, error.size());
+  }
+
+  /**
+   * +ve Output written to STDERR is sent separately from output written to
+   * STDOUT.
+   */
+  @Test
+  public void separateStreamsTest() throws IOException {
+    HttpURLConnection connection = post("/command", "Bearer " + token, "--invalidParameter");
+    Assert.assertEquals(200, connection.getResponseCode());
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    ByteArrayOutputStream error = new ByteArrayOutputStream();
+    read(connection, output, error);
+    String errorMessage = new String(error.toByteArray(), StandardCharsets.UTF_8);
+    Assert.assertTrue(errorMessage, errorMessage.startsWith("Error parsing parameters!"));
+    // usage
+    String usage = new String(output.toByteArray(), StandardCharsets.UTF_8);
+    Assert.assertTrue(output.size() > 0);
+    Assert.assertFalse(usage, usage.contains("Error parsing parameters!"));
+  }
+
+
+  /**
+   * -ve Requests without token are rejected.
+   */
+  @Test
+  public void missingTokenTest() throws IOException {
+    Assert.assertEquals(401, post("/command", null).getResponseCode());
+    Assert.assertEquals(401, post("/shutdown", null).getResponseCode());
+  }
+
+  /**
+   * -ve Requests with wrong token are rejected.
+   */
+  @Test
+  public void wrongTokenTest() throws IOException {
+    Assert.assertEquals(401, post("/command", "Bearer " + token + "x").getResponseCode());
+    Assert.assertEquals(401, post("/command", token).getResponseCode());
+    Assert.assertEquals(401, post("/shutdown", "Bearer ").getResponseCode());
+  }
+
+  /**
+   * -ve Only POST requests are accepted.
+   */
+  @Test
+  public void wrongMethodTest() throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL("http", "127.0.0.1", daemon.getPort(), "/command").openConnection();
+    connection.setRequestProperty("Authorization", "Bearer " + token);
+    Assert.assertEquals(405, connection.getResponseCode());
+  }
+
+  private HttpURLConnection post(String pPath, String pAuthorization, String... pArguments) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL("http", "127.0.0.1", daemon.getPort(), pPath).openConnection();
+    connection.setRequestMethod("POST");
+    connection.setDoOutput(true);
+    if (pAuthorization != null) {
+      connection.setRequestProperty("Authorization", pAuthorization);
+    }
+    try (OutputStream output = connection.getOutputStream()) {
+      output.write(String.join("\0", pArguments).getBytes(StandardCharsets.UTF_8));
+    }
+    return connection;
+  }
+
+  private static int read(HttpURLConnection pConnection, OutputStream pOutput, OutputStream pError) throws IOException {
+    try (DataInputStream input = new DataInputStream(pConnection.getInputStream())) {
+      while (true) {
+        byte type = input.readByte();
+        int value = input.readInt();
+        if (type == 'X') {
+          Assert.assertEquals(-1, input.read());
+          return value;
+        }
+        byte[] frame = new byte[value];
+        input.readFully(frame);
+        if (type == 'O') {
+          pOutput.write(frame);
+        } else if (type == 'E') {
+          pError.write(frame);
+        } else {
+          Assert.fail("Unknown frame type '" + type + "'!");
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.access.impl.test;
+
+import edu.kit.dama.rest.client.access.impl.PagedSearchHits;
+import edu.kit.dama.rest.client.access.impl.SearchHits;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PagedSearchHitsTest {
+
+  private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+
+  /**
+   * +ve All hits are read page by page. Paging stops at a short last page.
+   */
+  @Test
+  public void shortLastPageTest() {
+    try (PagedSearchHits hits = new PagedSearchHits(newPageRequest(25), 0, PagedSearchHits.NO_LIMIT, 10)) {
+      List<Object> all = hits.stream().collect(Collectors.toList());
+      Assert.assertEquals(25, all.size());
+      Assert.assertEquals("hit_0", all.get(0));
+      Assert.assertEquals("hit_24", all.get(24));
+    }
+    Assert.assertTrue(requests.toString(), requests.containsAll(Arrays.asList("0-10", "10-10", "20-10")));
+    // At most the page after the short page is prefetched.
+    Assert.assertTrue(requests.toString(), requests.size() <= 4);
+  }
+
+  /**
+   * +ve Page with exactly the page size is followed by an empty page.
+   */
+  @Test
+  public void fullLastPageTest() {
+    try (PagedSearchHits hits = new PagedSearchHits(newPageRequest(20), 0, PagedSearchHits.NO_LIMIT, 10)) {
+      Assert.assertEquals(20, hits.stream().count());
+    }
+    Assert.assertEquals(Arrays.asList("0-10", "10-10", "20-10"), requests.subList(0, 3));
+    // At most one page is prefetched beyond the empty page.
+    Assert.assertTrue(requests.toString(), requests.size() <= 4);
+  }
+
+  /**
+   * +ve No more hits than the limit are requested.
+   */
+  @Test
+  public void limitTest() {
+    try (PagedSearchHits hits = new PagedSearchHits(newPageRequest(100), 5, 15, 10)) {
+      List<Object> all = hits.stream().collect(Collectors.toList());
+      Assert.assertEquals(15, all.size());
+      Assert.assertEquals("hit_5", all.get(0));
+      Assert.assertEquals("hit_19", all.get(14));
+    }
+    Assert.assertEquals(Arrays.asList("5-10", "15-5"), requests);
+  }
+
+  /**
+   * -ve Limit of 0 requests nothing.
+   */
+  @Test
+  public void zeroLimitTest() {
+    try (PagedSearchHits hits = new PagedSearchHits(newPageRequest(100), 0, 0, 10)) {
+      Assert.assertFalse(hits.hasNext());
+    }
+    Assert.assertTrue(requests.isEmpty());
+  }
+
+  /**
+   * +ve Response which is not a JSON array stops paging.
+   */
+  @Test
+  public void rawResponseTest() {
+    String response = "{\"error\":\"no index\"}";
+    PagedSearchHits.IPageRequest request = (offset, size) -> {
+      requests.add(offset + "-" + size);
+      return newSearchHits(response);
+    };
+    try (PagedSearchHits hits = new PagedSearchHits(request, 0, PagedSearchHits.NO_LIMIT, 10)) {
+      Assert.assertTrue(hits.hasNext());
+      Assert.assertTrue(hits.isRaw());
+      Assert.assertEquals(response, hits.next());
+      Assert.assertFalse(hits.hasNext());
+    }
+  }
+
+  /**
+   * -ve Errors fetching a page are thrown to the caller.
+   */
+  @Test
+  public void failedPageTest() {
+    PagedSearchHits.IPageRequest pages = newPageRequest(100);
+    PagedSearchHits.IPageRequest request = (offset, size) -> {
+      if (offset > 0) {
+        throw new IllegalStateException("search failed");
+      }
+      return pages.getPage(offset, size);
+    };
+    try (PagedSearchHits hits = new PagedSearchHits(request, 0, PagedSearchHits.NO_LIMIT, 10)) {
+      for (int index = 0; index < 10; index++) {
+        hits.next();
+      }
+      hits.hasNext();
+      Assert.fail("Error expected!");
+    } catch (IllegalStateException ise) {
+      Assert.assertEquals("search failed", ise.getMessage());
+    }
+  }
+
+  /**
+   * -ve Server ignoring the offset doesn't result in an endless loop.
+   */
+  @Test
+  public void offsetIgnoredTest() {
+    PagedSearchHits.IPageRequest pages = newPageRequest(100);
+    PagedSearchHits.IPageRequest request = (offset, size) -> pages.getPage(0, size);
+    int noOfHits = 0;
+    try (PagedSearchHits hits = new PagedSearchHits(request, 0, PagedSearchHits.NO_LIMIT, 10)) {
+      while (hits.hasNext()) {
+        hits.next();
+        noOfHits++;
+      }
+      Assert.fail("Error expected!");
+    } catch (IllegalStateException ise) {
+      Assert.assertTrue(ise.getMessage(), ise.getMessage().contains("offset 10"));
+    }
+    Assert.assertEquals(10, noOfHits);
+  }
+
+  /**
+   * -ve Invalid settings are rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidPageSizeTest() {
+    new PagedSearchHits(newPageRequest(10), 0, PagedSearchHits.NO_LIMIT, 0);
+  }
+
+  private PagedSearchHits.IPageRequest newPageRequest(int pNoOfHits) {
+    return (offset, size) -> {
+      requests.add(offset + "-" + size);
+      StringBuilder page = new StringBuilder("[");
+      for (int index = offset; index < Math.min(offset + size, pNoOfHits); index++) {
+        page.append((index > offset) ? "," : "").append("\"hit_").append(index).append('"');
+      }
+      return newSearchHits(page.append(']').toString());
+    };
+  }
+
+  private static SearchHits newSearchHits(String pResponse) {
+    return new SearchHits(new ByteArrayInputStream(pResponse.getBytes(StandardCharsets.UTF_8)));
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.access.impl.test;
+
+import edu.kit.dama.rest.client.access.impl.SearchHits;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SearchHitsTest {
+
+  /**
+   * +ve Elements of the array are returned one by one.
+   */
+  @Test
+  public void jsonArrayTest() {
+    try (SearchHits hits = newSearchHits("[ {\"id\":\"doid_1\",\"size\":1}, [1, 2], \"doid_3\" ,42 ]")) {
+      Assert.assertTrue(hits.hasNext());
+      Assert.assertFalse(hits.isRaw());
+      Object first = hits.next();
+      Assert.assertTrue(first instanceof JSONObject);
+      Assert.assertEquals("doid_1", ((JSONObject) first).getString("id"));
+      Assert.assertTrue(hits.next() instanceof JSONArray);
+      Assert.assertEquals("doid_3", hits.next());
+      Assert.assertEquals(42, hits.next());
+      Assert.assertFalse(hits.hasNext());
+    }
+  }
+
+  /**
+   * +ve Hits are parsed not until they are requested.
+   */
+  @Test
+  public void incrementalParsingTest() {
+    int noOfHits = 100000;
+    StringBuilder content = new StringBuilder("[");
+    for (int index = 0; index < noOfHits; index++) {
+      content.append((index > 0) ? "," : "").append("\"doid_").append(index).append('"');
+    }
+    byte[] response = content.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    AtomicInteger bytesRead = new AtomicInteger();
+    InputStream input = new ByteArrayInputStream(response) {
+      @Override
+      public synchronized int read(byte[] pBuffer, int pOffset, int pLength) {
+        int read = super.read(pBuffer, pOffset, pLength);
+        bytesRead.addAndGet(Math.max(read, 0));
+        return read;
+      }
+    };
+    try (SearchHits hits = new SearchHits(input)) {
+      Assert.assertEquals("doid_0", hits.next());
+      Assert.assertTrue("Read " + bytesRead.get() + " bytes", bytesRead.get() < response.length / 10);
+      Assert.assertEquals(noOfHits - 1, hits.stream().count());
+      Assert.assertEquals(response.length, bytesRead.get());
+    }
+  }
+
+  /**
+   * +ve Response which is not a JSON array is returned as a whole.
+   */
+  @Test
+  public void rawResponseTest() {
+    String response = "{\"error\":\"no index\"}";
+    try (SearchHits hits = newSearchHits(response)) {
+      Assert.assertTrue(hits.hasNext());
+      Assert.assertTrue(hits.isRaw());
+      Assert.assertEquals(response, hits.next());
+      Assert.assertFalse(hits.hasNext());
+    }
+  }
+
+  /**
+   * -ve Empty array and empty response contain no hits.
+   */
+  @Test
+  public void emptyResponseTest() {
+    try (SearchHits hits = newSearchHits(" [ ] ")) {
+      Assert.assertFalse(hits.hasNext());
+      Assert.assertFalse(hits.isRaw());
+    }
+    try (SearchHits hits = newSearchHits("")) {
+      Assert.assertFalse(hits.hasNext());
+      Assert.assertFalse(hits.isRaw());
+    }
+  }
+
+  /**
+   * -ve Parsing stops at invalid JSON. All hits before are returned.
+   */
+  @Test
+  public void invalidJsonTest() {
+    try (SearchHits hits = newSearchHits("[\"doid_1\", {\"id\": ]")) {
+      Assert.assertEquals("doid_1", hits.next());
+      Assert.assertFalse(hits.hasNext());
+    }
+  }
+
+  /**
+   * +ve Stream returns all remaining hits.
+   */
+  @Test
+  public void streamTest() {
+    try (SearchHits hits = newSearchHits("[\"doid_1\",\"doid_2\",\"doid_3\"]")) {
+      hits.next();
+      List<Object> remaining = hits.stream().collect(Collectors.toList());
+      Assert.assertEquals(2, remaining.size());
+      Assert.assertEquals("doid_3", remaining.get(1));
+    }
+  }
+
+  /**
+   * -ve No hits are returned after closing the response.
+   */
+  @Test(expected = NoSuchElementException.class)
+  public void closedTest() throws IOException {
+    SearchHits hits = newSearchHits("[\"doid_1\"]");
+    hits.close();
+    hits.next();
+  }
+
+  private static SearchHits newSearchHits(String pResponse) {
+    return new SearchHits(new ByteArrayInputStream(pResponse.getBytes(StandardCharsets.UTF_8)));
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.access.output.test;
+
+import edu.kit.dama.mdm.base.DigitalObject;
+import edu.kit.dama.rest.client.access.output.CsvListWriter;
+import edu.kit.dama.staging.entities.ingest.INGEST_STATUS;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class CsvListWriterTest {
+
+  private ByteArrayOutputStream buffer;
+
+  private CsvListWriter writer;
+
+  @Before
+  public void setup() {
+    buffer = new ByteArrayOutputStream();
+    writer = new CsvListWriter(new PrintStream(buffer, true));
+  }
+
+  /**
+   * +ve Header holds the names of all columns.
+   */
+  @Test
+  public void headerTest() {
+    writer.writeHeader("ignored header");
+    writer.flush();
+    Assert.assertArrayEquals(new String[]{"index,digitalObjectId,startDate,note,state"}, getLines());
+  }
+
+  /**
+   * +ve Plain values are written without quotes.
+   */
+  @Test
+  public void plainValuesTest() {
+    writer.write(1, newDigitalObject("doid_1", new Date(0), "plain note"), INGEST_STATUS.INGEST_FINISHED);
+    writer.flush();
+    String[] fields = getLines()[0].split(",");
+    Assert.assertEquals(5, fields.length);
+    Assert.assertEquals("1", fields[0]);
+    Assert.assertEquals("doid_1", fields[1]);
+    Assert.assertTrue(fields[2], fields[2].matches("\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}(Z|[+-]\\d{2}:\\d{2})"));
+    Assert.assertEquals("plain note", fields[3]);
+    Assert.assertEquals(INGEST_STATUS.INGEST_FINISHED.toString(), fields[4]);
+  }
+
+  /**
+   * +ve Values with separators, quotes or line breaks are quoted. Quotes are
+   * doubled.
+   */
+  @Test
+  public void escapeTest() {
+    writer.write(2, newDigitalObject("doid,2", null, "say \"hello\""), INGEST_STATUS.INGEST_FAILED);
+    writer.write(3, newDigitalObject("doid_3", null, "first line\nsecond line"), INGEST_STATUS.UNKNOWN);
+    writer.flush();
+    String output = new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+    String lineSeparator = System.lineSeparator();
+    Assert.assertEquals("2,\"doid,2\",,\"say \"\"hello\"\"\"," + INGEST_STATUS.INGEST_FAILED + lineSeparator
+            + "3,doid_3,,\"first line\nsecond line\"," + INGEST_STATUS.UNKNOWN + lineSeparator, output);
+  }
+
+  /**
+   * -ve Missing values are written as empty fields.
+   */
+  @Test
+  public void missingValuesTest() {
+    writer.write(4, newDigitalObject(null, null, null), INGEST_STATUS.UNKNOWN);
+    writer.flush();
+    Assert.assertArrayEquals(new String[]{"4,,,," + INGEST_STATUS.UNKNOWN}, getLines());
+  }
+
+  private String[] getLines() {
+    return new String(buffer.toByteArray(), StandardCharsets.UTF_8).split(System.lineSeparator());
+  }
+
+  private static DigitalObject newDigitalObject(String pDigitalObjectId, Date pStartDate, String pNote) {
+    DigitalObject digitalObject = Mockito.mock(DigitalObject.class);
+    Mockito.when(digitalObject.getDigitalObjectIdentifier()).thenReturn(pDigitalObjectId);
+    Mockito.when(digitalObject.getStartDate()).thenReturn(pStartDate);
+    Mockito.when(digitalObject.getNote()).thenReturn(pNote);
+    return digitalObject;
+  }
+}
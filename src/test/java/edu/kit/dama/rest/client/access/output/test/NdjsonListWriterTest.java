@@ -0,0 +1,98 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.access.output.test;
+
+import edu.kit.dama.mdm.base.DigitalObject;
+import edu.kit.dama.rest.client.access.output.NdjsonListWriter;
+import edu.kit.dama.staging.entities.ingest.INGEST_STATUS;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class NdjsonListWriterTest {
+
+  private ByteArrayOutputStream buffer;
+
+  private NdjsonListWriter writer;
+
+  @Before
+  public void setup() {
+    buffer = new ByteArrayOutputStream();
+    writer = new NdjsonListWriter(new PrintStream(buffer, true));
+  }
+
+  /**
+   * +ve No header is written.
+   */
+  @Test
+  public void noHeaderTest() {
+    writer.writeHeader("ignored header");
+    writer.flush();
+    Assert.assertEquals(0, buffer.size());
+  }
+
+  /**
+   * +ve Each digital object is written as JSON object on a single line.
+   */
+  @Test
+  public void oneObjectPerLineTest() {
+    writer.write(1, newDigitalObject("doid_1", new Date(0), "first line\nsecond \"line\""), INGEST_STATUS.INGEST_FINISHED);
+    writer.write(2, newDigitalObject("doid_2", new Date(0), "note"), INGEST_STATUS.INGEST_FAILED);
+    writer.flush();
+    String[] lines = getLines();
+    Assert.assertEquals(2, lines.length);
+    JSONObject first = new JSONObject(lines[0]);
+    Assert.assertEquals(1, first.getInt("index"));
+    Assert.assertEquals("doid_1", first.getString("digitalObjectId"));
+    Assert.assertEquals("first line\nsecond \"line\"", first.getString("note"));
+    Assert.assertEquals(INGEST_STATUS.INGEST_FINISHED.toString(), first.getString("state"));
+    Assert.assertTrue(first.getString("startDate"), first.getString("startDate").matches("\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}(Z|[+-]\\d{2}:\\d{2})"));
+    JSONObject second = new JSONObject(lines[1]);
+    Assert.assertEquals(2, second.getInt("index"));
+    Assert.assertEquals(INGEST_STATUS.INGEST_FAILED.toString(), second.getString("state"));
+  }
+
+  /**
+   * -ve Missing optional values are omitted.
+   */
+  @Test
+  public void missingValuesTest() {
+    writer.write(3, newDigitalObject("doid_3", null, null), INGEST_STATUS.UNKNOWN);
+    writer.flush();
+    JSONObject json = new JSONObject(getLines()[0]);
+    Assert.assertEquals("doid_3", json.getString("digitalObjectId"));
+    Assert.assertFalse(json.has("startDate"));
+    Assert.assertFalse(json.has("note"));
+  }
+
+  private String[] getLines() {
+    return new String(buffer.toByteArray(), StandardCharsets.UTF_8).split(System.lineSeparator());
+  }
+
+  private static DigitalObject newDigitalObject(String pDigitalObjectId, Date pStartDate, String pNote) {
+    DigitalObject digitalObject = Mockito.mock(DigitalObject.class);
+    Mockito.when(digitalObject.getDigitalObjectIdentifier()).thenReturn(pDigitalObjectId);
+    Mockito.when(digitalObject.getStartDate()).thenReturn(pStartDate);
+    Mockito.when(digitalObject.getNote()).thenReturn(pNote);
+    return digitalObject;
+  }
+}
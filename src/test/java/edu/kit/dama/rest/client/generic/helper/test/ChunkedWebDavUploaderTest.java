@@ -0,0 +1,202 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.generic.helper.test;
+
+import edu.kit.dama.rest.client.DataManagerPropertiesImpl;
+import edu.kit.dama.rest.client.generic.helper.ChunkedWebDavUploader;
+import edu.kit.dama.rest.client.generic.helper.IngestJournal;
+import edu.kit.dama.rest.client.generic.helper.RetryPolicy;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ChunkedWebDavUploaderTest {
+
+  private static final long INGEST_ID = Long.MAX_VALUE - 4712;
+
+  private static final int NO_OF_ATTEMPTS = 3;
+
+  private static final int PART_SIZE = 1000;
+
+  private static final String REMOTE_PATH = "/ingest/large.bin";
+
+  private WebDavTestServer server;
+
+  private File source;
+
+  private File file;
+
+  private byte[] content;
+
+  private URL remoteDirectory;
+
+  private ChunkedWebDavUploader uploader;
+
+  @Before
+  public void setup() throws IOException {
+    server = new WebDavTestServer();
+    remoteDirectory = server.getUrl("/ingest/");
+    source = Files.createTempDirectory("chunked").toFile();
+    file = new File(source, "large.bin");
+    content = new byte[10 * PART_SIZE + 500];
+    new Random(content.length).nextBytes(content);
+    Files.write(file.toPath(), content);
+    uploader = newUploader();
+    Files.deleteIfExists(getJournalFile());
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    uploader.close();
+    server.close();
+    Files.deleteIfExists(getJournalFile());
+    try (Stream<Path> paths = Files.walk(source.toPath())) {
+      paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+  }
+
+  /**
+   * +ve File is uploaded in parts and each part is verified.
+   */
+  @Test
+  public void uploadInPartsTest() throws Exception {
+    Assert.assertTrue(uploader.upload(file, file.length(), file.lastModified(), remoteDirectory, null));
+    Assert.assertArrayEquals(content, server.getFile(REMOTE_PATH));
+    Assert.assertEquals(11, server.getRequests("PUT", REMOTE_PATH));
+    Assert.assertEquals(11, server.getRequests("GET", REMOTE_PATH));
+  }
+
+  /**
+   * +ve A failed part is uploaded again.
+   */
+  @Test
+  public void retryFailedPartTest() throws Exception {
+    server.fail("PUT", REMOTE_PATH, 2);
+    Assert.assertTrue(uploader.upload(file, file.length(), file.lastModified(), remoteDirectory, null));
+    Assert.assertArrayEquals(content, server.getFile(REMOTE_PATH));
+    Assert.assertEquals(13, server.getRequests("PUT", REMOTE_PATH));
+  }
+
+  /**
+   * +ve Parts recorded in the journal are not uploaded again.
+   */
+  @Test
+  public void resumeTest() throws Exception {
+    // First 4 parts were uploaded before.
+    server.putFile(REMOTE_PATH, Arrays.copyOf(Arrays.copyOf(content, 4 * PART_SIZE), content.length));
+    try (IngestJournal journal = IngestJournal.open(INGEST_ID, source)) {
+      for (long offset = 0; offset < 4 * PART_SIZE; offset += PART_SIZE) {
+        journal.partUploaded(file, file.length(), file.lastModified(), offset, PART_SIZE, "md5");
+      }
+      Assert.assertTrue(uploader.upload(file, file.length(), file.lastModified(), remoteDirectory, journal));
+      Assert.assertEquals(11, journal.getUploadedParts(file, file.length(), file.lastModified()).size());
+    }
+    Assert.assertArrayEquals(content, server.getFile(REMOTE_PATH));
+    Assert.assertEquals(7, server.getRequests("PUT", REMOTE_PATH));
+    Assert.assertEquals(0, server.getRequests("DELETE", REMOTE_PATH));
+  }
+
+  /**
+   * -ve Parts failing for all attempts are reported. All other parts are
+   * recorded in the journal.
+   */
+  @Test
+  public void partialFailureTest() throws Exception {
+    try (IngestJournal journal = IngestJournal.open(INGEST_ID, source)) {
+      // Probe with the last part succeeds, all further parts fail.
+      server.failAfter("PUT", REMOTE_PATH, 1);
+      try {
+        uploader.upload(file, file.length(), file.lastModified(), remoteDirectory, journal);
+        Assert.fail("Upload should fail!");
+      } catch (IOException ex) {
+        Assert.assertTrue(ex.getMessage(), ex.getMessage().contains("10 of 11 part(s)"));
+      }
+      Map<Long, Long> parts = journal.getUploadedParts(file, file.length(), file.lastModified());
+      Assert.assertEquals(1, parts.size());
+      Assert.assertEquals(Long.valueOf(500), parts.get(10L * PART_SIZE));
+    }
+    Assert.assertEquals(1 + 10 * NO_OF_ATTEMPTS, server.getRequests("PUT", REMOTE_PATH));
+  }
+
+  /**
+   * -ve Server ignoring 'Content-Range': file has to be uploaded as a whole.
+   */
+  @Test
+  public void partialPutNotSupportedTest() throws Exception {
+    server.setPartialPutSupported(false);
+    Assert.assertFalse(uploader.upload(file, file.length(), file.lastModified(), remoteDirectory, null));
+    Assert.assertEquals(1, server.getRequests("PUT", REMOTE_PATH));
+    // Not probed again.
+    Assert.assertFalse(uploader.upload(file, file.length(), file.lastModified(), remoteDirectory, null));
+    Assert.assertEquals(1, server.getRequests("PUT", REMOTE_PATH));
+  }
+
+  /**
+   * -ve Server rejecting 'Content-Range': file has to be uploaded as a whole.
+   */
+  @Test
+  public void partialPutRejectedTest() throws Exception {
+    for (int status : new int[]{400, 405, 501}) {
+      try (ChunkedWebDavUploader probingUploader = newUploader()) {
+        server.rejectPartialPut(status);
+        int requests = server.getRequests("PUT", REMOTE_PATH);
+        Assert.assertFalse(probingUploader.upload(file, file.length(), file.lastModified(), remoteDirectory, null));
+        // Rejection is not retried.
+        Assert.assertEquals(requests + 1, server.getRequests("PUT", REMOTE_PATH));
+      }
+    }
+  }
+
+  /**
+   * +ve Without range requests the parts are not verified.
+   */
+  @Test
+  public void noRangeRequestsTest() throws Exception {
+    server.setRangesSupported(false);
+    Assert.assertTrue(uploader.upload(file, file.length(), file.lastModified(), remoteDirectory, null));
+    Assert.assertArrayEquals(content, server.getFile(REMOTE_PATH));
+    Assert.assertTrue(server.getRequests("GET", REMOTE_PATH) <= 4);
+  }
+
+  /**
+   * -ve Invalid settings are rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidPartSizeTest() {
+    new ChunkedWebDavUploader(0, 1, RetryPolicy.newTransferPolicy());
+  }
+
+  private ChunkedWebDavUploader newUploader() {
+    // Circuit breaker is not tested here: many failing parts must not open the circuit.
+    RetryPolicy retryPolicy = new RetryPolicy(NO_OF_ATTEMPTS, 1, 1, RetryPolicy.UNLIMITED_TIME_BUDGET, Integer.MAX_VALUE, 1);
+    return new ChunkedWebDavUploader(PART_SIZE, 4, retryPolicy);
+  }
+
+  private Path getJournalFile() {
+    return new File(DataManagerPropertiesImpl.getHomeDir(), "journal/ingest_" + INGEST_ID + ".journal").toPath();
+  }
+}
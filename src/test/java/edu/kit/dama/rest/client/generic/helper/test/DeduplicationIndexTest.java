@@ -0,0 +1,106 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.generic.helper.test;
+
+import edu.kit.dama.rest.client.DataManagerPropertiesImpl;
+import edu.kit.dama.rest.client.generic.helper.DeduplicationIndex;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DeduplicationIndexTest {
+
+  private static final int NO_OF_ENTRIES = 2000;
+
+  private final String groupId = "dedup-test-" + System.nanoTime();
+
+  private final Path indexFile = new File(DataManagerPropertiesImpl.getHomeDir(), "dedup/" + groupId + ".index").toPath();
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(indexFile);
+  }
+
+  /**
+   * +ve Indices of the same group share their entries.
+   */
+  @Test
+  public void sharedEntriesTest() throws IOException {
+    try (DeduplicationIndex first = DeduplicationIndex.open(groupId);
+            DeduplicationIndex second = DeduplicationIndex.open(groupId)) {
+      first.add("hash", "object_1", "a.bin");
+      Assert.assertEquals("object_1:a.bin", second.getOrigin("hash"));
+      second.add("hash", "object_2", "b.bin");
+      Assert.assertEquals("object_1:a.bin", first.getOrigin("hash"));
+    }
+    Assert.assertEquals(1, Files.readAllLines(indexFile, StandardCharsets.UTF_8).size());
+    try (DeduplicationIndex index = DeduplicationIndex.open(groupId)) {
+      Assert.assertEquals("object_1:a.bin", index.getOrigin("hash"));
+    }
+  }
+
+  /**
+   * +ve Entries written by parallel ingests of a group never interleave.
+   */
+  @Test
+  public void parallelIngestsTest() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      List<Future<?>> ingests = new ArrayList<>();
+      for (int ingest = 0; ingest < 2; ingest++) {
+        String digitalObjectId = "object_" + ingest;
+        ingests.add(executor.submit(() -> {
+          try (DeduplicationIndex index = DeduplicationIndex.open(groupId)) {
+            for (int entry = 0; entry < NO_OF_ENTRIES; entry++) {
+              index.add(digitalObjectId + "_hash_" + entry, digitalObjectId, "file_" + entry + ".bin");
+            }
+          }
+          return null;
+        }));
+      }
+      for (Future<?> ingest : ingests) {
+        ingest.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    List<String> lines = Files.readAllLines(indexFile, StandardCharsets.UTF_8);
+    Assert.assertEquals(2 * NO_OF_ENTRIES, lines.size());
+    for (String line : lines) {
+      Assert.assertTrue(line, line.matches("object_\\d_hash_\\d+\tobject_\\d\tfile_\\d+\\.bin"));
+    }
+  }
+
+  /**
+   * -ve Closed index can't be written.
+   */
+  @Test(expected = IllegalStateException.class)
+  public void closedIndexTest() throws IOException {
+    DeduplicationIndex index = DeduplicationIndex.open(groupId);
+    index.close();
+    index.add("hash", "object_1", "a.bin");
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.generic.helper.test;
+
+import edu.kit.dama.rest.client.generic.helper.DirectoryManifest;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DirectoryManifestTest {
+
+  private File source;
+
+  @Before
+  public void setup() throws IOException {
+    source = Files.createTempDirectory("manifest").toFile();
+    createFile("a.txt", 10, 1000000L);
+    createFile("sub/b.txt", 300, 3000000L);
+    createFile("sub/deeper/c.txt", 20, 2000000L);
+    createFile("other/d.txt", 0, 4000000L);
+    Files.createDirectories(new File(source, "empty/dir").toPath());
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    try (Stream<Path> paths = Files.walk(source.toPath())) {
+      paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+  }
+
+  /**
+   * +ve All files and directories are scanned with size and modification.
+   */
+  @Test
+  public void scanTest() throws IOException {
+    DirectoryManifest manifest = DirectoryManifest.scan(source, 2);
+    Assert.assertEquals(source.getAbsoluteFile(), manifest.getSource());
+    Assert.assertEquals(source.getAbsoluteFile(), manifest.getRootDirectory());
+    Assert.assertEquals(4, manifest.getNoOfFiles());
+    Assert.assertEquals(330, manifest.getTotalSize());
+    Assert.assertEquals(1000000L, manifest.getMinLastModified());
+    Assert.assertEquals(4000000L, manifest.getMaxLastModified());
+    Assert.assertEquals(Arrays.asList("a.txt", "other/d.txt", "sub/b.txt", "sub/deeper/c.txt"), getPaths(manifest.getFiles()));
+    DirectoryManifest.Entry entry = manifest.getFiles().get(2);
+    Assert.assertEquals(300, entry.getSize());
+    Assert.assertEquals(3000000L, entry.getLastModified());
+  }
+
+  /**
+   * +ve Parents are listed before their children.
+   */
+  @Test
+  public void directoriesTest() throws IOException {
+    List<File> directories = DirectoryManifest.scan(source).getDirectories();
+    Assert.assertEquals(5, directories.size());
+    for (int index = 0; index < directories.size(); index++) {
+      File parent = directories.get(index).getParentFile();
+      if (!parent.equals(source.getAbsoluteFile())) {
+        Assert.assertTrue(directories + "", directories.subList(0, index).contains(parent));
+      }
+    }
+    Assert.assertTrue(directories.contains(new File(source, "empty/dir").getAbsoluteFile()));
+  }
+
+  /**
+   * +ve Files may be sorted by size.
+   */
+  @Test
+  public void largestFirstTest() throws IOException {
+    DirectoryManifest manifest = DirectoryManifest.scan(source);
+    Assert.assertEquals(Arrays.asList("sub/b.txt", "sub/deeper/c.txt", "a.txt", "other/d.txt"), getPaths(manifest.getFilesLargestFirst()));
+    // Order of the manifest is not changed.
+    Assert.assertEquals("a.txt", getPaths(manifest.getFiles()).get(0));
+  }
+
+  /**
+   * +ve Single file is its own manifest.
+   */
+  @Test
+  public void singleFileTest() throws IOException {
+    File file = new File(source, "sub/b.txt");
+    DirectoryManifest manifest = DirectoryManifest.scan(file);
+    Assert.assertEquals(file.getParentFile().getAbsoluteFile(), manifest.getRootDirectory());
+    Assert.assertEquals(1, manifest.getNoOfFiles());
+    Assert.assertEquals(300, manifest.getTotalSize());
+    Assert.assertTrue(manifest.getDirectories().isEmpty());
+  }
+
+  /**
+   * -ve Empty directory contains no files.
+   */
+  @Test
+  public void emptyDirectoryTest() throws IOException {
+    File empty = new File(source, "empty");
+    DirectoryManifest manifest = DirectoryManifest.scan(empty);
+    Assert.assertEquals(0, manifest.getNoOfFiles());
+    Assert.assertEquals(0, manifest.getTotalSize());
+    Assert.assertEquals(manifest.getSourceLastModified(), manifest.getMinLastModified());
+    Assert.assertEquals(1, manifest.getDirectories().size());
+  }
+
+  /**
+   * +ve Symbolic links are followed. Loops and broken links are skipped.
+   */
+  @Test
+  public void symbolicLinksTest() throws IOException {
+    Path root = source.toPath();
+    try {
+      Files.createSymbolicLink(root.resolve("link.txt"), root.resolve("a.txt"));
+    } catch (UnsupportedOperationException | IOException ex) {
+      Assume.assumeNoException(ex);
+    }
+    Files.createSymbolicLink(root.resolve("linked"), root.resolve("sub/deeper"));
+    Files.createSymbolicLink(root.resolve("sub/loop"), root);
+    Files.createSymbolicLink(root.resolve("broken"), root.resolve("missing"));
+    DirectoryManifest manifest = DirectoryManifest.scan(source, 2);
+    Assert.assertEquals(Arrays.asList("a.txt", "link.txt", "linked/c.txt", "other/d.txt", "sub/b.txt", "sub/deeper/c.txt"), getPaths(manifest.getFiles()));
+    Assert.assertEquals(10, manifest.getFiles().get(1).getSize());
+  }
+
+  /**
+   * -ve Missing source can't be scanned.
+   */
+  @Test(expected = IOException.class)
+  public void missingSourceTest() throws IOException {
+    DirectoryManifest.scan(new File(source, "missing"));
+  }
+
+  private List<String> getPaths(List<DirectoryManifest.Entry> pEntries) {
+    Path root = source.getAbsoluteFile().toPath();
+    return pEntries.stream().map((entry) -> root.relativize(entry.getFile().toPath()).toString().replace(File.separatorChar, '/')).collect(Collectors.toList());
+  }
+
+  private void createFile(String pPath, int pSize, long pLastModified) throws IOException {
+    File file = new File(source, pPath);
+    Files.createDirectories(file.getParentFile().toPath());
+    Files.write(file.toPath(), new byte[pSize]);
+    Assert.assertTrue(file.setLastModified(pLastModified));
+  }
+}
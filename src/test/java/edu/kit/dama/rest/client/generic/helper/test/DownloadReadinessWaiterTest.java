@@ -0,0 +1,207 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.generic.helper.test;
+
+import edu.kit.dama.rest.client.generic.helper.DownloadReadinessWaiter;
+import edu.kit.dama.staging.entities.download.DOWNLOAD_STATUS;
+import edu.kit.dama.staging.entities.download.DownloadInformation;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class DownloadReadinessWaiterTest {
+
+  private final DownloadReadinessWaiter waiter = new DownloadReadinessWaiter(10, 40, 2);
+
+  private final CountDownLatch blockedStatus = new CountDownLatch(1);
+
+  @After
+  public void tearDown() {
+    blockedStatus.countDown();
+    waiter.close();
+  }
+
+  /**
+   * +ve Status is polled until the download is ready.
+   */
+  @Test
+  public void readyAfterPollingTest() throws Exception {
+    AtomicInteger polls = new AtomicInteger();
+    DownloadInformation ready = newDownload(DOWNLOAD_STATUS.DOWNLOAD_READY);
+    DownloadInformation scheduled = newDownload(DOWNLOAD_STATUS.SCHEDULED);
+    CompletableFuture<DownloadInformation> future = waiter.waitUntilReady(1L, (id) -> (polls.incrementAndGet() < 3) ? scheduled : ready, 5000);
+    Assert.assertSame(ready, future.get(5, TimeUnit.SECONDS));
+    Assert.assertEquals(3, polls.get());
+  }
+
+  /**
+   * +ve Errors reading the status are tolerated.
+   */
+  @Test
+  public void statusErrorTest() throws Exception {
+    AtomicInteger polls = new AtomicInteger();
+    DownloadInformation ready = newDownload(DOWNLOAD_STATUS.DOWNLOAD_READY);
+    CompletableFuture<DownloadInformation> future = waiter.waitUntilReady(2L, (id) -> {
+      switch (polls.incrementAndGet()) {
+        case 1:
+          throw new IllegalStateException("service unavailable");
+        case 2:
+          return null;
+        default:
+          return ready;
+      }
+    }, 5000);
+    Assert.assertSame(ready, future.get(5, TimeUnit.SECONDS));
+  }
+
+  /**
+   * -ve Failed preparation completes the future exceptionally.
+   */
+  @Test
+  public void preparationFailedTest() throws Exception {
+    DownloadInformation failed = newDownload(DOWNLOAD_STATUS.PREPARATION_FAILED);
+    CompletableFuture<DownloadInformation> future = waiter.waitUntilReady(3L, (id) -> failed, 5000);
+    try {
+      future.get(5, TimeUnit.SECONDS);
+      Assert.fail("Download should fail!");
+    } catch (ExecutionException ex) {
+      Assert.assertTrue(ex.getCause() instanceof IllegalStateException);
+    }
+  }
+
+  /**
+   * -ve Unknown status completes the future exceptionally without waiting for
+   * the deadline.
+   */
+  @Test
+  public void unknownStatusTest() throws Exception {
+    DownloadInformation unknown = Mockito.mock(DownloadInformation.class);
+    Mockito.when(unknown.getStatus()).thenReturn(4711);
+    CompletableFuture<DownloadInformation> future = waiter.waitUntilReady(8L, (id) -> unknown, 60000);
+    try {
+      future.get(5, TimeUnit.SECONDS);
+      Assert.fail("Download should fail!");
+    } catch (ExecutionException ex) {
+      Assert.assertTrue(ex.getCause() instanceof IllegalStateException);
+      Assert.assertTrue(ex.getCause().getMessage(), ex.getCause().getMessage().contains("4711"));
+    }
+  }
+
+  /**
+   * -ve Waiting is given up at the deadline.
+   */
+  @Test
+  public void deadlineTest() throws Exception {
+    DownloadInformation preparing = newDownload(DOWNLOAD_STATUS.PREPARING);
+    long start = System.currentTimeMillis();
+    CompletableFuture<DownloadInformation> future = waiter.waitUntilReady(4L, (id) -> preparing, 200);
+    try {
+      future.get(5, TimeUnit.SECONDS);
+      Assert.fail("Download should time out!");
+    } catch (ExecutionException ex) {
+      Assert.assertTrue(ex.getCause() instanceof TimeoutException);
+      Assert.assertTrue(ex.getCause().getMessage(), ex.getCause().getMessage().contains("PREPARING"));
+    }
+    long elapsed = System.currentTimeMillis() - start;
+    Assert.assertTrue("Timed out after " + elapsed + " ms", (elapsed >= 190) && (elapsed < 2000));
+  }
+
+  /**
+   * -ve Deadline is kept even if the status request hangs. Other downloads
+   * are still polled.
+   */
+  @Test
+  public void hangingStatusRequestTest() throws Exception {
+    CompletableFuture<DownloadInformation> hanging = waiter.waitUntilReady(5L, (id) -> {
+      try {
+        blockedStatus.await();
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+      }
+      return null;
+    }, 200);
+    DownloadInformation ready = newDownload(DOWNLOAD_STATUS.DOWNLOAD_READY);
+    Assert.assertSame(ready, waiter.waitUntilReady(6L, (id) -> ready, 5000).get(1, TimeUnit.SECONDS));
+    try {
+      hanging.get(2, TimeUnit.SECONDS);
+      Assert.fail("Download should time out!");
+    } catch (ExecutionException ex) {
+      Assert.assertTrue(ex.getCause() instanceof TimeoutException);
+    }
+  }
+
+  /**
+   * +ve Cancelling the future stops polling.
+   */
+  @Test
+  public void cancelTest() throws Exception {
+    AtomicInteger polls = new AtomicInteger();
+    DownloadInformation scheduled = newDownload(DOWNLOAD_STATUS.SCHEDULED);
+    CompletableFuture<DownloadInformation> future = waiter.waitUntilReady(7L, (id) -> {
+      polls.incrementAndGet();
+      return scheduled;
+    }, 5000);
+    Thread.sleep(100);
+    future.cancel(true);
+    int pollsAfterCancel = polls.get();
+    Thread.sleep(200);
+    Assert.assertTrue(polls.get() <= pollsAfterCancel + 1);
+  }
+
+  /**
+   * -ve Closing the waiter cancels pending downloads and rejects new ones.
+   */
+  @Test
+  public void closeTest() throws Exception {
+    DownloadInformation scheduled = newDownload(DOWNLOAD_STATUS.SCHEDULED);
+    CompletableFuture<DownloadInformation> future = waiter.waitUntilReady(9L, (id) -> scheduled, 60000);
+    waiter.close();
+    try {
+      future.get(1, TimeUnit.SECONDS);
+      Assert.fail("Download should be cancelled!");
+    } catch (CancellationException ex) {
+      Assert.assertTrue(future.isCancelled());
+    }
+    try {
+      waiter.waitUntilReady(10L, (id) -> scheduled, 60000);
+      Assert.fail("Closed waiter should reject downloads!");
+    } catch (IllegalStateException ex) {
+      // expected
+    }
+  }
+
+  /**
+   * -ve Invalid settings are rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidThreadsTest() {
+    new DownloadReadinessWaiter(10, 40, 0);
+  }
+
+  private static DownloadInformation newDownload(DOWNLOAD_STATUS pStatus) {
+    DownloadInformation downloadInformation = Mockito.mock(DownloadInformation.class);
+    Mockito.when(downloadInformation.getStatus()).thenReturn(pStatus.getId());
+    return downloadInformation;
+  }
+}
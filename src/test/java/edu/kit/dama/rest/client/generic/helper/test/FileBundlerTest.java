@@ -0,0 +1,236 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.generic.helper.test;
+
+import edu.kit.dama.rest.client.generic.helper.BundleCompression;
+import edu.kit.dama.rest.client.generic.helper.DirectoryManifest;
+import edu.kit.dama.rest.client.generic.helper.FileBundler;
+import edu.kit.dama.rest.client.generic.helper.ParallelWebDavUploader;
+import edu.kit.dama.rest.client.generic.helper.ParallelWebDavUploader.UploadResult;
+import edu.kit.dama.rest.client.generic.helper.RetryPolicy;
+import edu.kit.lsdf.adalapi.AbstractFile;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class FileBundlerTest {
+
+  private static final int NO_OF_ATTEMPTS = 3;
+
+  private static final long SMALL_FILE_SIZE = 1000;
+
+  private WebDavTestServer server;
+
+  private File source;
+
+  private Map<String, byte[]> smallFiles;
+
+  private byte[] largeContent;
+
+  @Before
+  public void setup() throws IOException {
+    server = new WebDavTestServer();
+    source = Files.createTempDirectory("bundle").toFile();
+    smallFiles = new HashMap<>();
+    for (int index = 1; index <= 5; index++) {
+      smallFiles.put("small_" + index + ".txt", createFile("small_" + index + ".txt", 100 * index));
+    }
+    largeContent = createFile("large.bin", 3000);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    server.close();
+    try (Stream<Path> paths = Files.walk(source.toPath())) {
+      paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+  }
+
+  /**
+   * +ve Small files are grouped by path into bundles of the target size.
+   */
+  @Test
+  public void planTest() throws IOException {
+    List<FileBundler.Bundle> bundles = new FileBundler(600, SMALL_FILE_SIZE, BundleCompression.NONE).plan(DirectoryManifest.scan(source));
+    // Bundles are closed as soon as they reach the target size: 100 + 200 +
+    // 300 bytes and 400 + 500 bytes. The large file isn't bundled.
+    Assert.assertEquals(2, bundles.size());
+    Assert.assertEquals("bundle-00001.zip", bundles.get(0).getName());
+    Assert.assertEquals(3, bundles.get(0).getFiles().size());
+    Assert.assertEquals(600, bundles.get(0).getSize());
+    Assert.assertEquals("bundle-00002.zip", bundles.get(1).getName());
+    Assert.assertEquals(2, bundles.get(1).getFiles().size());
+    Assert.assertEquals(900, bundles.get(1).getSize());
+  }
+
+  /**
+   * -ve Single file is never bundled.
+   */
+  @Test
+  public void planSingleFileTest() throws IOException {
+    List<FileBundler.Bundle> bundles = new FileBundler(600, SMALL_FILE_SIZE, BundleCompression.NONE).plan(DirectoryManifest.scan(new File(source, "small_1.txt")));
+    Assert.assertTrue(bundles.isEmpty());
+  }
+
+  /**
+   * +ve Bundles and manifest hold all small files, large files are uploaded
+   * directly.
+   */
+  @Test
+  public void uploadTest() throws Exception {
+    List<UploadResult> results = newUploader(BundleCompression.DEFLATE).upload(source, newRemoteLocation());
+    Assert.assertEquals(6, results.size());
+    for (UploadResult result : results) {
+      Assert.assertTrue(result.toString(), result.isSuccessful());
+    }
+    Assert.assertArrayEquals(largeContent, server.getFile("/ingest/large.bin"));
+    Assert.assertNull(server.getFile("/ingest/small_1.txt"));
+    Map<String, byte[]> bundled = new HashMap<>();
+    bundled.putAll(readBundle("/ingest/bundle-00001.zip"));
+    bundled.putAll(readBundle("/ingest/bundle-00002.zip"));
+    Assert.assertEquals(smallFiles.keySet(), bundled.keySet());
+    for (Map.Entry<String, byte[]> file : smallFiles.entrySet()) {
+      Assert.assertArrayEquals(file.getKey(), file.getValue(), bundled.get(file.getKey()));
+    }
+    String[] manifest = new String(server.getFile("/ingest/" + FileBundler.MANIFEST_NAME), StandardCharsets.UTF_8).split("\n");
+    Assert.assertEquals(6, manifest.length);
+    Assert.assertTrue(manifest[0].startsWith("#bundle\tpath\tsize"));
+    Assert.assertTrue(manifest[1], manifest[1].startsWith("bundle-00001.zip\tsmall_1.txt\t100\t"));
+  }
+
+  /**
+   * +ve Files matching the filter are not packed and reported as skipped.
+   */
+  @Test
+  public void skippedFilesTest() throws Exception {
+    List<UploadResult> results = newUploader(BundleCompression.DEFLATE).upload(source, newRemoteLocation(), null, (file) -> "small_1.txt".equals(file.getName()));
+    Assert.assertEquals(6, results.size());
+    for (UploadResult result : results) {
+      Assert.assertTrue(result.toString(), result.isSuccessful());
+      boolean skipped = "small_1.txt".equals(result.getFile().getName());
+      Assert.assertEquals(result.toString(), skipped, result.isSkipped());
+      Assert.assertEquals(result.toString(), skipped, result.getTrials() == 0);
+    }
+    Assert.assertFalse(readBundle("/ingest/bundle-00001.zip").containsKey("small_1.txt"));
+  }
+
+  /**
+   * +ve Stored bundles contain the files uncompressed.
+   */
+  @Test
+  public void storedBundleTest() throws Exception {
+    newUploader(BundleCompression.NONE).upload(source, newRemoteLocation());
+    try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(server.getFile("/ingest/bundle-00001.zip")))) {
+      ZipEntry entry = zip.getNextEntry();
+      Assert.assertEquals("small_1.txt", entry.getName());
+      Assert.assertEquals(ZipEntry.STORED, entry.getMethod());
+    }
+  }
+
+  /**
+   * +ve A failed bundle is packed and uploaded again.
+   */
+  @Test
+  public void retryFailedBundleTest() throws Exception {
+    server.fail("PUT", "/ingest/bundle-00001.zip", 1);
+    List<UploadResult> results = newUploader(BundleCompression.DEFLATE).upload(source, newRemoteLocation());
+    for (UploadResult result : results) {
+      Assert.assertTrue(result.toString(), result.isSuccessful());
+    }
+    Assert.assertEquals(2, server.getRequests("PUT", "/ingest/bundle-00001.zip"));
+    Assert.assertEquals(4, readBundle("/ingest/bundle-00001.zip").size());
+  }
+
+  /**
+   * -ve A failed upload of the manifest is reported.
+   */
+  @Test
+  public void manifestFailureTest() throws Exception {
+    server.fail("PUT", "/ingest/" + FileBundler.MANIFEST_NAME, Integer.MAX_VALUE);
+    List<UploadResult> results = newUploader(BundleCompression.DEFLATE).upload(source, newRemoteLocation());
+    Assert.assertEquals(7, results.size());
+    int noOfFailedUploads = 0;
+    for (UploadResult result : results) {
+      if (!result.isSuccessful()) {
+        Assert.assertEquals(FileBundler.MANIFEST_NAME, result.getFile().getName());
+        noOfFailedUploads++;
+      }
+    }
+    Assert.assertEquals(1, noOfFailedUploads);
+    Assert.assertEquals(NO_OF_ATTEMPTS, server.getRequests("PUT", "/ingest/" + FileBundler.MANIFEST_NAME));
+  }
+
+  /**
+   * -ve Invalid settings are rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidBundleSizeTest() {
+    new FileBundler(0, BundleCompression.NONE);
+  }
+
+  private ParallelWebDavUploader newUploader(BundleCompression pCompression) {
+    FileBundler bundler = new FileBundler(1000, SMALL_FILE_SIZE, pCompression);
+    // Threshold of 1 byte: all files not bundled are uploaded via partial PUT.
+    return new ParallelWebDavUploader(2, new RetryPolicy(NO_OF_ATTEMPTS, 1, 1, RetryPolicy.UNLIMITED_TIME_BUDGET), 1, bundler);
+  }
+
+  private AbstractFile newRemoteLocation() throws IOException {
+    AbstractFile remoteLocation = Mockito.mock(AbstractFile.class);
+    Mockito.when(remoteLocation.getUrl()).thenReturn(server.getUrl("/ingest/"));
+    return remoteLocation;
+  }
+
+  private Map<String, byte[]> readBundle(String pPath) throws IOException {
+    Map<String, byte[]> content = new HashMap<>();
+    try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(server.getFile(pPath)))) {
+      ZipEntry entry;
+      while ((entry = zip.getNextEntry()) != null) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] chunk = new byte[1024];
+        int read;
+        while ((read = zip.read(chunk)) > 0) {
+          buffer.write(chunk, 0, read);
+        }
+        content.put(entry.getName(), buffer.toByteArray());
+      }
+    }
+    return content;
+  }
+
+  private byte[] createFile(String pName, int pSize) throws IOException {
+    byte[] content = new byte[pSize];
+    new Random(pSize).nextBytes(content);
+    Files.write(new File(source, pName).toPath(), content);
+    return content;
+  }
+}
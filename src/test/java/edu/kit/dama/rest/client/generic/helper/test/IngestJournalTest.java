@@ -0,0 +1,208 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.generic.helper.test;
+
+import edu.kit.dama.rest.client.DataManagerPropertiesImpl;
+import edu.kit.dama.rest.client.generic.helper.IngestJournal;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IngestJournalTest {
+
+  private static final long INGEST_ID = Long.MAX_VALUE - 4711;
+
+  private File source;
+
+  private File fileA;
+
+  private File fileB;
+
+  private Path journalFile;
+
+  @Before
+  public void setup() throws IOException {
+    source = Files.createTempDirectory("journal").toFile();
+    fileA = new File(source, "a.txt");
+    fileB = new File(source, "sub dir/b.bin");
+    Files.createDirectories(fileB.getParentFile().toPath());
+    Files.write(fileA.toPath(), "content of a".getBytes(StandardCharsets.UTF_8));
+    Files.write(fileB.toPath(), new byte[100]);
+    journalFile = new File(DataManagerPropertiesImpl.getHomeDir(), "journal/ingest_" + INGEST_ID + ".journal").toPath();
+    Files.deleteIfExists(journalFile);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(journalFile);
+    Files.deleteIfExists(journalFile.resolveSibling(journalFile.getFileName() + ".tmp"));
+    try (Stream<Path> paths = Files.walk(source.toPath())) {
+      paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+  }
+
+  /**
+   * +ve Resumed journal skips unchanged files only.
+   */
+  @Test
+  public void resumeTest() throws IOException {
+    URL remoteDirectory = new URL("http://kit.dm.demourl/webdav/sub%20dir/");
+    try (IngestJournal journal = IngestJournal.open(INGEST_ID, source)) {
+      Assert.assertFalse(journal.isUploaded(fileA));
+      journal.directoryCreated(fileB.getParentFile(), remoteDirectory);
+      journal.fileUploaded(fileA);
+      journal.partUploaded(fileB, 100, fileB.lastModified(), 0, 50, "md5");
+    }
+    try (IngestJournal journal = IngestJournal.open(INGEST_ID, source)) {
+      Assert.assertEquals(source.getAbsoluteFile(), journal.getSource());
+      Assert.assertTrue(journal.isUploaded(fileA));
+      Assert.assertFalse(journal.isUploaded(fileB));
+      Assert.assertEquals(remoteDirectory, journal.getRemoteDirectory(fileB.getParentFile()));
+      Map<Long, Long> parts = journal.getUploadedParts(fileB, 100, fileB.lastModified());
+      Assert.assertEquals(Long.valueOf(50), parts.get(0L));
+      // Parts of a modified file are not valid.
+      Assert.assertTrue(journal.getUploadedParts(fileB, 101, fileB.lastModified()).isEmpty());
+      // Modified files have to be uploaded again.
+      Assert.assertFalse(journal.isUploaded(fileA, fileA.length(), fileA.lastModified() + 1000));
+      journal.fileUploaded(fileB, 100, fileB.lastModified());
+    }
+    try (IngestJournal journal = IngestJournal.open(INGEST_ID)) {
+      Assert.assertTrue(journal.isUploaded(fileB));
+      Assert.assertTrue(journal.getUploadedParts(fileB, 100, fileB.lastModified()).isEmpty());
+    }
+  }
+
+  /**
+   * -ve Journal of another source is replaced.
+   */
+  @Test
+  public void changedSourceTest() throws IOException {
+    try (IngestJournal journal = IngestJournal.open(INGEST_ID, source)) {
+      journal.fileUploaded(fileA);
+    }
+    try (IngestJournal journal = IngestJournal.open(INGEST_ID, fileB.getParentFile())) {
+      Assert.assertEquals(fileB.getParentFile().getAbsoluteFile(), journal.getSource());
+      Assert.assertFalse(journal.isUploaded(fileB));
+    }
+    try (IngestJournal journal = IngestJournal.open(INGEST_ID, source)) {
+      Assert.assertFalse(journal.isUploaded(fileA));
+    }
+  }
+
+  /**
+   * +ve Compacted journal holds one entry for each file and may be appended.
+   */
+  @Test
+  public void compactTest() throws IOException {
+    try (IngestJournal journal = IngestJournal.open(INGEST_ID, source)) {
+      for (int index = 0; index < 10; index++) {
+        journal.fileUploaded(fileA);
+      }
+      journal.partUploaded(fileB, 100, fileB.lastModified(), 0, 50, "md5");
+      Assert.assertEquals(12, Files.readAllLines(journalFile).size());
+      journal.compact();
+      Assert.assertEquals(3, Files.readAllLines(journalFile).size());
+      journal.fileUploaded(fileB);
+      Assert.assertEquals(4, Files.readAllLines(journalFile).size());
+    }
+    try (IngestJournal journal = IngestJournal.open(INGEST_ID)) {
+      Assert.assertTrue(journal.isUploaded(fileA));
+      Assert.assertTrue(journal.isUploaded(fileB));
+    }
+  }
+
+  /**
+   * -ve If compaction fails the original journal is kept and appended to.
+   */
+  @Test
+  public void compactFailureTest() throws IOException {
+    Path tempFile = journalFile.resolveSibling(journalFile.getFileName() + ".tmp");
+    try (IngestJournal journal = IngestJournal.open(INGEST_ID, source)) {
+      journal.fileUploaded(fileA);
+      journal.fileUploaded(fileA);
+      // Blocks writing the compacted journal.
+      Files.createDirectories(tempFile.resolve("blocked"));
+      try {
+        journal.compact();
+        Assert.fail("Compaction should fail!");
+      } catch (IOException ex) {
+        // expected
+      }
+      Files.delete(tempFile.resolve("blocked"));
+      Files.deleteIfExists(tempFile);
+      journal.fileUploaded(fileB);
+    }
+    Assert.assertEquals(4, Files.readAllLines(journalFile).size());
+    try (IngestJournal journal = IngestJournal.open(INGEST_ID)) {
+      Assert.assertTrue(journal.isUploaded(fileA));
+      Assert.assertTrue(journal.isUploaded(fileB));
+    }
+  }
+
+  /**
+   * -ve Corrupt and incomplete entries are ignored.
+   */
+  @Test
+  public void corruptLinesTest() throws IOException {
+    try (IngestJournal journal = IngestJournal.open(INGEST_ID, source)) {
+      journal.fileUploaded(fileA);
+    }
+    Files.write(journalFile, Arrays.asList(
+            "X\tunknown",
+            "D\tsub+dir\tno url",
+            "F\tsub+dir%2Fb.bin\t%zz\t0",
+            "P\tsub+dir%2Fb.bin\t100\t" + fileB.lastModified() + "\tfirst\t50\tmd5",
+            "F\tsub+dir%2Fb.bin\t100\t" + fileB.lastModified(),
+            "F\tsub+dir%2Fb.bin\t100\t" + fileB.lastModified() + "\tunknown field",
+            "F\tincomplete"), StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+    try (IngestJournal journal = IngestJournal.open(INGEST_ID)) {
+      Assert.assertTrue(journal.isUploaded(fileA));
+      Assert.assertTrue(journal.isUploaded(fileB));
+      Assert.assertNull(journal.getRemoteDirectory(fileB.getParentFile()));
+      Assert.assertTrue(journal.getUploadedParts(fileB, 100, fileB.lastModified()).isEmpty());
+    }
+  }
+
+  /**
+   * -ve Journal without source can't be opened.
+   */
+  @Test(expected = IOException.class)
+  public void missingSourceTest() throws IOException {
+    Files.createDirectories(journalFile.getParent());
+    Files.write(journalFile, Arrays.asList("F\ta.txt\t12\t0"), StandardCharsets.UTF_8);
+    IngestJournal.open(INGEST_ID).close();
+  }
+
+  /**
+   * -ve Resuming an unknown ingest fails.
+   */
+  @Test(expected = IOException.class)
+  public void missingJournalTest() throws IOException {
+    IngestJournal.open(INGEST_ID).close();
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.generic.helper.test;
+
+import edu.kit.dama.rest.client.generic.helper.ParallelWebDavDownloader;
+import edu.kit.dama.rest.client.generic.helper.ParallelWebDavDownloader.DownloadResult;
+import edu.kit.dama.rest.client.generic.helper.RetryPolicy;
+import edu.kit.lsdf.adalapi.AbstractFile;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class ParallelWebDavDownloaderTest {
+
+  private static final int NO_OF_ATTEMPTS = 3;
+
+  private static final int RANGE_SIZE = 1000;
+
+  private static final String LARGE_FILE = "/download/large.bin";
+
+  private static final String SMALL_FILE = "/download/sub/small.bin";
+
+  private WebDavTestServer server;
+
+  private File destination;
+
+  private AbstractFile remoteDirectory;
+
+  private byte[] largeContent;
+
+  private byte[] smallContent;
+
+  @Before
+  public void setup() throws IOException {
+    server = new WebDavTestServer();
+    destination = Files.createTempDirectory("download").toFile();
+    largeContent = createRemoteFile(LARGE_FILE, 5 * RANGE_SIZE + 10);
+    smallContent = createRemoteFile(SMALL_FILE, 100);
+    remoteDirectory = Mockito.mock(AbstractFile.class);
+    Mockito.when(remoteDirectory.getUrl()).thenReturn(server.getUrl("/download/"));
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    server.close();
+    try (Stream<Path> paths = Files.walk(destination.toPath())) {
+      paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+  }
+
+  /**
+   * +ve All files are downloaded, large files in ranges.
+   */
+  @Test
+  public void downloadTest() throws Exception {
+    List<DownloadResult> results = newDownloader().download(remoteDirectory, destination);
+    Assert.assertEquals(2, results.size());
+    Assert.assertEquals("large.bin", results.get(0).getFile().getName());
+    for (DownloadResult result : results) {
+      Assert.assertTrue(result.toString(), result.isSuccessful());
+    }
+    Assert.assertEquals(largeContent.length, results.get(0).getDownloadedBytes());
+    Assert.assertArrayEquals(largeContent, Files.readAllBytes(new File(destination, "large.bin").toPath()));
+    Assert.assertArrayEquals(smallContent, Files.readAllBytes(new File(destination, "sub/small.bin").toPath()));
+    Assert.assertEquals(6, server.getRequests("GET", LARGE_FILE));
+    Assert.assertFalse(new File(destination, "large.bin.part").exists());
+    // Sizes are listed, only support of ranges is requested once.
+    Assert.assertEquals(1, server.getRequests("PROPFIND", "/download/"));
+    Assert.assertEquals(1, server.getRequests("PROPFIND", "/download/sub/"));
+    Assert.assertEquals(1, server.getRequests("HEAD", LARGE_FILE));
+    Assert.assertEquals(0, server.getRequests("HEAD", SMALL_FILE));
+  }
+
+  /**
+   * +ve A failed range is downloaded again.
+   */
+  @Test
+  public void retryFailedRangeTest() throws Exception {
+    server.fail("GET", LARGE_FILE, 1);
+    List<DownloadResult> results = newDownloader().download(remoteDirectory, destination);
+    for (DownloadResult result : results) {
+      Assert.assertTrue(result.toString(), result.isSuccessful());
+    }
+    Assert.assertEquals(7, server.getRequests("GET", LARGE_FILE));
+    Assert.assertArrayEquals(largeContent, Files.readAllBytes(new File(destination, "large.bin").toPath()));
+  }
+
+  /**
+   * -ve A file failing for all attempts is reported while all other files are
+   * downloaded. The next download fetches only the missing file.
+   */
+  @Test
+  public void partialFailureTest() throws Exception {
+    server.fail("GET", SMALL_FILE, Integer.MAX_VALUE);
+    List<DownloadResult> results = newDownloader().download(remoteDirectory, destination);
+    for (DownloadResult result : results) {
+      if ("small.bin".equals(result.getFile().getName())) {
+        Assert.assertFalse(result.isSuccessful());
+        Assert.assertNotNull(result.getException());
+      } else {
+        Assert.assertTrue(result.toString(), result.isSuccessful());
+      }
+    }
+    Assert.assertEquals(NO_OF_ATTEMPTS, server.getRequests("GET", SMALL_FILE));
+    Assert.assertFalse(new File(destination, "sub/small.bin").exists());
+    // Resume download.
+    server.fail("GET", SMALL_FILE, 0);
+    results = newDownloader().download(remoteDirectory, destination);
+    for (DownloadResult result : results) {
+      Assert.assertTrue(result.toString(), result.isSuccessful());
+    }
+    Assert.assertEquals(6, server.getRequests("GET", LARGE_FILE));
+    Assert.assertEquals(NO_OF_ATTEMPTS + 1, server.getRequests("GET", SMALL_FILE));
+    Assert.assertArrayEquals(smallContent, Files.readAllBytes(new File(destination, "sub/small.bin").toPath()));
+  }
+
+  /**
+   * +ve Ranges of a file changed since the interruption are downloaded again.
+   */
+  @Test
+  public void changedFileTest() throws Exception {
+    server.failAfter("GET", LARGE_FILE, 5);
+    List<DownloadResult> results = newDownloader().download(remoteDirectory, destination);
+    Assert.assertFalse(results.get(0).toString(), results.get(0).isSuccessful());
+    // Same size but different content.
+    byte[] changedContent = largeContent.clone();
+    changedContent[0]++;
+    server.putFile(LARGE_FILE, changedContent);
+    server.failAfter("GET", LARGE_FILE, Integer.MAX_VALUE);
+    results = newDownloader().download(remoteDirectory, destination);
+    for (DownloadResult result : results) {
+      Assert.assertTrue(result.toString(), result.isSuccessful());
+    }
+    Assert.assertEquals(changedContent.length, results.get(0).getDownloadedBytes());
+    Assert.assertArrayEquals(changedContent, Files.readAllBytes(new File(destination, "large.bin").toPath()));
+  }
+
+  /**
+   * +ve Without range requests files are downloaded as a whole.
+   */
+  @Test
+  public void noRangeRequestsTest() throws Exception {
+    server.setRangesSupported(false);
+    List<DownloadResult> results = newDownloader().download(remoteDirectory, destination);
+    for (DownloadResult result : results) {
+      Assert.assertTrue(result.toString(), result.isSuccessful());
+    }
+    Assert.assertEquals(1, server.getRequests("GET", LARGE_FILE));
+    Assert.assertArrayEquals(largeContent, Files.readAllBytes(new File(destination, "large.bin").toPath()));
+  }
+
+  /**
+   * -ve Invalid settings are rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidRetryPolicyTest() {
+    new ParallelWebDavDownloader(2, null, RANGE_SIZE);
+  }
+
+  private ParallelWebDavDownloader newDownloader() {
+    return new ParallelWebDavDownloader(2, new RetryPolicy(NO_OF_ATTEMPTS, 1, 1, RetryPolicy.UNLIMITED_TIME_BUDGET), RANGE_SIZE);
+  }
+
+  private byte[] createRemoteFile(String pPath, int pSize) {
+    byte[] content = new byte[pSize];
+    new Random(pSize).nextBytes(content);
+    server.putFile(pPath, content);
+    return content;
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.generic.helper.test;
+
+import edu.kit.dama.rest.client.generic.helper.ParallelWebDavUploader;
+import edu.kit.dama.rest.client.generic.helper.ParallelWebDavUploader.UploadResult;
+import edu.kit.dama.rest.client.generic.helper.RetryPolicy;
+import edu.kit.lsdf.adalapi.AbstractFile;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class ParallelWebDavUploaderTest {
+
+  private static final int NO_OF_ATTEMPTS = 3;
+
+  private WebDavTestServer server;
+
+  private File source;
+
+  private AbstractFile remoteLocation;
+
+  private byte[] largeContent;
+
+  private byte[] smallContent;
+
+  @Before
+  public void setup() throws IOException {
+    server = new WebDavTestServer();
+    source = Files.createTempDirectory("upload").toFile();
+    largeContent = createFile("large.bin", 3000);
+    smallContent = createFile("small.bin", 1000);
+    remoteLocation = Mockito.mock(AbstractFile.class);
+    Mockito.when(remoteLocation.getUrl()).thenReturn(server.getUrl("/ingest/"));
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    server.close();
+    try (Stream<Path> paths = Files.walk(source.toPath())) {
+      paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+  }
+
+  /**
+   * +ve All files are uploaded, largest file first.
+   */
+  @Test
+  public void uploadTest() throws Exception {
+    List<UploadResult> results = newUploader().upload(source, remoteLocation);
+    Assert.assertEquals(2, results.size());
+    Assert.assertEquals("large.bin", results.get(0).getFile().getName());
+    Assert.assertEquals(largeContent.length, results.get(0).getSize());
+    for (UploadResult result : results) {
+      Assert.assertTrue(result.toString(), result.isSuccessful());
+    }
+    Assert.assertArrayEquals(largeContent, server.getFile("/ingest/large.bin"));
+    Assert.assertArrayEquals(smallContent, server.getFile("/ingest/small.bin"));
+  }
+
+  /**
+   * +ve A failed upload is retried for the failed file only.
+   */
+  @Test
+  public void retryFailedUploadTest() throws Exception {
+    server.fail("PUT", "/ingest/large.bin", 1);
+    List<UploadResult> results = newUploader().upload(source, remoteLocation);
+    for (UploadResult result : results) {
+      Assert.assertTrue(result.toString(), result.isSuccessful());
+    }
+    Assert.assertEquals(2, server.getRequests("PUT", "/ingest/large.bin"));
+    Assert.assertEquals(1, server.getRequests("PUT", "/ingest/small.bin"));
+    Assert.assertArrayEquals(largeContent, server.getFile("/ingest/large.bin"));
+  }
+
+  /**
+   * +ve A file failing to upload in parts is uploaded as a whole.
+   */
+  @Test
+  public void fallbackToWholeFileTest() throws Exception {
+    server.fail("PUT", "/ingest/small.bin", NO_OF_ATTEMPTS);
+    List<UploadResult> results = newUploader().upload(source, remoteLocation);
+    for (UploadResult result : results) {
+      Assert.assertTrue(result.toString(), result.isSuccessful());
+    }
+    Assert.assertEquals(NO_OF_ATTEMPTS + 1, server.getRequests("PUT", "/ingest/small.bin"));
+    Assert.assertArrayEquals(smallContent, server.getFile("/ingest/small.bin"));
+  }
+
+  /**
+   * -ve A file failing for all attempts is reported while all other files are
+   * uploaded.
+   */
+  @Test
+  public void partialFailureTest() throws Exception {
+    server.fail("PUT", "/ingest/small.bin", Integer.MAX_VALUE);
+    List<UploadResult> results = newUploader().upload(source, remoteLocation);
+    Assert.assertEquals(2, results.size());
+    for (UploadResult result : results) {
+      if ("small.bin".equals(result.getFile().getName())) {
+        Assert.assertFalse(result.isSuccessful());
+        Assert.assertNotNull(result.getException());
+      } else {
+        Assert.assertTrue(result.toString(), result.isSuccessful());
+      }
+    }
+    // All attempts in parts and all attempts as a whole.
+    Assert.assertEquals(2 * NO_OF_ATTEMPTS, server.getRequests("PUT", "/ingest/small.bin"));
+    Assert.assertNull(server.getFile("/ingest/small.bin"));
+    Assert.assertArrayEquals(largeContent, server.getFile("/ingest/large.bin"));
+  }
+
+  /**
+   * -ve Invalid settings are rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidRetryPolicyTest() {
+    new ParallelWebDavUploader(2, null);
+  }
+
+  private ParallelWebDavUploader newUploader() {
+    // Threshold of 1 byte: all files are uploaded via partial PUT.
+    return new ParallelWebDavUploader(2, new RetryPolicy(NO_OF_ATTEMPTS, 1, 1, RetryPolicy.UNLIMITED_TIME_BUDGET), 1);
+  }
+
+  private byte[] createFile(String pName, int pSize) throws IOException {
+    byte[] content = new byte[pSize];
+    new Random(pSize).nextBytes(content);
+    Files.write(new File(source, pName).toPath(), content);
+    return content;
+  }
+}
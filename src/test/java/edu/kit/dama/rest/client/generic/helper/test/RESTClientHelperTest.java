@@ -49,6 +49,7 @@ import edu.kit.dama.rest.basemetadata.types.DigitalObjectWrapper;
 import edu.kit.dama.rest.basemetadata.types.InvestigationWrapper;
 import edu.kit.dama.rest.basemetadata.types.StudyWrapper;
 import edu.kit.dama.rest.client.IDataManagerRestUrl;
+import edu.kit.dama.rest.client.RestClientRegistry;
 import edu.kit.dama.rest.staging.client.impl.StagingRestClient;
 import edu.kit.dama.rest.staging.types.DownloadInformationWrapper;
 import edu.kit.dama.rest.staging.types.IngestInformationWrapper;
@@ -75,6 +76,8 @@ public class RESTClientHelperTest {
 
   @Before
   public void setup() throws Exception {
+    // Clients are shared per credentials, mocked clients must not leak into other tests.
+    RestClientRegistry.getDefaultInstance().clear();
     restContext = PowerMockito.mock(SimpleRESTContext.class);
     groupRestClient = PowerMockito.mock(UserGroupRestClient.class);
     baseMetaDataRestClient = PowerMockito.mock(BaseMetaDataRestClient.class);
@@ -92,7 +95,7 @@ public class RESTClientHelperTest {
 
     PowerMockito.whenNew(UserGroupRestClient.class.getConstructor(String.class, SimpleRESTContext.class)).withArguments("http://kit.dm.demourl" + IDataManagerRestUrl.REST_USER_GROUP_PATH, restContext).thenReturn(groupRestClient);
 
-    UserDataWrapper userWrapper = Mockito.mock(UserDataWrapper.class);
+    UserDataWrapper userWrapper = new UserDataWrapper();
     UserDataWrapper userGroups = new UserDataWrapper();
 
     userWrapper.setCount(1);
@@ -130,7 +133,7 @@ public class RESTClientHelperTest {
 
     PowerMockito.whenNew(UserGroupRestClient.class.getConstructor(String.class, SimpleRESTContext.class)).withArguments("http://kit.dm.demourl" + IDataManagerRestUrl.REST_USER_GROUP_PATH, restContext).thenReturn(groupRestClient);
 
-    UserDataWrapper userWrapper = Mockito.mock(UserDataWrapper.class);
+    UserDataWrapper userWrapper = new UserDataWrapper();
     UserDataWrapper userGroups = new UserDataWrapper();
 
     userWrapper.setCount(1);
@@ -0,0 +1,336 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.generic.helper.test;
+
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.UniformInterfaceException;
+import edu.kit.dama.rest.client.generic.helper.RetryPolicy;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RetryPolicyTest {
+
+  private static final String ENDPOINT = "test.endpoint";
+
+  /**
+   * +ve Transient errors are retried with growing delays until the call
+   * succeeds.
+   */
+  @Test
+  public void backoffTest() {
+    RetryPolicy policy = new RetryPolicy(4, 40, 1000, RetryPolicy.UNLIMITED_TIME_BUDGET);
+    AtomicInteger attempts = new AtomicInteger();
+    long start = System.currentTimeMillis();
+    String result = policy.execute(ENDPOINT, () -> {
+      if (attempts.incrementAndGet() < 4) {
+        throw new ClientHandlerException(new ConnectException("refused"));
+      }
+      return "done";
+    });
+    long elapsed = System.currentTimeMillis() - start;
+    Assert.assertEquals("done", result);
+    Assert.assertEquals(4, attempts.get());
+    // Equal jitter: at least half of 40 + 80 + 160 ms.
+    Assert.assertTrue("Waited only " + elapsed + " ms", elapsed >= 140);
+  }
+
+  /**
+   * -ve Last error is thrown after the maximum number of attempts.
+   */
+  @Test
+  public void maxAttemptsTest() {
+    RetryPolicy policy = new RetryPolicy(3, 1, 1, RetryPolicy.UNLIMITED_TIME_BUDGET);
+    AtomicInteger attempts = new AtomicInteger();
+    try {
+      policy.execute(ENDPOINT, () -> {
+        attempts.incrementAndGet();
+        throw new UniformInterfaceException(new ClientResponse(502));
+      });
+      Assert.fail("Error expected!");
+    } catch (UniformInterfaceException ex) {
+      Assert.assertEquals(502, ex.getResponse().getStatus());
+    }
+    Assert.assertEquals(3, attempts.get());
+  }
+
+  /**
+   * -ve Retries stop as soon as the next delay exceeds the time budget.
+   */
+  @Test
+  public void timeBudgetTest() {
+    RetryPolicy policy = new RetryPolicy(100, 100, 100, 250);
+    AtomicInteger attempts = new AtomicInteger();
+    long start = System.currentTimeMillis();
+    try {
+      policy.execute(ENDPOINT, () -> {
+        attempts.incrementAndGet();
+        throw new UniformInterfaceException(new ClientResponse(503));
+      });
+      Assert.fail("Error expected!");
+    } catch (UniformInterfaceException ex) {
+      Assert.assertEquals(503, ex.getResponse().getStatus());
+    }
+    long elapsed = System.currentTimeMillis() - start;
+    Assert.assertTrue("Too many attempts: " + attempts.get(), attempts.get() >= 2 && attempts.get() <= 7);
+    Assert.assertTrue("Budget exceeded: " + elapsed + " ms", elapsed < 1000);
+  }
+
+  /**
+   * -ve Permanent errors are thrown immediately.
+   */
+  @Test
+  public void noRetryForPermanentErrorTest() {
+    RetryPolicy policy = new RetryPolicy(4, 1, 1, RetryPolicy.UNLIMITED_TIME_BUDGET);
+    AtomicInteger attempts = new AtomicInteger();
+    try {
+      policy.execute(ENDPOINT, () -> {
+        attempts.incrementAndGet();
+        throw new UniformInterfaceException(new ClientResponse(404));
+      });
+      Assert.fail("Error expected!");
+    } catch (UniformInterfaceException ex) {
+      Assert.assertEquals(404, ex.getResponse().getStatus());
+    }
+    Assert.assertEquals(1, attempts.get());
+  }
+
+  /**
+   * +ve Calls which are not idempotent are only retried if the server didn't
+   * process them.
+   */
+  @Test
+  public void nonIdempotentTest() {
+    RetryPolicy policy = new RetryPolicy(3, 1, 1, RetryPolicy.UNLIMITED_TIME_BUDGET);
+    AtomicInteger attempts = new AtomicInteger();
+    try {
+      policy.executeNonIdempotent(ENDPOINT, () -> {
+        attempts.incrementAndGet();
+        throw new UniformInterfaceException(new ClientResponse(500));
+      });
+      Assert.fail("Error expected!");
+    } catch (UniformInterfaceException ex) {
+      Assert.assertEquals(1, attempts.get());
+    }
+    attempts.set(0);
+    String result = policy.executeNonIdempotent(ENDPOINT, () -> {
+      if (attempts.incrementAndGet() < 2) {
+        throw new UniformInterfaceException(new ClientResponse(503));
+      }
+      return "created";
+    });
+    Assert.assertEquals("created", result);
+    Assert.assertEquals(2, attempts.get());
+  }
+
+  /**
+   * +ve Circuit opens after consecutive failures, a single probe closes it
+   * again.
+   */
+  @Test
+  public void circuitOpenAndHalfOpenTest() {
+    RetryPolicy policy = new RetryPolicy(1, 10, 10, RetryPolicy.UNLIMITED_TIME_BUDGET, 2, 200);
+    AtomicInteger attempts = new AtomicInteger();
+    for (int call = 0; call < 2; call++) {
+      try {
+        policy.execute(ENDPOINT, () -> {
+          attempts.incrementAndGet();
+          throw new UniformInterfaceException(new ClientResponse(500));
+        });
+        Assert.fail("Error expected!");
+      } catch (UniformInterfaceException ex) {
+        // expected
+      }
+    }
+    long openSince = System.currentTimeMillis();
+    // Other endpoints are not affected.
+    Assert.assertEquals("other", policy.execute("other.endpoint", () -> "other"));
+    // Half open: one probe is sent after the circuit was open.
+    String result = policy.execute(ENDPOINT, () -> {
+      attempts.incrementAndGet();
+      return "probe";
+    });
+    Assert.assertEquals("probe", result);
+    Assert.assertTrue(System.currentTimeMillis() - openSince >= 150);
+    Assert.assertEquals(3, attempts.get());
+    // Circuit is closed again.
+    long start = System.currentTimeMillis();
+    Assert.assertEquals("closed", policy.execute(ENDPOINT, () -> "closed"));
+    Assert.assertTrue(System.currentTimeMillis() - start < 150);
+  }
+
+  /**
+   * -ve Calls fail immediately if circuit stays open longer than the time
+   * budget.
+   */
+  @Test
+  public void circuitOpenExceedsBudgetTest() {
+    RetryPolicy policy = new RetryPolicy(1, 10, 10, 50, 1, 200);
+    AtomicInteger attempts = new AtomicInteger();
+    try {
+      policy.execute(ENDPOINT, () -> {
+        attempts.incrementAndGet();
+        throw new ClientHandlerException(new IOException("timeout"));
+      });
+      Assert.fail("Error expected!");
+    } catch (ClientHandlerException ex) {
+      // expected
+    }
+    try {
+      policy.execute(ENDPOINT, () -> attempts.incrementAndGet());
+      Assert.fail("Circuit should be open!");
+    } catch (IllegalStateException ise) {
+      Assert.assertTrue(ise.getMessage().contains(ENDPOINT));
+    }
+    Assert.assertEquals(1, attempts.get());
+  }
+
+  /**
+   * -ve A failed probe opens the circuit again.
+   */
+  @Test
+  public void halfOpenProbeFailsTest() {
+    RetryPolicy policy = new RetryPolicy(1, 10, 10, RetryPolicy.UNLIMITED_TIME_BUDGET, 1, 100);
+    AtomicInteger attempts = new AtomicInteger();
+    long start = System.currentTimeMillis();
+    for (int call = 0; call < 2; call++) {
+      try {
+        policy.execute(ENDPOINT, () -> {
+          attempts.incrementAndGet();
+          throw new ClientHandlerException(new IOException("timeout"));
+        });
+        Assert.fail("Error expected!");
+      } catch (ClientHandlerException ex) {
+        // expected
+      }
+    }
+    Assert.assertEquals("probe", policy.execute(ENDPOINT, () -> {
+      attempts.incrementAndGet();
+      return "probe";
+    }));
+    Assert.assertEquals(3, attempts.get());
+    // Waited for the first and the second opening of the circuit.
+    Assert.assertTrue(System.currentTimeMillis() - start >= 180);
+  }
+
+  /**
+   * +ve Failed transfers are retried and the error of the last attempt is
+   * returned.
+   */
+  @Test
+  public void executeTransferTest() {
+    RetryPolicy policy = new RetryPolicy(3, 1, 1, RetryPolicy.UNLIMITED_TIME_BUDGET);
+    AtomicInteger attempts = new AtomicInteger();
+    Exception failure = policy.executeTransfer("webdav.upload", () -> {
+      return (attempts.incrementAndGet() < 2) ? new IOException("broken pipe") : null;
+    });
+    Assert.assertNull(failure);
+    Assert.assertEquals(2, attempts.get());
+    attempts.set(0);
+    failure = policy.executeTransfer("webdav.download", () -> new IOException("#" + attempts.incrementAndGet()));
+    Assert.assertTrue(failure instanceof IOException);
+    Assert.assertEquals("#3", failure.getMessage());
+    Assert.assertEquals(3, attempts.get());
+  }
+
+  /**
+   * +ve Local errors of transfers don't open the circuit, errors of the
+   * connection do.
+   */
+  @Test
+  public void transferCircuitTest() {
+    RetryPolicy policy = new RetryPolicy(1, 1, 1, 100, 2, 10000);
+    for (int call = 0; call < 3; call++) {
+      Exception failure = policy.executeTransfer("webdav.upload", () -> new NoSuchFileException("local.bin"));
+      Assert.assertTrue(failure instanceof NoSuchFileException);
+    }
+    Assert.assertNull(policy.executeTransfer("webdav.upload", () -> null));
+    for (int call = 0; call < 2; call++) {
+      Exception failure = policy.executeTransfer("webdav.upload", () -> new IOException("Upload failed!", new ConnectException("refused")));
+      Assert.assertTrue(failure instanceof IOException);
+    }
+    AtomicInteger attempts = new AtomicInteger();
+    Exception failure = policy.executeTransfer("webdav.upload", () -> {
+      attempts.incrementAndGet();
+      return null;
+    });
+    Assert.assertTrue(failure instanceof IllegalStateException);
+    Assert.assertEquals(0, attempts.get());
+  }
+
+  /**
+   * +ve Calls waiting for a half open circuit continue as soon as the probe
+   * succeeds.
+   */
+  @Test
+  public void waitForProbeTest() throws Exception {
+    RetryPolicy policy = new RetryPolicy(1, 1000, 1000, RetryPolicy.UNLIMITED_TIME_BUDGET, 1, 100);
+    try {
+      policy.execute(ENDPOINT, () -> {
+        throw new ClientHandlerException(new IOException("timeout"));
+      });
+      Assert.fail("Error expected!");
+    } catch (ClientHandlerException ex) {
+      // expected
+    }
+    CountDownLatch probeStarted = new CountDownLatch(1);
+    CountDownLatch probeFinished = new CountDownLatch(1);
+    Thread probe = new Thread(() -> policy.execute(ENDPOINT, () -> {
+      probeStarted.countDown();
+      try {
+        return probeFinished.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException ie) {
+        return false;
+      }
+    }));
+    probe.start();
+    Assert.assertTrue(probeStarted.await(10, TimeUnit.SECONDS));
+    AtomicInteger attempts = new AtomicInteger();
+    List<Thread> waiters = new ArrayList<>();
+    for (int index = 0; index < 3; index++) {
+      Thread waiter = new Thread(() -> policy.execute(ENDPOINT, attempts::incrementAndGet));
+      waiter.start();
+      waiters.add(waiter);
+    }
+    Thread.sleep(200);
+    Assert.assertEquals(0, attempts.get());
+    long start = System.currentTimeMillis();
+    probeFinished.countDown();
+    for (Thread waiter : waiters) {
+      waiter.join(10000);
+    }
+    probe.join(10000);
+    Assert.assertEquals(3, attempts.get());
+    // No polling with the delay of the retries.
+    Assert.assertTrue(System.currentTimeMillis() - start < 500);
+  }
+
+  /**
+   * -ve Invalid settings are rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidAttemptsTest() {
+    new RetryPolicy(0, 1, 1, RetryPolicy.UNLIMITED_TIME_BUDGET);
+  }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.generic.helper.test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory WebDAV server for tests of the transfer classes. Supports PUT
+ * (with 'Content-Range'), GET (with 'Range'), HEAD, DELETE and PROPFIND
+ * (depth 1). Requests may be answered with 'Service Unavailable' to simulate
+ * transient errors.
+ */
+public class WebDavTestServer implements AutoCloseable {
+
+  private static final int SERVICE_UNAVAILABLE = 503;
+
+  private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+)");
+
+  private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+  private final HttpServer server;
+
+  private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+
+  private final Map<String, AtomicInteger> failures = new ConcurrentHashMap<>();
+
+  private final Map<String, AtomicInteger> successesBeforeFailure = new ConcurrentHashMap<>();
+
+  private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+
+  private volatile boolean rangesSupported = true;
+
+  private volatile boolean partialPutSupported = true;
+
+  private volatile int partialPutRejection = 0;
+
+  public WebDavTestServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", this::handle);
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.start();
+  }
+
+  public URL getUrl(String pPath) throws IOException {
+    return new URL("http://127.0.0.1:" + server.getAddress().getPort() + pPath);
+  }
+
+  public void putFile(String pPath, byte[] pContent) {
+    files.put(pPath, pContent);
+  }
+
+  public byte[] getFile(String pPath) {
+    return files.get(pPath);
+  }
+
+  /**
+   * Answer the next requests of a path with 'Service Unavailable'.
+   *
+   * @param pMethod HTTP method.
+   * @param pPath path of the file.
+   * @param pCount number of failing requests. (Integer.MAX_VALUE: always)
+   */
+  public void fail(String pMethod, String pPath, int pCount) {
+    failures.put(pMethod + " " + pPath, new AtomicInteger(pCount));
+  }
+
+  /**
+   * Answer all requests of a path with 'Service Unavailable' after the given
+   * number of successful requests.
+   *
+   * @param pMethod HTTP method.
+   * @param pPath path of the file.
+   * @param pSuccesses number of successful requests.
+   */
+  public void failAfter(String pMethod, String pPath, int pSuccesses) {
+    successesBeforeFailure.put(pMethod + " " + pPath, new AtomicInteger(pSuccesses));
+  }
+
+  public int getRequests(String pMethod, String pPath) {
+    AtomicInteger count = requests.get(pMethod + " " + pPath);
+    return (count != null) ? count.get() : 0;
+  }
+
+  public void setRangesSupported(boolean pRangesSupported) {
+    rangesSupported = pRangesSupported;
+  }
+
+  public void setPartialPutSupported(boolean pPartialPutSupported) {
+    partialPutSupported = pPartialPutSupported;
+  }
+
+  /**
+   * Answer all PUT requests with header 'Content-Range' with the given status.
+   *
+   * @param pStatus HTTP status. (0: partial PUT accepted)
+   */
+  public void rejectPartialPut(int pStatus) {
+    partialPutRejection = pStatus;
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+  }
+
+  private void handle(HttpExchange pExchange) throws IOException {
+    String method = pExchange.getRequestMethod();
+    String path = pExchange.getRequestURI().getPath();
+    requests.computeIfAbsent(method + " " + path, (key) -> new AtomicInteger()).incrementAndGet();
+    byte[] body = readAll(pExchange.getRequestBody());
+    AtomicInteger failure = failures.get(method + " " + path);
+    AtomicInteger successes = successesBeforeFailure.get(method + " " + path);
+    if (((failure != null) && (failure.getAndDecrement() > 0)) || ((successes != null) && (successes.getAndDecrement() <= 0))) {
+      pExchange.sendResponseHeaders(SERVICE_UNAVAILABLE, -1);
+      pExchange.close();
+      return;
+    }
+    switch (method) {
+      case "PUT":
+        if ((partialPutRejection > 0) && (pExchange.getRequestHeaders().getFirst("Content-Range") != null)) {
+          pExchange.sendResponseHeaders(partialPutRejection, -1);
+          break;
+        }
+        put(path, body, pExchange.getRequestHeaders().getFirst("Content-Range"));
+        pExchange.sendResponseHeaders(201, -1);
+        break;
+      case "DELETE":
+        pExchange.sendResponseHeaders((files.remove(path) != null) ? 204 : 404, -1);
+        break;
+      case "HEAD":
+        byte[] content = files.get(path);
+        if (content == null) {
+          pExchange.sendResponseHeaders(404, -1);
+        } else {
+          if (rangesSupported) {
+            pExchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+          }
+          pExchange.getResponseHeaders().set("Content-Length", Integer.toString(content.length));
+          pExchange.getResponseHeaders().set("ETag", getEtag(content));
+          pExchange.sendResponseHeaders(200, -1);
+        }
+        break;
+      case "GET":
+        get(pExchange, path);
+        break;
+      case "PROPFIND":
+        propfind(pExchange, path);
+        break;
+      default:
+        pExchange.sendResponseHeaders(405, -1);
+    }
+    pExchange.close();
+  }
+
+  private synchronized void put(String pPath, byte[] pBody, String pContentRange) {
+    if ((pContentRange == null) || !partialPutSupported) {
+      files.put(pPath, pBody);
+      return;
+    }
+    Matcher matcher = CONTENT_RANGE.matcher(pContentRange);
+    if (!matcher.matches()) {
+      throw new IllegalArgumentException(pContentRange);
+    }
+    int offset = Integer.parseInt(matcher.group(1));
+    int total = Integer.parseInt(matcher.group(3));
+    byte[] content = files.getOrDefault(pPath, new byte[0]);
+    if (content.length < total) {
+      content = Arrays.copyOf(content, total);
+    }
+    System.arraycopy(pBody, 0, content, offset, pBody.length);
+    files.put(pPath, content);
+  }
+
+  private void get(HttpExchange pExchange, String pPath) throws IOException {
+    byte[] content = files.get(pPath);
+    if (content == null) {
+      pExchange.sendResponseHeaders(404, -1);
+      return;
+    }
+    String range = pExchange.getRequestHeaders().getFirst("Range");
+    int status = 200;
+    int offset = 0;
+    int length = content.length;
+    if ((range != null) && rangesSupported) {
+      Matcher matcher = RANGE.matcher(range);
+      if (matcher.matches()) {
+        offset = Integer.parseInt(matcher.group(1));
+        length = Integer.parseInt(matcher.group(2)) - offset + 1;
+        status = 206;
+      }
+    }
+    pExchange.sendResponseHeaders(status, (length > 0) ? length : -1);
+    try (OutputStream output = pExchange.getResponseBody()) {
+      output.write(content, offset, length);
+    }
+  }
+
+  private void propfind(HttpExchange pExchange, String pPath) throws IOException {
+    String directory = pPath.endsWith("/") ? pPath : pPath + "/";
+    StringBuilder body = new StringBuilder("<?xml version=\"1.0\" encoding=\"utf-8\"?><D:multistatus xmlns:D=\"DAV:\">");
+    body.append("<D:response><D:href>").append(directory).append("</D:href><D:propstat><D:prop>")
+            .append("<D:resourcetype><D:collection/></D:resourcetype></D:prop></D:propstat></D:response>");
+    TreeSet<String> children = new TreeSet<>();
+    for (String file : files.keySet()) {
+      if (file.startsWith(directory)) {
+        String name = file.substring(directory.length());
+        children.add(name.contains("/") ? name.substring(0, name.indexOf('/') + 1) : name);
+      }
+    }
+    if (children.isEmpty()) {
+      pExchange.sendResponseHeaders(404, -1);
+      return;
+    }
+    for (String child : children) {
+      body.append("<D:response><D:href>").append(directory).append(child).append("</D:href><D:propstat><D:prop>");
+      if (child.endsWith("/")) {
+        body.append("<D:resourcetype><D:collection/></D:resourcetype>");
+      } else {
+        byte[] content = files.get(directory + child);
+        body.append("<D:resourcetype/><D:getcontentlength>").append(content.length).append("</D:getcontentlength>")
+                .append("<D:getetag>").append(getEtag(content)).append("</D:getetag>");
+      }
+      body.append("</D:prop></D:propstat></D:response>");
+    }
+    body.append("</D:multistatus>");
+    byte[] response = body.toString().getBytes(StandardCharsets.UTF_8);
+    pExchange.getResponseHeaders().set("Content-Type", "application/xml; charset=utf-8");
+    pExchange.sendResponseHeaders(207, response.length);
+    try (OutputStream output = pExchange.getResponseBody()) {
+      output.write(response);
+    }
+  }
+
+  private static String getEtag(byte[] pContent) {
+    return "\"" + Integer.toHexString(Arrays.hashCode(pContent)) + "\"";
+  }
+
+  private static byte[] readAll(InputStream pInput) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    byte[] chunk = new byte[8192];
+    int read;
+    while ((read = pInput.read(chunk)) > 0) {
+      buffer.write(chunk, 0, read);
+    }
+    return buffer.toByteArray();
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.ingest.test;
+
+import edu.kit.dama.mdm.base.DigitalObject;
+import edu.kit.dama.rest.client.ingest.IngestPipeline;
+import edu.kit.dama.staging.entities.ingest.IngestInformation;
+import edu.kit.jcommander.generic.status.CommandStatus;
+import edu.kit.jcommander.generic.status.Status;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IngestPipelineTest {
+
+  /**
+   * +ve All directories pass all stages. The status list keeps the order of
+   * the input directories.
+   */
+  @Test
+  public void executeTest() {
+    List<File> inputDirs = createInputDirs(20);
+    List<String> transferred = new ArrayList<>();
+    try (IngestPipeline pipeline = new IngestPipeline(2, 2, 4)) {
+      List<CommandStatus> statusList = pipeline.execute(inputDirs,
+              (inputDir) -> new DigitalObject(),
+              (inputDir, digitalObject) -> new IngestInformation(),
+              (inputDir, ingestInformation) -> {
+                synchronized (transferred) {
+                  transferred.add(inputDir.getName());
+                }
+                // Odd directories fail to check the order of the results.
+                boolean odd = Integer.parseInt(inputDir.getName().substring(3)) % 2 == 1;
+                return new CommandStatus(odd ? Status.FAILED : Status.SUCCESSFUL);
+              });
+      Assert.assertEquals(inputDirs.size(), statusList.size());
+      for (int index = 0; index < inputDirs.size(); index++) {
+        Assert.assertEquals((index % 2 == 1) ? Status.FAILED : Status.SUCCESSFUL, statusList.get(index).getStatus());
+      }
+    }
+    Assert.assertEquals(inputDirs.size(), transferred.size());
+  }
+
+  /**
+   * -ve A failing stage only fails the ingest of its directory. Later stages
+   * are skipped for this directory.
+   */
+  @Test
+  public void failingStageTest() {
+    List<File> inputDirs = createInputDirs(3);
+    AtomicInteger transfers = new AtomicInteger();
+    try (IngestPipeline pipeline = new IngestPipeline(1, 1, 1)) {
+      List<CommandStatus> statusList = pipeline.execute(inputDirs,
+              (inputDir) -> {
+                if (inputDir.getName().equals("dir1")) {
+                  throw new IOException("Registration failed!");
+                }
+                return new DigitalObject();
+              },
+              (inputDir, digitalObject) -> new IngestInformation(),
+              (inputDir, ingestInformation) -> {
+                transfers.incrementAndGet();
+                return new CommandStatus(Status.SUCCESSFUL);
+              });
+      Assert.assertEquals(Status.SUCCESSFUL, statusList.get(0).getStatus());
+      Assert.assertEquals(Status.FAILED, statusList.get(1).getStatus());
+      Assert.assertTrue(statusList.get(1).getException() instanceof IOException);
+      Assert.assertEquals(Status.SUCCESSFUL, statusList.get(2).getStatus());
+    }
+    Assert.assertEquals(2, transfers.get());
+  }
+
+  /**
+   * +ve Number of concurrent transfers is bounded by the threads of the
+   * stage.
+   */
+  @Test
+  public void boundedTransfersTest() {
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    try (IngestPipeline pipeline = new IngestPipeline(4, 4, 2)) {
+      pipeline.execute(createInputDirs(16),
+              (inputDir) -> new DigitalObject(),
+              (inputDir, digitalObject) -> new IngestInformation(),
+              (inputDir, ingestInformation) -> {
+                int current = running.incrementAndGet();
+                maxRunning.accumulateAndGet(current, Math::max);
+                Thread.sleep(10);
+                running.decrementAndGet();
+                return new CommandStatus(Status.SUCCESSFUL);
+              });
+    }
+    Assert.assertTrue(maxRunning.get() <= 2);
+  }
+
+  /**
+   * -ve Each stage needs at least one thread.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidThreadsTest() {
+    new IngestPipeline(1, 0, 1).close();
+  }
+
+  private static List<File> createInputDirs(int pCount) {
+    List<File> inputDirs = new ArrayList<>();
+    for (int index = 0; index < pCount; index++) {
+      inputDirs.add(new File("dir" + index));
+    }
+    return inputDirs;
+  }
+}
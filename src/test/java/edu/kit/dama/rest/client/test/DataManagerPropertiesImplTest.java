@@ -0,0 +1,178 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.test;
+
+import edu.kit.dama.rest.client.DataManagerProperties;
+import edu.kit.dama.rest.client.DataManagerPropertiesImpl;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DataManagerPropertiesImplTest {
+
+  /**
+   * Wait a bit longer than the interval between two checks of the settings
+   * files.
+   */
+  private static final long CHECK_INTERVAL = 1100;
+
+  private File settings;
+
+  @Before
+  public void setup() throws IOException {
+    settings = File.createTempFile("RepoSettings", ".properties");
+    writeSettings("http://kit.dm.demourl/KITDM", "USERS");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(settings.toPath());
+  }
+
+  /**
+   * +ve Unchanged settings keep their snapshot.
+   */
+  @Test
+  public void unchangedSettingsTest() throws Exception {
+    DataManagerPropertiesImpl properties = DataManagerPropertiesImpl.getInstance(settings.getAbsolutePath());
+    long version = properties.getVersion();
+    Assert.assertEquals("http://kit.dm.demourl/KITDM", properties.getRestUrl());
+    Assert.assertEquals("USERS", properties.getUserGroup());
+    Thread.sleep(CHECK_INTERVAL);
+    Assert.assertEquals("USERS", properties.getUserGroup());
+    Assert.assertEquals(version, properties.getVersion());
+  }
+
+  /**
+   * +ve Changed settings file is reloaded after the check interval.
+   */
+  @Test
+  public void changedSettingsTest() throws Exception {
+    DataManagerPropertiesImpl properties = DataManagerPropertiesImpl.getInstance(settings.getAbsolutePath());
+    long version = properties.getVersion();
+    writeSettings("http://kit.dm.demourl/KITDM", "OTHER_GROUP");
+    // Files are checked at most once per interval.
+    Assert.assertEquals("USERS", properties.getUserGroup());
+    Thread.sleep(CHECK_INTERVAL);
+    Assert.assertEquals("OTHER_GROUP", properties.getUserGroup());
+    Assert.assertEquals(version + 1, properties.getVersion());
+    Assert.assertEquals("5", properties.getSetting("limit.staging.maxConcurrentRequests"));
+    Assert.assertNull(properties.getSetting("limit.search.maxConcurrentRequests"));
+  }
+
+  /**
+   * +ve Trailing slashes of the REST URL are removed without marking the
+   * properties as changed. Changed settings file is still reloaded.
+   */
+  @Test
+  public void normalizedRestUrlTest() throws Exception {
+    writeSettings("http://kit.dm.demourl/KITDM//", "USERS");
+    DataManagerPropertiesImpl properties = DataManagerPropertiesImpl.getInstance(settings.getAbsolutePath());
+    long version = properties.getVersion();
+    Assert.assertEquals("http://kit.dm.demourl/KITDM", properties.getRestUrl());
+    Assert.assertEquals("http://kit.dm.demourl/KITDM", properties.getPropertyValue(DataManagerProperties.REST_SERVER_LABEL));
+    Assert.assertEquals(version, properties.getVersion());
+    writeSettings("http://kit.dm.demourl/KITDM//", "OTHER_GROUP");
+    Thread.sleep(CHECK_INTERVAL);
+    Assert.assertEquals("OTHER_GROUP", properties.getUserGroup());
+    Assert.assertEquals("http://kit.dm.demourl/KITDM", properties.getRestUrl());
+    Assert.assertEquals(version + 1, properties.getVersion());
+  }
+
+  /**
+   * +ve Unsaved changes aren't replaced by the settings file. Saved changes
+   * don't trigger a reload.
+   */
+  @Test
+  public void unsavedChangesTest() throws Exception {
+    writeSettings("http://kit.dm.demourl/KITDM//", "USERS");
+    DataManagerPropertiesImpl properties = DataManagerPropertiesImpl.getInstance(settings.getAbsolutePath());
+    long version = properties.getVersion();
+    // Return keeps the old value but marks the properties as changed.
+    InputStream stdIn = System.in;
+    try {
+      System.setIn(new ByteArrayInputStream("\n".getBytes(StandardCharsets.UTF_8)));
+      properties.readProperty(DataManagerProperties.USER_GROUP, "%s");
+    } finally {
+      System.setIn(stdIn);
+    }
+    Assert.assertEquals(version + 1, properties.getVersion());
+    writeSettings("http://kit.dm.demourl/KITDM//", "OTHER_GROUP");
+    Thread.sleep(CHECK_INTERVAL);
+    Assert.assertEquals("USERS", properties.getUserGroup());
+    Assert.assertEquals(version + 1, properties.getVersion());
+    properties.saveProperties();
+    Thread.sleep(CHECK_INTERVAL);
+    Assert.assertEquals("USERS", properties.getUserGroup());
+    Assert.assertEquals(version + 1, properties.getVersion());
+    Assert.assertTrue(new String(Files.readAllBytes(settings.toPath()), StandardCharsets.ISO_8859_1).contains("KITDM\n"));
+  }
+
+  /**
+   * +ve Concurrent readers always get complete snapshots.
+   */
+  @Test
+  public void concurrentReadersTest() throws Exception {
+    DataManagerPropertiesImpl properties = DataManagerPropertiesImpl.getInstance(settings.getAbsolutePath());
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Boolean>> futures = new ArrayList<>();
+      for (int index = 0; index < 4; index++) {
+        futures.add(executor.submit(() -> {
+          long end = System.currentTimeMillis() + 2 * CHECK_INTERVAL;
+          while (System.currentTimeMillis() < end) {
+            String group = properties.getUserGroup();
+            if (!"USERS".equals(group) && !"OTHER_GROUP".equals(group)) {
+              return false;
+            }
+          }
+          return true;
+        }));
+      }
+      writeSettings("http://kit.dm.demourl/KITDM", "OTHER_GROUP");
+      for (Future<Boolean> future : futures) {
+        Assert.assertTrue(future.get(10, TimeUnit.SECONDS));
+      }
+      Assert.assertEquals("OTHER_GROUP", properties.getUserGroup());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private void writeSettings(String pRestUrl, String pGroup) throws IOException {
+    long lastModified = settings.lastModified();
+    Files.write(settings.toPath(), Arrays.asList(
+            "RestServer=" + pRestUrl.replace(":", "\\:"),
+            "group=" + pGroup,
+            "limit.staging.maxConcurrentRequests=5"), StandardCharsets.ISO_8859_1);
+    // Modification time may have a resolution of seconds.
+    settings.setLastModified(lastModified + 2000);
+  }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.test;
+
+import edu.kit.dama.rest.client.DataManagerPropertiesImpl;
+import edu.kit.dama.rest.client.RequestLimiter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RequestLimiterTest {
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * +ve Number of concurrent requests never exceeds the limit of the family.
+   */
+  @Test
+  public void maxConcurrentRequestsTest() throws Exception {
+    RequestLimiter limiter = new RequestLimiter();
+    limiter.setLimit(RequestLimiter.STAGING, 2, RequestLimiter.UNLIMITED_RATE);
+    Assert.assertEquals(2, getMaxConcurrentRequests(limiter, "staging.ingests.get"));
+  }
+
+  /**
+   * +ve A burst of one second is sent without waiting, further requests are
+   * sent with the given rate.
+   */
+  @Test
+  public void requestsPerSecondTest() {
+    RequestLimiter limiter = new RequestLimiter();
+    limiter.setLimit(RequestLimiter.SEARCH, 10, 20);
+    long start = System.currentTimeMillis();
+    for (int index = 0; index < 20; index++) {
+      limiter.execute("search.metadata", () -> null);
+    }
+    long burst = System.currentTimeMillis() - start;
+    Assert.assertTrue("Burst took " + burst + " ms", burst < 250);
+    for (int index = 0; index < 10; index++) {
+      limiter.execute("search.metadata", () -> null);
+    }
+    long elapsed = System.currentTimeMillis() - start;
+    // 10 requests at 20 requests per second.
+    Assert.assertTrue("Requests took " + elapsed + " ms", (elapsed >= 400) && (elapsed < 3000));
+  }
+
+  /**
+   * +ve Limits of one family don't affect other families. Endpoints without
+   * limits are never delayed.
+   */
+  @Test
+  public void independentFamiliesTest() {
+    RequestLimiter limiter = new RequestLimiter();
+    limiter.setLimit(RequestLimiter.STAGING, 1, 1);
+    limiter.setLimit(RequestLimiter.USERGROUP, 1, 1);
+    long start = System.currentTimeMillis();
+    Assert.assertEquals("ingest", limiter.execute("staging.ingests.get", () -> "ingest"));
+    Assert.assertEquals("group", limiter.execute("usergroup.groups.get", () -> "group"));
+    Assert.assertEquals("unknown", limiter.execute("unknown", () -> "unknown"));
+    Assert.assertTrue(System.currentTimeMillis() - start < 500);
+    Assert.assertEquals("ingest", limiter.execute("staging.ingests.get", () -> "ingest"));
+    Assert.assertTrue(System.currentTimeMillis() - start >= 900);
+  }
+
+  /**
+   * +ve Permit is released even if the request fails.
+   */
+  @Test
+  public void failedRequestTest() {
+    RequestLimiter limiter = new RequestLimiter();
+    limiter.setLimit(RequestLimiter.BASEMETADATA, 1, RequestLimiter.UNLIMITED_RATE);
+    try {
+      limiter.execute("basemetadata.digitalObjects.get", () -> {
+        throw new IllegalArgumentException("not found");
+      });
+      Assert.fail("Error expected!");
+    } catch (IllegalArgumentException iae) {
+      Assert.assertEquals("not found", iae.getMessage());
+    }
+    Assert.assertEquals("object", limiter.execute("basemetadata.digitalObjects.get", () -> "object"));
+  }
+
+  /**
+   * -ve Interrupted waiting is reported.
+   */
+  @Test
+  public void interruptedTest() {
+    RequestLimiter limiter = new RequestLimiter();
+    limiter.setLimit(RequestLimiter.STAGING, 1, 1);
+    limiter.execute("staging.ingests.get", () -> null);
+    Thread.currentThread().interrupt();
+    try {
+      limiter.execute("staging.ingests.get", () -> null);
+      Assert.fail("Error expected!");
+    } catch (IllegalStateException ise) {
+      Assert.assertTrue(ise.getMessage().contains("staging.ingests.get"));
+    } finally {
+      Assert.assertTrue(Thread.interrupted());
+    }
+  }
+
+  /**
+   * +ve Limits are read from the settings, invalid limits are replaced by
+   * defaults.
+   */
+  @Test
+  public void limitsFromSettingsTest() throws Exception {
+    File settings = File.createTempFile("limits", ".properties");
+    try {
+      Files.write(settings.toPath(), Arrays.asList(
+              "limit.staging.maxConcurrentRequests = 1",
+              "limit.search.maxConcurrentRequests = many"), StandardCharsets.ISO_8859_1);
+      RequestLimiter limiter = new RequestLimiter(DataManagerPropertiesImpl.getInstance(settings.getAbsolutePath()));
+      Assert.assertEquals(1, getMaxConcurrentRequests(limiter, "staging.ingests.get"));
+      Assert.assertTrue(getMaxConcurrentRequests(limiter, "search.metadata") > 1);
+    } finally {
+      Files.deleteIfExists(settings.toPath());
+    }
+  }
+
+  /**
+   * -ve Invalid limits are rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidMaxConcurrentRequestsTest() {
+    new RequestLimiter().setLimit(RequestLimiter.STAGING, 0, RequestLimiter.UNLIMITED_RATE);
+  }
+
+  /**
+   * -ve Invalid limits are rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidRateTest() {
+    new RequestLimiter().setLimit(RequestLimiter.STAGING, 1, -1);
+  }
+
+  private int getMaxConcurrentRequests(RequestLimiter pLimiter, String pEndpoint) throws Exception {
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    List<Future<Object>> futures = new ArrayList<>();
+    for (int index = 0; index < 8; index++) {
+      futures.add(executor.submit(() -> pLimiter.execute(pEndpoint, () -> {
+        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+        try {
+          Thread.sleep(50);
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+        }
+        running.decrementAndGet();
+        return null;
+      })));
+    }
+    for (Future<Object> future : futures) {
+      future.get(5, TimeUnit.SECONDS);
+    }
+    return maxRunning.get();
+  }
+}
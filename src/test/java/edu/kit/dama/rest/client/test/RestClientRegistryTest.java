@@ -0,0 +1,136 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.test;
+
+import edu.kit.dama.rest.AbstractRestClient;
+import edu.kit.dama.rest.SimpleRESTContext;
+import edu.kit.dama.rest.client.RestClientRegistry;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RestClientRegistryTest {
+
+  private static final String URL = "http://kit.dm.demourl/rest/test";
+
+  private RestClientRegistry registry;
+
+  private int createdClients;
+
+  @Before
+  public void setup() {
+    registry = RestClientRegistry.getDefaultInstance();
+    registry.clear();
+    registry.setMaxIdleTime(RestClientRegistry.DEFAULT_MAX_IDLE_TIME);
+    createdClients = 0;
+  }
+
+  @After
+  public void tearDown() {
+    registry.clear();
+    registry.setMaxIdleTime(RestClientRegistry.DEFAULT_MAX_IDLE_TIME);
+  }
+
+  /**
+   * +ve Same credentials share one context.
+   */
+  @Test
+  public void getContextTest() {
+    SimpleRESTContext context = registry.getContext("key", "secret");
+    Assert.assertSame(context, registry.getContext("key", "secret"));
+    Assert.assertNotSame(context, registry.getContext("key", "otherSecret"));
+    Assert.assertNotSame(context, registry.getContext("keys", "ecret"));
+  }
+
+  /**
+   * +ve Clients are shared per credentials even for different context
+   * instances.
+   */
+  @Test
+  public void getClientByCredentialsTest() {
+    TestRestClient client = getClient(new SimpleRESTContext("key", "secret"));
+    Assert.assertSame(client, getClient(new SimpleRESTContext("key", "secret")));
+    Assert.assertNotSame(client, getClient(new SimpleRESTContext("key", "otherSecret")));
+    Assert.assertEquals(2, createdClients);
+  }
+
+  /**
+   * +ve Clients are registered per URL.
+   */
+  @Test
+  public void getClientByUrlTest() {
+    SimpleRESTContext context = registry.getContext("key", "secret");
+    TestRestClient client = getClient(context);
+    TestRestClient otherClient = registry.getClient(TestRestClient.class, URL + "/other", context, this::createClient);
+    Assert.assertNotSame(client, otherClient);
+  }
+
+  /**
+   * +ve Idle clients and contexts are evicted.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void evictIdleClientsTest() throws Exception {
+    SimpleRESTContext context = registry.getContext("key", "secret");
+    TestRestClient client = getClient(context);
+    registry.setMaxIdleTime(0);
+    Thread.sleep(5);
+    registry.evictIdleClients();
+    registry.setMaxIdleTime(RestClientRegistry.DEFAULT_MAX_IDLE_TIME);
+    Assert.assertNotSame(context, registry.getContext("key", "secret"));
+    Assert.assertNotSame(client, getClient(context));
+    Assert.assertEquals(2, createdClients);
+  }
+
+  /**
+   * +ve Clear removes all clients.
+   */
+  @Test
+  public void clearTest() {
+    TestRestClient client = getClient(registry.getContext("key", "secret"));
+    registry.clear();
+    Assert.assertNotSame(client, getClient(registry.getContext("key", "secret")));
+  }
+
+  /**
+   * -ve Number of connections has to be positive.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void setMaxConnectionsPerRouteTest() {
+    registry.setMaxConnectionsPerRoute(0);
+  }
+
+  private TestRestClient getClient(SimpleRESTContext pContext) {
+    return registry.getClient(TestRestClient.class, URL, pContext, this::createClient);
+  }
+
+  private TestRestClient createClient(String pUrl, SimpleRESTContext pContext) {
+    createdClients++;
+    return new TestRestClient(pUrl, pContext);
+  }
+
+  /**
+   * Minimal REST client.
+   */
+  public static class TestRestClient extends AbstractRestClient {
+
+    public TestRestClient(String pUrl, SimpleRESTContext pContext) {
+      super(pUrl, pContext);
+    }
+  }
+}
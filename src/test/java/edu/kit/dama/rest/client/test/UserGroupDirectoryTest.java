@@ -0,0 +1,219 @@
+/*
+ * Copyright 2019 Karlsruhe Institute of Technology.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.dama.rest.client.test;
+
+import edu.kit.dama.mdm.admin.UserGroup;
+import edu.kit.dama.mdm.base.UserData;
+import edu.kit.dama.rest.SimpleRESTContext;
+import edu.kit.dama.rest.admin.client.impl.UserGroupRestClient;
+import edu.kit.dama.rest.admin.types.UserDataWrapper;
+import edu.kit.dama.rest.admin.types.UserGroupWrapper;
+import edu.kit.dama.rest.client.IRequestExecutor;
+import edu.kit.dama.rest.client.UserGroupDirectory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class UserGroupDirectoryTest {
+
+  private SimpleRESTContext restContext;
+
+  private UserGroupRestClient groupRestClient;
+
+  private CountingExecutor requestExecutor;
+
+  private UserGroupDirectory directory;
+
+  @Before
+  public void setup() {
+    restContext = new SimpleRESTContext("key", "secret");
+    groupRestClient = Mockito.mock(UserGroupRestClient.class);
+    requestExecutor = new CountingExecutor();
+    directory = UserGroupDirectory.getInstance(groupRestClient, restContext, requestExecutor);
+  }
+
+  /**
+   * +ve All users are read page by page. No details are requested if the
+   * pages contain the distinguished names.
+   */
+  @Test
+  public void pagedUsersTest() {
+    mockUsers(250, true);
+
+    Assert.assertEquals(Long.valueOf(17), directory.getUserByDistinguishedName("user17").getUserId());
+    Assert.assertEquals(Long.valueOf(249), directory.getUserByDistinguishedName("user249").getUserId());
+    Assert.assertEquals("user120", directory.getUserById(120L).getDistinguishedName());
+    Assert.assertNull(directory.getUserByDistinguishedName("unknown"));
+
+    Mockito.verify(groupRestClient).getAllUsers(0, 100, restContext);
+    Mockito.verify(groupRestClient).getAllUsers(100, 100, restContext);
+    Mockito.verify(groupRestClient).getAllUsers(200, 50, restContext);
+    Mockito.verify(groupRestClient, Mockito.never()).getUserById(Mockito.anyLong(), Mockito.any(SimpleRESTContext.class));
+    Assert.assertEquals(1, requestExecutor.getCalls("usergroup.users.count"));
+    Assert.assertEquals(3, requestExecutor.getCalls("usergroup.users.list"));
+  }
+
+  /**
+   * +ve Users without distinguished name are resolved once on demand.
+   */
+  @Test
+  public void unresolvedUsersTest() {
+    mockUsers(3, false);
+    for (long id = 0; id < 3; id++) {
+      UserDataWrapper detail = new UserDataWrapper();
+      List<UserData> entities = new ArrayList<>();
+      entities.add(createUser(id, true));
+      detail.setEntities(entities);
+      Mockito.when(groupRestClient.getUserById(id, restContext)).thenReturn(detail);
+    }
+
+    Assert.assertEquals(Long.valueOf(1), directory.getUserByDistinguishedName("user1").getUserId());
+    Assert.assertEquals(Long.valueOf(2), directory.findUserByDistinguishedName("ser2").getUserId());
+    Assert.assertNull(directory.getUserByDistinguishedName("unknown"));
+
+    Mockito.verify(groupRestClient, Mockito.times(1)).getUserById(0L, restContext);
+    Mockito.verify(groupRestClient, Mockito.times(1)).getUserById(2L, restContext);
+    Assert.assertEquals(3, requestExecutor.getCalls("usergroup.users.get"));
+  }
+
+  /**
+   * +ve Groups are found by exact or partial group id. Exact matches are
+   * preferred.
+   */
+  @Test
+  public void findGroupTest() {
+    UserGroupWrapper count = new UserGroupWrapper();
+    count.setCount(2);
+    UserGroupWrapper page = new UserGroupWrapper();
+    List<UserGroup> entities = new ArrayList<>();
+    entities.add(createGroup(1L, "NANOSCOPY_GROUP"));
+    entities.add(createGroup(2L, "NANOSCOPY"));
+    page.setEntities(entities);
+    Mockito.when(groupRestClient.getGroupCount(restContext)).thenReturn(count);
+    Mockito.when(groupRestClient.getAllGroups(0, 2, restContext)).thenReturn(page);
+
+    Assert.assertEquals(Long.valueOf(2), directory.findGroupByGroupId("NANOSCOPY").getId());
+    Assert.assertEquals(Long.valueOf(1), directory.findGroupByGroupId("SCOPY_G").getId());
+    Assert.assertEquals(Long.valueOf(1), directory.getGroupByGroupId("NANOSCOPY_GROUP").getId());
+    Assert.assertNull(directory.getGroupByGroupId("SCOPY_G"));
+    Assert.assertEquals(2, directory.getAllGroups().size());
+    Mockito.verify(groupRestClient, Mockito.times(1)).getAllGroups(0, 2, restContext);
+  }
+
+  /**
+   * +ve Indices are rebuilt after invalidation.
+   */
+  @Test
+  public void invalidateTest() {
+    mockUsers(1, true);
+    Assert.assertNotNull(directory.getUserByDistinguishedName("user0"));
+    Assert.assertNotNull(directory.getUserByDistinguishedName("user0"));
+    directory.invalidate();
+    Assert.assertNotNull(directory.getUserByDistinguishedName("user0"));
+    Mockito.verify(groupRestClient, Mockito.times(2)).getAllUsers(0, 1, restContext);
+  }
+
+  /**
+   * +ve Directories are shared per REST client.
+   */
+  @Test
+  public void getInstanceTest() {
+    Assert.assertSame(directory, UserGroupDirectory.getInstance(groupRestClient, restContext, requestExecutor));
+    Assert.assertNotSame(directory, UserGroupDirectory.getInstance(Mockito.mock(UserGroupRestClient.class), restContext, requestExecutor));
+  }
+
+  /**
+   * +ve Directories with other executors share the indices but keep their
+   * own executor.
+   */
+  @Test
+  public void otherExecutorTest() {
+    mockUsers(1, true);
+    CountingExecutor otherExecutor = new CountingExecutor();
+    UserGroupDirectory otherDirectory = UserGroupDirectory.getInstance(groupRestClient, restContext, otherExecutor);
+    Assert.assertNotNull(otherDirectory.getUserByDistinguishedName("user0"));
+    Assert.assertNotNull(directory.getUserByDistinguishedName("user0"));
+    Assert.assertNull(directory.getUserById(4711L));
+    Assert.assertEquals(1, otherExecutor.getCalls("usergroup.users.list"));
+    Assert.assertEquals(0, requestExecutor.getCalls("usergroup.users.list"));
+    Assert.assertEquals(0, otherExecutor.getCalls("usergroup.users.get"));
+    Assert.assertEquals(1, requestExecutor.getCalls("usergroup.users.get"));
+    Mockito.verify(groupRestClient, Mockito.times(1)).getAllUsers(0, 1, restContext);
+    // Requesting the directory again doesn't change the executor of others.
+    UserGroupDirectory.getInstance(groupRestClient, restContext, new CountingExecutor());
+    otherDirectory.invalidate();
+    Assert.assertNotNull(otherDirectory.getUserByDistinguishedName("user0"));
+    Assert.assertEquals(2, otherExecutor.getCalls("usergroup.users.list"));
+  }
+
+  private void mockUsers(int pCount, boolean pWithDistinguishedName) {
+    UserDataWrapper count = new UserDataWrapper();
+    count.setCount(pCount);
+    Mockito.when(groupRestClient.getUserCount(restContext)).thenReturn(count);
+    for (int first = 0; first < pCount; first += 100) {
+      UserDataWrapper page = new UserDataWrapper();
+      List<UserData> entities = new ArrayList<>();
+      int results = Math.min(100, pCount - first);
+      for (int index = first; index < first + results; index++) {
+        entities.add(createUser(index, pWithDistinguishedName));
+      }
+      page.setEntities(entities);
+      Mockito.when(groupRestClient.getAllUsers(first, results, restContext)).thenReturn(page);
+    }
+  }
+
+  private static UserData createUser(long pId, boolean pWithDistinguishedName) {
+    UserData user = new UserData();
+    user.setUserId(pId);
+    if (pWithDistinguishedName) {
+      user.setDistinguishedName("user" + pId);
+    }
+    return user;
+  }
+
+  private static UserGroup createGroup(long pId, String pGroupId) {
+    UserGroup group = new UserGroup();
+    group.setId(pId);
+    group.setGroupId(pGroupId);
+    return group;
+  }
+
+  /**
+   * Executor counting the requests per endpoint.
+   */
+  private static class CountingExecutor implements IRequestExecutor {
+
+    private final Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+
+    @Override
+    public <T> T execute(String pEndpoint, Supplier<T> pRequest) {
+      calls.computeIfAbsent(pEndpoint, (key) -> new AtomicInteger()).incrementAndGet();
+      return pRequest.get();
+    }
+
+    int getCalls(String pEndpoint) {
+      AtomicInteger counter = calls.get(pEndpoint);
+      return (counter != null) ? counter.get() : 0;
+    }
+  }
+}